@@ -0,0 +1,1598 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.beans;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.Dictionary;
+import org.apache.pivot.collections.HashMap;
+import org.apache.pivot.collections.HashSet;
+import org.apache.pivot.collections.Map;
+import org.apache.pivot.collections.Sequence;
+import org.apache.pivot.json.JSON;
+import org.apache.pivot.serialization.SerializationException;
+import org.apache.pivot.util.ListenerList;
+import org.apache.pivot.util.Resources;
+import org.apache.pivot.util.Utils;
+
+/**
+ * Generates Java source from BXML documents. <p> The class generated for a
+ * document implements {@link CompiledBXML} and builds the same object
+ * hierarchy as {@link BXMLSerializer} would, with direct constructor, getter
+ * and setter calls; attribute values whose type is known when the document is
+ * compiled (such as numbers, booleans and enum constants) are converted at that
+ * time. The generated code populates the serializer's namespace with
+ * <tt>bxml:id</tt> values, reads includes (using the classes generated for
+ * them when they are compiled together), resolves <tt>%</tt> resource keys,
+ * <tt>@</tt> URLs and <tt>$</tt> references when it runs, and initializes a
+ * {@link Bindable} root object. Generated classes are read with
+ * {@link BXMLSerializer#readObject(CompiledBXML, Resources)}. <p> Documents
+ * that use scripts (<tt>bxml:script</tt> elements, script event handlers or
+ * listener list elements), namespace bindings or <tt>bxml:lazy</tt> content are
+ * not translated: the class generated for such a document reads the document
+ * itself with the <tt>BXMLSerializer</tt> at run time, so the BXML file must
+ * still be available next to the generated class. The same fallback is used for documents that
+ * create objects of classes that cannot be instantiated directly (non-public
+ * classes, or classes without a public no-arg constructor). Note that
+ * generated classes do not call {@link BXMLSerializer#newTypedObject}. <p> The
+ * compiler loads the classes named by the documents, so they must be on the
+ * class path of the compiler. It can be run from the command line:
+ * <pre>
+ * java org.apache.pivot.beans.BXMLCompiler &lt;source directory&gt; &lt;output directory&gt; [&lt;resource&gt; ...]
+ * </pre>
+ * which compiles the given BXML resources (relative to the source directory),
+ * or all <tt>.bxml</tt> files in the source directory, into Java source files
+ * in the output directory. The <tt>compile-bxml</tt> macro of the Pivot Ant
+ * build runs it for a project. <p> The public static methods at the end of
+ * this class are used by the generated code.
+ */
+public final class BXMLCompiler {
+    private enum Type {
+        INSTANCE, INCLUDE, REFERENCE, DEFINE, READ_ONLY_PROPERTY, WRITABLE_PROPERTY, TEXT
+    }
+
+    private static class Node {
+        public final Node parent;
+        public final Type type;
+        public final String name;
+        public final Class<?> propertyClass;
+        public final Class<?> valueType;
+        public final int lineNumber;
+
+        public String id = null;
+        public final HashMap<String, String> properties = new HashMap<>();
+        public final ArrayList<Attribute> attributes = new ArrayList<>();
+        public final ArrayList<Node> children = new ArrayList<>();
+
+        public Node(final Node parent, final Type type, final String name, final Class<?> propertyClass,
+            final Class<?> valueType, final int lineNumber) {
+            this.parent = parent;
+            this.type = type;
+            this.name = name;
+            this.propertyClass = propertyClass;
+            this.valueType = valueType;
+            this.lineNumber = lineNumber;
+        }
+    }
+
+    private static class Attribute {
+        public final String name;
+        public final Class<?> propertyClass;
+        public final String value;
+
+        public Attribute(final String name, final Class<?> propertyClass, final String value) {
+            this.name = name;
+            this.propertyClass = propertyClass;
+            this.value = value;
+        }
+    }
+
+    /**
+     * A Java expression for a value, and its static type (<tt>null</tt> if the
+     * type is not known until run time).
+     */
+    private static class Value {
+        public final String expression;
+        public final Class<?> type;
+        public final String text;
+
+        public Value(final String expression, final Class<?> type, final String text) {
+            this.expression = expression;
+            this.type = type;
+            this.text = text;
+        }
+    }
+
+    /**
+     * Thrown when a document uses a feature that requires the runtime
+     * serializer.
+     */
+    private static class FallbackException extends Exception {
+        private static final long serialVersionUID = 0;
+
+        public FallbackException(final String message) {
+            super(message);
+        }
+    }
+
+    private ClassLoader classLoader;
+    private HashSet<String> linkedResources = new HashSet<>();
+    private String fallbackReason = null;
+
+    private String resourceName = null;
+    private HashSet<String> ids = null;
+    private ArrayList<String> methods = null;
+    private int nextVariable = 0;
+
+    private static final String INDENT = "    ";
+    private static final String CLASS_NAME_SUFFIX = "CompiledBXML";
+    private static final String PARAMETERS = "serializer, namespace, location, resources";
+
+    /**
+     * Creates a compiler that loads the classes named by BXML documents from
+     * the context class loader of the current thread.
+     */
+    public BXMLCompiler() {
+        this(Thread.currentThread().getContextClassLoader());
+    }
+
+    /**
+     * Creates a compiler that loads the classes named by BXML documents from
+     * the given class loader.
+     *
+     * @param classLoader The class loader.
+     */
+    public BXMLCompiler(final ClassLoader classLoader) {
+        Utils.checkNull(classLoader, "classLoader");
+
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * Declares that a BXML resource is compiled along with the documents
+     * compiled by this compiler, so that includes of it create its generated
+     * class directly.
+     *
+     * @param resourceNameArgument The resource name of the document, such as
+     * <tt>org/apache/pivot/demos/main.bxml</tt>.
+     */
+    public void link(final String resourceNameArgument) {
+        Utils.checkNullOrEmpty(resourceNameArgument, "resourceName");
+
+        linkedResources.add(resourceNameArgument);
+    }
+
+    /**
+     * Generates the Java source of the class for a BXML document.
+     *
+     * @param resourceNameArgument The resource name of the document, which
+     * determines the name of the generated class.
+     * @param inputStream The document.
+     * @return The source of the generated class.
+     * @throws SerializationException if the document is not valid BXML.
+     * @see #getClassName(String)
+     * @see #getFallbackReason()
+     */
+    public String compile(final String resourceNameArgument, final InputStream inputStream)
+        throws SerializationException {
+        Utils.checkNullOrEmpty(resourceNameArgument, "resourceName");
+        Utils.checkNull(inputStream, "inputStream");
+
+        resourceName = resourceNameArgument;
+        fallbackReason = null;
+        ids = new HashSet<>();
+        methods = new ArrayList<>();
+        nextVariable = 0;
+
+        try {
+            BXMLTemplate template = BXMLTemplate.compile(inputStream);
+
+            String readObject;
+            try {
+                Node root = parse(template.newStreamReader());
+                readObject = generateReadObject(root);
+            } catch (FallbackException exception) {
+                fallbackReason = exception.getMessage();
+                methods.clear();
+                readObject = generateFallback();
+            }
+
+            return generateClass(readObject);
+        } finally {
+            resourceName = null;
+            ids = null;
+            methods = null;
+        }
+    }
+
+    /**
+     * @return The reason the document last compiled by this compiler is read
+     * by the <tt>BXMLSerializer</tt> at run time, or <tt>null</tt> if the
+     * generated class creates the objects itself.
+     */
+    public String getFallbackReason() {
+        return fallbackReason;
+    }
+
+    /**
+     * Returns the name of the class generated for a BXML resource: the name of
+     * the resource file, converted to camel case and suffixed with
+     * "CompiledBXML", in the package of the resource. For example, the class for
+     * <tt>org/apache/pivot/demos/main_window.bxml</tt> is
+     * <tt>org.apache.pivot.demos.MainWindowCompiledBXML</tt>.
+     *
+     * @param resourceName The resource name of the document.
+     * @return The fully-qualified class name.
+     * @throws IllegalArgumentException if the resource is not in a valid
+     * package.
+     */
+    public static String getClassName(final String resourceName) {
+        Utils.checkNullOrEmpty(resourceName, "resourceName");
+
+        String path = (resourceName.charAt(0) == '/') ? resourceName.substring(1) : resourceName;
+
+        int i = path.lastIndexOf('/');
+        String packageName = (i == -1) ? "" : path.substring(0, i).replace('/', '.');
+        String fileName = path.substring(i + 1);
+
+        for (String segment : packageName.split("\\.", -1)) {
+            if (packageName.length() > 0 && !isIdentifier(segment)) {
+                throw new IllegalArgumentException("\"" + packageName + "\" is not a valid package name.");
+            }
+        }
+
+        int j = fileName.lastIndexOf('.');
+        if (j > 0) {
+            fileName = fileName.substring(0, j);
+        }
+
+        StringBuilder className = new StringBuilder();
+        boolean upperCase = true;
+        for (int k = 0, n = fileName.length(); k < n; k++) {
+            char c = fileName.charAt(k);
+            if (Character.isJavaIdentifierPart(c) && c != '_' && c != '$') {
+                className.append(upperCase ? Character.toUpperCase(c) : c);
+                upperCase = false;
+            } else {
+                upperCase = true;
+            }
+        }
+
+        if (className.length() == 0 || !Character.isJavaIdentifierStart(className.charAt(0))) {
+            className.insert(0, '_');
+        }
+
+        className.append(CLASS_NAME_SUFFIX);
+
+        return (packageName.length() == 0) ? className.toString() : packageName + "." + className;
+    }
+
+    private static boolean isIdentifier(final String name) {
+        if (name.length() == 0 || !Character.isJavaIdentifierStart(name.charAt(0))) {
+            return false;
+        }
+
+        for (int i = 1, n = name.length(); i < n; i++) {
+            if (!Character.isJavaIdentifierPart(name.charAt(i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private SerializationException error(final Node node, final String message) {
+        return error(node.lineNumber, message);
+    }
+
+    private SerializationException error(final int lineNumber, final String message) {
+        return new SerializationException("Line " + lineNumber + ": " + message);
+    }
+
+    private Class<?> loadClass(final String className, final int lineNumber) throws SerializationException {
+        try {
+            return Class.forName(className, false, classLoader);
+        } catch (ClassNotFoundException | LinkageError exception) {
+            throw new SerializationException("Line " + lineNumber + ": Unable to load class "
+                + className + ".", exception);
+        }
+    }
+
+    /**
+     * Builds the element tree of a document, determining the type of each
+     * element as the serializer would.
+     */
+    private Node parse(final XMLStreamReader reader) throws SerializationException, FallbackException {
+        Node root = null;
+        Node node = null;
+
+        try {
+            while (reader.hasNext()) {
+                int event = reader.next();
+                int lineNumber = reader.getLocation().getLineNumber();
+
+                switch (event) {
+                    case XMLStreamConstants.CHARACTERS:
+                        if (node == null) {
+                            throw error(lineNumber, "Unexpected characters.");
+                        }
+
+                        switch (node.type) {
+                            case INSTANCE:
+                            case WRITABLE_PROPERTY:
+                                node.children.add(new Node(node, Type.TEXT, reader.getText(), null, String.class,
+                                    lineNumber));
+                                break;
+
+                            default:
+                                throw error(lineNumber, "Unexpected characters in " + node.type + " element.");
+                        }
+                        break;
+
+                    case XMLStreamConstants.START_ELEMENT:
+                        node = parseStartElement(reader, node, lineNumber);
+                        if (root == null) {
+                            root = node;
+                        }
+                        break;
+
+                    case XMLStreamConstants.END_ELEMENT:
+                        node = node.parent;
+                        break;
+
+                    default:
+                        break;
+                }
+            }
+        } catch (XMLStreamException exception) {
+            throw new SerializationException(exception);
+        }
+
+        return root;
+    }
+
+    private Node parseStartElement(final XMLStreamReader reader, final Node parent, final int lineNumber)
+        throws SerializationException, FallbackException {
+        String namespaceURI = reader.getNamespaceURI();
+        String prefix = reader.getPrefix();
+        String localName = reader.getLocalName();
+
+        if (prefix != null && prefix.length() == 0) {
+            prefix = null;
+        }
+
+        Node node;
+
+        if (prefix != null && prefix.equals(BXMLSerializer.BXML_PREFIX)) {
+            if (parent == null) {
+                throw error(lineNumber, "Invalid root element.");
+            }
+
+            if (localName.equals(BXMLSerializer.INCLUDE_TAG)) {
+                node = new Node(parent, Type.INCLUDE, null, null, null, lineNumber);
+            } else if (localName.equals(BXMLSerializer.SCRIPT_TAG)) {
+                throw new FallbackException("line " + lineNumber + " contains a script.");
+            } else if (localName.equals(BXMLSerializer.DEFINE_TAG)) {
+                node = new Node(parent, Type.DEFINE, null, null, null, lineNumber);
+            } else if (localName.equals(BXMLSerializer.REFERENCE_TAG)) {
+                node = new Node(parent, Type.REFERENCE, null, null, null, lineNumber);
+            } else {
+                throw error(lineNumber, "Invalid element.");
+            }
+        } else if (Character.isUpperCase(localName.charAt(0))) {
+            int i = localName.indexOf('.');
+            if (i != -1 && Character.isLowerCase(localName.charAt(i + 1))) {
+                // An attached property
+                Class<?> propertyClass = loadClass(namespaceURI + "." + localName.substring(0, i), lineNumber);
+                if (!isAccessible(propertyClass)) {
+                    throw new FallbackException(propertyClass.getName() + " is not public.");
+                }
+
+                checkPropertyParent(parent, localName, lineNumber);
+                node = new Node(parent, Type.WRITABLE_PROPERTY, localName.substring(i + 1), propertyClass, null,
+                    lineNumber);
+            } else {
+                // A typed object
+                if (namespaceURI == null) {
+                    throw error(lineNumber, "No XML namespace specified for " + localName + " tag.");
+                }
+
+                Class<?> type = loadClass(namespaceURI + "." + localName.replace('.', '$'), lineNumber);
+                if (!isInstantiable(type)) {
+                    throw new FallbackException(type.getName() + " cannot be instantiated directly.");
+                }
+
+                node = new Node(parent, Type.INSTANCE, null, null, type, lineNumber);
+            }
+        } else {
+            // A property of the parent object
+            if (prefix != null) {
+                throw error(lineNumber, "Property elements cannot have a namespace prefix.");
+            }
+
+            checkPropertyParent(parent, localName, lineNumber);
+
+            Class<?> parentType = parent.valueType;
+            if (Dictionary.class.isAssignableFrom(parentType)
+                || !BeanAdapter.isReadOnly(parentType, localName)) {
+                node = new Node(parent, Type.WRITABLE_PROPERTY, localName, null, null, lineNumber);
+            } else {
+                Class<?> propertyType = BeanAdapter.getType(parentType, localName);
+                if (propertyType == null) {
+                    throw error(lineNumber, "\"" + localName + "\" is not a valid property of element <"
+                        + parentType.getSimpleName() + ">.");
+                }
+
+                if (ListenerList.class.isAssignableFrom(propertyType)) {
+                    throw new FallbackException("line " + lineNumber + " contains a listener list element.");
+                }
+
+                node = new Node(parent, Type.READ_ONLY_PROPERTY, localName, null, propertyType, lineNumber);
+            }
+        }
+
+        if (parent != null) {
+            parent.children.add(node);
+        }
+
+        parseAttributes(reader, node);
+
+        if (node.type == Type.INCLUDE && !node.properties.containsKey(BXMLSerializer.INCLUDE_SRC_ATTRIBUTE)) {
+            throw error(node, BXMLSerializer.INCLUDE_SRC_ATTRIBUTE + " attribute is required for "
+                + BXMLSerializer.BXML_PREFIX + ":" + BXMLSerializer.INCLUDE_TAG + " tag.");
+        }
+
+        if (node.type == Type.REFERENCE
+            && !node.properties.containsKey(BXMLSerializer.REFERENCE_ID_ATTRIBUTE)) {
+            throw error(node, BXMLSerializer.REFERENCE_ID_ATTRIBUTE + " attribute is required for "
+                + BXMLSerializer.BXML_PREFIX + ":" + BXMLSerializer.REFERENCE_TAG + " tag.");
+        }
+
+        return node;
+    }
+
+    /**
+     * Property elements are only translated for objects whose class is known
+     * when the document is compiled.
+     */
+    private static void checkPropertyParent(final Node parent, final String localName, final int lineNumber)
+        throws FallbackException {
+        if (parent == null || parent.type != Type.INSTANCE) {
+            throw new FallbackException("line " + lineNumber + " sets the \"" + localName
+                + "\" property of an object whose class is not known.");
+        }
+    }
+
+    private void parseAttributes(final XMLStreamReader reader, final Node node)
+        throws SerializationException, FallbackException {
+        for (int i = 0, n = reader.getAttributeCount(); i < n; i++) {
+            String prefix = reader.getAttributePrefix(i);
+            String localName = reader.getAttributeLocalName(i);
+            String value = reader.getAttributeValue(i);
+
+            if (prefix != null && prefix.equals(BXMLSerializer.BXML_PREFIX)) {
+                if (localName.equals(BXMLSerializer.LAZY_ATTRIBUTE)) {
+                    throw new FallbackException("line " + node.lineNumber + " contains lazy content.");
+                }
+
+                if (!localName.equals(BXMLSerializer.ID_ATTRIBUTE)) {
+                    throw error(node, BXMLSerializer.BXML_PREFIX + ":" + localName + " is not a valid attribute.");
+                }
+
+                if (value.length() == 0 || value.contains(".")) {
+                    throw error(node, "\"" + value + "\" is not a valid ID value.");
+                }
+
+                if (ids.contains(value)) {
+                    throw error(node, "ID " + value + " is already in use.");
+                }
+
+                if (node.type != Type.INSTANCE && node.type != Type.INCLUDE) {
+                    throw error(node, "An ID cannot be assigned to this element.");
+                }
+
+                ids.add(value);
+                node.id = value;
+            } else {
+                boolean property = false;
+
+                switch (node.type) {
+                    case INCLUDE:
+                        property = (localName.equals(BXMLSerializer.INCLUDE_SRC_ATTRIBUTE)
+                            || localName.equals(BXMLSerializer.INCLUDE_RESOURCES_ATTRIBUTE)
+                            || localName.equals(BXMLSerializer.INCLUDE_MIME_TYPE_ATTRIBUTE)
+                            || localName.equals(BXMLSerializer.INCLUDE_INLINE_ATTRIBUTE));
+                        break;
+
+                    case REFERENCE:
+                        property = (localName.equals(BXMLSerializer.REFERENCE_ID_ATTRIBUTE));
+                        break;
+
+                    default:
+                        break;
+                }
+
+                if (property) {
+                    node.properties.put(localName, value);
+                } else {
+                    String name = localName;
+                    Class<?> propertyClass = null;
+
+                    if (Character.isUpperCase(localName.charAt(0))) {
+                        // A static property or listener list
+                        int j = localName.indexOf('.');
+                        name = localName.substring(j + 1);
+
+                        String namespaceURI = reader.getAttributeNamespace(i);
+                        if (Utils.isNullOrEmpty(namespaceURI)) {
+                            namespaceURI = reader.getNamespaceURI("");
+                        }
+
+                        propertyClass = loadClass(namespaceURI + "." + localName.substring(0, j), node.lineNumber);
+
+                        if (propertyClass.isInterface()) {
+                            throw new FallbackException("line " + node.lineNumber + " contains a script for the "
+                                + localName + " event.");
+                        }
+
+                        if (!isAccessible(propertyClass)) {
+                            throw new FallbackException(propertyClass.getName() + " is not public.");
+                        }
+                    }
+
+                    if (value.startsWith(BXMLSerializer.NAMESPACE_BINDING_PREFIX)
+                        && value.endsWith(BXMLSerializer.NAMESPACE_BINDING_SUFFIX)) {
+                        throw new FallbackException("line " + node.lineNumber + " contains a namespace binding.");
+                    }
+
+                    node.attributes.add(new Attribute(name, propertyClass, value));
+                }
+            }
+        }
+    }
+
+    private static boolean isAccessible(final Class<?> type) {
+        if (type.isArray()) {
+            return isAccessible(type.getComponentType());
+        }
+
+        if (type.isPrimitive()) {
+            return true;
+        }
+
+        for (Class<?> c = type; c != null; c = c.getEnclosingClass()) {
+            if (!Modifier.isPublic(c.getModifiers()) || c.isAnonymousClass() || c.isLocalClass()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isInstantiable(final Class<?> type) {
+        int modifiers = type.getModifiers();
+        if (!isAccessible(type) || type.isInterface() || Modifier.isAbstract(modifiers)
+            || (type.getEnclosingClass() != null && !Modifier.isStatic(modifiers))) {
+            return false;
+        }
+
+        try {
+            type.getConstructor();
+        } catch (NoSuchMethodException | SecurityException exception) {
+            return false;
+        }
+
+        return true;
+    }
+
+    private String getTypeName(final Class<?> type) {
+        return type.getCanonicalName();
+    }
+
+    private String newVariable(final String prefix) {
+        return prefix + (nextVariable++);
+    }
+
+    /**
+     * Generates the body of the <tt>readObject()</tt> method.
+     */
+    private String generateReadObject(final Node root) throws SerializationException {
+        StringBuilder out = new StringBuilder();
+
+        String rootMethod = generateMethod(root);
+        String type = getTypeName(root.valueType);
+
+        line(out, 2, "Map<String, Object> namespace = serializer.getNamespace();");
+        line(out, 2, "URL location = serializer.getLocation();");
+        line(out, 2, "Resources resources = serializer.getResources();");
+        out.append("\n");
+        line(out, 2, type + " root = " + rootMethod + "(" + PARAMETERS + ");");
+
+        if (Bindable.class.isAssignableFrom(root.valueType)) {
+            out.append("\n");
+            line(out, 2, "for (Class<?> type = root.getClass(); Bindable.class.isAssignableFrom(type);");
+            line(out, 3, "type = type.getSuperclass()) {");
+            line(out, 3, "serializer.bind(root, type);");
+            line(out, 2, "}");
+            line(out, 2, "root.initialize(namespace, location, resources);");
+        }
+
+        out.append("\n");
+        line(out, 2, "return root;");
+
+        return out.toString();
+    }
+
+    private String generateFallback() {
+        StringBuilder out = new StringBuilder();
+        line(out, 2, "return serializer.readObject(serializer.getLocation(), serializer.getResources());");
+
+        return out.toString();
+    }
+
+    private String generateClass(final String readObject) {
+        String className = getClassName(resourceName);
+        int i = className.lastIndexOf('.');
+        String simpleName = className.substring(i + 1);
+        String fileName = resourceName.substring(resourceName.lastIndexOf('/') + 1);
+
+        StringBuilder out = new StringBuilder();
+        if (i != -1) {
+            out.append("package ").append(className.substring(0, i)).append(";\n\n");
+        }
+
+        out.append("import java.io.IOException;\n");
+        out.append("import java.net.URL;\n\n");
+        out.append("import org.apache.pivot.beans.BXMLCompiler;\n");
+        out.append("import org.apache.pivot.beans.BXMLSerializer;\n");
+        out.append("import org.apache.pivot.beans.Bindable;\n");
+        out.append("import org.apache.pivot.beans.CompiledBXML;\n");
+        out.append("import org.apache.pivot.collections.Map;\n");
+        out.append("import org.apache.pivot.serialization.SerializationException;\n");
+        out.append("import org.apache.pivot.util.Resources;\n\n");
+
+        out.append("/**\n");
+        out.append(" * Generated by {@link BXMLCompiler} from <tt>").append(fileName).append("</tt>. Do not edit.\n");
+        if (fallbackReason != null) {
+            out.append(" * <p> The document is read by the <tt>BXMLSerializer</tt> at run time: ")
+                .append(fallbackReason.replace("*/", "* /")).append("\n");
+        }
+        out.append(" */\n");
+        out.append("@SuppressWarnings({\"rawtypes\", \"unchecked\", \"unused\"})\n");
+        out.append("public final class ").append(simpleName).append(" implements CompiledBXML {\n");
+
+        line(out, 1, "@Override");
+        line(out, 1, "public URL getLocation() {");
+        line(out, 2, "return " + simpleName + ".class.getResource(" + quote(fileName) + ");");
+        line(out, 1, "}");
+        out.append("\n");
+        line(out, 1, "@Override");
+        line(out, 1, "public Object readObject(final BXMLSerializer serializer)");
+        line(out, 2, "throws IOException, SerializationException {");
+        out.append(readObject);
+        line(out, 1, "}");
+        for (String method : methods) {
+            out.append(method);
+        }
+        out.append("}\n");
+
+        return out.toString();
+    }
+
+    private static void line(final StringBuilder out, final int indent, final String text) {
+        for (int i = 0; i < indent; i++) {
+            out.append(INDENT);
+        }
+
+        out.append(text).append("\n");
+    }
+
+    /**
+     * Generates the method that creates the value of an instance, include or
+     * reference element, and returns its name.
+     */
+    private String generateMethod(final Node node) throws SerializationException {
+        // Reserve the method's place, so that methods appear in document order
+        int index = methods.getLength();
+        methods.add(null);
+        String methodName = "create" + index;
+        String type = (node.type == Type.INSTANCE) ? getTypeName(node.valueType) : "Object";
+
+        StringBuilder out = new StringBuilder();
+        out.append("\n");
+
+        switch (node.type) {
+            case INSTANCE:
+                line(out, 1, "// <" + node.valueType.getSimpleName() + "> at line " + node.lineNumber);
+                break;
+
+            case INCLUDE:
+                line(out, 1, "// <bxml:include> at line " + node.lineNumber);
+                break;
+
+            default:
+                line(out, 1, "// <bxml:reference> at line " + node.lineNumber);
+                break;
+        }
+
+        line(out, 1, "private static " + type + " " + methodName + "(final BXMLSerializer serializer,");
+        line(out, 2, "final Map<String, Object> namespace, final URL location, final Resources resources)");
+        line(out, 2, "throws IOException, SerializationException {");
+
+        // Create the value
+        switch (node.type) {
+            case INSTANCE:
+                line(out, 2, type + " value = new " + type + "();");
+                break;
+
+            case INCLUDE:
+                line(out, 2, "Object value = " + generateInclude(node) + ";");
+                break;
+
+            default:
+                line(out, 2, "Object value = BXMLCompiler.dereference(namespace, "
+                    + quote(node.properties.get(BXMLSerializer.REFERENCE_ID_ATTRIBUTE)) + ");");
+                break;
+        }
+
+        // Resolve the attribute values
+        ArrayList<Value> values = generateValues(out, node);
+
+        if (node.id != null) {
+            line(out, 2, "BXMLCompiler.putID(namespace, " + quote(node.id) + ", value);");
+
+            if (node.type == Type.INSTANCE) {
+                IDProperty idProperty = node.valueType.getAnnotation(IDProperty.class);
+                if (idProperty != null) {
+                    generatePut(out, 2, "value", node.valueType, idProperty.value(),
+                        new Value(quote(node.id), String.class, node.id), node);
+                }
+            } else {
+                line(out, 2, "BXMLCompiler.setIDProperty(value, " + quote(node.id) + ");");
+            }
+        }
+
+        generateChildren(out, 2, node, "value");
+
+        // Apply the attributes
+        for (int i = 0, n = node.attributes.getLength(); i < n; i++) {
+            Attribute attribute = node.attributes.get(i);
+            Value value = values.get(i);
+
+            if (attribute.propertyClass == null) {
+                if (node.type == Type.INSTANCE) {
+                    generatePut(out, 2, "value", node.valueType, attribute.name, value, node);
+                } else {
+                    line(out, 2, "BXMLCompiler.setProperty(value, " + quote(attribute.name) + ", "
+                        + value.expression + ");");
+                }
+            } else {
+                generateStaticPut(out, 2, "value", (node.type == Type.INSTANCE) ? node.valueType : null,
+                    attribute.propertyClass, attribute.name, value, node);
+            }
+        }
+
+        line(out, 2, "return value;");
+        line(out, 1, "}");
+
+        methods.update(index, out.toString());
+
+        return methodName;
+    }
+
+    private String generateInclude(final Node node) {
+        String src = node.properties.get(BXMLSerializer.INCLUDE_SRC_ATTRIBUTE);
+        String resourcesName = node.properties.get(BXMLSerializer.INCLUDE_RESOURCES_ATTRIBUTE);
+        String mimeType = node.properties.get(BXMLSerializer.INCLUDE_MIME_TYPE_ATTRIBUTE);
+        boolean inline = node.properties.containsKey(BXMLSerializer.INCLUDE_INLINE_ATTRIBUTE)
+            && Boolean.parseBoolean(node.properties.get(BXMLSerializer.INCLUDE_INLINE_ATTRIBUTE));
+
+        String includeResourceName = getIncludeResourceName(src, mimeType);
+        if (includeResourceName != null && linkedResources.contains(includeResourceName)) {
+            return "serializer.readInclude(new " + getClassName(includeResourceName) + "(), "
+                + quote(resourcesName) + ", " + inline + ")";
+        }
+
+        return "serializer.readInclude(" + quote(src) + ", " + quote(resourcesName) + ", "
+            + quote(mimeType) + ", " + inline + ")";
+    }
+
+    /**
+     * Returns the resource name of an included BXML document, or <tt>null</tt>
+     * if the include is not a BXML document named by a literal path.
+     */
+    private String getIncludeResourceName(final String src, final String mimeType) {
+        if (src.length() == 0 || src.charAt(0) == BXMLSerializer.OBJECT_REFERENCE_PREFIX
+            || !src.endsWith("." + BXMLSerializer.BXML_EXTENSION)
+            || (mimeType != null && !mimeType.equals(BXMLSerializer.MIME_TYPE))) {
+            return null;
+        }
+
+        if (src.charAt(0) == BXMLSerializer.SLASH_PREFIX) {
+            return src.substring(1);
+        }
+
+        try {
+            String path = new URI("bxml", "/" + resourceName, null).resolve(new URI(null, src, null)).getPath();
+            return (path == null || !path.startsWith("/")) ? null : path.substring(1);
+        } catch (Exception exception) {
+            return null;
+        }
+    }
+
+    /**
+     * Generates the code that resolves the attribute values of an element,
+     * when the element starts.
+     */
+    private ArrayList<Value> generateValues(final StringBuilder out, final Node node)
+        throws SerializationException {
+        ArrayList<Value> values = new ArrayList<>();
+
+        for (Attribute attribute : node.attributes) {
+            String value = attribute.value;
+            Value resolved = new Value(quote(value), String.class, value);
+
+            if (value.length() > 0) {
+                char c = value.charAt(0);
+                String argument = value.substring(1);
+
+                if (c == BXMLSerializer.URL_PREFIX || c == BXMLSerializer.RESOURCE_KEY_PREFIX
+                    || c == BXMLSerializer.OBJECT_REFERENCE_PREFIX) {
+                    if (argument.length() == 0) {
+                        throw error(node, "Invalid resolution argument \"" + value + "\".");
+                    }
+
+                    if (argument.charAt(0) == c) {
+                        resolved = new Value(quote(argument), String.class, argument);
+                    } else {
+                        String variable = newVariable("attribute");
+
+                        if (c == BXMLSerializer.URL_PREFIX) {
+                            line(out, 2, "URL " + variable + " = BXMLCompiler.getURL(location, " + quote(argument)
+                                + ");");
+                            resolved = new Value(variable, URL.class, null);
+                        } else if (c == BXMLSerializer.RESOURCE_KEY_PREFIX) {
+                            line(out, 2, "Object " + variable + " = BXMLCompiler.getResource(resources, "
+                                + quote(argument) + ");");
+                            resolved = new Value(variable, null, null);
+                        } else if (argument.equals(BXMLSerializer.BXML_PREFIX + ":" + null)) {
+                            resolved = new Value("null", null, null);
+                        } else {
+                            line(out, 2, "Object " + variable + " = BXMLCompiler.resolveReference(namespace, "
+                                + quote(argument) + ");");
+                            resolved = new Value(variable, null, null);
+                        }
+                    }
+                }
+            }
+
+            values.add(resolved);
+        }
+
+        return values;
+    }
+
+    /**
+     * Generates the code for the child elements of an element whose value is
+     * held by the given variable.
+     */
+    private void generateChildren(final StringBuilder out, final int indent, final Node node,
+        final String variable) throws SerializationException {
+        for (Node child : node.children) {
+            switch (child.type) {
+                case TEXT:
+                    if (node.type == Type.INSTANCE && Sequence.class.isAssignableFrom(node.valueType)) {
+                        try {
+                            node.valueType.getMethod("add", String.class);
+                        } catch (NoSuchMethodException exception) {
+                            throw error(child, "Text content cannot be added to " + node.valueType.getName()
+                                + ": \"" + child.name + "\"");
+                        }
+
+                        line(out, indent, variable + ".add(" + quote(child.name) + ");");
+                    }
+                    break;
+
+                case INSTANCE:
+                case INCLUDE:
+                case REFERENCE:
+                    String childVariable = newVariable("value");
+                    String type = (child.type == Type.INSTANCE) ? getTypeName(child.valueType) : "Object";
+                    line(out, indent, type + " " + childVariable + " = " + generateMethod(child) + "("
+                        + PARAMETERS + ");");
+
+                    generateAdd(out, indent, node, variable, childVariable);
+                    break;
+
+                case DEFINE:
+                    generateChildren(out, indent, child, null);
+                    break;
+
+                case READ_ONLY_PROPERTY:
+                    generateReadOnlyProperty(out, indent, child, variable);
+                    break;
+
+                case WRITABLE_PROPERTY:
+                    generateWritableProperty(out, indent, child, variable);
+                    break;
+
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Generates the code that adds the value of a child element to the value
+     * of its parent.
+     */
+    private void generateAdd(final StringBuilder out, final int indent, final Node parent,
+        final String variable, final String childVariable) {
+        switch (parent.type) {
+            case INSTANCE:
+            case READ_ONLY_PROPERTY:
+                Class<?> parentType = parent.valueType;
+                if (parentType.getAnnotation(DefaultProperty.class) == null
+                    && Sequence.class.isAssignableFrom(parentType)) {
+                    line(out, indent, "((" + Sequence.class.getName() + ") " + variable + ").add("
+                        + childVariable + ");");
+                } else {
+                    // The serializer's own logic handles default properties
+                    line(out, indent, "BXMLCompiler.add(" + variable + ", " + childVariable + ");");
+                }
+                break;
+
+            case INCLUDE:
+            case REFERENCE:
+                line(out, indent, "BXMLCompiler.add(" + variable + ", " + childVariable + ");");
+                break;
+
+            default:
+                // Values of define and property elements are not added
+                break;
+        }
+    }
+
+    private void generateReadOnlyProperty(final StringBuilder out, final int indent, final Node node,
+        final String variable) throws SerializationException {
+        Class<?> parentType = node.parent.valueType;
+        Class<?> propertyType = node.valueType;
+        String propertyVariable = newVariable("property");
+
+        String expression;
+        Method getterMethod = BeanAdapter.getGetterMethod(parentType, node.name);
+        if (getterMethod == null) {
+            Field field = BeanAdapter.getField(parentType, node.name);
+            expression = variable + "." + field.getName();
+        } else {
+            expression = variable + "." + getterMethod.getName() + "()";
+        }
+
+        boolean accessible = isAccessible(propertyType);
+        line(out, indent, (accessible ? getTypeName(propertyType) : "Object") + " " + propertyVariable
+            + " = " + expression + ";");
+
+        ArrayList<Value> values = generateValues(out, node);
+
+        generateChildren(out, indent, node, propertyVariable);
+
+        for (int i = 0, n = node.attributes.getLength(); i < n; i++) {
+            Attribute attribute = node.attributes.get(i);
+            Value value = values.get(i);
+
+            if (attribute.propertyClass != null) {
+                throw error(node, "Static setters are not supported for read-only properties.");
+            }
+
+            if (accessible && Dictionary.class.isAssignableFrom(propertyType)) {
+                line(out, indent, propertyVariable + ".put(" + quote(attribute.name) + ", " + value.expression
+                    + ");");
+            } else {
+                line(out, indent, "BXMLCompiler.setProperty(" + propertyVariable + ", " + quote(attribute.name)
+                    + ", " + value.expression + ");");
+            }
+        }
+    }
+
+    private void generateWritableProperty(final StringBuilder out, final int indent, final Node node,
+        final String variable) throws SerializationException {
+        // The value of the property is the last text or object in the element
+        Value value = new Value("null", null, null);
+
+        for (Node child : node.children) {
+            switch (child.type) {
+                case TEXT:
+                    value = new Value(quote(child.name), String.class, child.name);
+                    break;
+
+                case INSTANCE:
+                case INCLUDE:
+                case REFERENCE:
+                    String childVariable = newVariable("value");
+                    Class<?> type = (child.type == Type.INSTANCE) ? child.valueType : null;
+                    line(out, indent, ((type == null) ? "Object" : getTypeName(type)) + " " + childVariable
+                        + " = " + generateMethod(child) + "(" + PARAMETERS + ");");
+                    value = new Value(childVariable, type, null);
+                    break;
+
+                case DEFINE:
+                    generateChildren(out, indent, child, null);
+                    break;
+
+                default:
+                    throw error(child, "Property elements cannot contain property elements.");
+            }
+        }
+
+        Class<?> parentType = node.parent.valueType;
+        if (node.propertyClass == null) {
+            generatePut(out, indent, variable, parentType, node.name, value, node);
+        } else {
+            generateStaticPut(out, indent, variable, parentType, node.propertyClass, node.name, value, node);
+        }
+    }
+
+    /**
+     * Generates the code that sets a property of an object whose class is
+     * known, choosing the setter that {@link BeanAdapter#put} would.
+     */
+    private void generatePut(final StringBuilder out, final int indent, final String variable,
+        final Class<?> type, final String name, final Value value, final Node node) throws SerializationException {
+        if (Dictionary.class.isAssignableFrom(type)) {
+            line(out, indent, variable + ".put(" + quote(name) + ", " + value.expression + ");");
+            return;
+        }
+
+        Method setterMethod = null;
+        Value argument = null;
+
+        if (value.type != null) {
+            setterMethod = BeanAdapter.getSetterMethod(type, name, value.type);
+            argument = value;
+
+            if (setterMethod == null) {
+                Class<?> propertyType = BeanAdapter.getType(type, name);
+
+                if (propertyType != null) {
+                    setterMethod = BeanAdapter.getSetterMethod(type, name, propertyType);
+                    argument = coerce(value, propertyType, name, node);
+                }
+            }
+        }
+
+        String expression = null;
+        if (setterMethod != null && argument != null) {
+            expression = cast(argument, setterMethod.getParameterTypes()[0]);
+        }
+
+        if (expression == null) {
+            line(out, indent, "BXMLCompiler.setProperty(" + variable + ", " + quote(name) + ", "
+                + value.expression + ");");
+        } else {
+            line(out, indent, variable + "." + setterMethod.getName() + "(" + expression + ");");
+        }
+    }
+
+    /**
+     * Generates the code that sets an attached property, choosing the setter
+     * that the serializer would.
+     */
+    private void generateStaticPut(final StringBuilder out, final int indent, final String variable,
+        final Class<?> type, final Class<?> propertyClass, final String name, final Value value, final Node node)
+        throws SerializationException {
+        String propertyName = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+
+        Method setterMethod = null;
+        Value argument = null;
+
+        if (type != null && value.type != null) {
+            setterMethod = BXMLSerializer.getStaticSetterMethod(propertyClass, propertyName, type, value.type);
+            argument = value;
+
+            if (setterMethod == null) {
+                Method getterMethod = BXMLSerializer.getStaticGetterMethod(propertyClass, propertyName, type);
+
+                if (getterMethod != null) {
+                    Class<?> propertyType = getterMethod.getReturnType();
+                    setterMethod = BXMLSerializer.getStaticSetterMethod(propertyClass, propertyName, type,
+                        propertyType);
+
+                    if (value.text != null) {
+                        argument = coerce(value, propertyType, propertyName, node);
+                    } else if (!toObjectType(propertyType).isAssignableFrom(value.type)) {
+                        argument = null;
+                    }
+                }
+            }
+
+            if (setterMethod == null) {
+                throw error(node, propertyClass.getName() + "." + propertyName + " is not valid static property.");
+            }
+        }
+
+        String objectExpression = null;
+        String expression = null;
+        if (setterMethod != null && argument != null) {
+            Class<?>[] parameterTypes = setterMethod.getParameterTypes();
+            objectExpression = cast(new Value(variable, type, null), parameterTypes[0]);
+            expression = cast(argument, parameterTypes[1]);
+        }
+
+        if (objectExpression == null || expression == null) {
+            line(out, indent, "BXMLCompiler.setStaticProperty(" + variable + ", " + getTypeName(propertyClass)
+                + ".class, " + quote(name) + ", " + value.expression + ");");
+        } else {
+            line(out, indent, getTypeName(propertyClass) + "." + setterMethod.getName() + "(" + objectExpression
+                + ", " + expression + ");");
+        }
+    }
+
+    /**
+     * Returns an argument expression whose static type is the parameter type
+     * of the chosen method, so that the Java compiler picks the same overload;
+     * or <tt>null</tt> if the parameter type cannot be named in the generated
+     * code.
+     */
+    private String cast(final Value argument, final Class<?> parameterType) {
+        if (argument.type == parameterType) {
+            return argument.expression;
+        }
+
+        if (!isAccessible(parameterType)) {
+            return null;
+        }
+
+        return "(" + getTypeName(parameterType) + ") " + argument.expression;
+    }
+
+    /**
+     * Returns a value coerced to the given type, or <tt>null</tt> if the type
+     * cannot be named in the generated code.
+     */
+    private Value coerce(final Value value, final Class<?> type, final String name, final Node node)
+        throws SerializationException {
+        if (value.text != null) {
+            Value literal = toLiteral(value.text, type, name, node);
+            if (literal != null) {
+                return literal;
+            }
+        }
+
+        Class<?> objectType = toObjectType(type);
+        if (!isAccessible(objectType)) {
+            return null;
+        }
+
+        String typeName = getTypeName(objectType);
+        return new Value(BeanAdapter.class.getName() + ".<" + typeName + ">coerce(" + value.expression + ", "
+            + typeName + ".class, " + quote(name) + ")", objectType, null);
+    }
+
+    private static Class<?> toObjectType(final Class<?> type) {
+        if (type == Boolean.TYPE) {
+            return Boolean.class;
+        } else if (type == Character.TYPE) {
+            return Character.class;
+        } else if (type == Byte.TYPE) {
+            return Byte.class;
+        } else if (type == Short.TYPE) {
+            return Short.class;
+        } else if (type == Integer.TYPE) {
+            return Integer.class;
+        } else if (type == Long.TYPE) {
+            return Long.class;
+        } else if (type == Float.TYPE) {
+            return Float.class;
+        } else if (type == Double.TYPE) {
+            return Double.class;
+        }
+
+        return type;
+    }
+
+    /**
+     * Converts text to a Java literal of a primitive, wrapper, string or enum
+     * type, or returns <tt>null</tt> for other types.
+     */
+    private Value toLiteral(final String text, final Class<?> type, final String name, final Node node)
+        throws SerializationException {
+        Class<?> objectType = toObjectType(type);
+
+        if (objectType == String.class) {
+            return new Value(quote(text), String.class, text);
+        }
+
+        if (!(objectType == Boolean.class || objectType == Character.class || objectType.isEnum()
+            || (Number.class.isAssignableFrom(objectType) && objectType.getName().startsWith("java.lang.")))) {
+            return null;
+        }
+
+        if (objectType.isEnum() && !isAccessible(objectType)) {
+            return null;
+        }
+
+        Object value;
+        try {
+            value = BeanAdapter.coerce(text, objectType, name);
+        } catch (RuntimeException exception) {
+            throw error(node, "Invalid value \"" + text + "\" for \"" + name + "\": " + exception.getMessage());
+        }
+
+        String literal;
+        if (value instanceof Enum<?>) {
+            Enum<?> constant = (Enum<?>) value;
+            literal = getTypeName(constant.getDeclaringClass()) + "." + constant.name();
+            return new Value(literal, objectType, null);
+        } else if (value instanceof Character) {
+            literal = quote((Character) value);
+        } else if (value instanceof Long) {
+            literal = value + "L";
+        } else if (value instanceof Short) {
+            literal = "(short) " + value;
+        } else if (value instanceof Byte) {
+            literal = "(byte) " + value;
+        } else if (value instanceof Float) {
+            Float f = (Float) value;
+            if (f.isNaN()) {
+                literal = "Float.NaN";
+            } else if (f.isInfinite()) {
+                literal = (f > 0) ? "Float.POSITIVE_INFINITY" : "Float.NEGATIVE_INFINITY";
+            } else {
+                literal = value + "f";
+            }
+        } else if (value instanceof Double) {
+            Double d = (Double) value;
+            if (d.isNaN()) {
+                literal = "Double.NaN";
+            } else if (d.isInfinite()) {
+                literal = (d > 0) ? "Double.POSITIVE_INFINITY" : "Double.NEGATIVE_INFINITY";
+            } else {
+                literal = value + "d";
+            }
+        } else {
+            // Boolean and Integer
+            literal = value.toString();
+        }
+
+        // The literal has the primitive type
+        return new Value(literal, toPrimitiveType(objectType), null);
+    }
+
+    private static Class<?> toPrimitiveType(final Class<?> type) {
+        try {
+            return (Class<?>) type.getField("TYPE").get(null);
+        } catch (NoSuchFieldException | IllegalAccessException exception) {
+            throw new IllegalArgumentException(type.getName() + " is not a primitive wrapper type.");
+        }
+    }
+
+    private static String quote(final Character c) {
+        return "'" + (c.charValue() == '\'' ? "\\'" : escape(c.toString())) + "'";
+    }
+
+    private static String quote(final String string) {
+        if (string == null) {
+            return "null";
+        }
+
+        return "\"" + escape(string) + "\"";
+    }
+
+    private static String escape(final String string) {
+        StringBuilder buf = new StringBuilder(string.length());
+
+        for (int i = 0, n = string.length(); i < n; i++) {
+            char c = string.charAt(i);
+
+            switch (c) {
+                case '\\':
+                    buf.append("\\\\");
+                    break;
+                case '"':
+                    buf.append("\\\"");
+                    break;
+                case '\n':
+                    buf.append("\\n");
+                    break;
+                case '\r':
+                    buf.append("\\r");
+                    break;
+                case '\t':
+                    buf.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20 || c > 0x7e) {
+                        buf.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        buf.append(c);
+                    }
+                    break;
+            }
+        }
+
+        return buf.toString();
+    }
+
+    /**
+     * Compiles BXML documents into Java source files.
+     *
+     * @param args The source directory, the output directory and, optionally,
+     * the resource names of the documents to compile (by default, all BXML
+     * files in the source directory).
+     */
+    public static void main(final String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: " + BXMLCompiler.class.getName()
+                + " <source directory> <output directory> [<resource> ...]");
+            System.exit(1);
+        }
+
+        File sourceDirectory = new File(args[0]);
+        File outputDirectory = new File(args[1]);
+
+        ArrayList<String> resourceNames = new ArrayList<>();
+        if (args.length > 2) {
+            for (int i = 2; i < args.length; i++) {
+                resourceNames.add(args[i].replace(File.separatorChar, '/'));
+            }
+        } else {
+            Path sourcePath = sourceDirectory.toPath();
+            try (Stream<Path> paths = Files.walk(sourcePath)) {
+                for (Path path : paths.filter(p -> p.toString().endsWith("." + BXMLSerializer.BXML_EXTENSION))
+                    .sorted().collect(Collectors.toList())) {
+                    resourceNames.add(sourcePath.relativize(path).toString().replace(File.separatorChar, '/'));
+                }
+            } catch (IOException exception) {
+                System.err.println(exception.getMessage());
+                System.exit(1);
+            }
+        }
+
+        BXMLCompiler compiler = new BXMLCompiler();
+        for (String resourceName : resourceNames) {
+            compiler.link(resourceName);
+        }
+
+        int errors = 0;
+        for (String resourceName : resourceNames) {
+            try {
+                String source;
+                try (InputStream inputStream = new FileInputStream(new File(sourceDirectory, resourceName))) {
+                    source = compiler.compile(resourceName, inputStream);
+                }
+
+                String className = getClassName(resourceName);
+                checkClassName(className);
+
+                File outputFile = new File(outputDirectory, className.replace('.', '/') + ".java");
+                outputFile.getParentFile().mkdirs();
+
+                try (Writer writer = new OutputStreamWriter(Files.newOutputStream(outputFile.toPath()),
+                    StandardCharsets.UTF_8)) {
+                    writer.write(source);
+                }
+
+                if (compiler.getFallbackReason() != null) {
+                    System.out.println(resourceName + ": read at run time; " + compiler.getFallbackReason());
+                }
+            } catch (IOException | SerializationException | RuntimeException exception) {
+                System.err.println(resourceName + ": " + exception.getMessage());
+                errors++;
+            }
+        }
+
+        System.out.println("Compiled " + (resourceNames.getLength() - errors) + " of "
+            + resourceNames.getLength() + " BXML documents.");
+
+        if (errors > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Verifies that a class name is not used by a class other than a generated
+     * one.
+     */
+    private static void checkClassName(final String className) throws SerializationException {
+        Class<?> type;
+        try {
+            type = Class.forName(className, false, Thread.currentThread().getContextClassLoader());
+        } catch (ClassNotFoundException exception) {
+            type = null;
+        }
+
+        if (type != null && !CompiledBXML.class.isAssignableFrom(type)) {
+            throw new SerializationException("Class " + className + " already exists.");
+        }
+    }
+
+    // Run-time support for generated classes
+
+    /**
+     * Adds a value to the namespace of a serializer.
+     *
+     * @param namespace The namespace.
+     * @param id The <tt>bxml:id</tt> of the value.
+     * @param value The value.
+     * @throws SerializationException if the ID is already in use.
+     */
+    public static void putID(final Map<String, Object> namespace, final String id, final Object value)
+        throws SerializationException {
+        if (namespace.containsKey(id)) {
+            throw new SerializationException("ID " + id + " is already in use.");
+        }
+
+        namespace.put(id, value);
+    }
+
+    /**
+     * Sets the {@link IDProperty} of a value whose class is not known when the
+     * document is compiled.
+     *
+     * @param value The value.
+     * @param id The <tt>bxml:id</tt> of the value.
+     */
+    public static void setIDProperty(final Object value, final String id) {
+        IDProperty idProperty = value.getClass().getAnnotation(IDProperty.class);
+
+        if (idProperty != null) {
+            BeanAdapter beanAdapter = new BeanAdapter(value);
+            beanAdapter.put(idProperty.value(), id);
+        }
+    }
+
+    /**
+     * Returns the value of a <tt>bxml:reference</tt> element.
+     *
+     * @param namespace The namespace.
+     * @param id The referenced ID.
+     * @return The value.
+     * @throws SerializationException if there is no value with the ID.
+     */
+    public static Object dereference(final Map<String, Object> namespace, final String id)
+        throws SerializationException {
+        if (!namespace.containsKey(id)) {
+            throw new SerializationException("A value with ID \"" + id + "\" does not exist.");
+        }
+
+        return namespace.get(id);
+    }
+
+    /**
+     * Resolves an object reference (<tt>$</tt>) attribute.
+     *
+     * @param namespace The namespace.
+     * @param path The path of the referenced value.
+     * @return The value.
+     * @throws SerializationException if the value is not defined.
+     */
+    public static Object resolveReference(final Map<String, Object> namespace, final String path)
+        throws SerializationException {
+        if (!JSON.containsKey(namespace, path)) {
+            throw new SerializationException("Value \"" + path + "\" is not defined.");
+        }
+
+        return JSON.get(namespace, path);
+    }
+
+    /**
+     * Resolves a resource (<tt>%</tt>) attribute.
+     *
+     * @param resources The resources, or <tt>null</tt>.
+     * @param key The resource key.
+     * @return The resource value, or the key itself if there is no such
+     * resource.
+     */
+    public static Object getResource(final Resources resources, final String key) {
+        if (resources != null && JSON.containsKey(resources, key)) {
+            return JSON.get(resources, key);
+        }
+
+        return key;
+    }
+
+    /**
+     * Resolves a URL (<tt>@</tt>) attribute.
+     *
+     * @param location The location of the document.
+     * @param spec The URL, relative to the location.
+     * @return The resolved URL.
+     * @throws SerializationException if the URL is malformed.
+     */
+    public static URL getURL(final URL location, final String spec) throws SerializationException {
+        if (location == null) {
+            throw new IllegalStateException("Base location is undefined.");
+        }
+
+        try {
+            return new URL(location, spec);
+        } catch (MalformedURLException exception) {
+            throw new SerializationException(exception);
+        }
+    }
+
+    /**
+     * Sets a property of an object whose class (or the type of the value) is
+     * not known when the document is compiled.
+     *
+     * @param object The object.
+     * @param name The property name.
+     * @param value The property value.
+     */
+    @SuppressWarnings("unchecked")
+    public static void setProperty(final Object object, final String name, final Object value) {
+        Dictionary<String, Object> dictionary;
+        if (object instanceof Dictionary<?, ?>) {
+            dictionary = (Dictionary<String, Object>) object;
+        } else {
+            dictionary = new BeanAdapter(object);
+        }
+
+        dictionary.put(name, value);
+    }
+
+    /**
+     * Sets an attached property of an object whose class (or the type of the
+     * value) is not known when the document is compiled.
+     *
+     * @param object The object.
+     * @param propertyClass The class that defines the property.
+     * @param name The property name.
+     * @param value The property value.
+     * @throws SerializationException if the property does not exist.
+     */
+    public static void setStaticProperty(final Object object, final Class<?> propertyClass, final String name,
+        final Object value) throws SerializationException {
+        BXMLSerializer.setStaticProperty(object, propertyClass, name, value);
+    }
+
+    /**
+     * Adds the value of a child element to its parent, using the parent's
+     * default property if it has one.
+     *
+     * @param parent The parent value, or <tt>null</tt>.
+     * @param value The child value.
+     * @throws SerializationException if the parent has no default property and
+     * is not a sequence.
+     */
+    public static void add(final Object parent, final Object value) throws SerializationException {
+        if (parent != null) {
+            BXMLSerializer.addChild(parent, value);
+        }
+    }
+}
@@ -0,0 +1,300 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.beans;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.xml.stream.XMLStreamConstants;
+
+import org.apache.pivot.serialization.SerializationException;
+import org.apache.pivot.serialization.Serializer;
+
+/**
+ * Loads the includes of a BXML document concurrently, ahead of the
+ * serializer that reads the document. <p> A prefetcher scans a compiled
+ * document for <tt>bxml:include</tt> tags whose <tt>src</tt> is known before
+ * the document is read (that is, not a <tt>$</tt> reference) and that are not
+ * part of the content of a <tt>bxml:lazy</tt> element, and starts
+ * loading each distinct include on an executor: included BXML documents are
+ * compiled to {@link BXMLTemplate templates} (and scanned in turn), and other
+ * includes are read into memory and parsed, unless their serializer is
+ * {@link Resolvable} and so can only be configured when the include is read.
+ * Those includes are parsed by a serializer that the owning serializer creates
+ * with {@link BXMLSerializer#newIncludeSerializer(Class)}, and the parsed value
+ * is handed to the first include of the content that is read by a serializer
+ * of the same class as the owner; any other include of the same content
+ * parses its own copy. The serializer still reads the document, and
+ * creates the included objects, in document order; it just waits for the
+ * prefetched content of an include instead of loading it itself. <p> Any
+ * include that fails to prefetch is loaded again when the serializer reaches
+ * it, so errors are reported exactly as they would be without prefetching.
+ */
+final class BXMLPrefetcher {
+    /**
+     * The prefetched content of a non-BXML include, and its parsed value.
+     */
+    static final class ParsedInclude {
+        public final byte[] content;
+
+        private final Class<?> ownerClass;
+        private final Class<?> serializerClass;
+        private final AtomicReference<Object> value;
+
+        public ParsedInclude(final byte[] content, final Class<?> ownerClass, final Class<?> serializerClass,
+            final Object value) {
+            this.content = content;
+            this.ownerClass = ownerClass;
+            this.serializerClass = serializerClass;
+            this.value = new AtomicReference<>(value);
+        }
+
+        /**
+         * Takes the parsed value, if it has not been taken yet and was parsed
+         * by a serializer of the given class that was created the same way
+         * as the include's own serializer.
+         *
+         * @param reader The serializer that reads the include.
+         * @param serializerClassArgument The class of the serializer of the
+         * include.
+         * @return The value, or <tt>null</tt> if the content must be parsed
+         * again.
+         */
+        public Object take(final BXMLSerializer reader, final Class<?> serializerClassArgument) {
+            return (reader.getClass() == ownerClass && serializerClassArgument == serializerClass)
+                ? value.getAndSet(null) : null;
+        }
+    }
+
+    private final BXMLSerializer owner;
+    private final Executor executor;
+    private final ClassLoader classLoader;
+    private final boolean templateCacheEnabled;
+
+    private final ConcurrentHashMap<String, FutureTask<Object>> prefetches = new ConcurrentHashMap<>();
+
+    /**
+     * @param owner The serializer that reads the document, and creates the
+     * serializers that parse its includes.
+     * @param executor The executor that loads the includes.
+     * @param classLoader The class loader used to resolve absolute include
+     * paths.
+     * @param templateCacheEnabled Whether prefetched BXML templates are also
+     * stored in the serializer's template cache.
+     */
+    public BXMLPrefetcher(final BXMLSerializer owner, final Executor executor, final ClassLoader classLoader,
+        final boolean templateCacheEnabled) {
+        this.owner = owner;
+        this.executor = executor;
+        this.classLoader = classLoader;
+        this.templateCacheEnabled = templateCacheEnabled;
+    }
+
+    /**
+     * Starts loading the includes of a document.
+     *
+     * @param location The location of the document, against which relative
+     * includes are resolved.
+     * @param template The compiled document.
+     */
+    public void prefetch(final URL location, final BXMLTemplate template) {
+        // The depth of the current element within a lazy element, or -1
+        int lazyDepth = -1;
+
+        for (int i = 0, n = template.getEventCount(); i < n; i++) {
+            BXMLTemplate.Event event = template.getEvent(i);
+
+            if (lazyDepth != -1) {
+                if (event.type == XMLStreamConstants.START_ELEMENT) {
+                    lazyDepth++;
+                } else if (event.type == XMLStreamConstants.END_ELEMENT) {
+                    lazyDepth--;
+                }
+            } else if (event.type == XMLStreamConstants.START_ELEMENT
+                && Boolean.parseBoolean(getAttribute(event, BXMLSerializer.BXML_PREFIX,
+                    BXMLSerializer.LAZY_ATTRIBUTE))) {
+                lazyDepth = 0;
+            } else if (event.type == XMLStreamConstants.START_ELEMENT
+                && BXMLSerializer.BXML_PREFIX.equals(event.prefix)
+                && BXMLSerializer.INCLUDE_TAG.equals(event.localName)) {
+                String src = getAttribute(event, null, BXMLSerializer.INCLUDE_SRC_ATTRIBUTE);
+                String mimeType = getAttribute(event, null, BXMLSerializer.INCLUDE_MIME_TYPE_ATTRIBUTE);
+
+                if (src != null && src.length() > 0
+                    && src.charAt(0) != BXMLSerializer.OBJECT_REFERENCE_PREFIX) {
+                    prefetch(location, src, mimeType);
+                }
+            }
+        }
+    }
+
+    private void prefetch(final URL location, final String src, final String mimeTypeArgument) {
+        String mimeType = mimeTypeArgument;
+        if (mimeType == null) {
+            int i = src.lastIndexOf(".");
+            if (i != -1) {
+                mimeType = BXMLSerializer.getFileExtensions().get(src.substring(i + 1));
+            }
+        }
+
+        if (mimeType == null) {
+            return;
+        }
+
+        Class<? extends Serializer<?>> serializerClass = BXMLSerializer.getMimeTypes().get(mimeType);
+        if (serializerClass == null) {
+            return;
+        }
+
+        final URL includeLocation;
+        try {
+            includeLocation = resolve(location, src);
+        } catch (IOException exception) {
+            return;
+        }
+
+        if (includeLocation == null) {
+            return;
+        }
+
+        final boolean bxml = BXMLSerializer.class.isAssignableFrom(serializerClass);
+        FutureTask<Object> prefetch = new FutureTask<>(new Callable<Object>() {
+            @Override
+            public Object call() throws IOException, SerializationException {
+                if (bxml) {
+                    BXMLTemplate template = templateCacheEnabled
+                        ? BXMLSerializer.getTemplate(includeLocation) : BXMLTemplate.compile(includeLocation);
+                    prefetch(includeLocation, template);
+                    return template;
+                }
+
+                byte[] content = read(includeLocation);
+
+                if (Resolvable.class.isAssignableFrom(serializerClass)) {
+                    return content;
+                }
+
+                Serializer<?> serializer;
+                try {
+                    serializer = owner.newIncludeSerializer(serializerClass);
+                } catch (ReflectiveOperationException exception) {
+                    return content;
+                }
+
+                if (serializer instanceof Resolvable) {
+                    return content;
+                }
+
+                return new ParsedInclude(content, owner.getClass(), serializer.getClass(),
+                    serializer.readObject(new ByteArrayInputStream(content)));
+            }
+        });
+
+        if (prefetches.putIfAbsent(includeLocation.toExternalForm(), prefetch) == null) {
+            try {
+                executor.execute(prefetch);
+            } catch (RejectedExecutionException exception) {
+                prefetches.remove(includeLocation.toExternalForm(), prefetch);
+            }
+        }
+    }
+
+    /**
+     * Returns the prefetched content of an include, waiting for it to load if
+     * necessary.
+     *
+     * @param location The location of the include.
+     * @return The compiled template of a BXML include, the
+     * {@link ParsedInclude parsed content} of any other include (or only its
+     * content if the serializer is {@link Resolvable}), or <tt>null</tt> if the include was not prefetched or
+     * could not be loaded.
+     */
+    public Object get(final URL location) {
+        FutureTask<Object> prefetch = prefetches.get(location.toExternalForm());
+        if (prefetch == null) {
+            return null;
+        }
+
+        try {
+            return prefetch.get();
+        } catch (ExecutionException exception) {
+            return null;
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Cancels any includes that have not started loading yet.
+     */
+    public void cancel() {
+        for (FutureTask<Object> prefetch : prefetches.values()) {
+            prefetch.cancel(false);
+        }
+    }
+
+    private URL resolve(final URL location, final String src) throws IOException {
+        if (src.charAt(0) == BXMLSerializer.SLASH_PREFIX) {
+            return classLoader.getResource(src.substring(1));
+        }
+
+        return (location == null) ? null : new URL(location, src);
+    }
+
+    private static String getAttribute(final BXMLTemplate.Event event, final String prefix,
+        final String localName) {
+        for (int i = 0; i < event.attributeLocalNames.length; i++) {
+            String attributePrefix = event.attributePrefixes[i];
+            if (attributePrefix == null) {
+                attributePrefix = "";
+            }
+
+            if (attributePrefix.equals((prefix == null) ? "" : prefix)
+                && event.attributeLocalNames[i].equals(localName)) {
+                return event.attributeValues[i];
+            }
+        }
+
+        return null;
+    }
+
+    private static byte[] read(final URL location) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        try (InputStream inputStream = new BufferedInputStream(location.openStream())) {
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, count);
+            }
+        }
+
+        return outputStream.toByteArray();
+    }
+}
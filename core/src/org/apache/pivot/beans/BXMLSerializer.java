@@ -18,10 +18,12 @@ package org.apache.pivot.beans;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
@@ -30,14 +32,25 @@ import java.lang.reflect.Modifier;
 import java.lang.reflect.Proxy;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
 import javax.script.Invocable;
 import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
 import javax.script.SimpleBindings;
+import javax.script.SimpleScriptContext;
 import javax.xml.stream.Location;
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamConstants;
@@ -81,6 +94,7 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
         public Object value;
 
         public String id = null;
+        public boolean lazy = false;
         public final HashMap<String, String> properties = new HashMap<>();
         public final LinkedList<Attribute> attributes = new LinkedList<>();
 
@@ -108,6 +122,57 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
         }
     }
 
+    /**
+     * The resolved form of a start element: what the element represents, the
+     * classes it names and how each of its attributes is applied. A plan
+     * depends only on the document (and the class loader), so a
+     * {@link BXMLTemplate} keeps the plans of its elements, and reading the
+     * template again neither analyzes the names nor looks up the classes.
+     */
+    private static final class ElementPlan {
+        // The type is null for a property element, whose type depends on the value of its parent
+        public final Element.Type type;
+        public final String name;
+        public final Class<?> propertyClass;
+        public final Class<?> instanceClass;
+        public final AttributePlan[] attributes;
+
+        public ElementPlan(final Element.Type type, final String name, final Class<?> propertyClass,
+            final Class<?> instanceClass, final AttributePlan[] attributes) {
+            this.type = type;
+            this.name = name;
+            this.propertyClass = propertyClass;
+            this.instanceClass = instanceClass;
+            this.attributes = attributes;
+        }
+    }
+
+    /**
+     * The resolved form of an attribute.
+     */
+    private static final class AttributePlan {
+        public enum Kind {
+            INTERNAL, OPERATION_PROPERTY, NAMESPACE_BINDING, LITERAL, URL_RESOLUTION, RESOURCE_RESOLUTION,
+            OBJECT_RESOLUTION, NULL
+        }
+
+        public final Kind kind;
+        public final String localName;
+        public final String name;
+        public final Class<?> propertyClass;
+        // The attribute value, without any resolution prefix
+        public final String value;
+
+        public AttributePlan(final Kind kind, final String localName, final String name,
+            final Class<?> propertyClass, final String value) {
+            this.kind = kind;
+            this.localName = localName;
+            this.name = name;
+            this.propertyClass = propertyClass;
+            this.value = value;
+        }
+    }
+
 /*    private static void printBindings(final String message, final java.util.Map<String,Object> bindings) {
         System.out.format("===== %1$s =====%n", message);
         System.out.format("--- Bindings %1$s=%2$s ---%n", bindings, bindings.getClass().getName());
@@ -127,11 +192,90 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
         System.out.println("=====================");
     } */
 
+    /**
+     * Script context for an event handler attribute, which resolves the
+     * handler's own bindings (the event arguments) ahead of the engine's
+     * bindings, so that invoking the handler doesn't modify the engine's
+     * state.
+     */
+    private static class HandlerScriptContext extends SimpleScriptContext {
+        private Bindings handlerBindings = new SimpleBindings();
+
+        public static final int HANDLER_SCOPE = 50;
+
+        private static final List<Integer> SCOPES = Collections.unmodifiableList(
+            Arrays.asList(HANDLER_SCOPE, ENGINE_SCOPE, GLOBAL_SCOPE));
+
+        /**
+         * Takes up the bindings, reader and writers the engine would
+         * evaluate a script with.
+         */
+        public void update(final ScriptContext engineContext) {
+            setBindings(engineContext.getBindings(ENGINE_SCOPE), ENGINE_SCOPE);
+            setBindings(engineContext.getBindings(GLOBAL_SCOPE), GLOBAL_SCOPE);
+            setReader(engineContext.getReader());
+            setWriter(engineContext.getWriter());
+            setErrorWriter(engineContext.getErrorWriter());
+        }
+
+        @Override
+        public void setBindings(final Bindings bindings, final int scope) {
+            if (scope == HANDLER_SCOPE) {
+                Utils.checkNull(bindings, "bindings");
+                handlerBindings = bindings;
+            } else {
+                super.setBindings(bindings, scope);
+            }
+        }
+
+        @Override
+        public Bindings getBindings(final int scope) {
+            return (scope == HANDLER_SCOPE) ? handlerBindings : super.getBindings(scope);
+        }
+
+        @Override
+        public void setAttribute(final String name, final Object value, final int scope) {
+            if (scope == HANDLER_SCOPE) {
+                handlerBindings.put(name, value);
+            } else {
+                super.setAttribute(name, value, scope);
+            }
+        }
+
+        @Override
+        public Object getAttribute(final String name, final int scope) {
+            return (scope == HANDLER_SCOPE) ? handlerBindings.get(name) : super.getAttribute(name, scope);
+        }
+
+        @Override
+        public Object removeAttribute(final String name, final int scope) {
+            return (scope == HANDLER_SCOPE) ? handlerBindings.remove(name) : super.removeAttribute(name, scope);
+        }
+
+        @Override
+        public Object getAttribute(final String name) {
+            return handlerBindings.containsKey(name) ? handlerBindings.get(name) : super.getAttribute(name);
+        }
+
+        @Override
+        public int getAttributesScope(final String name) {
+            return handlerBindings.containsKey(name) ? HANDLER_SCOPE : super.getAttributesScope(name);
+        }
+
+        @Override
+        public List<Integer> getScopes() {
+            return SCOPES;
+        }
+    }
+
     private class AttributeInvocationHandler implements InvocationHandler {
         private ScriptEngine scriptEngine;
         private String event;
         private String script;
 
+        private CompiledScript compiledScript = null;
+        private HandlerScriptContext context = new HandlerScriptContext();
+
         private static final String ARGUMENTS_KEY = "arguments";
 
         public AttributeInvocationHandler(final ScriptEngine scriptEngine, final String event, final String script) {
@@ -147,10 +291,22 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
             String methodName = method.getName();
             if (methodName.equals(event)) {
                 try {
-                    Bindings bindings = scriptEngine.getBindings(ScriptContext.ENGINE_SCOPE);
-                    bindings.put(ARGUMENTS_KEY, args);
-                    result = scriptEngine.eval(script);
-                    bindings.remove(ARGUMENTS_KEY);
+                    if (compiledScript == null && scriptEngine instanceof Compilable) {
+                        compiledScript = compileScript(scriptEngine, script);
+                    }
+
+                    context.update(scriptEngine.getContext());
+                    context.setAttribute(ARGUMENTS_KEY, args, HandlerScriptContext.HANDLER_SCOPE);
+
+                    try {
+                        if (compiledScript == null) {
+                            result = scriptEngine.eval(script, context);
+                        } else {
+                            result = compiledScript.eval(context);
+                        }
+                    } finally {
+                        context.removeAttribute(ARGUMENTS_KEY, HandlerScriptContext.HANDLER_SCOPE);
+                    }
                 } catch (ScriptException exception) {
                     reportException(exception, script);
                 }
@@ -296,7 +452,11 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
     private URL location = null;
     private Resources resources = null;
 
+    private Executor prefetchExecutor = null;
+    private BXMLPrefetcher prefetcher = null;
+
     private XMLStreamReader xmlStreamReader = null;
+    private BXMLTemplate template = null;
     private Element element = null;
 
     private Object root = null;
@@ -311,6 +471,46 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
     private static HashMap<String, ScriptEngine> scriptEngines = new HashMap<>();
     private static HashMap<String, ScriptEngine> scriptEnginesExts = new HashMap<>();
 
+    private static ConcurrentHashMap<ScriptEngine, ConcurrentHashMap<String, CompiledScript>> compiledScripts =
+        new ConcurrentHashMap<>();
+
+    /**
+     * The default maximum number of templates kept by the template cache.
+     */
+    public static final int DEFAULT_TEMPLATE_CACHE_SIZE = 64;
+
+    private static volatile boolean templateCacheEnabled = false;
+    private static int templateCacheSize = DEFAULT_TEMPLATE_CACHE_SIZE;
+    private static final LinkedHashMap<String, BXMLTemplate> templates =
+        new LinkedHashMap<String, BXMLTemplate>(16, 0.75f, true) {
+            private static final long serialVersionUID = 0;
+
+            @Override
+            protected boolean removeEldestEntry(final Entry<String, BXMLTemplate> eldest) {
+                return size() > templateCacheSize;
+            }
+        };
+
+    private static final ClassValue<Constructor<?>> CONSTRUCTORS = new ClassValue<Constructor<?>>() {
+        @Override
+        protected Constructor<?> computeValue(final Class<?> type) {
+            try {
+                return type.getDeclaredConstructor();
+            } catch (NoSuchMethodException exception) {
+                return null;
+            }
+        }
+    };
+
+    // Attached property setters, keyed by the class that defines them
+    private static final ClassValue<ConcurrentHashMap<String, Method>> STATIC_SETTER_METHODS =
+        new ClassValue<ConcurrentHashMap<String, Method>>() {
+            @Override
+            protected ConcurrentHashMap<String, Method> computeValue(final Class<?> type) {
+                return new ConcurrentHashMap<>();
+            }
+        };
+
     public static final char URL_PREFIX = '@';
     public static final char RESOURCE_KEY_PREFIX = '%';
     public static final char OBJECT_REFERENCE_PREFIX = '$';
@@ -330,6 +530,7 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
     public static final String BXML_PREFIX = "bxml";
     public static final String BXML_EXTENSION = "bxml";
     public static final String ID_ATTRIBUTE = "id";
+    public static final String LAZY_ATTRIBUTE = "lazy";
 
     public static final String INCLUDE_TAG = "include";
     public static final String INCLUDE_SRC_ATTRIBUTE = "src";
@@ -500,14 +701,112 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
     public Object readObject(final InputStream inputStream) throws IOException, SerializationException {
         Utils.checkNull(inputStream, "inputStream");
 
+        try {
+            xmlStreamReader = xmlInputFactory.createXMLStreamReader(inputStream);
+        } catch (XMLStreamException exception) {
+            throw new SerializationException(exception);
+        }
+
+        return read();
+    }
+
+    /**
+     * Deserializes an object hierarchy from a compiled BXML template. <p> Like
+     * {@link #readObject(InputStream)}, this method does not set the
+     * "location" or "resources" properties.
+     *
+     * @param templateArgument The compiled template.
+     * @return The deserialized object hierarchy.
+     * @throws IOException for any error reading an include of the template.
+     * @throws SerializationException for any other errors encountered
+     * deserializing the template.
+     * @see BXMLTemplate#compile(URL)
+     */
+    public Object readObject(final BXMLTemplate templateArgument) throws IOException, SerializationException {
+        Utils.checkNull(templateArgument, "template");
+
+        this.template = templateArgument;
+        xmlStreamReader = templateArgument.newStreamReader();
+
+        try {
+            return read();
+        } finally {
+            this.template = null;
+        }
+    }
+
+    /**
+     * Reads a document from the current stream reader.
+     */
+    private Object read() throws IOException, SerializationException {
         root = null;
         language = null;
 
-        // Parse the XML stream
+        processEvents();
+        applyNamespaceBindings();
+
+        // Bind the root to the namespace
+        if (root instanceof Bindable) {
+            Class<?> type = root.getClass();
+            while (Bindable.class.isAssignableFrom(type)) {
+                bind(root, type);
+                type = type.getSuperclass();
+            }
+
+            Bindable bindable = (Bindable) root;
+            bindable.initialize(namespace, location, resources);
+        }
+
+        return root;
+    }
+
+    /**
+     * Reads the recorded content of a lazy element into the element's value.
+     *
+     * @param content The recorded content.
+     * @param owner The value of the lazy element.
+     * @param languageArgument The script language of the document, or
+     * <tt>null</tt> for the default language.
+     * @see DeferredContent#load()
+     */
+    void readDeferredContent(final BXMLTemplate content, final Object owner, final String languageArgument)
+        throws IOException, SerializationException {
+        root = null;
+        language = languageArgument;
+
+        this.template = content;
+        xmlStreamReader = content.newStreamReader();
+        element = new Element(null, Element.Type.INSTANCE, "<" + owner.getClass().getSimpleName() + ">",
+            null, owner);
+
         try {
-            try {
-                xmlStreamReader = xmlInputFactory.createXMLStreamReader(inputStream);
+            processEvents();
+        } finally {
+            this.template = null;
+            element = null;
+        }
+
+        applyNamespaceBindings();
+    }
+
+    /**
+     * Creates the serializer that loads deferred content.
+     */
+    BXMLSerializer newContentSerializer() throws SerializationException {
+        Serializer<?> serializer = newIncludeSerializer(MIME_TYPE);
+        if (!(serializer instanceof BXMLSerializer)) {
+            throw new SerializationException(serializer.getClass().getName() + " is not a BXML serializer.");
+        }
+
+        return (BXMLSerializer) serializer;
+    }
 
+    /**
+     * Processes the events of the current stream reader.
+     */
+    private void processEvents() throws IOException, SerializationException {
+        try {
+            try {
                 while (xmlStreamReader.hasNext()) {
                     int event = xmlStreamReader.next();
 
@@ -541,8 +840,12 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
         }
 
         xmlStreamReader = null;
+    }
 
-        // Apply the namespace bindings
+    /**
+     * Binds the attributes whose values are namespace binding expressions.
+     */
+    private void applyNamespaceBindings() throws SerializationException {
         for (Attribute attribute : namespaceBindingAttributes) {
             Element elementLocal = attribute.element;
             String sourcePath = (String) attribute.value;
@@ -594,20 +897,6 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
         }
 
         namespaceBindingAttributes.clear();
-
-        // Bind the root to the namespace
-        if (root instanceof Bindable) {
-            Class<?> type = root.getClass();
-            while (Bindable.class.isAssignableFrom(type)) {
-                bind(root, type);
-                type = type.getSuperclass();
-            }
-
-            Bindable bindable = (Bindable) root;
-            bindable.initialize(namespace, location, resources);
-        }
-
-        return root;
     }
 
     /**
@@ -698,8 +987,26 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
         this.resources = resourcesArgument;
 
         Object object;
-        try (InputStream inputStream = new BufferedInputStream(locationArgument.openStream())) {
-            object = readObject(inputStream);
+        if (prefetchExecutor != null) {
+            BXMLPrefetcher previousPrefetcher = prefetcher;
+            prefetcher = new BXMLPrefetcher(this, prefetchExecutor,
+                Thread.currentThread().getContextClassLoader(), templateCacheEnabled);
+
+            try {
+                BXMLTemplate templateLocal = templateCacheEnabled
+                    ? getTemplate(locationArgument) : BXMLTemplate.compile(locationArgument);
+                prefetcher.prefetch(locationArgument, templateLocal);
+                object = readObject(templateLocal);
+            } finally {
+                prefetcher.cancel();
+                prefetcher = previousPrefetcher;
+            }
+        } else if (templateCacheEnabled) {
+            object = readObject(getTemplate(locationArgument));
+        } else {
+            try (InputStream inputStream = new BufferedInputStream(locationArgument.openStream())) {
+                object = readObject(inputStream);
+            }
         }
 
         this.location = null;
@@ -708,6 +1015,202 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
         return object;
     }
 
+    /**
+     * Deserializes an object hierarchy from a class generated by the
+     * {@link BXMLCompiler}. The location of the deserialized content is that of
+     * the document the class was generated from.
+     *
+     * @param compiled The generated class.
+     * @param resourcesArgument The resources that will be used to localize the
+     * deserialized content.
+     * @return The top-level deserialized object.
+     * @throws IOException for any error reading an include.
+     * @throws SerializationException for any other errors encountered
+     * deserializing the content.
+     */
+    public final Object readObject(final CompiledBXML compiled, final Resources resourcesArgument)
+        throws IOException, SerializationException {
+        Utils.checkNull(compiled, "compiled");
+
+        this.location = compiled.getLocation();
+        this.resources = resourcesArgument;
+
+        try {
+            return compiled.readObject(this);
+        } finally {
+            this.location = null;
+            this.resources = null;
+        }
+    }
+
+    /**
+     * Reads the content of a <tt>bxml:include</tt> tag, relative to the
+     * current location and resources of this serializer. This is called when
+     * processing an include, and by classes generated by the
+     * {@link BXMLCompiler}.
+     *
+     * @param srcArgument The value of the <tt>src</tt> attribute.
+     * @param resourcesName The value of the <tt>resources</tt> attribute, or
+     * <tt>null</tt> to use the current resources.
+     * @param mimeTypeArgument The value of the <tt>mimeType</tt> attribute, or
+     * <tt>null</tt> to determine the MIME type from the file extension.
+     * @param inline The value of the <tt>inline</tt> attribute.
+     * @return The included object.
+     * @throws IOException for any error reading the include.
+     * @throws SerializationException for any other errors encountered
+     * deserializing the include.
+     */
+    public Object readInclude(final String srcArgument, final String resourcesName,
+        final String mimeTypeArgument, final boolean inline) throws IOException, SerializationException {
+        Utils.checkNull(srcArgument, "src");
+
+        final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+
+        String src = srcArgument;
+        if (src.charAt(0) == OBJECT_REFERENCE_PREFIX) {
+            src = src.substring(1);
+            if (src.length() > 0) {
+                if (!JSON.containsKey(namespace, src)) {
+                    throw new SerializationException("Value \"" + src + "\" is not defined.");
+                }
+                String variableValue = JSON.get(namespace, src);
+                src = variableValue;
+            }
+        }
+
+        Resources resourcesLocal = this.resources;
+        if (resourcesName != null) {
+            resourcesLocal = new Resources(resourcesLocal, resourcesName);
+        }
+
+        String mimeType = mimeTypeArgument;
+        if (mimeType == null) {
+            // Get the file extension
+            int i = src.lastIndexOf(".");
+            if (i != -1) {
+                String extension = src.substring(i + 1);
+                mimeType = fileExtensions.get(extension);
+            }
+        }
+
+        if (mimeType == null) {
+            throw new SerializationException("Cannot determine MIME type of include \"" + src + "\".");
+        }
+
+        Serializer<?> serializer = newIncludeSerializer(mimeType);
+
+        // Determine location from src attribute
+        URL locationLocal;
+        if (src.charAt(0) == SLASH_PREFIX) {
+            locationLocal = classLoader.getResource(src.substring(1));
+        } else {
+            locationLocal = new URL(this.location, src);
+        }
+
+        // Set optional resolution properties
+        if (serializer instanceof Resolvable) {
+            Resolvable resolvable = (Resolvable) serializer;
+            if (inline) {
+                resolvable.setNamespace(namespace);
+            }
+
+            resolvable.setLocation(locationLocal);
+            resolvable.setResources(resourcesLocal);
+        }
+
+        // Read the object, from its prefetched content if there is any
+        Object prefetched = null;
+        if (prefetcher != null) {
+            prefetched = prefetcher.get(locationLocal);
+        }
+
+        if (serializer instanceof BXMLSerializer) {
+            BXMLSerializer bxmlSerializer = (BXMLSerializer) serializer;
+            bxmlSerializer.prefetcher = prefetcher;
+
+            if (prefetched instanceof BXMLTemplate) {
+                return bxmlSerializer.readObject((BXMLTemplate) prefetched);
+            }
+
+            if (templateCacheEnabled) {
+                return bxmlSerializer.readObject(getTemplate(locationLocal));
+            }
+        } else if (prefetched instanceof BXMLPrefetcher.ParsedInclude) {
+            BXMLPrefetcher.ParsedInclude parsedInclude = (BXMLPrefetcher.ParsedInclude) prefetched;
+
+            // The parsed value goes to the first include; others parse their own copy
+            Object value = parsedInclude.take(this, serializer.getClass());
+            if (value != null) {
+                return value;
+            }
+
+            return serializer.readObject(new ByteArrayInputStream(parsedInclude.content));
+        } else if (prefetched instanceof byte[]) {
+            return serializer.readObject(new ByteArrayInputStream((byte[]) prefetched));
+        }
+
+        try (InputStream inputStream = new BufferedInputStream(locationLocal.openStream())) {
+            return serializer.readObject(inputStream);
+        }
+    }
+
+    /**
+     * Reads an included BXML document from the class generated for it by the
+     * {@link BXMLCompiler}, relative to the current resources of this
+     * serializer. If the serializer associated with the BXML MIME type is not a
+     * <tt>BXMLSerializer</tt>, the document itself is read instead.
+     *
+     * @param compiled The class generated for the included document.
+     * @param resourcesName The value of the <tt>resources</tt> attribute, or
+     * <tt>null</tt> to use the current resources.
+     * @param inline The value of the <tt>inline</tt> attribute.
+     * @return The included object.
+     * @throws IOException for any error reading the include.
+     * @throws SerializationException for any other errors encountered
+     * deserializing the include.
+     */
+    public Object readInclude(final CompiledBXML compiled, final String resourcesName,
+        final boolean inline) throws IOException, SerializationException {
+        Utils.checkNull(compiled, "compiled");
+
+        Serializer<?> serializer = newIncludeSerializer(MIME_TYPE);
+        if (!(serializer instanceof BXMLSerializer)) {
+            return readInclude(compiled.getLocation().toExternalForm(), resourcesName, MIME_TYPE, inline);
+        }
+
+        Resources resourcesLocal = this.resources;
+        if (resourcesName != null) {
+            resourcesLocal = new Resources(resourcesLocal, resourcesName);
+        }
+
+        BXMLSerializer bxmlSerializer = (BXMLSerializer) serializer;
+        bxmlSerializer.prefetcher = prefetcher;
+        if (inline) {
+            bxmlSerializer.setNamespace(namespace);
+        }
+
+        return bxmlSerializer.readObject(compiled, resourcesLocal);
+    }
+
+    /**
+     * Creates the serializer for an include of the given MIME type.
+     */
+    private Serializer<?> newIncludeSerializer(final String mimeType) throws SerializationException {
+        // Determine an appropriate serializer to use for the include
+        Class<? extends Serializer<?>> serializerClass = mimeTypes.get(mimeType);
+
+        if (serializerClass == null) {
+            throw new SerializationException("No serializer associated with MIME type " + mimeType + ".");
+        }
+
+        try {
+            return newIncludeSerializer(serializerClass);
+        } catch (InstantiationException | IllegalAccessException
+               | NoSuchMethodException | InvocationTargetException exception) {
+            throw new SerializationException(exception);
+        }
+    }
+
     private void processProcessingInstruction() throws SerializationException {
         String piTarget = xmlStreamReader.getPITarget();
         String piData = xmlStreamReader.getPIData();
@@ -768,6 +1271,136 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
             language = getDefaultLanguage();
         }
 
+        if (element == null && BXML_PREFIX.equals(xmlStreamReader.getPrefix())) {
+            throw new SerializationException("Invalid root element.");
+        }
+
+        // Determine the type and value of this element
+        ElementPlan plan = getElementPlan(classLoader);
+        Element.Type elementType = plan.type;
+        Object value = null;
+
+        if (plan.instanceClass != null) {
+            try {
+                value = newTypedObject(plan.instanceClass);
+            } catch (Throwable exception) {
+                throw new SerializationException("Error creating a new '" + plan.instanceClass.getName()
+                    + "' object", exception);
+            }
+        } else if (elementType == null) {
+            // The element represents a property
+            String localName = plan.name;
+
+            if (element.value instanceof Dictionary<?, ?>) {
+                elementType = Element.Type.WRITABLE_PROPERTY;
+            } else {
+                BeanAdapter beanAdapter = new BeanAdapter(element.value);
+
+                if (beanAdapter.isReadOnly(localName)) {
+                    Class<?> propertyType = beanAdapter.getType(localName);
+                    if (propertyType == null) {
+                        throw new SerializationException("\"" + localName
+                            + "\" is not a valid property of element " + element.name + ".");
+                    }
+
+                    if (ListenerList.class.isAssignableFrom(propertyType)) {
+                        elementType = Element.Type.LISTENER_LIST_PROPERTY;
+                    } else {
+                        elementType = Element.Type.READ_ONLY_PROPERTY;
+                        value = beanAdapter.get(localName);
+                        assert (value != null) : "Read-only properties cannot be null.";
+                    }
+                } else {
+                    elementType = Element.Type.WRITABLE_PROPERTY;
+                }
+            }
+        }
+
+        // Create the element and process the attributes
+        element = new Element(element, elementType, plan.name, plan.propertyClass, value);
+        processAttributes(plan.attributes);
+
+        if (elementType == Element.Type.INCLUDE) {
+            // Load the include
+            if (!element.properties.containsKey(INCLUDE_SRC_ATTRIBUTE)) {
+                throw new SerializationException(INCLUDE_SRC_ATTRIBUTE
+                    + " attribute is required for " + BXML_PREFIX + ":" + INCLUDE_TAG + " tag.");
+            }
+
+            boolean inline = false;
+            if (element.properties.containsKey(INCLUDE_INLINE_ATTRIBUTE)) {
+                inline = Boolean.parseBoolean(element.properties.get(INCLUDE_INLINE_ATTRIBUTE));
+            }
+
+            element.value = readInclude(element.properties.get(INCLUDE_SRC_ATTRIBUTE),
+                element.properties.get(INCLUDE_RESOURCES_ATTRIBUTE),
+                element.properties.get(INCLUDE_MIME_TYPE_ATTRIBUTE), inline);
+        } else if (element.type == Element.Type.REFERENCE) {
+            // Dereference the value
+            if (!element.properties.containsKey(REFERENCE_ID_ATTRIBUTE)) {
+                throw new SerializationException(REFERENCE_ID_ATTRIBUTE
+                    + " attribute is required for " + BXML_PREFIX + ":" + REFERENCE_TAG + " tag.");
+            }
+
+            String id = element.properties.get(REFERENCE_ID_ATTRIBUTE);
+            if (!namespace.containsKey(id)) {
+                throw new SerializationException("A value with ID \"" + id + "\" does not exist.");
+            }
+
+            element.value = namespace.get(id);
+        }
+
+        // If the element has an ID, add the value to the namespace
+        if (element.id != null) {
+            namespace.put(element.id, element.value);
+
+            // If the type has an ID property, use it
+            Class<?> type = element.value.getClass();
+            IDProperty idProperty = type.getAnnotation(IDProperty.class);
+
+            if (idProperty != null) {
+                BeanAdapter beanAdapter = new BeanAdapter(element.value);
+                beanAdapter.put(idProperty.value(), element.id);
+            }
+        }
+
+        if (element.lazy) {
+            // Record the content for later, and end the element
+            BXMLTemplate content;
+            try {
+                content = BXMLTemplate.record(xmlStreamReader);
+            } catch (XMLStreamException exception) {
+                throw new SerializationException(exception);
+            }
+
+            ((Deferrable) element.value).setDeferredContent(new DeferredContent(this, content, element.value,
+                namespace, location, resources, language));
+            processEndElement();
+        }
+    }
+
+    /**
+     * Returns the plan of the current start element, from the template when
+     * reading one that has already resolved it.
+     */
+    private ElementPlan getElementPlan(final ClassLoader classLoader) throws SerializationException {
+        ElementPlan plan = null;
+        if (template != null) {
+            plan = (ElementPlan) template.getPlan(xmlStreamReader, classLoader);
+        }
+
+        if (plan == null) {
+            plan = resolveElementPlan(classLoader);
+
+            if (template != null) {
+                template.setPlan(xmlStreamReader, classLoader, plan);
+            }
+        }
+
+        return plan;
+    }
+
+    private ElementPlan resolveElementPlan(final ClassLoader classLoader) throws SerializationException {
         // Get element properties
         String namespaceURI = xmlStreamReader.getNamespaceURI();
         String prefix = xmlStreamReader.getPrefix();
@@ -779,18 +1412,13 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
             prefix = null;
         }
 
-        // Determine the type and value of this element
         Element.Type elementType;
         String name;
         Class<?> propertyClass = null;
-        Object value = null;
+        Class<?> instanceClass = null;
 
         if (prefix != null && prefix.equals(BXML_PREFIX)) {
             // The element represents a BXML operation
-            if (element == null) {
-                throw new SerializationException("Invalid root element.");
-            }
-
             if (localName.equals(INCLUDE_TAG)) {
                 elementType = Element.Type.INCLUDE;
             } else if (localName.equals(SCRIPT_TAG)) {
@@ -814,216 +1442,67 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
 
                     String propertyClassName = namespaceURI + "." + localName.substring(0, i);
                     try {
-                        propertyClass = Class.forName(propertyClassName, true, classLoader);
+                        propertyClass = loadClass(propertyClassName, classLoader);
                     } catch (Throwable exception) {
                         throw new SerializationException(exception);
-                    }
-                } else {
-                    // The element represents a typed object
-                    if (namespaceURI == null) {
-                        throw new SerializationException("No XML namespace specified for "
-                            + localName + " tag.");
-                    }
-
-                    elementType = Element.Type.INSTANCE;
-                    name = "<" + ((prefix == null) ? "" : prefix + ":") + localName + ">";
-
-                    String className = namespaceURI + "." + localName.replace('.', '$');
-
-                    try {
-                        Class<?> type = Class.forName(className, true, classLoader);
-                        value = newTypedObject(type);
-                    } catch (Throwable exception) {
-                        throw new SerializationException("Error creating a new '" + className + "' object", exception);
-                    }
-                }
-            } else {
-                // The element represents a property
-                if (prefix != null) {
-                    throw new SerializationException("Property elements cannot have a namespace prefix.");
-                }
-
-                if (element.value instanceof Dictionary<?, ?>) {
-                    elementType = Element.Type.WRITABLE_PROPERTY;
-                } else {
-                    BeanAdapter beanAdapter = new BeanAdapter(element.value);
-
-                    if (beanAdapter.isReadOnly(localName)) {
-                        Class<?> propertyType = beanAdapter.getType(localName);
-                        if (propertyType == null) {
-                            throw new SerializationException("\"" + localName
-                                + "\" is not a valid property of element " + element.name + ".");
-                        }
-
-                        if (ListenerList.class.isAssignableFrom(propertyType)) {
-                            elementType = Element.Type.LISTENER_LIST_PROPERTY;
-                        } else {
-                            elementType = Element.Type.READ_ONLY_PROPERTY;
-                            value = beanAdapter.get(localName);
-                            assert (value != null) : "Read-only properties cannot be null.";
-                        }
-                    } else {
-                        elementType = Element.Type.WRITABLE_PROPERTY;
-                    }
-                }
-
-                name = localName;
-            }
-        }
-
-        // Create the element and process the attributes
-        element = new Element(element, elementType, name, propertyClass, value);
-        processAttributes();
-
-        if (elementType == Element.Type.INCLUDE) {
-            // Load the include
-            if (!element.properties.containsKey(INCLUDE_SRC_ATTRIBUTE)) {
-                throw new SerializationException(INCLUDE_SRC_ATTRIBUTE
-                    + " attribute is required for " + BXML_PREFIX + ":" + INCLUDE_TAG + " tag.");
-            }
-
-            String src = element.properties.get(INCLUDE_SRC_ATTRIBUTE);
-            if (src.charAt(0) == OBJECT_REFERENCE_PREFIX) {
-                src = src.substring(1);
-                if (src.length() > 0) {
-                    if (!JSON.containsKey(namespace, src)) {
-                        throw new SerializationException("Value \"" + src + "\" is not defined.");
-                    }
-                    String variableValue = JSON.get(namespace, src);
-                    src = variableValue;
-                }
-            }
-
-            Resources resourcesLocal = this.resources;
-            if (element.properties.containsKey(INCLUDE_RESOURCES_ATTRIBUTE)) {
-                resourcesLocal = new Resources(resourcesLocal,
-                    element.properties.get(INCLUDE_RESOURCES_ATTRIBUTE));
-            }
-
-            String mimeType = null;
-            if (element.properties.containsKey(INCLUDE_MIME_TYPE_ATTRIBUTE)) {
-                mimeType = element.properties.get(INCLUDE_MIME_TYPE_ATTRIBUTE);
-            }
-
-            if (mimeType == null) {
-                // Get the file extension
-                int i = src.lastIndexOf(".");
-                if (i != -1) {
-                    String extension = src.substring(i + 1);
-                    mimeType = fileExtensions.get(extension);
-                }
-            }
-
-            if (mimeType == null) {
-                throw new SerializationException("Cannot determine MIME type of include \"" + src + "\".");
-            }
-
-            boolean inline = false;
-            if (element.properties.containsKey(INCLUDE_INLINE_ATTRIBUTE)) {
-                inline = Boolean.parseBoolean(element.properties.get(INCLUDE_INLINE_ATTRIBUTE));
-            }
-
-            // Determine an appropriate serializer to use for the include
-            Class<? extends Serializer<?>> serializerClass = mimeTypes.get(mimeType);
+                    }
+                } else {
+                    // The element represents a typed object
+                    if (namespaceURI == null) {
+                        throw new SerializationException("No XML namespace specified for "
+                            + localName + " tag.");
+                    }
 
-            if (serializerClass == null) {
-                throw new SerializationException("No serializer associated with MIME type " + mimeType + ".");
-            }
+                    elementType = Element.Type.INSTANCE;
+                    name = "<" + ((prefix == null) ? "" : prefix + ":") + localName + ">";
 
-            Serializer<?> serializer;
-            try {
-                serializer = newIncludeSerializer(serializerClass);
-            } catch (InstantiationException | IllegalAccessException
-                   | NoSuchMethodException | InvocationTargetException exception) {
-                throw new SerializationException(exception);
-            }
+                    String className = namespaceURI + "." + localName.replace('.', '$');
 
-            // Determine location from src attribute
-            URL locationLocal;
-            if (src.charAt(0) == SLASH_PREFIX) {
-                locationLocal = classLoader.getResource(src.substring(1));
+                    try {
+                        instanceClass = loadClass(className, classLoader);
+                    } catch (Throwable exception) {
+                        throw new SerializationException("Error creating a new '" + className + "' object", exception);
+                    }
+                }
             } else {
-                locationLocal = new URL(this.location, src);
-            }
-
-            // Set optional resolution properties
-            if (serializer instanceof Resolvable) {
-                Resolvable resolvable = (Resolvable) serializer;
-                if (inline) {
-                    resolvable.setNamespace(namespace);
+                // The element represents a property, whose type is determined when it is read
+                if (prefix != null) {
+                    throw new SerializationException("Property elements cannot have a namespace prefix.");
                 }
 
-                resolvable.setLocation(locationLocal);
-                resolvable.setResources(resourcesLocal);
-            }
-
-            // Read the object
-            try (InputStream inputStream = new BufferedInputStream(locationLocal.openStream())) {
-                element.value = serializer.readObject(inputStream);
-            }
-        } else if (element.type == Element.Type.REFERENCE) {
-            // Dereference the value
-            if (!element.properties.containsKey(REFERENCE_ID_ATTRIBUTE)) {
-                throw new SerializationException(REFERENCE_ID_ATTRIBUTE
-                    + " attribute is required for " + BXML_PREFIX + ":" + REFERENCE_TAG + " tag.");
-            }
-
-            String id = element.properties.get(REFERENCE_ID_ATTRIBUTE);
-            if (!namespace.containsKey(id)) {
-                throw new SerializationException("A value with ID \"" + id + "\" does not exist.");
+                elementType = null;
+                name = localName;
             }
-
-            element.value = namespace.get(id);
         }
 
-        // If the element has an ID, add the value to the namespace
-        if (element.id != null) {
-            namespace.put(element.id, element.value);
-
-            // If the type has an ID property, use it
-            Class<?> type = element.value.getClass();
-            IDProperty idProperty = type.getAnnotation(IDProperty.class);
-
-            if (idProperty != null) {
-                BeanAdapter beanAdapter = new BeanAdapter(element.value);
-                beanAdapter.put(idProperty.value(), element.id);
-            }
-        }
+        return new ElementPlan(elementType, name, propertyClass, instanceClass,
+            resolveAttributePlans(elementType, classLoader));
     }
 
-    private void processAttributes() throws SerializationException {
+    private AttributePlan[] resolveAttributePlans(final Element.Type elementType, final ClassLoader classLoader)
+        throws SerializationException {
+        AttributePlan[] attributePlans = new AttributePlan[xmlStreamReader.getAttributeCount()];
 
-        final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
-
-        for (int i = 0, n = xmlStreamReader.getAttributeCount(); i < n; i++) {
+        for (int i = 0; i < attributePlans.length; i++) {
             String prefix = xmlStreamReader.getAttributePrefix(i);
             String localName = xmlStreamReader.getAttributeLocalName(i);
             String value = xmlStreamReader.getAttributeValue(i);
 
             if (prefix != null && prefix.equals(BXML_PREFIX)) {
                 // The attribute represents an internal value
-                if (localName.equals(ID_ATTRIBUTE)) {
-                    if (value.length() == 0 || value.contains(".")) {
-                        throw new IllegalArgumentException("\"" + value + "\" is not a valid ID value.");
-                    }
-
-                    if (namespace.containsKey(value)) {
-                        throw new SerializationException("ID " + value + " is already in use.");
-                    }
-
-                    if (element.type != Element.Type.INSTANCE && element.type != Element.Type.INCLUDE) {
-                        throw new SerializationException("An ID cannot be assigned to this element.");
-                    }
-
-                    element.id = value;
-                } else {
+                if (!localName.equals(ID_ATTRIBUTE) && !localName.equals(LAZY_ATTRIBUTE)) {
                     throw new SerializationException(BXML_PREFIX + ":" + localName
                         + " is not a valid attribute.");
                 }
-            } else {
-                boolean property = false;
 
-                switch (element.type) {
+                attributePlans[i] = new AttributePlan(AttributePlan.Kind.INTERNAL, localName, null, null, value);
+                continue;
+            }
+
+            boolean property = false;
+
+            if (elementType != null) {
+                switch (elementType) {
                     case INCLUDE:
                         property = (localName.equals(INCLUDE_SRC_ATTRIBUTE)
                             || localName.equals(INCLUDE_RESOURCES_ATTRIBUTE)
@@ -1042,133 +1521,181 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
                     default:
                         break;
                 }
+            }
 
-                if (property) {
-                    element.properties.put(localName, value);
-                } else {
-                    String name;
-                    Class<?> propertyClass = null;
+            if (property) {
+                attributePlans[i] = new AttributePlan(AttributePlan.Kind.OPERATION_PROPERTY, localName, null, null,
+                    value);
+                continue;
+            }
+
+            String name;
+            Class<?> propertyClass = null;
+
+            if (Character.isUpperCase(localName.charAt(0))) {
+                // The attribute represents a static property or listener list
+                int j = localName.indexOf('.');
+                name = localName.substring(j + 1);
+
+                String namespaceURI = xmlStreamReader.getAttributeNamespace(i);
+                if (Utils.isNullOrEmpty(namespaceURI)) {
+                    namespaceURI = xmlStreamReader.getNamespaceURI("");
+                }
+
+                String propertyClassName = namespaceURI + "." + localName.substring(0, j);
+                try {
+                    propertyClass = loadClass(propertyClassName, classLoader);
+                } catch (Throwable exception) {
+                    throw new SerializationException(exception);
+                }
+            } else {
+                // The attribute represents an instance property
+                name = localName;
+            }
+
+            AttributePlan.Kind kind = AttributePlan.Kind.LITERAL;
+
+            if (value.startsWith(NAMESPACE_BINDING_PREFIX) && value.endsWith(NAMESPACE_BINDING_SUFFIX)) {
+                // The attribute represents a namespace binding
+                if (propertyClass != null) {
+                    throw new SerializationException(
+                        "Namespace binding is not supported for static properties.");
+                }
+
+                kind = AttributePlan.Kind.NAMESPACE_BINDING;
+                value = value.substring(2, value.length() - 1);
+            } else if (value.length() > 0) {
+                char resolutionPrefix = value.charAt(0);
+
+                if (resolutionPrefix == URL_PREFIX) {
+                    value = value.substring(1);
+
+                    if (value.length() == 0) {
+                        throw new SerializationException("Invalid URL resolution argument.");
+                    }
+
+                    if (value.charAt(0) != URL_PREFIX) {
+                        kind = AttributePlan.Kind.URL_RESOLUTION;
+                    }
+                } else if (resolutionPrefix == RESOURCE_KEY_PREFIX) {
+                    value = value.substring(1);
+
+                    if (value.length() == 0) {
+                        throw new SerializationException("Invalid resource resolution argument.");
+                    }
+
+                    if (value.charAt(0) != RESOURCE_KEY_PREFIX) {
+                        kind = AttributePlan.Kind.RESOURCE_RESOLUTION;
+                    }
+                } else if (resolutionPrefix == OBJECT_REFERENCE_PREFIX) {
+                    value = value.substring(1);
+
+                    if (value.length() == 0) {
+                        throw new SerializationException("Invalid object resolution argument.");
+                    }
+
+                    if (value.equals(BXML_PREFIX + ":" + null)) {
+                        kind = AttributePlan.Kind.NULL;
+                    } else if (value.charAt(0) != OBJECT_REFERENCE_PREFIX) {
+                        kind = AttributePlan.Kind.OBJECT_RESOLUTION;
+                    }
+                }
+            }
+
+            attributePlans[i] = new AttributePlan(kind, localName, name, propertyClass, value);
+        }
+
+        return attributePlans;
+    }
 
-                    if (Character.isUpperCase(localName.charAt(0))) {
-                        // The attribute represents a static property or listener list
-                        int j = localName.indexOf('.');
-                        name = localName.substring(j + 1);
+    private void processAttributes(final AttributePlan[] attributePlans) throws SerializationException {
+        for (AttributePlan attributePlan : attributePlans) {
+            String value = attributePlan.value;
 
-                        String namespaceURI = xmlStreamReader.getAttributeNamespace(i);
-                        if (Utils.isNullOrEmpty(namespaceURI)) {
-                            namespaceURI = xmlStreamReader.getNamespaceURI("");
+            switch (attributePlan.kind) {
+                case INTERNAL:
+                    if (attributePlan.localName.equals(ID_ATTRIBUTE)) {
+                        if (value.length() == 0 || value.contains(".")) {
+                            throw new IllegalArgumentException("\"" + value + "\" is not a valid ID value.");
                         }
 
-                        String propertyClassName = namespaceURI + "." + localName.substring(0, j);
-                        try {
-                            propertyClass = Class.forName(propertyClassName, true, classLoader);
-                        } catch (Throwable exception) {
-                            throw new SerializationException(exception);
+                        if (namespace.containsKey(value)) {
+                            throw new SerializationException("ID " + value + " is already in use.");
                         }
-                    } else {
-                        // The attribute represents an instance property
-                        name = localName;
-                    }
 
-                    if (value.startsWith(NAMESPACE_BINDING_PREFIX) && value.endsWith(NAMESPACE_BINDING_SUFFIX)) {
-                        // The attribute represents a namespace binding
-                        if (propertyClass != null) {
-                            throw new SerializationException(
-                                "Namespace binding is not supported for static properties.");
+                        if (element.type != Element.Type.INSTANCE && element.type != Element.Type.INCLUDE) {
+                            throw new SerializationException("An ID cannot be assigned to this element.");
                         }
 
-                        namespaceBindingAttributes.add(new Attribute(element, name, propertyClass,
-                            value.substring(2, value.length() - 1)));
+                        element.id = value;
                     } else {
-                        // Resolve the attribute value
-                        Attribute attribute = new Attribute(element, name, propertyClass, value);
-
-                        if (value.length() > 0) {
-                            if (value.charAt(0) == URL_PREFIX) {
-                                value = value.substring(1);
-
-                                if (value.length() > 0) {
-                                    if (value.charAt(0) == URL_PREFIX) {
-                                        attribute.value = value;
-                                    } else {
-                                        if (location == null) {
-                                            throw new IllegalStateException("Base location is undefined.");
-                                        }
-
-                                        try {
-                                            attribute.value = new URL(location, value);
-                                        } catch (MalformedURLException exception) {
-                                            throw new SerializationException(exception);
-                                        }
-                                    }
-                                } else {
-                                    throw new SerializationException(
-                                        "Invalid URL resolution argument.");
-                                }
-                            } else if (value.charAt(0) == RESOURCE_KEY_PREFIX) {
-                                value = value.substring(1);
-
-                                if (value.length() > 0) {
-                                    if (value.charAt(0) == RESOURCE_KEY_PREFIX) {
-                                        attribute.value = value;
-                                    } else {
-                                        if (resources != null && JSON.containsKey(resources, value)) {
-                                            attribute.value = JSON.get(resources, value);
-                                        } else {
-                                            attribute.value = value;
-                                        }
-                                    }
-                                } else {
-                                    throw new SerializationException("Invalid resource resolution argument.");
-                                }
-                            } else if (value.charAt(0) == OBJECT_REFERENCE_PREFIX) {
-                                value = value.substring(1);
-
-                                if (value.length() > 0) {
-                                    if (value.charAt(0) == OBJECT_REFERENCE_PREFIX) {
-                                        attribute.value = value;
-                                    } else {
-                                        if (value.equals(BXML_PREFIX + ":" + null)) {
-                                            attribute.value = null;
-                                        } else {
-                                            if (JSON.containsKey(namespace, value)) {
-                                                attribute.value = JSON.get(namespace, value);
-                                            } else {
-                                                Object nashornGlobal =
-                                                    scriptEngineManager.getBindings().get(NASHORN_GLOBAL);
-                                                if (nashornGlobal == null) {
-                                                    throw new SerializationException("Value \"" + value
-                                                        + "\" is not defined.");
-                                                } else {
-                                                    if (nashornGlobal instanceof Bindings) {
-                                                        Bindings bindings = (Bindings) nashornGlobal;
-                                                        if (bindings.containsKey(value)) {
-                                                            attribute.value = bindings.get(value);
-                                                        } else {
-                                                            throw new SerializationException("Value \"" + value
-                                                                + "\" is not defined.");
-                                                        }
-                                                    } else {
-                                                        throw new SerializationException("Value \"" + value
-                                                            + "\" is not defined.");
-                                                    }
-                                                }
-                                            }
-                                        }
-                                    }
-                                } else {
-                                    throw new SerializationException("Invalid object resolution argument.");
-                                }
-                            }
+                        if (element.type != Element.Type.INSTANCE || !(element.value instanceof Deferrable)) {
+                            throw new SerializationException(BXML_PREFIX + ":" + LAZY_ATTRIBUTE
+                                + " is not supported for element " + element.name + ".");
                         }
 
-                        element.attributes.add(attribute);
+                        element.lazy = Boolean.parseBoolean(value);
                     }
-                }
+                    break;
+
+                case OPERATION_PROPERTY:
+                    element.properties.put(attributePlan.localName, value);
+                    break;
+
+                case NAMESPACE_BINDING:
+                    namespaceBindingAttributes.add(new Attribute(element, attributePlan.name, null, value));
+                    break;
+
+                default:
+                    element.attributes.add(new Attribute(element, attributePlan.name, attributePlan.propertyClass,
+                        resolveAttributeValue(attributePlan)));
+                    break;
             }
         }
     }
 
+    private Object resolveAttributeValue(final AttributePlan attributePlan) throws SerializationException {
+        String value = attributePlan.value;
+
+        switch (attributePlan.kind) {
+            case URL_RESOLUTION:
+                if (location == null) {
+                    throw new IllegalStateException("Base location is undefined.");
+                }
+
+                try {
+                    return new URL(location, value);
+                } catch (MalformedURLException exception) {
+                    throw new SerializationException(exception);
+                }
+
+            case RESOURCE_RESOLUTION:
+                if (resources != null && JSON.containsKey(resources, value)) {
+                    return JSON.get(resources, value);
+                }
+
+                return value;
+
+            case OBJECT_RESOLUTION:
+                if (JSON.containsKey(namespace, value)) {
+                    return JSON.get(namespace, value);
+                }
+
+                Object nashornGlobal = scriptEngineManager.getBindings().get(NASHORN_GLOBAL);
+                if (nashornGlobal instanceof Bindings && ((Bindings) nashornGlobal).containsKey(value)) {
+                    return ((Bindings) nashornGlobal).get(value);
+                }
+
+                throw new SerializationException("Value \"" + value + "\" is not defined.");
+
+            case NULL:
+                return null;
+
+            default:
+                return value;
+        }
+    }
+
     @SuppressWarnings("unchecked")
     private void processEndElement() throws SerializationException {
 
@@ -1255,35 +1782,7 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
                         // later in the parent's closing tag
                         element.parent.value = element.value;
                     } else if (element.parent.value != null) {
-                        // If the parent element has a default property, use it;
-                        // otherwise, if the parent is a sequence, add the element to it.
-                        Class<?> parentType = element.parent.value.getClass();
-                        DefaultProperty defaultProperty = parentType.getAnnotation(DefaultProperty.class);
-
-                        if (defaultProperty == null) {
-                            if (element.parent.value instanceof Sequence<?>) {
-                                Sequence<Object> sequence = (Sequence<Object>) element.parent.value;
-                                sequence.add(element.value);
-                            } else {
-                                throw new SerializationException(element.parent.value.getClass()
-                                    + " is not a sequence.");
-                            }
-                        } else {
-                            String defaultPropertyName = defaultProperty.value();
-                            BeanAdapter beanAdapter = new BeanAdapter(element.parent.value);
-                            Object defaultPropertyValue = beanAdapter.get(defaultPropertyName);
-
-                            if (defaultPropertyValue instanceof Sequence<?>) {
-                                Sequence<Object> sequence = (Sequence<Object>) defaultPropertyValue;
-                                try {
-                                    sequence.add(element.value);
-                                } catch (UnsupportedOperationException uoe) {
-                                    beanAdapter.put(defaultPropertyName, element.value);
-                                }
-                            } else {
-                                beanAdapter.put(defaultPropertyName, element.value);
-                            }
-                        }
+                        addChild(element.parent.value, element.value);
                     }
                 }
 
@@ -1423,8 +1922,8 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
                         try {
                             scriptReader = new BufferedReader(new InputStreamReader(
                                 scriptLocation.openStream()));
-                            scriptEngine.eval(NASHORN_COMPAT_SCRIPT);
-                            scriptEngine.eval(scriptReader);
+                            evalScript(scriptEngine, NASHORN_COMPAT_SCRIPT);
+                            evalScript(scriptEngine, readScript(scriptReader));
                         } catch (ScriptException exception) {
                             reportException(exception);
                         } finally {
@@ -1445,8 +1944,8 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
                     scriptEngine.setBindings(scriptEngineManager.getBindings(), ScriptContext.ENGINE_SCOPE);
 
                     try {
-                        scriptEngine.eval(NASHORN_COMPAT_SCRIPT);
-                        scriptEngine.eval(script);
+                        evalScript(scriptEngine, NASHORN_COMPAT_SCRIPT);
+                        evalScript(scriptEngine, script);
                     } catch (ScriptException exception) {
                         reportException(exception, script);
                     }
@@ -1469,6 +1968,41 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
         element = element.parent;
     }
 
+    /**
+     * Adds a child element's value to the value of its parent element. If the
+     * parent has a default property, the value is added to or set as that
+     * property; otherwise, the parent must be a sequence.
+     */
+    @SuppressWarnings("unchecked")
+    static void addChild(final Object parent, final Object value) throws SerializationException {
+        Class<?> parentType = parent.getClass();
+        DefaultProperty defaultProperty = parentType.getAnnotation(DefaultProperty.class);
+
+        if (defaultProperty == null) {
+            if (parent instanceof Sequence<?>) {
+                Sequence<Object> sequence = (Sequence<Object>) parent;
+                sequence.add(value);
+            } else {
+                throw new SerializationException(parentType + " is not a sequence.");
+            }
+        } else {
+            String defaultPropertyName = defaultProperty.value();
+            BeanAdapter beanAdapter = new BeanAdapter(parent);
+            Object defaultPropertyValue = beanAdapter.get(defaultPropertyName);
+
+            if (defaultPropertyValue instanceof Sequence<?>) {
+                Sequence<Object> sequence = (Sequence<Object>) defaultPropertyValue;
+                try {
+                    sequence.add(value);
+                } catch (UnsupportedOperationException uoe) {
+                    beanAdapter.put(defaultPropertyName, value);
+                }
+            } else {
+                beanAdapter.put(defaultPropertyName, value);
+            }
+        }
+    }
+
     /**
      * Return the current location of the XML parser. Useful to ascertain the
      * location where an error occurred (if the error was not an
@@ -1570,6 +2104,37 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
         this.resources = resources;
     }
 
+    /**
+     * @return The executor that prefetches includes, or <tt>null</tt> if
+     * includes are loaded as they are read.
+     * @see #setPrefetchExecutor(Executor)
+     */
+    public Executor getPrefetchExecutor() {
+        return prefetchExecutor;
+    }
+
+    /**
+     * Sets the executor used to prefetch includes. <p> When a prefetch executor
+     * is set, {@link #readObject(URL, Resources)} first scans the document (and,
+     * recursively, the BXML documents it includes) for <tt>bxml:include</tt>
+     * tags, and loads the includes concurrently on the executor: BXML includes
+     * are parsed into {@link BXMLTemplate templates} and other includes are
+     * read into memory and, unless their serializer is {@link Resolvable},
+     * parsed. The object hierarchy is then assembled in document
+     * order on the calling thread, which only waits for an include when it
+     * reaches it. <p> Includes whose <tt>src</tt> is a <tt>$</tt> reference
+     * can't be known in advance and are loaded as they are read, as are
+     * includes that fail to prefetch (so that any error is reported as usual).
+     * Resources referenced by <tt>@</tt> URLs are not prefetched, since the
+     * serializer only resolves their URLs.
+     *
+     * @param prefetchExecutor The executor, or <tt>null</tt> to load includes
+     * as they are read (the default).
+     */
+    public void setPrefetchExecutor(final Executor prefetchExecutor) {
+        this.prefetchExecutor = prefetchExecutor;
+    }
+
     /**
      * Applies BXML binding annotations to an object.
      *
@@ -1659,7 +2224,7 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
     protected Serializer<?> newIncludeSerializer(final Class<? extends Serializer<?>> type)
         throws InstantiationException, IllegalAccessException, NoSuchMethodException,
                InvocationTargetException {
-        return type.getDeclaredConstructor().newInstance();
+        return newInstance(type);
     }
 
     /**
@@ -1679,7 +2244,35 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
     protected Object newTypedObject(final Class<?> type)
         throws InstantiationException, IllegalAccessException, NoSuchMethodException,
                InvocationTargetException {
-        return type.getDeclaredConstructor().newInstance();
+        return newInstance(type);
+    }
+
+    /**
+     * Invokes the (cached) no-arg constructor of the given type.
+     */
+    static <T> T newInstance(final Class<T> type)
+        throws InstantiationException, IllegalAccessException, NoSuchMethodException,
+               InvocationTargetException {
+        Constructor<?> constructor = CONSTRUCTORS.get(type);
+        if (constructor == null) {
+            // Let the reflection API report the missing constructor
+            return type.getDeclaredConstructor().newInstance();
+        }
+
+        return type.cast(constructor.newInstance());
+    }
+
+    /**
+     * Loads a class named by the document, using the template's resolved
+     * classes when reading a template.
+     */
+    private Class<?> loadClass(final String className, final ClassLoader classLoader)
+        throws ClassNotFoundException {
+        if (template != null) {
+            return template.loadClass(className, classLoader);
+        }
+
+        return Class.forName(className, true, classLoader);
     }
 
     /**
@@ -1733,7 +2326,170 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
         return mimeTypes;
     }
 
-    private static Method getStaticGetterMethod(final Class<?> propertyClass, final String propertyName,
+    /**
+     * Returns the compiled template for the BXML document at the given
+     * location, compiling and caching it if necessary.
+     *
+     * @param location The location of the BXML document.
+     * @return The compiled template.
+     * @throws IOException if the document could not be read.
+     * @throws SerializationException if the document is not well-formed XML.
+     */
+    public static BXMLTemplate getTemplate(final URL location) throws IOException, SerializationException {
+        Utils.checkNull(location, "location");
+
+        // Note: URL.equals() and hashCode() may perform host name resolution
+        String key = location.toExternalForm();
+
+        BXMLTemplate templateLocal;
+        synchronized (templates) {
+            templateLocal = templates.get(key);
+        }
+
+        if (templateLocal == null) {
+            templateLocal = BXMLTemplate.compile(location);
+
+            synchronized (templates) {
+                templates.put(key, templateLocal);
+            }
+        }
+
+        return templateLocal;
+    }
+
+    /**
+     * Returns the compiled form of a script, compiling it with the given engine
+     * if it has not been compiled by that engine before.
+     *
+     * @param scriptEngine An engine that implements {@link Compilable}.
+     * @param script The source of the script.
+     * @return The compiled script, which may be shared with other serializers.
+     * @throws ScriptException if the script can't be compiled.
+     */
+    private static CompiledScript compileScript(final ScriptEngine scriptEngine, final String script)
+        throws ScriptException {
+        ConcurrentHashMap<String, CompiledScript> engineScripts = compiledScripts.get(scriptEngine);
+        if (engineScripts == null) {
+            engineScripts = new ConcurrentHashMap<>();
+            ConcurrentHashMap<String, CompiledScript> existingScripts =
+                compiledScripts.putIfAbsent(scriptEngine, engineScripts);
+            if (existingScripts != null) {
+                engineScripts = existingScripts;
+            }
+        }
+
+        CompiledScript compiledScript = engineScripts.get(script);
+        if (compiledScript == null) {
+            compiledScript = ((Compilable) scriptEngine).compile(script);
+            engineScripts.put(script, compiledScript);
+        }
+
+        return compiledScript;
+    }
+
+    /**
+     * Evaluates a script in the engine's own context, compiling it (once) first
+     * if the engine supports compilation.
+     */
+    private static Object evalScript(final ScriptEngine scriptEngine, final String script)
+        throws ScriptException {
+        if (scriptEngine instanceof Compilable) {
+            return compileScript(scriptEngine, script).eval();
+        }
+
+        return scriptEngine.eval(script);
+    }
+
+    private static String readScript(final BufferedReader scriptReader) throws IOException {
+        StringBuilder buf = new StringBuilder();
+
+        char[] buffer = new char[4096];
+        int count;
+        while ((count = scriptReader.read(buffer)) != -1) {
+            buf.append(buffer, 0, count);
+        }
+
+        return buf.toString();
+    }
+
+    /**
+     * Discards all compiled scripts. Scripts (event handler attributes,
+     * <tt>bxml:script</tt> tags and script files) are compiled once per script
+     * engine, if the engine supports it, and shared by all serializers.
+     */
+    public static void clearScriptCache() {
+        compiledScripts.clear();
+    }
+
+    /**
+     * Discards all cached templates, so that BXML documents will be read (and
+     * compiled) again the next time they are loaded by URL.
+     */
+    public static void clearTemplateCache() {
+        synchronized (templates) {
+            templates.clear();
+        }
+    }
+
+    /**
+     * @return Whether documents loaded by URL (including BXML includes) are
+     * read from cached {@link BXMLTemplate templates}.
+     */
+    public static boolean isTemplateCacheEnabled() {
+        return templateCacheEnabled;
+    }
+
+    /**
+     * Sets whether documents loaded by URL (including BXML includes) are read
+     * from cached {@link BXMLTemplate templates}. The cache holds the most
+     * recently used templates up to {@link #getTemplateCacheSize() its size}.
+     * It is disabled by default, since a cached document is not read again
+     * when its file changes; applications that enable it and edit BXML files
+     * while running must {@link #clearTemplateCache clear} it.
+     *
+     * @param enabled Whether to use the template cache.
+     */
+    public static void setTemplateCacheEnabled(final boolean enabled) {
+        templateCacheEnabled = enabled;
+
+        if (!enabled) {
+            clearTemplateCache();
+        }
+    }
+
+    /**
+     * @return The maximum number of templates kept by the template cache.
+     */
+    public static int getTemplateCacheSize() {
+        synchronized (templates) {
+            return templateCacheSize;
+        }
+    }
+
+    /**
+     * Sets the maximum number of templates kept by the template cache; the
+     * least recently used templates are discarded first.
+     *
+     * @param size The new size, which must be positive; the default is
+     * {@link #DEFAULT_TEMPLATE_CACHE_SIZE}.
+     */
+    public static void setTemplateCacheSize(final int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Template cache size must be positive.");
+        }
+
+        synchronized (templates) {
+            templateCacheSize = size;
+
+            Iterator<String> iterator = templates.keySet().iterator();
+            while (templates.size() > size) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+    }
+
+    static Method getStaticGetterMethod(final Class<?> propertyClass, final String propertyName,
         final Class<?> objectType) {
         Method method = null;
 
@@ -1761,7 +2517,7 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
         return method;
     }
 
-    private static Method getStaticSetterMethod(final Class<?> propertyClass, final String propertyName,
+    static Method getStaticSetterMethod(final Class<?> propertyClass, final String propertyName,
         final Class<?> objectType, final Class<?> propertyValueType) {
         Method method = null;
 
@@ -1802,7 +2558,31 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
         return method;
     }
 
-    private static void setStaticProperty(final Object object, final Class<?> propertyClass,
+    private static Method getCachedStaticSetterMethod(final Class<?> propertyClass, final String propertyName,
+        final Class<?> objectType, final Class<?> propertyValueType) {
+        // Keyed by class names, so that the cache does not hold on to the object and value classes
+        ConcurrentHashMap<String, Method> methods = STATIC_SETTER_METHODS.get(propertyClass);
+        String key = propertyName + ":" + objectType.getName() + ":" + propertyValueType.getName();
+
+        Method method = methods.get(key);
+        if (method != null) {
+            // Classes of the same name may come from different class loaders
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            if (!parameterTypes[0].isAssignableFrom(objectType)
+                || !(parameterTypes[1].isPrimitive() || parameterTypes[1].isAssignableFrom(propertyValueType))) {
+                method = getStaticSetterMethod(propertyClass, propertyName, objectType, propertyValueType);
+            }
+        } else {
+            method = getStaticSetterMethod(propertyClass, propertyName, objectType, propertyValueType);
+            if (method != null) {
+                methods.put(key, method);
+            }
+        }
+
+        return method;
+    }
+
+    static void setStaticProperty(final Object object, final Class<?> propertyClass,
         final String propertyName, final Object value) throws SerializationException {
         Class<?> objectType = object.getClass();
         String propertyNameUpdated = Character.toUpperCase(propertyName.charAt(0))
@@ -1811,7 +2591,7 @@ public class BXMLSerializer implements Serializer<Object>, Resolvable {
 
         Method setterMethod = null;
         if (valueToAssign != null) {
-            setterMethod = getStaticSetterMethod(propertyClass, propertyNameUpdated, objectType,
+            setterMethod = getCachedStaticSetterMethod(propertyClass, propertyNameUpdated, objectType,
                 valueToAssign.getClass());
         }
 
@@ -0,0 +1,889 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.beans;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.pivot.annotations.UnsupportedOperation;
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.serialization.SerializationException;
+import org.apache.pivot.util.Utils;
+
+/**
+ * A compiled, immutable form of a BXML document. <p> Compiling a document
+ * parses it once and records the processing instructions, elements,
+ * attributes and text that {@link BXMLSerializer} acts on. Reading a template
+ * with {@link BXMLSerializer#readObject(BXMLTemplate)} replays the recorded
+ * document without any XML parsing. <p> The first time an element is read,
+ * the serializer resolves it into a plan: whether it is an object, a property
+ * or a BXML operation, the classes it names, and how each of its attributes
+ * is applied (a literal, a binding, or a URL, resource or object reference).
+ * The template keeps these plans, per class loader, so later reads go
+ * straight to creating the objects, setting their properties, loading the
+ * includes and running the scripts, which depend on each read. <p> A
+ * template may be read any number of times, by any number of serializers, on
+ * any thread.
+ */
+public final class BXMLTemplate {
+    /**
+     * A recorded parser event.
+     */
+    static final class Event {
+        public final int type;
+        public final int lineNumber;
+        public final int columnNumber;
+
+        // Processing instruction target or element name
+        public final String namespaceURI;
+        public final String prefix;
+        public final String localName;
+
+        // Processing instruction data or text
+        public final String text;
+
+        // Element attributes
+        public final String[] attributeNamespaceURIs;
+        public final String[] attributePrefixes;
+        public final String[] attributeLocalNames;
+        public final String[] attributeTypes;
+        public final String[] attributeValues;
+
+        // Namespaces declared by the element
+        public final String[] namespacePrefixes;
+        public final String[] namespaceURIs;
+
+        public Event(final XMLStreamReader reader) {
+            type = reader.getEventType();
+
+            Location location = reader.getLocation();
+            lineNumber = location.getLineNumber();
+            columnNumber = location.getColumnNumber();
+
+            switch (type) {
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    namespaceURI = null;
+                    prefix = null;
+                    localName = reader.getPITarget();
+                    text = reader.getPIData();
+                    break;
+
+                case XMLStreamConstants.CHARACTERS:
+                    namespaceURI = null;
+                    prefix = null;
+                    localName = null;
+                    text = reader.getText();
+                    break;
+
+                default:
+                    namespaceURI = reader.getNamespaceURI();
+                    prefix = reader.getPrefix();
+                    localName = reader.getLocalName();
+                    text = null;
+                    break;
+            }
+
+            if (type == XMLStreamConstants.START_ELEMENT) {
+                int n = reader.getAttributeCount();
+                attributeNamespaceURIs = new String[n];
+                attributePrefixes = new String[n];
+                attributeLocalNames = new String[n];
+                attributeTypes = new String[n];
+                attributeValues = new String[n];
+
+                for (int i = 0; i < n; i++) {
+                    attributeNamespaceURIs[i] = reader.getAttributeNamespace(i);
+                    attributePrefixes[i] = reader.getAttributePrefix(i);
+                    attributeLocalNames[i] = reader.getAttributeLocalName(i);
+                    attributeTypes[i] = reader.getAttributeType(i);
+                    attributeValues[i] = reader.getAttributeValue(i);
+                }
+            } else {
+                attributeNamespaceURIs = null;
+                attributePrefixes = null;
+                attributeLocalNames = null;
+                attributeTypes = null;
+                attributeValues = null;
+            }
+
+            if (type == XMLStreamConstants.START_ELEMENT || type == XMLStreamConstants.END_ELEMENT) {
+                int n = reader.getNamespaceCount();
+                namespacePrefixes = new String[n];
+                namespaceURIs = new String[n];
+
+                for (int i = 0; i < n; i++) {
+                    namespacePrefixes[i] = reader.getNamespacePrefix(i);
+                    namespaceURIs[i] = reader.getNamespaceURI(i);
+                }
+            } else {
+                namespacePrefixes = null;
+                namespaceURIs = null;
+            }
+        }
+    }
+
+    /**
+     * Read-only stream reader that replays the recorded events.
+     */
+    private final class TemplateStreamReader implements XMLStreamReader, NamespaceContext {
+        private final int start;
+        private final int end;
+        private int index;
+        private Event event = null;
+
+        // The elements whose namespace declarations are currently in scope
+        private ArrayList<Event> elements = new ArrayList<>();
+
+        public TemplateStreamReader(final int start, final int end) {
+            this.start = start;
+            this.end = end;
+
+            index = start - 1;
+        }
+
+        public BXMLTemplate getTemplate() {
+            return BXMLTemplate.this;
+        }
+
+        @Override
+        public Object getProperty(final String name) {
+            return null;
+        }
+
+        @Override
+        public int next() throws XMLStreamException {
+            if (!hasNext()) {
+                throw new IllegalStateException("No more events.");
+            }
+
+            if (event != null && event.type == XMLStreamConstants.END_ELEMENT) {
+                elements.remove(elements.getLength() - 1, 1);
+            }
+
+            index++;
+
+            if (index == end) {
+                event = null;
+            } else {
+                event = events[index];
+
+                if (event.type == XMLStreamConstants.START_ELEMENT) {
+                    elements.add(event);
+                }
+            }
+
+            return getEventType();
+        }
+
+        @Override
+        public void require(final int type, final String namespaceURI, final String localName)
+            throws XMLStreamException {
+            if (type != getEventType()
+                || (namespaceURI != null && !namespaceURI.equals(getNamespaceURI()))
+                || (localName != null && !localName.equals(getLocalName()))) {
+                throw new XMLStreamException("Requirement not met.", getLocation());
+            }
+        }
+
+        @Override
+        @UnsupportedOperation
+        public String getElementText() throws XMLStreamException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        @UnsupportedOperation
+        public int nextTag() throws XMLStreamException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return (index < end);
+        }
+
+        @Override
+        public void close() {
+            // No-op
+        }
+
+        @Override
+        public String getNamespaceURI(final String prefix) {
+            Utils.checkNull(prefix, "prefix");
+
+            if (prefix.equals(XMLConstants.XML_NS_PREFIX)) {
+                return XMLConstants.XML_NS_URI;
+            }
+
+            if (prefix.equals(XMLConstants.XMLNS_ATTRIBUTE)) {
+                return XMLConstants.XMLNS_ATTRIBUTE_NS_URI;
+            }
+
+            for (int i = elements.getLength() - 1; i >= 0; i--) {
+                Event element = elements.get(i);
+
+                for (int j = 0, n = element.namespacePrefixes.length; j < n; j++) {
+                    String namespacePrefix = element.namespacePrefixes[j];
+                    if (namespacePrefix == null) {
+                        namespacePrefix = XMLConstants.DEFAULT_NS_PREFIX;
+                    }
+
+                    if (namespacePrefix.equals(prefix)) {
+                        return element.namespaceURIs[j];
+                    }
+                }
+            }
+
+            for (int j = 0; j < inheritedNamespacePrefixes.length; j++) {
+                if (inheritedNamespacePrefixes[j].equals(prefix)) {
+                    return inheritedNamespaceURIs[j];
+                }
+            }
+
+            return null;
+        }
+
+        @Override
+        public boolean isStartElement() {
+            return (getEventType() == XMLStreamConstants.START_ELEMENT);
+        }
+
+        @Override
+        public boolean isEndElement() {
+            return (getEventType() == XMLStreamConstants.END_ELEMENT);
+        }
+
+        @Override
+        public boolean isCharacters() {
+            return (getEventType() == XMLStreamConstants.CHARACTERS);
+        }
+
+        @Override
+        public boolean isWhiteSpace() {
+            return isCharacters() && event.text.trim().length() == 0;
+        }
+
+        @Override
+        public String getAttributeValue(final String namespaceURI, final String localName) {
+            for (int i = 0, n = getAttributeCount(); i < n; i++) {
+                if (event.attributeLocalNames[i].equals(localName)
+                    && (namespaceURI == null || namespaceURI.equals(event.attributeNamespaceURIs[i]))) {
+                    return event.attributeValues[i];
+                }
+            }
+
+            return null;
+        }
+
+        @Override
+        public int getAttributeCount() {
+            checkStartElement();
+            return event.attributeLocalNames.length;
+        }
+
+        @Override
+        public QName getAttributeName(final int index) {
+            checkStartElement();
+            return newQName(event.attributeNamespaceURIs[index], event.attributeLocalNames[index],
+                event.attributePrefixes[index]);
+        }
+
+        @Override
+        public String getAttributeNamespace(final int index) {
+            checkStartElement();
+            return event.attributeNamespaceURIs[index];
+        }
+
+        @Override
+        public String getAttributeLocalName(final int index) {
+            checkStartElement();
+            return event.attributeLocalNames[index];
+        }
+
+        @Override
+        public String getAttributePrefix(final int index) {
+            checkStartElement();
+            return event.attributePrefixes[index];
+        }
+
+        @Override
+        public String getAttributeType(final int index) {
+            checkStartElement();
+            return event.attributeTypes[index];
+        }
+
+        @Override
+        public String getAttributeValue(final int index) {
+            checkStartElement();
+            return event.attributeValues[index];
+        }
+
+        @Override
+        public boolean isAttributeSpecified(final int index) {
+            checkStartElement();
+            return true;
+        }
+
+        @Override
+        public int getNamespaceCount() {
+            checkElement();
+            return event.namespacePrefixes.length;
+        }
+
+        @Override
+        public String getNamespacePrefix(final int index) {
+            checkElement();
+            return event.namespacePrefixes[index];
+        }
+
+        @Override
+        public String getNamespaceURI(final int index) {
+            checkElement();
+            return event.namespaceURIs[index];
+        }
+
+        @Override
+        public NamespaceContext getNamespaceContext() {
+            return this;
+        }
+
+        @Override
+        public String getPrefix(final String namespaceURI) {
+            Iterator<String> prefixes = getPrefixes(namespaceURI);
+            return prefixes.hasNext() ? prefixes.next() : null;
+        }
+
+        @Override
+        public Iterator<String> getPrefixes(final String namespaceURI) {
+            Utils.checkNull(namespaceURI, "namespaceURI");
+
+            ArrayList<String> prefixes = new ArrayList<>();
+            for (int i = elements.getLength() - 1; i >= 0; i--) {
+                Event element = elements.get(i);
+
+                for (int j = 0, n = element.namespaceURIs.length; j < n; j++) {
+                    String prefix = element.namespacePrefixes[j];
+                    if (prefix == null) {
+                        prefix = XMLConstants.DEFAULT_NS_PREFIX;
+                    }
+
+                    if (namespaceURI.equals(element.namespaceURIs[j])
+                        && namespaceURI.equals(getNamespaceURI(prefix))) {
+                        prefixes.add(prefix);
+                    }
+                }
+            }
+
+            return prefixes.iterator();
+        }
+
+        @Override
+        public int getEventType() {
+            if (index < start) {
+                return XMLStreamConstants.START_DOCUMENT;
+            }
+
+            return (event == null) ? XMLStreamConstants.END_DOCUMENT : event.type;
+        }
+
+        @Override
+        public String getText() {
+            if (!hasText()) {
+                throw new IllegalStateException("Current event has no text.");
+            }
+
+            return event.text;
+        }
+
+        @Override
+        public char[] getTextCharacters() {
+            return getText().toCharArray();
+        }
+
+        @Override
+        public int getTextCharacters(final int sourceStart, final char[] target, final int targetStart,
+            final int length) throws XMLStreamException {
+            String text = getText();
+            int count = Math.max(Math.min(length, text.length() - sourceStart), 0);
+            text.getChars(sourceStart, sourceStart + count, target, targetStart);
+
+            return count;
+        }
+
+        @Override
+        public int getTextStart() {
+            return 0;
+        }
+
+        @Override
+        public int getTextLength() {
+            return getText().length();
+        }
+
+        @Override
+        public String getEncoding() {
+            return null;
+        }
+
+        @Override
+        public boolean hasText() {
+            return isCharacters();
+        }
+
+        @Override
+        public Location getLocation() {
+            final int lineNumber = (event == null) ? -1 : event.lineNumber;
+            final int columnNumber = (event == null) ? -1 : event.columnNumber;
+
+            return new Location() {
+                @Override
+                public int getLineNumber() {
+                    return lineNumber;
+                }
+
+                @Override
+                public int getColumnNumber() {
+                    return columnNumber;
+                }
+
+                @Override
+                public int getCharacterOffset() {
+                    return -1;
+                }
+
+                @Override
+                public String getPublicId() {
+                    return null;
+                }
+
+                @Override
+                public String getSystemId() {
+                    return null;
+                }
+            };
+        }
+
+        @Override
+        public QName getName() {
+            checkElement();
+            return newQName(event.namespaceURI, event.localName, event.prefix);
+        }
+
+        @Override
+        public String getLocalName() {
+            checkElement();
+            return event.localName;
+        }
+
+        @Override
+        public boolean hasName() {
+            return isStartElement() || isEndElement();
+        }
+
+        @Override
+        public String getNamespaceURI() {
+            return hasName() ? event.namespaceURI : null;
+        }
+
+        @Override
+        public String getPrefix() {
+            return hasName() ? event.prefix : null;
+        }
+
+        @Override
+        public String getVersion() {
+            return null;
+        }
+
+        @Override
+        public boolean isStandalone() {
+            return false;
+        }
+
+        @Override
+        public boolean standaloneSet() {
+            return false;
+        }
+
+        @Override
+        public String getCharacterEncodingScheme() {
+            return null;
+        }
+
+        @Override
+        public String getPITarget() {
+            return (getEventType() == XMLStreamConstants.PROCESSING_INSTRUCTION) ? event.localName : null;
+        }
+
+        @Override
+        public String getPIData() {
+            return (getEventType() == XMLStreamConstants.PROCESSING_INSTRUCTION) ? event.text : null;
+        }
+
+        private void checkStartElement() {
+            if (!isStartElement()) {
+                throw new IllegalStateException("Current event is not a start element.");
+            }
+        }
+
+        private void checkElement() {
+            if (!hasName()) {
+                throw new IllegalStateException("Current event is not an element.");
+            }
+        }
+
+        private QName newQName(final String namespaceURI, final String localName, final String prefix) {
+            return new QName((namespaceURI == null) ? XMLConstants.NULL_NS_URI : namespaceURI, localName,
+                (prefix == null) ? XMLConstants.DEFAULT_NS_PREFIX : prefix);
+        }
+    }
+
+    /**
+     * Classes and element plans resolved by the serializer, and the class
+     * loader they were resolved with.
+     */
+    private static final class Resolution {
+        public final ClassLoader classLoader;
+        public final ConcurrentHashMap<String, Class<?>> classes = new ConcurrentHashMap<>();
+        public final AtomicReferenceArray<Object> plans;
+
+        public Resolution(final ClassLoader classLoader, final int eventCount) {
+            this.classLoader = classLoader;
+            plans = new AtomicReferenceArray<>(eventCount);
+        }
+    }
+
+    private final Event[] events;
+
+    // Namespaces declared outside of a recorded fragment
+    private final String[] inheritedNamespacePrefixes;
+    private final String[] inheritedNamespaceURIs;
+
+    private volatile Resolution resolution;
+
+    private static final String[] NO_NAMESPACES = {};
+
+    private BXMLTemplate(final Event[] events) {
+        this(events, NO_NAMESPACES, NO_NAMESPACES);
+    }
+
+    private BXMLTemplate(final Event[] events, final String[] inheritedNamespacePrefixes,
+        final String[] inheritedNamespaceURIs) {
+        this.events = events;
+        this.inheritedNamespacePrefixes = inheritedNamespacePrefixes;
+        this.inheritedNamespaceURIs = inheritedNamespaceURIs;
+
+        resolution = new Resolution(null, events.length);
+    }
+
+    /**
+     * Compiles a BXML document.
+     *
+     * @param inputStream The stream to read the document from.
+     * @return The compiled template.
+     * @throws SerializationException if the document is not well-formed XML.
+     */
+    public static BXMLTemplate compile(final InputStream inputStream) throws SerializationException {
+        Utils.checkNull(inputStream, "inputStream");
+
+        XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+        xmlInputFactory.setProperty("javax.xml.stream.isCoalescing", Boolean.TRUE);
+
+        ArrayList<Event> events = new ArrayList<>();
+
+        try {
+            XMLStreamReader xmlStreamReader = xmlInputFactory.createXMLStreamReader(inputStream);
+
+            while (xmlStreamReader.hasNext()) {
+                int event = xmlStreamReader.next();
+
+                switch (event) {
+                    case XMLStreamConstants.CHARACTERS:
+                        if (xmlStreamReader.isWhiteSpace()) {
+                            break;
+                        }
+                        events.add(new Event(xmlStreamReader));
+                        break;
+
+                    case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    case XMLStreamConstants.START_ELEMENT:
+                    case XMLStreamConstants.END_ELEMENT:
+                        events.add(new Event(xmlStreamReader));
+                        break;
+
+                    default:
+                        break;
+                }
+            }
+
+            xmlStreamReader.close();
+        } catch (XMLStreamException exception) {
+            throw new SerializationException(exception);
+        }
+
+        return new BXMLTemplate(toEventArray(events));
+    }
+
+    /**
+     * Records the content of the current element of a stream reader as a
+     * template of its own. On return, the reader is positioned at the end of
+     * the element. The namespaces that the content uses but doesn't declare
+     * are resolved against the reader, so the recorded content can be read
+     * independently of the enclosing document.
+     *
+     * @param reader A reader positioned at the start of an element.
+     * @return A template of the element's content.
+     * @throws XMLStreamException if the content is not well-formed XML.
+     */
+    static BXMLTemplate record(final XMLStreamReader reader) throws XMLStreamException {
+        if (reader.getEventType() != XMLStreamConstants.START_ELEMENT) {
+            throw new IllegalStateException("Current event is not a start element.");
+        }
+
+        ArrayList<Event> events = new ArrayList<>();
+        ArrayList<String> prefixes = new ArrayList<>();
+        prefixes.add(XMLConstants.DEFAULT_NS_PREFIX);
+
+        int depth = 0;
+        while (depth >= 0) {
+            int event = reader.next();
+
+            switch (event) {
+                case XMLStreamConstants.CHARACTERS:
+                    if (!reader.isWhiteSpace()) {
+                        events.add(new Event(reader));
+                    }
+                    break;
+
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    events.add(new Event(reader));
+                    break;
+
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    events.add(new Event(reader));
+
+                    addPrefix(prefixes, reader.getPrefix());
+                    for (int i = 0, n = reader.getAttributeCount(); i < n; i++) {
+                        addPrefix(prefixes, reader.getAttributePrefix(i));
+                    }
+                    break;
+
+                case XMLStreamConstants.END_ELEMENT:
+                    // The end of the recorded element itself is not part of its content
+                    if (depth-- > 0) {
+                        events.add(new Event(reader));
+                    }
+                    break;
+
+                default:
+                    break;
+            }
+        }
+
+        // The reader is now at the end of the element, where the same namespaces are in scope as at its start
+        ArrayList<String> namespacePrefixes = new ArrayList<>();
+        ArrayList<String> namespaceURIs = new ArrayList<>();
+        for (String prefix : prefixes) {
+            String namespaceURI = reader.getNamespaceURI(prefix);
+            if (namespaceURI != null) {
+                namespacePrefixes.add(prefix);
+                namespaceURIs.add(namespaceURI);
+            }
+        }
+
+        return new BXMLTemplate(toEventArray(events), toStringArray(namespacePrefixes),
+            toStringArray(namespaceURIs));
+    }
+
+    private static void addPrefix(final ArrayList<String> prefixes, final String prefix) {
+        if (prefix != null && prefix.length() > 0 && prefixes.indexOf(prefix) == -1) {
+            prefixes.add(prefix);
+        }
+    }
+
+    private static Event[] toEventArray(final ArrayList<Event> events) {
+        Event[] eventArray = new Event[events.getLength()];
+        for (int i = 0; i < eventArray.length; i++) {
+            eventArray[i] = events.get(i);
+        }
+
+        return eventArray;
+    }
+
+    private static String[] toStringArray(final ArrayList<String> strings) {
+        String[] stringArray = new String[strings.getLength()];
+        for (int i = 0; i < stringArray.length; i++) {
+            stringArray[i] = strings.get(i);
+        }
+
+        return stringArray;
+    }
+
+    /**
+     * Compiles the BXML document at the given location.
+     *
+     * @param location The location of the document.
+     * @return The compiled template.
+     * @throws IOException if the document could not be read.
+     * @throws SerializationException if the document is not well-formed XML.
+     */
+    public static BXMLTemplate compile(final URL location) throws IOException, SerializationException {
+        Utils.checkNull(location, "location");
+
+        try (InputStream inputStream = new BufferedInputStream(location.openStream())) {
+            return compile(inputStream);
+        }
+    }
+
+    /**
+     * @return The number of recorded events in this template.
+     */
+    int getEventCount() {
+        return events.length;
+    }
+
+    /**
+     * @param index The event index.
+     * @return The recorded event at the given index.
+     */
+    Event getEvent(final int index) {
+        return events[index];
+    }
+
+    /**
+     * Creates a stream reader that replays the whole document.
+     *
+     * @return A new reader positioned at the start of the document.
+     */
+    XMLStreamReader newStreamReader() {
+        return newStreamReader(0, events.length);
+    }
+
+    /**
+     * Creates a stream reader that replays a range of the recorded events.
+     *
+     * @param start The index of the first event to replay.
+     * @param end The index following the last event to replay.
+     * @return A new reader positioned before the first event.
+     */
+    XMLStreamReader newStreamReader(final int start, final int end) {
+        return new TemplateStreamReader(start, end);
+    }
+
+    /**
+     * Returns the resolution for the given class loader, replacing the
+     * current one if it was made with another loader.
+     */
+    private Resolution getResolution(final ClassLoader classLoader) {
+        Resolution resolutionLocal = resolution;
+
+        if (resolutionLocal.classLoader != classLoader) {
+            // Classes resolved by another loader can't be reused
+            resolutionLocal = new Resolution(classLoader, events.length);
+            resolution = resolutionLocal;
+        }
+
+        return resolutionLocal;
+    }
+
+    /**
+     * Returns the index of the current event of a reader of this template.
+     *
+     * @return The index, or <tt>-1</tt> if the reader doesn't read this
+     * template.
+     */
+    private int getIndex(final XMLStreamReader reader) {
+        if (reader instanceof TemplateStreamReader) {
+            TemplateStreamReader templateStreamReader = (TemplateStreamReader) reader;
+            if (templateStreamReader.getTemplate() == this && templateStreamReader.event != null) {
+                return templateStreamReader.index;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the plan the serializer resolved for the current event of a
+     * reader of this template.
+     *
+     * @param reader The reader.
+     * @param classLoader The class loader that the plan's classes must have
+     * been resolved with.
+     * @return The plan, or <tt>null</tt> if the event has not been resolved
+     * with that class loader.
+     */
+    Object getPlan(final XMLStreamReader reader, final ClassLoader classLoader) {
+        int index = getIndex(reader);
+
+        return (index == -1) ? null : getResolution(classLoader).plans.get(index);
+    }
+
+    /**
+     * Keeps the plan the serializer resolved for the current event of a
+     * reader of this template.
+     *
+     * @param reader The reader.
+     * @param classLoader The class loader that the plan's classes were
+     * resolved with.
+     * @param plan The plan.
+     */
+    void setPlan(final XMLStreamReader reader, final ClassLoader classLoader, final Object plan) {
+        int index = getIndex(reader);
+
+        if (index != -1) {
+            getResolution(classLoader).plans.set(index, plan);
+        }
+    }
+
+    /**
+     * Loads (and initializes) a class named by this template, caching the
+     * result for subsequent reads with the same class loader.
+     *
+     * @param className The fully qualified class name.
+     * @param classLoader The class loader to use.
+     * @return The class.
+     * @throws ClassNotFoundException if the class cannot be located.
+     */
+    Class<?> loadClass(final String className, final ClassLoader classLoader)
+        throws ClassNotFoundException {
+        Resolution resolutionLocal = getResolution(classLoader);
+
+        Class<?> type = resolutionLocal.classes.get(className);
+        if (type == null) {
+            type = Class.forName(className, true, classLoader);
+            resolutionLocal.classes.put(className, type);
+        }
+
+        return type;
+    }
+}
@@ -21,13 +21,12 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Type;
-import java.math.BigDecimal;
-import java.math.BigInteger;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Iterator;
-import java.util.Locale;
 import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.pivot.annotations.UnsupportedOperation;
 import org.apache.pivot.collections.Map;
@@ -155,12 +154,29 @@ public class BeanAdapter implements Map<String, Object> {
     public static final String IS_PREFIX = "is";
     public static final String SET_PREFIX = "set";
 
-    private static final String ENUM_VALUE_OF_METHOD_NAME = "valueOf";
-
     private static final String ILLEGAL_ACCESS_EXCEPTION_MESSAGE_FORMAT =
             "Unable to access property \"%s\" for type %s.";
-    private static final String ENUM_COERCION_EXCEPTION_MESSAGE =
-            "Unable to coerce %s (\"%s\") to %s.\nValid enum constants - %s";
+
+    /**
+     * Cached property accessors (getters by property name, setters by property
+     * name and value type), since bean classes are typically accessed over and
+     * over again (by BXML, styles and data binding).
+     */
+    private static final ClassValue<ConcurrentHashMap<Object, Optional<Method>>> ACCESSOR_METHODS =
+        new ClassValue<ConcurrentHashMap<Object, Optional<Method>>>() {
+            @Override
+            protected ConcurrentHashMap<Object, Optional<Method>> computeValue(final Class<?> type) {
+                return new ConcurrentHashMap<>();
+            }
+        };
+
+    private static final ClassValue<ConcurrentHashMap<String, Optional<Field>>> FIELDS =
+        new ClassValue<ConcurrentHashMap<String, Optional<Field>>>() {
+            @Override
+            protected ConcurrentHashMap<String, Optional<Field>> computeValue(final Class<?> type) {
+                return new ConcurrentHashMap<>();
+            }
+        };
 
     /**
      * Creates a new bean dictionary.
@@ -617,6 +633,11 @@ public class BeanAdapter implements Map<String, Object> {
         Utils.checkNull(beanClass, "beanClass");
         Utils.checkNullOrEmpty(key, "key");
 
+        return FIELDS.get(beanClass).computeIfAbsent(key, k -> Optional.ofNullable(findField(beanClass, k)))
+            .orElse(null);
+    }
+
+    private static Field findField(final Class<?> beanClass, final String key) {
         Field field = null;
 
         try {
@@ -646,6 +667,11 @@ public class BeanAdapter implements Map<String, Object> {
         Utils.checkNull(beanClass, "beanClass");
         Utils.checkNullOrEmpty(key, "key");
 
+        return ACCESSOR_METHODS.get(beanClass).computeIfAbsent(key,
+            k -> Optional.ofNullable(findGetterMethod(beanClass, key))).orElse(null);
+    }
+
+    private static Method findGetterMethod(final Class<?> beanClass, final String key) {
         // Upper-case the first letter
         String keyUpdated = Character.toUpperCase(key.charAt(0)) + key.substring(1);
         Method getterMethod = null;
@@ -680,6 +706,16 @@ public class BeanAdapter implements Map<String, Object> {
         Utils.checkNull(beanClass, "beanClass");
         Utils.checkNullOrEmpty(key, "key");
 
+        if (valueType == null) {
+            return null;
+        }
+
+        return ACCESSOR_METHODS.get(beanClass).computeIfAbsent(Arrays.asList(key, valueType),
+            k -> Optional.ofNullable(findSetterMethod(beanClass, key, valueType))).orElse(null);
+    }
+
+    private static Method findSetterMethod(final Class<?> beanClass, final String key,
+            final Class<?> valueType) {
         Method setterMethod = null;
 
         if (valueType != null) {
@@ -697,7 +733,7 @@ public class BeanAdapter implements Map<String, Object> {
             if (setterMethod == null) {
                 // Look for a match on the value's super type
                 Class<?> superType = valueType.getSuperclass();
-                setterMethod = getSetterMethod(beanClass, key, superType);
+                setterMethod = findSetterMethod(beanClass, key, superType);
             }
 
             if (setterMethod == null) {
@@ -728,7 +764,7 @@ public class BeanAdapter implements Map<String, Object> {
                 int i = 0, n = interfaces.length;
                 while (setterMethod == null && i < n) {
                     Class<?> interfaceType = interfaces[i++];
-                    setterMethod = getSetterMethod(beanClass, key, interfaceType);
+                    setterMethod = findSetterMethod(beanClass, key, interfaceType);
                 }
             }
         }
@@ -737,7 +773,9 @@ public class BeanAdapter implements Map<String, Object> {
     }
 
     /**
-     * Coerces a value to a given type.
+     * Coerces a value to a given type. The conversion is performed by the
+     * {@link Converter} registered with the {@link ConverterRegistry} for the
+     * value's class and the requested type.
      *
      * @param <T> The parametric type to coerce to.
      * @param value The object to be coerced.
@@ -745,6 +783,7 @@ public class BeanAdapter implements Map<String, Object> {
      * @param key The property name in question.
      * @return The coerced value.
      * @throws IllegalArgumentException for all the possible other exceptions.
+     * @see ConverterRegistry#register
      */
     @SuppressWarnings("unchecked")
     public static <T> T coerce(final Object value, final Class<? extends T> type, final String key) {
@@ -756,83 +795,20 @@ public class BeanAdapter implements Map<String, Object> {
             // Null values can only be coerced to null
             coercedValue = null;
         } else {
-            if (type.isAssignableFrom(value.getClass())) {
+            Class<?> valueType = value.getClass();
+
+            if (type.isAssignableFrom(valueType)) {
                 // Value doesn't need coercion
                 coercedValue = value;
-            } else if (type.isEnum()) {
-                // Find and invoke the valueOf(String) method using an upper
-                // case conversion of the supplied Object's toString() value
-                try {
-                    String valueString = value.toString().toUpperCase(Locale.ENGLISH);
-                    Method valueOfMethod = type.getMethod(ENUM_VALUE_OF_METHOD_NAME, String.class);
-                    coercedValue = valueOfMethod.invoke(null, valueString);
-                } catch (IllegalAccessException | InvocationTargetException
-                        | SecurityException | NoSuchMethodException e) {
-                    // Nothing to be gained by handling the getMethod() & invoke() exceptions separately
-                    throw new IllegalArgumentException(String.format(
-                        ENUM_COERCION_EXCEPTION_MESSAGE, value.getClass().getName(), value, type,
-                        Arrays.toString(type.getEnumConstants())), e);
-                }
             } else {
-                // Coerce the value to the requested type
-                if (type == String.class) {
-                    coercedValue = value.toString();
-                } else if (type == Boolean.class || type == Boolean.TYPE) {
-                    coercedValue = Boolean.parseBoolean(value.toString());
-                } else if (type == Character.class || type == Character.TYPE) {
-                    coercedValue = value.toString().charAt(0);
-                } else if (type == Byte.class || type == Byte.TYPE) {
-                    if (value instanceof Number) {
-                        coercedValue = ((Number) value).byteValue();
-                    } else {
-                        coercedValue = Byte.parseByte(value.toString());
-                    }
-                } else if (type == Short.class || type == Short.TYPE) {
-                    if (value instanceof Number) {
-                        coercedValue = ((Number) value).shortValue();
-                    } else {
-                        coercedValue = Short.parseShort(value.toString());
-                    }
-                } else if (type == Integer.class || type == Integer.TYPE) {
-                    if (value instanceof Number) {
-                        coercedValue = ((Number) value).intValue();
-                    } else {
-                        coercedValue = Integer.parseInt(value.toString());
-                    }
-                } else if (type == Long.class || type == Long.TYPE) {
-                    if (value instanceof Number) {
-                        coercedValue = ((Number) value).longValue();
-                    } else {
-                        coercedValue = Long.parseLong(value.toString());
-                    }
-                } else if (type == Float.class || type == Float.TYPE) {
-                    if (value instanceof Number) {
-                        coercedValue = ((Number) value).floatValue();
-                    } else {
-                        coercedValue = Float.parseFloat(value.toString());
-                    }
-                } else if (type == Double.class || type == Double.TYPE) {
-                    if (value instanceof Number) {
-                        coercedValue = ((Number) value).doubleValue();
-                    } else {
-                        coercedValue = Double.parseDouble(value.toString());
-                    }
-                } else if (type == BigInteger.class) {
-                    if (value instanceof Number) {
-                        coercedValue = new BigInteger(((Number) value).toString());
-                    } else {
-                        coercedValue = new BigInteger(value.toString());
-                    }
-                } else if (type == BigDecimal.class) {
-                    if (value instanceof Number) {
-                        coercedValue = new BigDecimal(((Number) value).toString());
-                    } else {
-                        coercedValue = new BigDecimal(value.toString());
-                    }
-                } else {
+                Converter<Object, ? extends T> converter = ConverterRegistry.get(valueType, type);
+
+                if (converter == null) {
                     throw new IllegalArgumentException("Unable to coerce "
-                        + value.getClass().getName() + " to " + type + " for \"" + key + "\" property.");
+                        + valueType.getName() + " to " + type + " for \"" + key + "\" property.");
                 }
+
+                coercedValue = converter.convert(value);
             }
         }
 
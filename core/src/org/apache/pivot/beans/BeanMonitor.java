@@ -16,6 +16,7 @@
  */
 package org.apache.pivot.beans;
 
+import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -23,25 +24,140 @@ import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Proxy;
 import java.lang.reflect.Type;
+import java.util.concurrent.ConcurrentHashMap;
 
-import org.apache.pivot.collections.HashMap;
+import org.apache.pivot.collections.ArrayList;
 import org.apache.pivot.collections.HashSet;
 import org.apache.pivot.util.ListenerList;
 import org.apache.pivot.util.Utils;
 import org.apache.pivot.util.Vote;
 
 /**
- * Class for monitoring Java bean property changes.
+ * Class for monitoring Java bean property changes. <p> The listener lists
+ * exposed by a bean class, and the properties their listener interfaces
+ * report changes for, are discovered once per class and shared by all
+ * monitors of that class. Listener lists whose interfaces don't report changes
+ * to any of the bean's properties are not listened to at all. <p> By default
+ * the listeners registered on the bean are {@link Proxy} instances (whose
+ * proxy classes are also cached); applications can avoid the proxy dispatch
+ * by registering a {@link ListenerAdapterFactory} for a listener interface.
  */
 public class BeanMonitor {
+    /**
+     * Creates non-proxy listeners that translate the change events of a
+     * listener interface into property change notifications.
+     *
+     * @param <T> The listener interface type.
+     */
+    public interface ListenerAdapterFactory<T> {
+        /**
+         * Creates a listener that calls
+         * {@link PropertyChangeListener#propertyChanged propertyChanged()} on
+         * the given listener for each <tt><i>property</i>Changed</tt> event it
+         * receives.
+         *
+         * @param listener The listener to notify.
+         * @return The listener adapter.
+         */
+        public T createAdapter(PropertyChangeListener listener);
+    }
+
+    /**
+     * A listener list exposed by a bean class, along with its (cached) listener
+     * interface and proxy class constructor.
+     */
+    private static final class ListenerListAccessor {
+        public final Method listenerListMethod;
+        public final Class<?> listenerInterface;
+        private Constructor<?> proxyConstructor = null;
+
+        public ListenerListAccessor(final Method listenerListMethod, final Class<?> listenerInterface) {
+            this.listenerListMethod = listenerListMethod;
+            this.listenerInterface = listenerInterface;
+        }
+
+        @SuppressWarnings("unchecked")
+        public ListenerList<Object> getListenerList(final Object bean) {
+            try {
+                return (ListenerList<Object>) listenerListMethod.invoke(bean);
+            } catch (IllegalAccessException | InvocationTargetException exception) {
+                throw new RuntimeException(exception);
+            }
+        }
+
+        @SuppressWarnings("deprecation")
+        public synchronized Object newProxyInstance(final InvocationHandler invocationHandler) {
+            try {
+                if (proxyConstructor == null) {
+                    Class<?> proxyClass = Proxy.getProxyClass(listenerInterface.getClassLoader(),
+                        new Class<?>[] {listenerInterface});
+                    proxyConstructor = proxyClass.getConstructor(InvocationHandler.class);
+                }
+
+                return proxyConstructor.newInstance(invocationHandler);
+            } catch (ReflectiveOperationException exception) {
+                throw new RuntimeException(exception);
+            }
+        }
+    }
+
+    /**
+     * The listener metadata for a bean class.
+     */
+    private static final class BeanClassInfo {
+        public final ArrayList<ListenerListAccessor> listenerListAccessors = new ArrayList<>();
+        public final HashSet<String> notifyingProperties = new HashSet<>();
+
+        public BeanClassInfo(final Class<?> beanClass) {
+            for (Method method : beanClass.getMethods()) {
+                if (ListenerList.class.isAssignableFrom(method.getReturnType())
+                    && (method.getModifiers() & Modifier.STATIC) == 0
+                    && method.getGenericReturnType() instanceof ParameterizedType) {
+                    ParameterizedType genericType = (ParameterizedType) method.getGenericReturnType();
+                    Type[] typeArguments = genericType.getActualTypeArguments();
+
+                    if (typeArguments.length == 1) {
+                        Type type = typeArguments[0];
+                        Class<?> listenerInterface;
+                        if (type instanceof ParameterizedType) {
+                            ParameterizedType paramType = (ParameterizedType) type;
+                            listenerInterface = (Class<?>) paramType.getRawType();
+                        } else {
+                            listenerInterface = (Class<?>) type;
+                        }
+
+                        if (!listenerInterface.isInterface()) {
+                            throw new RuntimeException(listenerInterface.getName() + " is not an interface.");
+                        }
+
+                        boolean notifying = false;
+                        for (Method interfaceMethod : listenerInterface.getMethods()) {
+                            String propertyName;
+                            if ((propertyName = getPropertyChangeName(interfaceMethod.getName())) != null) {
+                                if (BeanAdapter.getGetterMethod(beanClass, propertyName) != null
+                                    || BeanAdapter.getField(beanClass, propertyName) != null) {
+                                    notifyingProperties.add(propertyName);
+                                    notifying = true;
+                                }
+                            }
+                        }
+
+                        // Only listen to the lists that can report property changes
+                        if (notifying) {
+                            listenerListAccessors.add(new ListenerListAccessor(method, listenerInterface));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
     private class BeanInvocationHandler implements InvocationHandler {
         @Override
         public Object invoke(final Object proxy, final Method event, final Object[] arguments) throws Throwable {
             String propertyName;
             if ((propertyName = getPropertyChangeName(event.getName())) != null) {
-                if (notifyingProperties.contains(propertyName)) {
-                    propertyChangeListeners.propertyChanged(bean, propertyName);
-                }
+                beanPropertyChangeListener.propertyChanged(bean, propertyName);
             }
 
             Object result = null;
@@ -83,13 +199,32 @@ public class BeanMonitor {
     }
 
     private Object bean = null;
+    private BeanClassInfo beanClassInfo;
+
+    private Object[] beanListeners = null;
+    private HashSet<String> notifyingProperties;
 
-    private HashMap<Class<?>, Object> beanListenerProxies = new HashMap<>();
-    private BeanInvocationHandler invocationHandler = new BeanInvocationHandler();
-    private HashSet<String> notifyingProperties = new HashSet<>();
+    private PropertyChangeListener beanPropertyChangeListener = new PropertyChangeListener() {
+        @Override
+        public void propertyChanged(final Object beanArgument, final String propertyName) {
+            if (notifyingProperties.contains(propertyName)) {
+                propertyChangeListeners.propertyChanged(bean, propertyName);
+            }
+        }
+    };
 
     private PropertyChangeListenerList propertyChangeListeners = new PropertyChangeListenerList();
 
+    private static final ClassValue<BeanClassInfo> BEAN_CLASS_INFO = new ClassValue<BeanClassInfo>() {
+        @Override
+        protected BeanClassInfo computeValue(final Class<?> beanClass) {
+            return new BeanClassInfo(beanClass);
+        }
+    };
+
+    private static final ConcurrentHashMap<Class<?>, ListenerAdapterFactory<?>> listenerAdapterFactories =
+        new ConcurrentHashMap<>();
+
     public static final String LISTENERS_SUFFIX = "Listeners";
     public static final String PROPERTY_CHANGE_SUFFIX = "Changed";
 
@@ -105,39 +240,8 @@ public class BeanMonitor {
 
         this.bean = bean;
 
-        BeanAdapter beanAdapter = new BeanAdapter(bean);
-
-        for (Method method : bean.getClass().getMethods()) {
-            if (ListenerList.class.isAssignableFrom(method.getReturnType())
-                && (method.getModifiers() & Modifier.STATIC) == 0) {
-                ParameterizedType genericType = (ParameterizedType) method.getGenericReturnType();
-                Type[] typeArguments = genericType.getActualTypeArguments();
-
-                if (typeArguments.length == 1) {
-                    Type type = typeArguments[0];
-                    Class<?> listenerInterface;
-                    if (type instanceof ParameterizedType) {
-                        ParameterizedType paramType = (ParameterizedType) type;
-                        listenerInterface = (Class<?>) paramType.getRawType();
-                    } else {
-                        listenerInterface = (Class<?>) type;
-                    }
-
-                    if (!listenerInterface.isInterface()) {
-                        throw new RuntimeException(listenerInterface.getName() + " is not an interface.");
-                    }
-
-                    for (Method interfaceMethod : listenerInterface.getMethods()) {
-                        String propertyName;
-                        if ((propertyName = getPropertyChangeName(interfaceMethod.getName())) != null) {
-                            if (beanAdapter.containsKey(propertyName)) {
-                                notifyingProperties.add(propertyName);
-                            }
-                        }
-                    }
-                }
-            }
-        }
+        beanClassInfo = BEAN_CLASS_INFO.get(bean.getClass());
+        notifyingProperties = beanClassInfo.notifyingProperties;
     }
 
     /**
@@ -160,79 +264,76 @@ public class BeanMonitor {
         return notifyingProperties.contains(key);
     }
 
-    private void invoke(final String methodName, final boolean addProxy) {
-        for (Method method : bean.getClass().getMethods()) {
-            if (ListenerList.class.isAssignableFrom(method.getReturnType())
-                && (method.getModifiers() & Modifier.STATIC) == 0) {
-                ParameterizedType genericType = (ParameterizedType) method.getGenericReturnType();
-                Type[] typeArguments = genericType.getActualTypeArguments();
-
-                if (typeArguments.length == 1) {
-                    Type type = typeArguments[0];
-                    Class<?> listenerInterface;
-                    if (type instanceof ParameterizedType) {
-                        ParameterizedType paramType = (ParameterizedType) type;
-                        listenerInterface = (Class<?>) paramType.getRawType();
-                    } else {
-                        listenerInterface = (Class<?>) type;
-                    }
+    /**
+     * Registers event listeners on the bean so that the dictionary can fire
+     * property change events and report which properties can fire change
+     * events.
+     */
+    private void registerBeanListeners() {
+        ArrayList<ListenerListAccessor> listenerListAccessors = beanClassInfo.listenerListAccessors;
+        int n = listenerListAccessors.getLength();
 
-                    // Get the listener list
-                    Object listenerList;
-                    try {
-                        listenerList = method.invoke(bean);
-                    } catch (IllegalAccessException | InvocationTargetException exception) {
-                        throw new RuntimeException(exception);
-                    }
+        if (beanListeners == null) {
+            beanListeners = new Object[n];
 
-                    // Get the listener for this interface
-                    Object listener = beanListenerProxies.get(listenerInterface);
-                    if (listener == null) {
-                        if (addProxy) {
-                            listener = Proxy.newProxyInstance(
-                                Thread.currentThread().getContextClassLoader(),
-                                new Class<?>[] {listenerInterface}, invocationHandler);
-                            beanListenerProxies.put(listenerInterface, listener);
-                        } else {
-                            throw new IllegalStateException("Listener proxy is null.");
-                        }
-                    }
+            BeanInvocationHandler invocationHandler = null;
+            for (int i = 0; i < n; i++) {
+                ListenerListAccessor accessor = listenerListAccessors.get(i);
+                ListenerAdapterFactory<?> factory = listenerAdapterFactories.get(accessor.listenerInterface);
 
-                    Class<?> listenerListClass = listenerList.getClass();
-                    Method classMethod;
-                    try {
-                        classMethod = listenerListClass.getMethod(methodName, new Class<?>[] {Object.class});
-                    } catch (NoSuchMethodException exception) {
-                        throw new RuntimeException(exception);
+                if (factory == null) {
+                    if (invocationHandler == null) {
+                        invocationHandler = new BeanInvocationHandler();
                     }
 
-                    try {
-                        classMethod.invoke(listenerList, new Object[] {listener});
-                    } catch (IllegalAccessException | InvocationTargetException exception) {
-                        throw new RuntimeException(exception);
-                    }
+                    beanListeners[i] = accessor.newProxyInstance(invocationHandler);
+                } else {
+                    beanListeners[i] = factory.createAdapter(beanPropertyChangeListener);
                 }
             }
         }
-    }
 
-    /**
-     * Registers event listeners on the bean so that the dictionary can fire
-     * property change events and report which properties can fire change
-     * events.
-     */
-    private void registerBeanListeners() {
-        invoke("add", true);
+        for (int i = 0; i < n; i++) {
+            listenerListAccessors.get(i).getListenerList(bean).add(beanListeners[i]);
+        }
     }
 
     /**
      * Un-registers event listeners on the bean.
      */
     private void unregisterBeanListeners() {
-        invoke("remove", false);
+        if (beanListeners == null) {
+            throw new IllegalStateException("Bean listeners have not been registered.");
+        }
+
+        ArrayList<ListenerListAccessor> listenerListAccessors = beanClassInfo.listenerListAccessors;
+        for (int i = 0, n = listenerListAccessors.getLength(); i < n; i++) {
+            listenerListAccessors.get(i).getListenerList(bean).remove(beanListeners[i]);
+        }
     }
 
     public ListenerList<PropertyChangeListener> getPropertyChangeListeners() {
         return propertyChangeListeners;
     }
+
+    /**
+     * Registers a factory for non-proxy listeners of the given listener
+     * interface. Monitors created after this call will use the factory instead
+     * of a {@link Proxy} to listen to lists of this type.
+     *
+     * @param <T> The listener interface type.
+     * @param listenerInterface The listener interface.
+     * @param factory The adapter factory, or <tt>null</tt> to revert to the
+     * default proxy listeners.
+     */
+    public static <T> void setListenerAdapterFactory(final Class<T> listenerInterface,
+        final ListenerAdapterFactory<? extends T> factory) {
+        Utils.checkNull(listenerInterface, "listenerInterface");
+
+        if (factory == null) {
+            listenerAdapterFactories.remove(listenerInterface);
+        } else {
+            listenerAdapterFactories.put(listenerInterface, factory);
+        }
+    }
 }
@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.beans;
+
+import java.io.IOException;
+import java.net.URL;
+
+import org.apache.pivot.serialization.SerializationException;
+
+/**
+ * Interface implemented by the classes that {@link BXMLCompiler} generates
+ * from BXML documents.
+ *
+ * @see BXMLSerializer#readObject(CompiledBXML, org.apache.pivot.util.Resources)
+ */
+public interface CompiledBXML {
+    /**
+     * @return The location of the BXML document the class was generated from,
+     * or <tt>null</tt> if the document is not available at run time.
+     */
+    public URL getLocation();
+
+    /**
+     * Creates the object hierarchy described by the BXML document, resolving
+     * references and resources against the serializer's namespace, location and
+     * resources.
+     *
+     * @param serializer The serializer that is reading the document.
+     * @return The top-level object.
+     * @throws IOException for any error reading an include.
+     * @throws SerializationException for any other errors encountered creating
+     * the hierarchy.
+     */
+    public Object readObject(BXMLSerializer serializer) throws IOException, SerializationException;
+}
@@ -0,0 +1,37 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.beans;
+
+/**
+ * Converts a value of a given source type to a given target type. Converters
+ * are registered with the {@link ConverterRegistry} and are used by
+ * {@link BeanAdapter#coerce BeanAdapter.coerce()} (and therefore by BXML,
+ * style and data binding code) to translate property values.
+ *
+ * @param <S> The source type.
+ * @param <T> The target type.
+ */
+public interface Converter<S, T> {
+    /**
+     * Converts a value to the target type.
+     *
+     * @param value The (non-<tt>null</tt>) value to convert.
+     * @return The converted value.
+     * @throws IllegalArgumentException if the value cannot be converted.
+     */
+    public T convert(S value);
+}
@@ -0,0 +1,263 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.beans;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.pivot.util.CalendarDate;
+import org.apache.pivot.util.Time;
+import org.apache.pivot.util.Utils;
+
+/**
+ * Process-wide registry of {@link Converter} instances keyed by (source class,
+ * target class). <p> Lookups walk the source type's superclasses and
+ * interfaces to find the most specific registered converter, and the resolved
+ * result (including the absence of a converter) is cached, so repeated
+ * coercions between the same pair of types cost a single map lookup. Enum
+ * target types are handled automatically with a cached map of constant names.
+ * <p> Applications may register their own converters; doing so discards the
+ * previously resolved lookups.
+ */
+public final class ConverterRegistry {
+    /**
+     * Converter to an enum type, looking up the upper-cased string value of
+     * the source object in a cached map of the enum constants.
+     */
+    private static final class EnumConverter<E extends Enum<E>> implements Converter<Object, E> {
+        private final Class<E> enumType;
+        private final HashMap<String, E> constants = new HashMap<>();
+
+        public EnumConverter(final Class<E> enumType) {
+            this.enumType = enumType;
+
+            for (E constant : enumType.getEnumConstants()) {
+                constants.put(constant.name(), constant);
+            }
+        }
+
+        @Override
+        public E convert(final Object value) {
+            E constant = constants.get(value.toString().toUpperCase(Locale.ENGLISH));
+
+            if (constant == null) {
+                throw new IllegalArgumentException(String.format(ENUM_COERCION_EXCEPTION_MESSAGE,
+                    value.getClass().getName(), value, enumType,
+                    Arrays.toString(enumType.getEnumConstants())));
+            }
+
+            return constant;
+        }
+    }
+
+    /** Registered converters, keyed by target type and then by source type. */
+    private static final ConcurrentHashMap<Class<?>, ConcurrentHashMap<Class<?>, Converter<?, ?>>> converters =
+        new ConcurrentHashMap<>();
+
+    /**
+     * Resolved converters, keyed by target type and then by the actual source
+     * type. The whole map is replaced when the registrations change, so that a
+     * lookup that was resolved against the old registrations can only be
+     * cached in the discarded map.
+     */
+    private static volatile ConcurrentHashMap<Class<?>, ConcurrentHashMap<Class<?>, Object>> resolvedConverters =
+        new ConcurrentHashMap<>();
+
+    /** Marker for "no converter" in the resolved cache (which can't hold <tt>null</tt> values). */
+    private static final Object NO_CONVERTER = new Object();
+
+    private static final HashMap<Class<?>, Class<?>> PRIMITIVE_WRAPPERS = new HashMap<>();
+
+    private static final String ENUM_COERCION_EXCEPTION_MESSAGE =
+        "Unable to coerce %s (\"%s\") to %s.\nValid enum constants - %s";
+
+    static {
+        PRIMITIVE_WRAPPERS.put(Boolean.TYPE, Boolean.class);
+        PRIMITIVE_WRAPPERS.put(Character.TYPE, Character.class);
+        PRIMITIVE_WRAPPERS.put(Byte.TYPE, Byte.class);
+        PRIMITIVE_WRAPPERS.put(Short.TYPE, Short.class);
+        PRIMITIVE_WRAPPERS.put(Integer.TYPE, Integer.class);
+        PRIMITIVE_WRAPPERS.put(Long.TYPE, Long.class);
+        PRIMITIVE_WRAPPERS.put(Float.TYPE, Float.class);
+        PRIMITIVE_WRAPPERS.put(Double.TYPE, Double.class);
+
+        register(Object.class, String.class, value -> value.toString());
+        register(Object.class, Boolean.class, value -> Boolean.parseBoolean(value.toString()));
+        register(Object.class, Character.class, value -> value.toString().charAt(0));
+
+        register(Object.class, Byte.class, value -> Byte.parseByte(value.toString()));
+        register(Number.class, Byte.class, value -> value.byteValue());
+        register(Object.class, Short.class, value -> Short.parseShort(value.toString()));
+        register(Number.class, Short.class, value -> value.shortValue());
+        register(Object.class, Integer.class, value -> Integer.parseInt(value.toString()));
+        register(Number.class, Integer.class, value -> value.intValue());
+        register(Object.class, Long.class, value -> Long.parseLong(value.toString()));
+        register(Number.class, Long.class, value -> value.longValue());
+        register(Object.class, Float.class, value -> Float.parseFloat(value.toString()));
+        register(Number.class, Float.class, value -> value.floatValue());
+        register(Object.class, Double.class, value -> Double.parseDouble(value.toString()));
+        register(Number.class, Double.class, value -> value.doubleValue());
+        register(Object.class, BigInteger.class, value -> new BigInteger(value.toString()));
+        register(Object.class, BigDecimal.class, value -> new BigDecimal(value.toString()));
+
+        register(Object.class, CalendarDate.class, value -> CalendarDate.decode(value.toString()));
+        register(Object.class, Time.class, value -> Time.decode(value.toString()));
+    }
+
+    /**
+     * Private constructor for utility class.
+     */
+    private ConverterRegistry() {
+    }
+
+    /**
+     * Registers a converter for the given pair of types, replacing any
+     * converter previously registered for the same pair.
+     *
+     * @param <S> The source type.
+     * @param <T> The target type.
+     * @param sourceType The source type; the converter will also be used for
+     * subclasses and implementations of this type, unless a more specific
+     * converter is registered.
+     * @param targetType The target type; primitive types are registered
+     * under their wrapper types.
+     * @param converter The converter to use.
+     */
+    public static <S, T> void register(final Class<S> sourceType, final Class<T> targetType,
+        final Converter<? super S, ? extends T> converter) {
+        Utils.checkNull(sourceType, "sourceType");
+        Utils.checkNull(targetType, "targetType");
+        Utils.checkNull(converter, "converter");
+
+        synchronized (converters) {
+            ConcurrentHashMap<Class<?>, Converter<?, ?>> sourceConverters =
+                converters.computeIfAbsent(wrap(targetType), key -> new ConcurrentHashMap<>());
+            sourceConverters.put(sourceType, converter);
+
+            resolvedConverters = new ConcurrentHashMap<>();
+        }
+    }
+
+    /**
+     * Removes the converter registered for the given pair of types.
+     *
+     * @param sourceType The source type.
+     * @param targetType The target type.
+     * @return The converter that was removed, or <tt>null</tt> if there was
+     * none.
+     */
+    public static Converter<?, ?> unregister(final Class<?> sourceType, final Class<?> targetType) {
+        Utils.checkNull(sourceType, "sourceType");
+        Utils.checkNull(targetType, "targetType");
+
+        Converter<?, ?> converter = null;
+
+        synchronized (converters) {
+            ConcurrentHashMap<Class<?>, Converter<?, ?>> sourceConverters = converters.get(wrap(targetType));
+            if (sourceConverters != null) {
+                converter = sourceConverters.remove(sourceType);
+                resolvedConverters = new ConcurrentHashMap<>();
+            }
+        }
+
+        return converter;
+    }
+
+    /**
+     * Returns the converter to use for values of the given source type to the
+     * given target type. The result is cached for subsequent lookups.
+     *
+     * @param <T> The target type.
+     * @param sourceType The (actual) type of the value to convert.
+     * @param targetType The type to convert to.
+     * @return The converter, or <tt>null</tt> if no conversion is available.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Converter<Object, T> get(final Class<?> sourceType, final Class<T> targetType) {
+        Utils.checkNull(sourceType, "sourceType");
+        Utils.checkNull(targetType, "targetType");
+
+        // Read the cache before resolving, so a concurrent registration discards the result
+        ConcurrentHashMap<Class<?>, Object> resolved =
+            resolvedConverters.computeIfAbsent(targetType, key -> new ConcurrentHashMap<>());
+
+        Object converter = resolved.get(sourceType);
+        if (converter == null) {
+            converter = resolve(sourceType, wrap(targetType));
+            resolved.put(sourceType, (converter == null) ? NO_CONVERTER : converter);
+        }
+
+        return (converter == NO_CONVERTER) ? null : (Converter<Object, T>) converter;
+    }
+
+    /**
+     * Finds the most specific registered converter for the given types: the
+     * source class and its superclasses are checked first, followed by the
+     * interfaces they implement, and finally {@link Object}.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Converter<?, ?> resolve(final Class<?> sourceType, final Class<?> targetType) {
+        Converter<?, ?> converter = null;
+
+        ConcurrentHashMap<Class<?>, Converter<?, ?>> sourceConverters = converters.get(targetType);
+
+        if (sourceConverters != null) {
+            for (Class<?> type = sourceType; type != null && type != Object.class && converter == null;
+                type = type.getSuperclass()) {
+                converter = sourceConverters.get(type);
+            }
+
+            for (Class<?> type = sourceType; type != null && converter == null; type = type.getSuperclass()) {
+                converter = resolveInterface(sourceConverters, type.getInterfaces());
+            }
+
+            if (converter == null) {
+                converter = sourceConverters.get(Object.class);
+            }
+        }
+
+        if (converter == null && targetType.isEnum()) {
+            converter = new EnumConverter(targetType);
+        }
+
+        return converter;
+    }
+
+    private static Converter<?, ?> resolveInterface(
+        final ConcurrentHashMap<Class<?>, Converter<?, ?>> sourceConverters, final Class<?>[] interfaces) {
+        Converter<?, ?> converter = null;
+
+        for (int i = 0, n = interfaces.length; i < n && converter == null; i++) {
+            converter = sourceConverters.get(interfaces[i]);
+        }
+
+        for (int i = 0, n = interfaces.length; i < n && converter == null; i++) {
+            converter = resolveInterface(sourceConverters, interfaces[i].getInterfaces());
+        }
+
+        return converter;
+    }
+
+    private static Class<?> wrap(final Class<?> type) {
+        Class<?> wrapperType = PRIMITIVE_WRAPPERS.get(type);
+        return (wrapperType == null) ? type : wrapperType;
+    }
+}
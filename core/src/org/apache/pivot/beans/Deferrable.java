@@ -0,0 +1,35 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.beans;
+
+/**
+ * Interface representing an object whose content can be deferred. When an
+ * element of such an object is marked with <tt>bxml:lazy="true"</tt>,
+ * {@link BXMLSerializer} creates the object and applies its attributes as
+ * usual, but records the element's content instead of reading it, and hands
+ * the recorded content to the object. The object is responsible for loading
+ * the content when it is first needed.
+ */
+public interface Deferrable {
+    /**
+     * Sets the content of this object that has not been loaded yet.
+     *
+     * @param deferredContent The deferred content, or <tt>null</tt> if the
+     * object has no deferred content (or it has been loaded).
+     */
+    public void setDeferredContent(DeferredContent deferredContent);
+}
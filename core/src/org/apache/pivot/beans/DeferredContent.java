@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.beans;
+
+import java.io.IOException;
+import java.net.URL;
+
+import org.apache.pivot.collections.Map;
+import org.apache.pivot.serialization.SerializationException;
+import org.apache.pivot.util.Resources;
+
+/**
+ * The recorded content of an element marked with <tt>bxml:lazy="true"</tt>.
+ * <p> Loading the content reads the recorded elements as if they had been read
+ * along with the rest of the document: child elements are added to the owner,
+ * property elements set its properties, and IDs are added to the namespace of
+ * the document (so they are only defined once the content has been loaded).
+ * The content is read with the location, resources and script language of the
+ * document.
+ *
+ * @see Deferrable
+ */
+public final class DeferredContent {
+    private final BXMLSerializer serializer;
+    private final BXMLTemplate template;
+    private final Object owner;
+    private final Map<String, Object> namespace;
+    private final URL location;
+    private final Resources resources;
+    private final String language;
+
+    private boolean loaded = false;
+
+    DeferredContent(final BXMLSerializer serializer, final BXMLTemplate template, final Object owner,
+        final Map<String, Object> namespace, final URL location, final Resources resources,
+        final String language) {
+        this.serializer = serializer;
+        this.template = template;
+        this.owner = owner;
+        this.namespace = namespace;
+        this.location = location;
+        this.resources = resources;
+        this.language = language;
+    }
+
+    /**
+     * @return The object the content belongs to.
+     */
+    public Object getOwner() {
+        return owner;
+    }
+
+    /**
+     * @return Whether the content has been loaded.
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Loads the content into its owner. This method does nothing if the
+     * content has already been loaded (or has failed to load).
+     *
+     * @throws IOException for any error reading an include of the content.
+     * @throws SerializationException for any other errors encountered
+     * deserializing the content.
+     */
+    public void load() throws IOException, SerializationException {
+        if (!loaded) {
+            loaded = true;
+
+            BXMLSerializer contentSerializer = serializer.newContentSerializer();
+            contentSerializer.setNamespace(namespace);
+            contentSerializer.setLocation(location);
+            contentSerializer.setResources(resources);
+            contentSerializer.readDeferredContent(template, owner, language);
+        }
+    }
+}
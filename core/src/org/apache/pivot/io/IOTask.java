@@ -16,9 +16,12 @@
  */
 package org.apache.pivot.io;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -41,6 +44,7 @@ public abstract class IOTask<V> extends Task<V> {
 
         public MonitoredInputStream(InputStream inputStream) {
             this.inputStream = inputStream;
+            addCloseable(this);
         }
 
         @Override
@@ -110,6 +114,7 @@ public abstract class IOTask<V> extends Task<V> {
 
         @Override
         public void close() throws IOException {
+            removeCloseable(this);
             inputStream.close();
         }
 
@@ -149,10 +154,12 @@ public abstract class IOTask<V> extends Task<V> {
 
         public MonitoredOutputStream(OutputStream outputStream) {
             this.outputStream = outputStream;
+            addCloseable(this);
         }
 
         @Override
         public void close() throws IOException {
+            removeCloseable(this);
             outputStream.close();
         }
 
@@ -199,6 +206,8 @@ public abstract class IOTask<V> extends Task<V> {
     protected AtomicLong bytesSent = new AtomicLong();
     protected AtomicLong bytesReceived = new AtomicLong();
 
+    private final Set<Closeable> closeables = ConcurrentHashMap.newKeySet();
+
     public IOTask() {
         super();
     }
@@ -206,4 +215,52 @@ public abstract class IOTask<V> extends Task<V> {
     public IOTask(ExecutorService executorService) {
         super(executorService);
     }
+
+    /**
+     * Registers a resource that is closed if the task is aborted (including
+     * when it times out), so that a thread blocked on the resource is
+     * released. Monitored streams register themselves until they are closed.
+     *
+     * @param closeable The resource, such as a stream or a connection.
+     */
+    protected void addCloseable(Closeable closeable) {
+        closeables.add(closeable);
+
+        if (abort) {
+            closeQuietly(closeable);
+        }
+    }
+
+    /**
+     * Unregisters a resource that was registered with
+     * {@link #addCloseable(Closeable)}.
+     *
+     * @param closeable The resource.
+     */
+    protected void removeCloseable(Closeable closeable) {
+        closeables.remove(closeable);
+    }
+
+    /**
+     * Sets the abort flag and closes the task's registered resources, which
+     * makes blocked reads and writes fail.
+     */
+    @Override
+    public void abort() {
+        super.abort();
+
+        for (Closeable closeable : closeables) {
+            closeQuietly(closeable);
+        }
+    }
+
+    private void closeQuietly(Closeable closeable) {
+        closeables.remove(closeable);
+
+        try {
+            closeable.close();
+        } catch (IOException | RuntimeException exception) {
+            // No-op; the task fails when it next uses the resource
+        }
+    }
 }
@@ -0,0 +1,253 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.json;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.HashMap;
+import org.apache.pivot.collections.List;
+import org.apache.pivot.collections.Map;
+import org.apache.pivot.serialization.SerializationException;
+import org.apache.pivot.serialization.Serializer;
+import org.apache.pivot.util.Utils;
+
+/**
+ * Implementation of the {@link Serializer} interface that reads and writes a
+ * compact binary encoding of the JSON data model. Values are read back as the
+ * same types produced by {@link JSONSerializer} (<tt>HashMap</tt>,
+ * <tt>ArrayList</tt>, <tt>String</tt>, <tt>Boolean</tt>, <tt>Integer</tt>,
+ * <tt>Long</tt> and <tt>Double</tt>), and <tt>BigInteger</tt> and
+ * <tt>BigDecimal</tt> values are kept exactly, so a document that has been
+ * precompiled with this serializer can be loaded without tokenizing any text.
+ */
+public class BinaryJSONSerializer implements Serializer<Object> {
+    public static final String MIME_TYPE = "application/x-pivot-jsonb";
+    public static final String JSONB_EXTENSION = "jsonb";
+
+    /** Leading bytes of every encoded stream ("PJSB"). */
+    public static final int MAGIC = 0x504A5342;
+    public static final int VERSION = 2;
+
+    private static final int NULL = 0;
+    private static final int FALSE = 1;
+    private static final int TRUE = 2;
+    private static final int INTEGER = 3;
+    private static final int LONG = 4;
+    private static final int DOUBLE = 5;
+    private static final int STRING = 6;
+    private static final int MAP = 7;
+    private static final int LIST = 8;
+    private static final int BIG_INTEGER = 9;
+    private static final int BIG_DECIMAL = 10;
+
+    /**
+     * Reads an object from a binary JSON stream.
+     *
+     * @param inputStream The input stream from which data will be read.
+     * @return The object that was read.
+     * @throws SerializationException If the stream is not a binary JSON
+     * stream or was written by an incompatible version of this serializer.
+     */
+    @Override
+    public Object readObject(final InputStream inputStream) throws IOException, SerializationException {
+        Utils.checkNull(inputStream, "inputStream");
+
+        DataInputStream dataInputStream = new DataInputStream(new BufferedInputStream(inputStream));
+
+        if (dataInputStream.readInt() != MAGIC) {
+            throw new SerializationException("Input is not a binary JSON stream.");
+        }
+
+        int version = dataInputStream.readUnsignedByte();
+        // Version 2 only adds value types
+        if (version < 1 || version > VERSION) {
+            throw new SerializationException("Unsupported binary JSON version " + version + ".");
+        }
+
+        return readValue(dataInputStream);
+    }
+
+    private Object readValue(final DataInputStream dataInputStream) throws IOException, SerializationException {
+        Object value;
+
+        int type = dataInputStream.readUnsignedByte();
+        switch (type) {
+            case NULL:
+                value = null;
+                break;
+
+            case FALSE:
+                value = Boolean.FALSE;
+                break;
+
+            case TRUE:
+                value = Boolean.TRUE;
+                break;
+
+            case INTEGER:
+                value = Integer.valueOf(dataInputStream.readInt());
+                break;
+
+            case LONG:
+                value = Long.valueOf(dataInputStream.readLong());
+                break;
+
+            case DOUBLE:
+                value = Double.valueOf(dataInputStream.readDouble());
+                break;
+
+            case STRING:
+                value = readString(dataInputStream);
+                break;
+
+            case BIG_INTEGER:
+                value = new BigInteger(readString(dataInputStream));
+                break;
+
+            case BIG_DECIMAL:
+                value = new BigDecimal(readString(dataInputStream));
+                break;
+
+            case MAP: {
+                int count = dataInputStream.readInt();
+                HashMap<String, Object> map = new HashMap<>(Math.max((int) (count / HashMap.DEFAULT_LOAD_FACTOR) + 1,
+                    HashMap.DEFAULT_CAPACITY));
+                for (int i = 0; i < count; i++) {
+                    String key = readString(dataInputStream);
+                    map.put(key, readValue(dataInputStream));
+                }
+
+                value = map;
+                break;
+            }
+
+            case LIST: {
+                int count = dataInputStream.readInt();
+                ArrayList<Object> list = new ArrayList<>(Math.max(count, ArrayList.DEFAULT_CAPACITY));
+                for (int i = 0; i < count; i++) {
+                    list.add(readValue(dataInputStream));
+                }
+
+                value = list;
+                break;
+            }
+
+            default:
+                throw new SerializationException("Unknown binary JSON value type " + type + ".");
+        }
+
+        return value;
+    }
+
+    private static String readString(final DataInputStream dataInputStream) throws IOException {
+        byte[] bytes = new byte[dataInputStream.readInt()];
+        dataInputStream.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes an object to a binary JSON stream. The object graph may contain
+     * maps with string keys, lists, strings, booleans, <tt>null</tt>, and
+     * numbers of the primitive wrapper types, <tt>BigInteger</tt> or
+     * <tt>BigDecimal</tt>; other numbers are rejected rather than converted
+     * with a loss of precision.
+     *
+     * @param object The object to write.
+     * @param outputStream The output stream to which data will be written.
+     * @throws SerializationException If the graph contains a value that
+     * cannot be represented in JSON.
+     */
+    @Override
+    public void writeObject(final Object object, final OutputStream outputStream) throws IOException,
+        SerializationException {
+        Utils.checkNull(outputStream, "outputStream");
+
+        DataOutputStream dataOutputStream = new DataOutputStream(new BufferedOutputStream(outputStream));
+        dataOutputStream.writeInt(MAGIC);
+        dataOutputStream.writeByte(VERSION);
+        writeValue(object, dataOutputStream);
+        dataOutputStream.flush();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeValue(final Object value, final DataOutputStream dataOutputStream) throws IOException,
+        SerializationException {
+        if (value == null) {
+            dataOutputStream.writeByte(NULL);
+        } else if (value instanceof Boolean) {
+            dataOutputStream.writeByte(((Boolean) value).booleanValue() ? TRUE : FALSE);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            dataOutputStream.writeByte(INTEGER);
+            dataOutputStream.writeInt(((Number) value).intValue());
+        } else if (value instanceof Long) {
+            dataOutputStream.writeByte(LONG);
+            dataOutputStream.writeLong(((Long) value).longValue());
+        } else if (value instanceof Double || value instanceof Float) {
+            dataOutputStream.writeByte(DOUBLE);
+            dataOutputStream.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof BigInteger) {
+            dataOutputStream.writeByte(BIG_INTEGER);
+            writeString(value.toString(), dataOutputStream);
+        } else if (value instanceof BigDecimal) {
+            dataOutputStream.writeByte(BIG_DECIMAL);
+            writeString(value.toString(), dataOutputStream);
+        } else if (value instanceof String || value instanceof Character) {
+            dataOutputStream.writeByte(STRING);
+            writeString(value.toString(), dataOutputStream);
+        } else if (value instanceof Map<?, ?>) {
+            Map<String, Object> map = (Map<String, Object>) value;
+            dataOutputStream.writeByte(MAP);
+            dataOutputStream.writeInt(map.getCount());
+            for (String key : map) {
+                writeString(key, dataOutputStream);
+                writeValue(map.get(key), dataOutputStream);
+            }
+        } else if (value instanceof List<?>) {
+            List<Object> list = (List<Object>) value;
+            dataOutputStream.writeByte(LIST);
+            dataOutputStream.writeInt(list.getLength());
+            for (Object item : list) {
+                writeValue(item, dataOutputStream);
+            }
+        } else {
+            throw new SerializationException(value.getClass().getName()
+                + " cannot be written as binary JSON.");
+        }
+    }
+
+    private static void writeString(final String string, final DataOutputStream dataOutputStream)
+        throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        dataOutputStream.writeInt(bytes.length);
+        dataOutputStream.write(bytes);
+    }
+
+    @Override
+    public String getMIMEType(final Object object) {
+        return MIME_TYPE;
+    }
+}
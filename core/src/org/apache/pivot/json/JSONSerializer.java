@@ -573,7 +573,14 @@ public class JSONSerializer implements Serializer<Object> {
         skipWhitespaceAndComments(reader);
 
         while (c != -1 && c != ']') {
-            sequence.add(readValue(reader, itemType, key));
+            Object item = readValue(reader, itemType, key);
+            sequence.add(item);
+
+            // Notify the listeners
+            if (jsonSerializerListeners != null) {
+                jsonSerializerListeners.readItem(this, sequence, item);
+            }
+
             skipWhitespaceAndComments(reader);
 
             if (c == ',') {
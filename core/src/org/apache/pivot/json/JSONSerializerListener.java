@@ -54,6 +54,11 @@ public interface JSONSerializerListener {
             forEach(listener -> listener.endSequence(jsonSerializer));
         }
 
+        @Override
+        public void readItem(JSONSerializer jsonSerializer, Sequence<?> sequence, Object item) {
+            forEach(listener -> listener.readItem(jsonSerializer, sequence, item));
+        }
+
         @Override
         public void readString(JSONSerializer jsonSerializer, String value) {
             forEach(listener -> listener.readString(jsonSerializer, value));
@@ -170,6 +175,17 @@ public interface JSONSerializerListener {
     default void endSequence(JSONSerializer jsonSerializer) {
     }
 
+    /**
+     * Called when the serializer has read a complete sequence item and added
+     * it to its sequence.
+     *
+     * @param jsonSerializer The current serializer.
+     * @param sequence The sequence the item was added to.
+     * @param item The item just read.
+     */
+    default void readItem(JSONSerializer jsonSerializer, Sequence<?> sequence, Object item) {
+    }
+
     /**
      * Called when the serializer has read a string value.
      *
@@ -56,5 +56,19 @@ public final class Constants {
     public static final String CONTENT_LENGTH_HEADER = "Content-Length";
     /** Standard name of the HTTP header for the location. */
     public static final String LOCATION_HEADER = "Location";
+    /** Standard name of the HTTP header for the content encoding. */
+    public static final String CONTENT_ENCODING_HEADER = "Content-Encoding";
+    /** Standard name of the HTTP header for the accepted content encodings. */
+    public static final String ACCEPT_ENCODING_HEADER = "Accept-Encoding";
+    /** Standard name of the HTTP header listing the request headers a response varies by. */
+    public static final String VARY_HEADER = "Vary";
+    /** Standard name of the HTTP header for the entity tag of a response. */
+    public static final String ETAG_HEADER = "ETag";
+    /** Standard name of the HTTP header for the modification date of a response. */
+    public static final String LAST_MODIFIED_HEADER = "Last-Modified";
+    /** Standard name of the HTTP header for the entity tags a client already has. */
+    public static final String IF_NONE_MATCH_HEADER = "If-None-Match";
+    /** Standard name of the HTTP header for the modification date of the response a client already has. */
+    public static final String IF_MODIFIED_SINCE_HEADER = "If-Modified-Since";
 
 }
@@ -16,39 +16,167 @@
  */
 package org.apache.pivot.util;
 
-import org.apache.pivot.collections.HashMap;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.pivot.util.concurrent.Task;
 
 /**
- * Provides support for basic intra-application message passing.
+ * Provides support for basic intra-application message passing. <p> A message
+ * is delivered to the listeners of its class and to the listeners of each of
+ * its superclasses and interfaces, so a listener subscribed to
+ * <tt>Object.class</tt> sees every message. <p> The bus is safe to use from
+ * any thread. Subscriptions are copy-on-write, so sending never takes a lock.
+ * A listener may be subscribed with an {@link Executor} that its messages are
+ * delivered on, e.g. <tt>ApplicationContext::queueCallback</tt> to receive them
+ * on the UI thread, and may ask for high-rate messages to be coalesced so that
+ * it only sees the latest one.
  */
 public final class MessageBus {
     /**
-     * Private constructor for utility class.
+     * A listener and how messages are to be delivered to it.
      */
-    private MessageBus() {
+    private static final class Subscription {
+        private final MessageBusListener<Object> listener;
+        private final Executor executor;
+        private final AtomicReference<Object> pendingMessage;
+
+        @SuppressWarnings("unchecked")
+        public Subscription(final MessageBusListener<?> listener, final Executor executor, final boolean coalesce) {
+            this.listener = (MessageBusListener<Object>) listener;
+            this.executor = executor;
+            this.pendingMessage = coalesce ? new AtomicReference<>() : null;
+        }
+
+        public void deliver(final Object message, final boolean async) {
+            Executor executorLocal = (executor == null && async) ? Task.DEFAULT_EXECUTOR_SERVICE : executor;
+
+            if (executorLocal == null) {
+                listener.messageSent(message);
+            } else if (pendingMessage == null) {
+                executorLocal.execute(() -> listener.messageSent(message));
+            } else if (pendingMessage.getAndSet(message) == null) {
+                // Only schedule a delivery if one is not already pending; it
+                // will pick up the latest message when it runs
+                executorLocal.execute(this::deliverPendingMessage);
+            }
+        }
+
+        private void deliverPendingMessage() {
+            Object message = pendingMessage.getAndSet(null);
+
+            if (message != null) {
+                listener.messageSent(message);
+            }
+        }
     }
 
+    private static final Subscription[] EMPTY_SUBSCRIPTIONS = new Subscription[0];
+
     /** The master list of topics and their listeners. */
-    private static HashMap<Class<?>, ListenerList<MessageBusListener<?>>> messageTopics = new HashMap<>();
+    private static final ConcurrentHashMap<Class<?>, Subscription[]> messageTopics = new ConcurrentHashMap<>();
+
+    /** The topics that a message of a given class is delivered to. */
+    private static final ClassValue<Class<?>[]> topicHierarchy = new ClassValue<Class<?>[]>() {
+        @Override
+        protected Class<?>[] computeValue(final Class<?> type) {
+            LinkedHashSet<Class<?>> topics = new LinkedHashSet<>();
+
+            // Classes first, from the most specific, followed by interfaces
+            for (Class<?> topic = type; topic != null; topic = topic.getSuperclass()) {
+                topics.add(topic);
+            }
+
+            for (Class<?> topic = type; topic != null; topic = topic.getSuperclass()) {
+                addInterfaces(topic, topics);
+            }
+
+            return topics.toArray(new Class<?>[topics.size()]);
+        }
+
+        private void addInterfaces(final Class<?> type, final LinkedHashSet<Class<?>> topics) {
+            for (Class<?> topic : type.getInterfaces()) {
+                if (topics.add(topic)) {
+                    addInterfaces(topic, topics);
+                }
+            }
+        }
+    };
+
+    /**
+     * Private constructor for utility class.
+     */
+    private MessageBus() {
+    }
 
     /**
-     * Subscribes a listener to a message topic.
+     * Subscribes a listener to a message topic. Messages are delivered on the
+     * sending thread by {@link #sendMessage(Object)}.
      *
      * @param <T> The type of the topic.
      * @param topic The topic class to subscribe to.
      * @param messageListener The listener we want to attach.
      */
     public static <T> void subscribe(final Class<? super T> topic, final MessageBusListener<T> messageListener) {
-        ListenerList<MessageBusListener<?>> topicListeners = messageTopics.get(topic);
+        subscribe(topic, messageListener, null, false);
+    }
 
-        if (topicListeners == null) {
-            topicListeners = new ListenerList<MessageBusListener<?>>() {
-                // empty block
-            };
-            messageTopics.put(topic, topicListeners);
-        }
+    /**
+     * Subscribes a listener to a message topic, delivering its messages on the
+     * given executor.
+     *
+     * @param <T> The type of the topic.
+     * @param topic The topic class to subscribe to.
+     * @param messageListener The listener we want to attach.
+     * @param executor The executor that messages are delivered on, or
+     * <tt>null</tt> to deliver them on the sending thread.
+     */
+    public static <T> void subscribe(final Class<? super T> topic, final MessageBusListener<T> messageListener,
+        final Executor executor) {
+        subscribe(topic, messageListener, executor, false);
+    }
+
+    /**
+     * Subscribes a listener to a message topic, delivering its messages on the
+     * given executor and optionally coalescing them. <p> When coalescing, a
+     * message that arrives while a previous one is still waiting to be
+     * delivered replaces it, so a slow listener only ever sees the latest
+     * message and never holds up the sender. Coalesced messages are always
+     * delivered asynchronously, on the default task executor if no executor is
+     * given.
+     *
+     * @param <T> The type of the topic.
+     * @param topic The topic class to subscribe to.
+     * @param messageListener The listener we want to attach.
+     * @param executor The executor that messages are delivered on, or
+     * <tt>null</tt> for the default.
+     * @param coalesce Whether pending messages are replaced by newer ones.
+     */
+    public static <T> void subscribe(final Class<? super T> topic, final MessageBusListener<T> messageListener,
+        final Executor executor, final boolean coalesce) {
+        Utils.checkNull(topic, "topic");
+        Utils.checkNull(messageListener, "messageListener");
+
+        Executor executorLocal = (executor == null && coalesce) ? Task.DEFAULT_EXECUTOR_SERVICE : executor;
+        Subscription subscription = new Subscription(messageListener, executorLocal, coalesce);
 
-        topicListeners.add(messageListener);
+        messageTopics.compute(topic, (key, subscriptions) -> {
+            if (subscriptions == null) {
+                return new Subscription[] {subscription};
+            }
+
+            if (indexOf(subscriptions, messageListener) >= 0) {
+                return subscriptions;
+            }
+
+            Subscription[] updatedSubscriptions = Arrays.copyOf(subscriptions, subscriptions.length + 1);
+            updatedSubscriptions[subscriptions.length] = subscription;
+
+            return updatedSubscriptions;
+        });
     }
 
     /**
@@ -60,32 +188,74 @@ public final class MessageBus {
      * @throws IllegalArgumentException if there are no listeners subscribed.
      */
     public static <T> void unsubscribe(final Class<? super T> topic, final MessageBusListener<T> messageListener) {
-        ListenerList<MessageBusListener<?>> topicListeners = messageTopics.get(topic);
+        Utils.checkNull(topic, "topic");
 
-        if (topicListeners == null) {
+        if (!messageTopics.containsKey(topic)) {
             throw new IllegalArgumentException(topic.getName() + " does not exist.");
         }
 
-        topicListeners.remove(messageListener);
-        if (topicListeners.isEmpty()) {
-            messageTopics.remove(topic);
+        messageTopics.computeIfPresent(topic, (key, subscriptions) -> {
+            int index = indexOf(subscriptions, messageListener);
+
+            if (index < 0) {
+                return subscriptions;
+            }
+
+            if (subscriptions.length == 1) {
+                return null;
+            }
+
+            Subscription[] updatedSubscriptions = new Subscription[subscriptions.length - 1];
+            System.arraycopy(subscriptions, 0, updatedSubscriptions, 0, index);
+            System.arraycopy(subscriptions, index + 1, updatedSubscriptions, index,
+                subscriptions.length - index - 1);
+
+            return updatedSubscriptions;
+        });
+    }
+
+    private static int indexOf(final Subscription[] subscriptions, final MessageBusListener<?> messageListener) {
+        for (int i = 0; i < subscriptions.length; i++) {
+            if (subscriptions[i].listener == messageListener) {
+                return i;
+            }
         }
+
+        return -1;
     }
 
     /**
-     * Sends a message to subscribed topic listeners.
+     * Sends a message to subscribed topic listeners. Listeners that were
+     * subscribed without an executor are called before this method returns;
+     * the others are handed the message on their executors.
      *
      * @param <T> The type of the topic.
      * @param message The message to send to all subscribed listeners.
      */
-    @SuppressWarnings("unchecked")
     public static <T> void sendMessage(final T message) {
-        Class<?> topic = message.getClass();
-        ListenerList<MessageBusListener<?>> topicListeners = messageTopics.get(topic);
+        sendMessage(message, false);
+    }
+
+    /**
+     * Sends a message to subscribed topic listeners without waiting for any of
+     * them. Listeners that were subscribed without an executor are called on
+     * the default task executor.
+     *
+     * @param <T> The type of the topic.
+     * @param message The message to send to all subscribed listeners.
+     */
+    public static <T> void sendMessageAsync(final T message) {
+        sendMessage(message, true);
+    }
+
+    private static void sendMessage(final Object message, final boolean async) {
+        Utils.checkNull(message, "message");
+
+        for (Class<?> topic : topicHierarchy.get(message.getClass())) {
+            Subscription[] subscriptions = messageTopics.getOrDefault(topic, EMPTY_SUBSCRIPTIONS);
 
-        if (topicListeners != null) {
-            for (MessageBusListener<?> listener : topicListeners) {
-                ((MessageBusListener<T>) listener).messageSent(message);
+            for (Subscription subscription : subscriptions) {
+                subscription.deliver(message, async);
             }
         }
     }
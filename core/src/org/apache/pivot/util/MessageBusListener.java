@@ -22,7 +22,8 @@ package org.apache.pivot.util;
 public interface MessageBusListener<T> {
     /**
      * Called when a message has been sent via
-     * {@link MessageBus#sendMessage(Object)}.
+     * {@link MessageBus#sendMessage(Object)} or
+     * {@link MessageBus#sendMessageAsync(Object)}.
      *
      * @param message The message that was just sent.
      */
@@ -16,22 +16,33 @@
  */
 package org.apache.pivot.util;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.Iterator;
 import java.util.Locale;
 import java.util.MissingResourceException;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.pivot.annotations.UnsupportedOperation;
 import org.apache.pivot.collections.Dictionary;
 import org.apache.pivot.collections.Map;
+import org.apache.pivot.json.BinaryJSONSerializer;
 import org.apache.pivot.json.JSONSerializer;
 import org.apache.pivot.serialization.SerializationException;
+import org.apache.pivot.serialization.Serializer;
 
 /**
  * Represents a set of localizable resources.
+ * <p> The merged contents of a bundle are read once per base name, locale,
+ * character set and class loader, and are then shared by every
+ * <tt>Resources</tt> instance created for the same bundle. Values obtained
+ * from a bundle must therefore be treated as read-only.
  */
 public class Resources implements Dictionary<String, Object>, Iterable<String> {
     private final Resources parent;
@@ -43,6 +54,10 @@ public class Resources implements Dictionary<String, Object>, Iterable<String> {
 
     public static final Charset DEFAULT_CHARSET = StandardCharsets.UTF_8;
 
+    private static volatile boolean cacheEnabled = true;
+    private static final WeakHashMap<ClassLoader, ConcurrentHashMap<String, Map<String, Object>>> bundleCache =
+        new WeakHashMap<>();
+
     private static final String ERROR_MSG = "Resources are immutable.";
 
     public Resources(final String baseName) throws IOException, SerializationException {
@@ -98,30 +113,7 @@ public class Resources implements Dictionary<String, Object>, Iterable<String> {
         this.locale = locale;
         this.charset = charset;
 
-        String resourceName = baseName.replace('.', '/');
-        this.resourceMap = readJSONResource(resourceName + "." + JSONSerializer.JSON_EXTENSION);
-
-        // Try to find resource for the language (e.g. resourceName_en)
-        Map<String, Object> overrideMap = readJSONResource(resourceName + "_"
-            + locale.getLanguage() + "." + JSONSerializer.JSON_EXTENSION);
-        if (overrideMap != null) {
-            if (this.resourceMap == null) {
-                this.resourceMap = overrideMap;
-            } else {
-                applyOverrides(this.resourceMap, overrideMap);
-            }
-        }
-
-        // Try to find resource for the entire locale (e.g. resourceName_en_GB)
-        overrideMap = readJSONResource(resourceName + "_" + locale.toString() + "."
-            + JSONSerializer.JSON_EXTENSION);
-        if (overrideMap != null) {
-            if (this.resourceMap == null) {
-                this.resourceMap = overrideMap;
-            } else {
-                applyOverrides(this.resourceMap, overrideMap);
-            }
-        }
+        this.resourceMap = getBundle(baseName.replace('.', '/'), locale, charset);
 
         if (this.resourceMap == null) {
             throw new MissingResourceException("Can't find resource for base name " + baseName
@@ -194,8 +186,101 @@ public class Resources implements Dictionary<String, Object>, Iterable<String> {
         return new ImmutableIterator<>(this.resourceMap.iterator());
     }
 
+    /**
+     * Enables or disables the shared bundle cache. When the cache is disabled,
+     * each new instance reads its resource files again.
+     *
+     * @param enabled Whether bundles should be cached.
+     */
+    public static void setCacheEnabled(final boolean enabled) {
+        cacheEnabled = enabled;
+
+        if (!enabled) {
+            clearCache();
+        }
+    }
+
+    public static boolean isCacheEnabled() {
+        return cacheEnabled;
+    }
+
+    /**
+     * Discards all cached bundles, so that resource files are read again the
+     * next time they are requested.
+     */
+    public static void clearCache() {
+        synchronized (bundleCache) {
+            bundleCache.clear();
+        }
+    }
+
+    /**
+     * Returns the merged resource map for a bundle, reading it on first
+     * request. Bundles are cached per context class loader, so that different
+     * applications in the same VM never see each other's resources.
+     */
+    private static Map<String, Object> getBundle(final String resourceName, final Locale locale,
+        final Charset charset) throws IOException, SerializationException {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+
+        if (!cacheEnabled) {
+            return readBundle(classLoader, resourceName, locale, charset);
+        }
+
+        ConcurrentHashMap<String, Map<String, Object>> bundles;
+        synchronized (bundleCache) {
+            bundles = bundleCache.get(classLoader);
+            if (bundles == null) {
+                bundles = new ConcurrentHashMap<>();
+                bundleCache.put(classLoader, bundles);
+            }
+        }
+
+        String key = resourceName + "|" + locale + "|" + charset.name();
+        Map<String, Object> bundle = bundles.get(key);
+        if (bundle == null) {
+            bundle = readBundle(classLoader, resourceName, locale, charset);
+            if (bundle != null) {
+                Map<String, Object> previousBundle = bundles.putIfAbsent(key, bundle);
+                if (previousBundle != null) {
+                    bundle = previousBundle;
+                }
+            }
+        }
+
+        return bundle;
+    }
+
+    private static Map<String, Object> readBundle(final ClassLoader classLoader, final String resourceName,
+        final Locale locale, final Charset charset) throws IOException, SerializationException {
+        Map<String, Object> bundle = readResource(classLoader, resourceName, charset);
+
+        // Try to find resource for the language (e.g. resourceName_en)
+        Map<String, Object> overrideMap = readResource(classLoader, resourceName + "_"
+            + locale.getLanguage(), charset);
+        if (overrideMap != null) {
+            if (bundle == null) {
+                bundle = overrideMap;
+            } else {
+                applyOverrides(bundle, overrideMap);
+            }
+        }
+
+        // Try to find resource for the entire locale (e.g. resourceName_en_GB)
+        overrideMap = readResource(classLoader, resourceName + "_" + locale.toString(), charset);
+        if (overrideMap != null) {
+            if (bundle == null) {
+                bundle = overrideMap;
+            } else {
+                applyOverrides(bundle, overrideMap);
+            }
+        }
+
+        return bundle;
+    }
+
     @SuppressWarnings("unchecked")
-    private void applyOverrides(final Map<String, Object> sourceMap, final Map<String, Object> overridesMap) {
+    private static void applyOverrides(final Map<String, Object> sourceMap, final Map<String, Object> overridesMap) {
         for (String key : overridesMap) {
             if (sourceMap.containsKey(key)) {
                 Object source = sourceMap.get(key);
@@ -210,17 +295,38 @@ public class Resources implements Dictionary<String, Object>, Iterable<String> {
         }
     }
 
+    /**
+     * Reads a single resource file. A precompiled <tt>.jsonb</tt> file (see
+     * {@link ResourcesCompiler}) is preferred over the <tt>.json</tt> source
+     * when the bundle is read with the default character set, which is the
+     * one precompiled files are produced from, unless both are files and the
+     * source has been modified since the precompiled file was written.
+     */
     @SuppressWarnings("unchecked")
-    private Map<String, Object> readJSONResource(final String name) throws IOException,
-        SerializationException {
+    private static Map<String, Object> readResource(final ClassLoader classLoader, final String name,
+        final Charset charset) throws IOException, SerializationException {
         Map<String, Object> resourceMapFromResource = null;
 
-        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
-        InputStream inputStream = classLoader.getResourceAsStream(name);
+        InputStream inputStream = null;
+        Serializer<Object> serializer = null;
 
-        if (inputStream != null) {
-            JSONSerializer serializer = new JSONSerializer(this.charset);
+        if (charset.equals(DEFAULT_CHARSET)) {
+            URL binaryLocation = classLoader.getResource(name + "." + BinaryJSONSerializer.JSONB_EXTENSION);
+            if (binaryLocation != null
+                && !isNewer(classLoader.getResource(name + "." + JSONSerializer.JSON_EXTENSION), binaryLocation)) {
+                inputStream = binaryLocation.openStream();
+                serializer = new BinaryJSONSerializer();
+            }
+        }
+
+        if (inputStream == null) {
+            inputStream = classLoader.getResourceAsStream(name + "." + JSONSerializer.JSON_EXTENSION);
+            if (inputStream != null) {
+                serializer = new JSONSerializer(charset);
+            }
+        }
 
+        if (inputStream != null) {
             try {
                 resourceMapFromResource = (Map<String, Object>) serializer.readObject(inputStream);
             } finally {
@@ -230,4 +336,21 @@ public class Resources implements Dictionary<String, Object>, Iterable<String> {
 
         return resourceMapFromResource;
     }
+
+    /**
+     * Tells whether a resource file is newer than another. Only files can be
+     * compared; resources in archives are assumed to have been built together.
+     */
+    private static boolean isNewer(final URL location, final URL otherLocation) {
+        if (location == null || !"file".equals(location.getProtocol())
+            || !"file".equals(otherLocation.getProtocol())) {
+            return false;
+        }
+
+        try {
+            return new File(location.toURI()).lastModified() > new File(otherLocation.toURI()).lastModified();
+        } catch (URISyntaxException | IllegalArgumentException exception) {
+            return false;
+        }
+    }
 }
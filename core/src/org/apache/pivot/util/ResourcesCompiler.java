@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.json.BinaryJSONSerializer;
+import org.apache.pivot.json.JSONSerializer;
+import org.apache.pivot.serialization.SerializationException;
+
+/**
+ * Precompiles JSON resource files into the binary form read by
+ * {@link Resources}. <p> Each <tt>name.json</tt> file is parsed with the
+ * default resource character set and written as <tt>name.jsonb</tt> using
+ * {@link BinaryJSONSerializer}; when the binary file is on the class path next
+ * to its source, bundles are loaded from it without parsing any JSON text.
+ */
+public final class ResourcesCompiler {
+    private ResourcesCompiler() {
+    }
+
+    /**
+     * Precompiles a single JSON document.
+     *
+     * @param inputStream The JSON source.
+     * @param outputStream The stream to which the binary form is written.
+     * @throws IOException If the source cannot be read or the output written.
+     * @throws SerializationException If the source is not valid JSON.
+     */
+    public static void compile(final InputStream inputStream, final OutputStream outputStream)
+        throws IOException, SerializationException {
+        JSONSerializer jsonSerializer = new JSONSerializer(Resources.DEFAULT_CHARSET);
+        Object value = jsonSerializer.readObject(inputStream);
+
+        BinaryJSONSerializer binarySerializer = new BinaryJSONSerializer();
+        binarySerializer.writeObject(value, outputStream);
+    }
+
+    /**
+     * Returns the name of the precompiled file for a JSON resource name.
+     *
+     * @param resourceName The name of a <tt>.json</tt> resource.
+     * @return The corresponding <tt>.jsonb</tt> resource name.
+     */
+    public static String getCompiledName(final String resourceName) {
+        Utils.checkNull(resourceName, "resourceName");
+
+        String extension = "." + JSONSerializer.JSON_EXTENSION;
+        if (!resourceName.endsWith(extension)) {
+            throw new IllegalArgumentException(resourceName + " is not a JSON resource.");
+        }
+
+        return resourceName.substring(0, resourceName.length() - extension.length()) + "."
+            + BinaryJSONSerializer.JSONB_EXTENSION;
+    }
+
+    /**
+     * Command line entry point. The first argument is the directory containing
+     * the JSON sources and the second the directory in which precompiled files
+     * are written. Any further arguments name the resources to compile,
+     * relative to the source directory; if none are given, every
+     * <tt>.json</tt> file under the source directory is compiled.
+     *
+     * @param args The command line arguments.
+     */
+    public static void main(final String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: " + ResourcesCompiler.class.getName()
+                + " <source directory> <output directory> [<resource> ...]");
+            System.exit(1);
+        }
+
+        File sourceDirectory = new File(args[0]);
+        File outputDirectory = new File(args[1]);
+
+        ArrayList<String> resourceNames = new ArrayList<>();
+        if (args.length > 2) {
+            for (int i = 2; i < args.length; i++) {
+                resourceNames.add(args[i].replace(File.separatorChar, '/'));
+            }
+        } else {
+            Path sourcePath = sourceDirectory.toPath();
+            try (Stream<Path> paths = Files.walk(sourcePath)) {
+                for (Path path : paths.filter(p -> p.toString().endsWith("." + JSONSerializer.JSON_EXTENSION))
+                    .sorted().collect(Collectors.toList())) {
+                    resourceNames.add(sourcePath.relativize(path).toString().replace(File.separatorChar, '/'));
+                }
+            } catch (IOException exception) {
+                System.err.println(exception.getMessage());
+                System.exit(1);
+            }
+        }
+
+        int errors = 0;
+        for (String resourceName : resourceNames) {
+            try {
+                File outputFile = new File(outputDirectory, getCompiledName(resourceName));
+                outputFile.getParentFile().mkdirs();
+
+                try (InputStream inputStream = Files.newInputStream(new File(sourceDirectory, resourceName).toPath());
+                    OutputStream outputStream = Files.newOutputStream(outputFile.toPath())) {
+                    compile(inputStream, outputStream);
+                }
+            } catch (IOException | SerializationException | RuntimeException exception) {
+                System.err.println(resourceName + ": " + exception.getMessage());
+                errors++;
+            }
+        }
+
+        System.out.println("Compiled " + (resourceNames.getLength() - errors) + " of "
+            + resourceNames.getLength() + " JSON resources.");
+
+        if (errors > 0) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.util.concurrent;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe histogram of latencies. Latencies are recorded in nanoseconds
+ * and counted in buckets whose upper bounds are successive powers of two,
+ * starting at one microsecond; recording never allocates or locks.
+ */
+public final class LatencyHistogram {
+    /** The number of buckets. */
+    public static final int BUCKET_COUNT = 32;
+
+    private static final int FIRST_BUCKET_SHIFT = 10;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a latency.
+     *
+     * @param nanoseconds The latency in nanoseconds; negative values are
+     * recorded as zero.
+     */
+    public void record(long nanoseconds) {
+        long latency = Math.max(nanoseconds, 0);
+
+        int bucket = (64 - Long.numberOfLeadingZeros(latency >> FIRST_BUCKET_SHIFT));
+        buckets.incrementAndGet(Math.min(bucket, BUCKET_COUNT - 1));
+
+        count.incrementAndGet();
+        total.addAndGet(latency);
+        max.accumulateAndGet(latency, Math::max);
+    }
+
+    /**
+     * @return The number of latencies recorded.
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @return The sum of the recorded latencies, in nanoseconds.
+     */
+    public long getTotal() {
+        return total.get();
+    }
+
+    /**
+     * @return The mean of the recorded latencies in nanoseconds, or
+     * <tt>0</tt> if none were recorded.
+     */
+    public long getMean() {
+        long countLocal = count.get();
+        return (countLocal == 0) ? 0 : total.get() / countLocal;
+    }
+
+    /**
+     * @return The largest recorded latency, in nanoseconds.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns the number of latencies counted in a bucket.
+     *
+     * @param bucket The bucket index, between <tt>0</tt> and
+     * {@link #BUCKET_COUNT} - 1.
+     * @return The bucket's count.
+     */
+    public long get(int bucket) {
+        return buckets.get(bucket);
+    }
+
+    /**
+     * Returns the exclusive upper bound of a bucket.
+     *
+     * @param bucket The bucket index.
+     * @return The bound in nanoseconds; the last bucket is unbounded and
+     * returns {@link Long#MAX_VALUE}.
+     */
+    public static long getUpperBound(int bucket) {
+        if (bucket < 0 || bucket >= BUCKET_COUNT) {
+            throw new IndexOutOfBoundsException("Bucket " + bucket + " out of range.");
+        }
+
+        return (bucket == BUCKET_COUNT - 1) ? Long.MAX_VALUE : 1L << (bucket + FIRST_BUCKET_SHIFT);
+    }
+
+    /**
+     * Estimates a percentile of the recorded latencies.
+     *
+     * @param fraction The percentile as a fraction, between <tt>0</tt> and
+     * <tt>1</tt> (for instance <tt>0.99</tt>).
+     * @return The upper bound of the bucket containing the percentile (capped
+     * at the largest recorded latency), in nanoseconds, or <tt>0</tt> if no
+     * latencies were recorded.
+     */
+    public long getPercentile(double fraction) {
+        if (fraction < 0 || fraction > 1) {
+            throw new IllegalArgumentException("fraction must be between 0 and 1.");
+        }
+
+        long countLocal = count.get();
+        if (countLocal == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(fraction * countLocal);
+        long cumulative = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            cumulative += buckets.get(i);
+            if (cumulative >= rank) {
+                return Math.min(getUpperBound(i), max.get());
+            }
+        }
+
+        return max.get();
+    }
+
+    /**
+     * Discards all recorded latencies.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " [count=" + getCount() + ", mean=" + getMean()
+            + "ns, p99=" + getPercentile(0.99) + "ns, max=" + getMax() + "ns]";
+    }
+}
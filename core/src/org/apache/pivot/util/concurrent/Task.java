@@ -17,14 +17,30 @@
 package org.apache.pivot.util.concurrent;
 
 import java.lang.ref.WeakReference;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.util.Service;
 import org.apache.pivot.util.Utils;
 
 /**
  * Abstract base class for "tasks". A task is an asynchronous operation that may
- * optionally return a value.
+ * optionally return a value. <p> Tasks can be bridged to
+ * {@link CompletableFuture} with {@link #toCompletableFuture()} and
+ * {@link #fromFuture(CompletionStage)}, and combined with
+ * {@link #thenCompose(Function)}, {@link #allOf(Task...)} and
+ * {@link #anyOf(Task...)}.
  *
  * @param <V> The type of the value returned by the operation. May be
  * {@link Void} to indicate that the task does not return a value.
@@ -41,6 +57,7 @@ public abstract class Task<V> {
 
             synchronized (Task.this) {
                 Task.this.taskThread = new WeakReference<Thread>(Thread.currentThread());
+                executing = true;
             }
 
             try {
@@ -49,25 +66,149 @@ public abstract class Task<V> {
                 faultLocal = throwable;
             }
 
-            TaskListener<V> taskListenerLocal;
+            boolean timedOutLocal;
             synchronized (Task.this) {
-                Task.this.result = resultLocal;
-                Task.this.fault = faultLocal;
+                executing = false;
+                timedOutLocal = timedOut;
+            }
+
+            // Don't leave the interrupt meant for this task pending on the worker thread
+            if (timedOutLocal) {
+                Thread.interrupted();
+            }
+
+            complete(resultLocal, faultLocal);
+        }
+    }
+
+    /**
+     * Task whose work is done by a {@link CompletableFuture}. The future is
+     * obtained when the task is executed, so executing the task asynchronously
+     * does not occupy a thread while the future is pending. Tasks that the
+     * future is built from are run with {@link #run(Task)}, so that aborting
+     * this task aborts them too.
+     */
+    private static class CompletionTask<V> extends Task<V> {
+        private final Function<CompletionTask<V>, ? extends CompletableFuture<? extends V>> supplier;
+        private volatile CompletableFuture<? extends V> future = null;
+        private ArrayList<CompletableFuture<?>> dependencies = new ArrayList<>();
+
+        public CompletionTask(Function<CompletionTask<V>, ? extends CompletableFuture<? extends V>> supplier) {
+            this.supplier = supplier;
+        }
+
+        @Override
+        public V execute() throws TaskExecutionException {
+            synchronized (this) {
+                dependencies = new ArrayList<>();
+            }
+
+            future = supplier.apply(this);
+
+            try {
+                return future.get();
+            } catch (ExecutionException exception) {
+                Throwable cause = exception.getCause();
+                if (cause instanceof TaskExecutionException) {
+                    throw (TaskExecutionException) cause;
+                }
 
-                abort = false;
+                throw new TaskExecutionException(cause);
+            } catch (InterruptedException | CancellationException exception) {
+                throw new TaskExecutionException(exception);
+            }
+        }
 
-                taskListenerLocal = Task.this.taskListener;
-                Task.this.taskListener = null;
+        @Override
+        protected void start(ExecutorService executorServiceArgument) {
+            synchronized (this) {
+                dependencies = new ArrayList<>();
             }
 
-            if (faultLocal == null) {
-                taskListenerLocal.taskExecuted(Task.this);
-            } else {
-                taskListenerLocal.executeFailed(Task.this);
+            CompletableFuture<? extends V> futureLocal;
+            try {
+                futureLocal = supplier.apply(this);
+            } catch (Throwable throwable) {
+                complete(null, throwable);
+                return;
+            }
+
+            future = futureLocal;
+            futureLocal.whenComplete((value, throwable) -> {
+                Throwable faultLocal = throwable;
+                if (faultLocal instanceof CompletionException && faultLocal.getCause() != null) {
+                    faultLocal = faultLocal.getCause();
+                }
+
+                complete(value, faultLocal);
+            });
+        }
+
+        /**
+         * Asynchronously executes a task that this task's future depends on.
+         * The task is aborted when this task is aborted (or times out), since
+         * cancelling a future derived from its future would not reach it.
+         */
+        public <T> CompletableFuture<T> run(Task<T> task) {
+            CompletableFuture<T> dependency = task.toCompletableFuture();
+
+            boolean abortLocal;
+            synchronized (this) {
+                dependencies.add(dependency);
+                abortLocal = abort;
+            }
+
+            if (abortLocal) {
+                dependency.cancel(true);
+            }
+
+            return dependency;
+        }
+
+        public CompletableFuture<?>[] run(Task<?>[] tasks) {
+            CompletableFuture<?>[] futures = new CompletableFuture<?>[tasks.length];
+            for (int i = 0; i < tasks.length; i++) {
+                futures[i] = run(tasks[i]);
+            }
+
+            return futures;
+        }
+
+        @Override
+        public void abort() {
+            ArrayList<CompletableFuture<?>> dependenciesLocal;
+            synchronized (this) {
+                super.abort();
+                dependenciesLocal = dependencies;
+            }
+
+            // Cancel outside the lock, since cancelling aborts the other tasks
+            CompletableFuture<? extends V> futureLocal = future;
+            if (futureLocal != null) {
+                futureLocal.cancel(true);
+            }
+
+            for (CompletableFuture<?> dependency : dependenciesLocal) {
+                dependency.cancel(true);
             }
         }
     }
 
+    /**
+     * Lazily created scheduler for task timeouts.
+     */
+    private static class TimeoutScheduler {
+        public static final ScheduledThreadPoolExecutor EXECUTOR = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "Pivot Task Timeout");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        static {
+            EXECUTOR.setRemoveOnCancelPolicy(true);
+        }
+    }
+
     private ExecutorService executorService;
 
     private V result = null;
@@ -75,10 +216,28 @@ public abstract class Task<V> {
     private TaskListener<V> taskListener = null;
     private WeakReference<Thread> taskThread = null;
 
+    private int executionCount = 0;
+    private boolean executing = false;
+    private boolean timedOut = false;
+    private ScheduledFuture<?> timeoutFuture = null;
+
     protected volatile long timeout = Long.MAX_VALUE;
     protected volatile boolean abort = false;
 
-    public static final ExecutorService DEFAULT_EXECUTOR_SERVICE = Executors.newCachedThreadPool();
+    /**
+     * The service provider name (see {@link Service#getProvider(String)}) of
+     * the default executor service. The provider must be an
+     * {@link ExecutorService} implementation with a no-argument constructor,
+     * such as {@link VirtualThreadExecutorService}.
+     */
+    public static final String EXECUTOR_SERVICE_PROVIDER_NAME = "org.apache.pivot.util.concurrent.executorService";
+
+    /**
+     * The executor service used by tasks that are not given one. This is the
+     * {@link #EXECUTOR_SERVICE_PROVIDER_NAME configured} provider if there is
+     * one, and otherwise a bounded, instrumented {@link TaskExecutorService}.
+     */
+    public static final ExecutorService DEFAULT_EXECUTOR_SERVICE = createDefaultExecutorService();
 
     public Task() {
         this(DEFAULT_EXECUTOR_SERVICE);
@@ -90,6 +249,12 @@ public abstract class Task<V> {
         this.executorService = executorService;
     }
 
+    private static ExecutorService createDefaultExecutorService() {
+        Object provider = Service.getProvider(EXECUTOR_SERVICE_PROVIDER_NAME);
+
+        return (provider instanceof ExecutorService) ? (ExecutorService) provider : new TaskExecutorService();
+    }
+
     /**
      * Synchronously executes the task.
      *
@@ -138,12 +303,217 @@ public abstract class Task<V> {
         fault = null;
         taskThread = null;
         abort = false;
+        timedOut = false;
+
+        if (timeout > 0 && timeout != Long.MAX_VALUE) {
+            final int execution = ++executionCount;
+            timeoutFuture = TimeoutScheduler.EXECUTOR.schedule(() -> timeout(execution), timeout,
+                TimeUnit.MILLISECONDS);
+        }
+
+        start(executorServiceArgument);
+    }
 
+    /**
+     * Starts asynchronous execution once the task has been marked as pending.
+     * The task must eventually call {@link #complete(Object, Throwable)}. By
+     * default, {@link #execute()} is run on the executor service; tasks that
+     * can complete from callbacks override this method so that no thread
+     * waits for them.
+     *
+     * @param executorServiceArgument The service the task was submitted to.
+     */
+    protected void start(ExecutorService executorServiceArgument) {
         // Create a new execute callback and post it to the executor service
         ExecuteCallback executeCallback = new ExecuteCallback();
         executorServiceArgument.submit(executeCallback);
     }
 
+    /**
+     * Records the outcome of an asynchronous execution and notifies the
+     * listener that was passed to {@link #execute(TaskListener)}.
+     *
+     * @param resultArgument The result, if the execution succeeded.
+     * @param faultArgument The fault, or <tt>null</tt> if the execution
+     * succeeded.
+     */
+    protected void complete(V resultArgument, Throwable faultArgument) {
+        TaskListener<V> taskListenerLocal;
+        Throwable faultLocal = faultArgument;
+
+        synchronized (this) {
+            if (timeoutFuture != null) {
+                timeoutFuture.cancel(false);
+                timeoutFuture = null;
+            }
+
+            if (timedOut) {
+                faultLocal = new TimeoutException("Task did not complete within " + timeout + " ms.");
+                timedOut = false;
+            }
+
+            result = (faultLocal == null) ? resultArgument : null;
+            fault = faultLocal;
+
+            abort = false;
+
+            taskListenerLocal = taskListener;
+            taskListener = null;
+        }
+
+        if (faultLocal == null) {
+            taskListenerLocal.taskExecuted(this);
+        } else {
+            taskListenerLocal.executeFailed(this);
+        }
+    }
+
+    /**
+     * Called when an asynchronous execution exceeds the task's timeout. The
+     * task is aborted and, if it is running on a worker thread, that thread
+     * is interrupted; the execution then fails with a
+     * {@link TimeoutException}.
+     */
+    private void timeout(int execution) {
+        synchronized (this) {
+            if (execution != executionCount || taskListener == null) {
+                return;
+            }
+
+            timedOut = true;
+        }
+
+        abort();
+
+        synchronized (this) {
+            Thread thread = (taskThread == null) ? null : taskThread.get();
+            if (execution == executionCount && executing && thread != null) {
+                thread.interrupt();
+            }
+        }
+    }
+
+    /**
+     * Asynchronously executes the task and returns a future representing its
+     * outcome. The future is completed on the task's worker thread; cancelling
+     * it aborts the task.
+     *
+     * @return A future that completes with the task's result, or
+     * exceptionally with its fault.
+     * @see #toCompletableFuture(Executor)
+     */
+    public CompletableFuture<V> toCompletableFuture() {
+        return toCompletableFuture(Runnable::run);
+    }
+
+    /**
+     * Asynchronously executes the task and returns a future representing its
+     * outcome. The future is completed by a command posted to the given
+     * executor, so stages that are not explicitly asynchronous run there; for
+     * instance, passing an executor that queues commands on the UI thread
+     * delivers results the same way a <tt>TaskAdapter</tt> does.
+     *
+     * @param completionExecutor The executor on which the future is completed.
+     * @return A future that completes with the task's result, or
+     * exceptionally with its fault.
+     */
+    public CompletableFuture<V> toCompletableFuture(final Executor completionExecutor) {
+        Utils.checkNull(completionExecutor, "completionExecutor");
+
+        final CompletableFuture<V> future = new CompletableFuture<V>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                boolean cancelled = super.cancel(mayInterruptIfRunning);
+                if (cancelled) {
+                    abort();
+                }
+
+                return cancelled;
+            }
+        };
+
+        execute(new TaskListener<V>() {
+            @Override
+            public void taskExecuted(Task<V> task) {
+                final V value = task.getResult();
+                completionExecutor.execute(() -> future.complete(value));
+            }
+
+            @Override
+            public void executeFailed(Task<V> task) {
+                final Throwable throwable = task.getFault();
+                completionExecutor.execute(() -> future.completeExceptionally(throwable));
+            }
+        });
+
+        return future;
+    }
+
+    /**
+     * Returns a task that runs this task and then the task created from its
+     * result. The composed task's result is the result of the second task.
+     * Aborting the composed task aborts whichever of the two tasks is running.
+     *
+     * @param <U> The result type of the second task.
+     * @param function Creates the second task from this task's result.
+     * @return The composed task.
+     */
+    public <U> Task<U> thenCompose(final Function<? super V, ? extends Task<U>> function) {
+        Utils.checkNull(function, "function");
+
+        return new CompletionTask<U>(task -> task.run(this).thenCompose(value -> task.run(function.apply(value))));
+    }
+
+    /**
+     * Returns a task that completes when the given stage completes. Executing
+     * the returned task does not start any work; it only waits for the stage,
+     * and, when executed asynchronously, does so without blocking a thread.
+     *
+     * @param <V> The result type of the stage.
+     * @param stage The stage to adapt.
+     * @return A task whose result is the result of the stage.
+     */
+    public static <V> Task<V> fromFuture(final CompletionStage<? extends V> stage) {
+        Utils.checkNull(stage, "stage");
+
+        return new CompletionTask<V>(task -> stage.toCompletableFuture());
+    }
+
+    /**
+     * Returns a task that runs the given tasks concurrently and completes when
+     * all of them have completed. The task fails if any of the tasks fails.
+     * Aborting the combined task (or letting it time out) aborts the tasks.
+     *
+     * @param tasks The tasks to run.
+     * @return The combined task.
+     */
+    public static Task<Void> allOf(final Task<?>... tasks) {
+        Utils.checkNull(tasks, "tasks");
+
+        return new CompletionTask<Void>(task -> CompletableFuture.allOf(task.run(tasks)));
+    }
+
+    /**
+     * Returns a task that runs the given tasks concurrently and completes with
+     * the outcome of the first of them to complete. The remaining tasks are
+     * aborted.
+     *
+     * @param tasks The tasks to run.
+     * @return The combined task.
+     */
+    public static Task<Object> anyOf(final Task<?>... tasks) {
+        Utils.checkNull(tasks, "tasks");
+
+        return new CompletionTask<Object>(task -> {
+            CompletableFuture<?>[] futures = task.run(tasks);
+            return CompletableFuture.anyOf(futures).whenComplete((value, throwable) -> {
+                for (CompletableFuture<?> future : futures) {
+                    future.cancel(true);
+                }
+            });
+        });
+    }
+
     /**
      * @return The executor service used to execute this task.
      */
@@ -205,11 +575,16 @@ public abstract class Task<V> {
     }
 
     /**
-     * Sets the timeout value for this task. It is the responsibility of the
-     * implementing class to respect this value.
+     * Sets the timeout value for this task. When the task is executed
+     * asynchronously and does not complete in time, it is
+     * {@link #abort() aborted}, its worker thread is interrupted and the
+     * execution fails with a {@link TimeoutException}; implementations should
+     * therefore respond to the abort flag and to interruption. Implementations
+     * may also apply the timeout to the operations they perform, such as
+     * connecting to a server.
      *
-     * @param timeout The time by which the task must complete execution. If the
-     * timeout is exceeded, a {@link TimeoutException} will be thrown.
+     * @param timeout The time, in milliseconds, within which the task must
+     * complete execution, or {@link Long#MAX_VALUE} for no timeout.
      */
     public synchronized void setTimeout(long timeout) {
         this.timeout = timeout;
@@ -218,7 +593,9 @@ public abstract class Task<V> {
     /**
      * Sets the abort flag for this task to <tt>true</tt>. It is the
      * responsibility of the implementing class to respect this value and throw
-     * a {@link AbortException}.
+     * a {@link AbortException}; subclasses that block may override this method
+     * to release the resources they are waiting on, calling the superclass
+     * method first.
      */
     public synchronized void abort() {
         abort = true;
@@ -0,0 +1,281 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.util.concurrent;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.pivot.util.Utils;
+
+/**
+ * Instrumented executor service for tasks. <p> By default, commands run on a
+ * bounded work-stealing pool (a {@link ForkJoinPool} in FIFO mode); another
+ * executor service may be wrapped instead. In both cases the service keeps
+ * track of the number of queued and active commands and records how long
+ * commands wait in the queue and how long they take to run.
+ *
+ * @see Task#DEFAULT_EXECUTOR_SERVICE
+ */
+public class TaskExecutorService extends AbstractExecutorService {
+    /**
+     * Instrumented wrapper for a submitted command.
+     */
+    private class Command implements Runnable {
+        private final Runnable runnable;
+        private final long submitTime = System.nanoTime();
+
+        public Command(Runnable runnable) {
+            this.runnable = runnable;
+        }
+
+        @Override
+        public void run() {
+            long startTime = System.nanoTime();
+            queueLatency.record(startTime - submitTime);
+
+            queueDepth.decrementAndGet();
+            activeCount.incrementAndGet();
+
+            try {
+                runnable.run();
+            } finally {
+                activeCount.decrementAndGet();
+                completedCount.incrementAndGet();
+                executionLatency.record(System.nanoTime() - startTime);
+
+                if (!daemon) {
+                    release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Non-daemon thread that keeps the VM alive while commands are queued or
+     * running.
+     */
+    private class KeepAlive extends Thread {
+        public KeepAlive() {
+            super("Pivot Task Keep-Alive");
+            setDaemon(false);
+        }
+
+        @Override
+        public void run() {
+            synchronized (TaskExecutorService.this) {
+                while (pendingCount > 0) {
+                    try {
+                        TaskExecutorService.this.wait();
+                    } catch (InterruptedException exception) {
+                        // Keep the VM alive until the commands complete
+                    }
+                }
+
+                keepAlive = null;
+            }
+        }
+    }
+
+    private final ExecutorService executorService;
+    private final boolean daemon;
+
+    private int pendingCount = 0;
+    private KeepAlive keepAlive = null;
+
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicInteger activeCount = new AtomicInteger();
+    private final AtomicLong completedCount = new AtomicLong();
+    private final LatencyHistogram queueLatency = new LatencyHistogram();
+    private final LatencyHistogram executionLatency = new LatencyHistogram();
+
+    /**
+     * The default parallelism: four threads per processor, and at least
+     * sixteen, since tasks typically block on I/O.
+     */
+    public static final int DEFAULT_PARALLELISM = Math.max(4 * Runtime.getRuntime().availableProcessors(), 16);
+
+    private static final AtomicInteger threadNumber = new AtomicInteger();
+
+    /**
+     * Creates a work-stealing service with the {@link #DEFAULT_PARALLELISM
+     * default parallelism}.
+     */
+    public TaskExecutorService() {
+        this(DEFAULT_PARALLELISM);
+    }
+
+    /**
+     * Creates a work-stealing service. Like the threads of a cached thread
+     * pool, the service keeps the VM alive while commands are queued or
+     * running, but not once it is idle.
+     *
+     * @param parallelism The number of threads that may run commands at once.
+     */
+    public TaskExecutorService(int parallelism) {
+        this(parallelism, false);
+    }
+
+    /**
+     * Creates a work-stealing service.
+     *
+     * @param parallelism The number of threads that may run commands at once.
+     * @param daemon If <tt>true</tt>, the service does not keep the VM alive,
+     * even while commands are running, as with daemon threads.
+     */
+    public TaskExecutorService(int parallelism, boolean daemon) {
+        // The workers are daemon threads, since an idle pool keeps its last
+        // worker; the keep-alive thread keeps the VM alive while they are busy
+        this(new ForkJoinPool(parallelism, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("Pivot Task " + threadNumber.incrementAndGet());
+            return thread;
+        }, null, true), daemon);
+    }
+
+    /**
+     * Creates a service that instruments another executor service. Whether
+     * commands keep the VM alive depends on the threads of that service.
+     *
+     * @param executorService The service that runs the commands.
+     */
+    public TaskExecutorService(ExecutorService executorService) {
+        this(executorService, true);
+    }
+
+    private TaskExecutorService(ExecutorService executorService, boolean daemon) {
+        Utils.checkNull(executorService, "executorService");
+
+        this.executorService = executorService;
+        this.daemon = daemon;
+    }
+
+    /**
+     * @return <tt>false</tt> if the service itself keeps the VM alive while
+     * commands are queued or running.
+     */
+    public boolean isDaemon() {
+        return daemon;
+    }
+
+    private synchronized void acquire() {
+        if (pendingCount++ == 0 && keepAlive == null) {
+            keepAlive = new KeepAlive();
+            keepAlive.start();
+        }
+    }
+
+    private synchronized void release() {
+        if (--pendingCount == 0) {
+            notifyAll();
+        }
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        Utils.checkNull(command, "command");
+
+        queueDepth.incrementAndGet();
+
+        if (!daemon) {
+            acquire();
+        }
+
+        try {
+            executorService.execute(new Command(command));
+        } catch (RuntimeException exception) {
+            queueDepth.decrementAndGet();
+
+            if (!daemon) {
+                release();
+            }
+
+            throw exception;
+        }
+    }
+
+    /**
+     * @return The number of commands waiting to run.
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    /**
+     * @return The number of commands running.
+     */
+    public int getActiveCount() {
+        return activeCount.get();
+    }
+
+    /**
+     * @return The number of commands that have run to completion.
+     */
+    public long getCompletedCount() {
+        return completedCount.get();
+    }
+
+    /**
+     * @return The distribution of the time commands spent waiting to run.
+     */
+    public LatencyHistogram getQueueLatency() {
+        return queueLatency;
+    }
+
+    /**
+     * @return The distribution of the time commands took to run.
+     */
+    public LatencyHistogram getExecutionLatency() {
+        return executionLatency;
+    }
+
+    @Override
+    public void shutdown() {
+        executorService.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return executorService.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return executorService.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return executorService.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executorService.awaitTermination(timeout, unit);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " [queued=" + getQueueDepth() + ", active=" + getActiveCount()
+            + ", completed=" + getCompletedCount() + "]";
+    }
+}
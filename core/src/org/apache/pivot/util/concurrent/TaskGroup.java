@@ -18,6 +18,7 @@ package org.apache.pivot.util.concurrent;
 
 import java.util.Iterator;
 import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
 
 import org.apache.pivot.collections.Group;
 import org.apache.pivot.collections.HashSet;
@@ -25,11 +26,15 @@ import org.apache.pivot.util.ImmutableIterator;
 
 /**
  * {@link Task} that runs a group of tasks in parallel and notifies listeners
- * when all tasks are complete.
+ * when all tasks are complete. <p> The group does not occupy a thread of its
+ * own while its tasks run: each task is started by the completion of an
+ * earlier one, up to the group's maximum concurrency.
  */
 public class TaskGroup extends Task<Void> implements Group<Task<?>>, Iterable<Task<?>> {
     private HashSet<Task<?>> tasks = new HashSet<>();
-    private int complete = 0;
+    private int maxConcurrency = Integer.MAX_VALUE;
+    private boolean failFast = false;
+    private TaskRunner runner = null;
 
     public TaskGroup() {
         this(DEFAULT_EXECUTOR_SERVICE);
@@ -39,57 +44,112 @@ public class TaskGroup extends Task<Void> implements Group<Task<?>>, Iterable<Ta
         super(executorService);
     }
 
+    /**
+     * Synchronously executes the tasks in this group. The calling thread waits
+     * until all tasks have completed; no other thread is blocked.
+     */
     @Override
-    @SuppressWarnings("unchecked")
-    public synchronized Void execute() throws TaskExecutionException {
-        TaskListener<Object> taskListener = new TaskListener<Object>() {
-            @Override
-            public void taskExecuted(Task<Object> task) {
-                synchronized (TaskGroup.this) {
-                    complete++;
-                    TaskGroup.this.notify();
-                }
-            }
-
-            @Override
-            public void executeFailed(Task<Object> task) {
-                synchronized (TaskGroup.this) {
-                    complete++;
-                    TaskGroup.this.notify();
-                }
-            }
-        };
-
-        complete = 0;
+    public Void execute() throws TaskExecutionException {
+        TaskRunner.run(this::newRunner);
+
+        return null;
+    }
+
+    @Override
+    protected void start(ExecutorService executorServiceArgument) {
+        newRunner(fault -> complete(null, fault)).start();
+    }
+
+    private synchronized TaskRunner newRunner(Consumer<Throwable> completion) {
+        Task<?>[] taskArray = new Task<?>[tasks.getCount()];
+        int i = 0;
         for (Task<?> task : tasks) {
-            ((Task<Object>) task).execute(taskListener);
+            taskArray[i++] = task;
         }
 
-        while (complete < getCount()) {
-            try {
-                wait();
-            } catch (InterruptedException exception) {
-                throw new TaskExecutionException(exception);
-            }
+        runner = new TaskRunner(taskArray, maxConcurrency, failFast, completion);
+        return runner;
+    }
+
+    /**
+     * Aborts all tasks in this group. The group completes immediately with an
+     * {@link AbortException}; tasks that have not yet been started are not
+     * run.
+     */
+    @Override
+    public void abort() {
+        TaskRunner runnerLocal;
+        synchronized (this) {
+            super.abort();
+            runnerLocal = runner;
         }
 
-        return null;
+        if (runnerLocal != null) {
+            runnerLocal.abort();
+        }
     }
 
     /**
-     * Aborts all tasks in this group.
+     * @return The maximum number of tasks in this group that run at the same
+     * time.
      */
-    @Override
-    public synchronized void abort() {
-        for (Task<?> task : this) {
-            synchronized (task) {
-                if (task.isPending()) {
-                    task.abort();
-                }
-            }
+    public synchronized int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * Limits the number of tasks in this group that run at the same time.
+     * Further tasks are started as running ones complete.
+     *
+     * @param maxConcurrency The maximum number of concurrent tasks; the
+     * default is {@link Integer#MAX_VALUE}.
+     */
+    public synchronized void setMaxConcurrency(int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be positive.");
         }
 
-        super.abort();
+        if (isPending()) {
+            throw new IllegalStateException();
+        }
+
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * @return Whether a failing task fails the whole group.
+     * @see #setFailFast(boolean)
+     */
+    public synchronized boolean isFailFast() {
+        return failFast;
+    }
+
+    /**
+     * Sets whether a failing task fails the whole group. By default the group
+     * succeeds once every task has completed, whether or not it failed; in
+     * fail-fast mode the first fault aborts the remaining tasks and becomes
+     * the fault of the group.
+     *
+     * @param failFast Whether the group should fail fast.
+     */
+    public synchronized void setFailFast(boolean failFast) {
+        if (isPending()) {
+            throw new IllegalStateException();
+        }
+
+        this.failFast = failFast;
+    }
+
+    /**
+     * Returns the time a task spent executing during the most recent
+     * execution of this group.
+     *
+     * @param task A task in this group.
+     * @return The execution time in milliseconds (up to now, if the task is
+     * still running), or <tt>-1</tt> if the task has not been run.
+     */
+    public synchronized long getExecutionTime(Task<?> task) {
+        return (runner == null) ? -1 : runner.getExecutionTime(task);
     }
 
     @Override
@@ -0,0 +1,261 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.util.concurrent;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Runs a batch of tasks on behalf of {@link TaskGroup} and
+ * {@link TaskSequence}. Each child is started from the completion callback of
+ * an earlier one, so no thread waits for the children to finish.
+ */
+class TaskRunner implements TaskListener<Object> {
+    private final Task<?>[] tasks;
+    private final int maxConcurrency;
+    private final boolean failFast;
+    private final Consumer<Throwable> completion;
+
+    private final long[] startTimes;
+    private final long[] endTimes;
+
+    private int next = 0;
+    private int running = 0;
+    private int completed = 0;
+    private boolean dispatching = false;
+    private boolean done = false;
+
+    /**
+     * @param tasks The tasks to run, in the order in which they are started.
+     * @param maxConcurrency The maximum number of tasks that may run at once.
+     * @param failFast Whether the first failing task aborts the others and
+     * fails the batch.
+     * @param completion Called once with the fault of the batch, or
+     * <tt>null</tt> if it succeeded.
+     */
+    public TaskRunner(Task<?>[] tasks, int maxConcurrency, boolean failFast, Consumer<Throwable> completion) {
+        this.tasks = tasks;
+        this.maxConcurrency = maxConcurrency;
+        this.failFast = failFast;
+        this.completion = completion;
+
+        startTimes = new long[tasks.length];
+        endTimes = new long[tasks.length];
+    }
+
+    public void start() {
+        dispatch();
+    }
+
+    /**
+     * Runs a batch and waits for it to finish; this backs the synchronous
+     * <tt>execute()</tt> methods of the task collections.
+     *
+     * @param factory Creates the runner, given its completion callback.
+     * @throws TaskExecutionException If the batch failed.
+     */
+    public static void run(Function<Consumer<Throwable>, TaskRunner> factory) throws TaskExecutionException {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<Throwable> fault = new AtomicReference<>();
+
+        TaskRunner runner = factory.apply(throwable -> {
+            fault.set(throwable);
+            latch.countDown();
+        });
+        runner.start();
+
+        try {
+            // Let a work-stealing pool add a thread while this one is blocked
+            ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+                @Override
+                public boolean block() throws InterruptedException {
+                    latch.await();
+                    return true;
+                }
+
+                @Override
+                public boolean isReleasable() {
+                    return (latch.getCount() == 0);
+                }
+            });
+        } catch (InterruptedException exception) {
+            runner.abort();
+            throw new TaskExecutionException(exception);
+        }
+
+        Throwable throwable = fault.get();
+        if (throwable instanceof TaskExecutionException) {
+            throw (TaskExecutionException) throwable;
+        } else if (throwable instanceof RuntimeException) {
+            throw (RuntimeException) throwable;
+        } else if (throwable instanceof Error) {
+            throw (Error) throwable;
+        } else if (throwable != null) {
+            throw new TaskExecutionException(throwable);
+        }
+    }
+
+    /**
+     * Starts as many tasks as the concurrency limit allows. Tasks that
+     * complete while a task is being started re-enter this method; the call
+     * that is already dispatching picks up the freed capacity, so the stack
+     * does not grow with the number of tasks.
+     */
+    @SuppressWarnings("unchecked")
+    private void dispatch() {
+        synchronized (this) {
+            if (dispatching) {
+                return;
+            }
+
+            dispatching = true;
+        }
+
+        while (true) {
+            Task<Object> task = null;
+            boolean finished = false;
+
+            synchronized (this) {
+                if (!done && completed == tasks.length) {
+                    done = true;
+                    finished = true;
+                }
+
+                if (done || next == tasks.length || running >= maxConcurrency) {
+                    dispatching = false;
+                } else {
+                    int index = next++;
+                    running++;
+                    startTimes[index] = System.nanoTime();
+                    task = (Task<Object>) tasks[index];
+                }
+            }
+
+            if (task == null) {
+                if (finished) {
+                    completion.accept(null);
+                }
+
+                break;
+            }
+
+            try {
+                task.execute(this);
+            } catch (RuntimeException exception) {
+                taskCompleted(task, exception);
+            }
+        }
+    }
+
+    @Override
+    public void taskExecuted(Task<Object> task) {
+        taskCompleted(task, null);
+    }
+
+    @Override
+    public void executeFailed(Task<Object> task) {
+        taskCompleted(task, task.getFault());
+    }
+
+    private void taskCompleted(Task<?> task, Throwable fault) {
+        boolean failed = false;
+
+        synchronized (this) {
+            int index = indexOf(task);
+            endTimes[index] = System.nanoTime();
+            running--;
+            completed++;
+
+            if (done) {
+                return;
+            }
+
+            if (fault != null && failFast) {
+                done = true;
+                failed = true;
+            }
+        }
+
+        if (failed) {
+            abortRunning();
+            completion.accept(fault);
+        } else {
+            dispatch();
+        }
+    }
+
+    /**
+     * Ends the batch with an {@link AbortException} and aborts the tasks that
+     * are still running; tasks that have not been started are skipped.
+     */
+    public void abort() {
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+
+            done = true;
+        }
+
+        abortRunning();
+        completion.accept(new AbortException());
+    }
+
+    private void abortRunning() {
+        for (int i = 0; i < tasks.length; i++) {
+            Task<?> task = tasks[i];
+
+            synchronized (task) {
+                if (task.isPending()) {
+                    task.abort();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the time a task has spent executing in this batch.
+     *
+     * @param task One of the tasks in the batch.
+     * @return The execution time in milliseconds (up to now, if the task is
+     * still running), or <tt>-1</tt> if the task has not been started.
+     */
+    public synchronized long getExecutionTime(Task<?> task) {
+        int index = indexOf(task);
+
+        long executionTime = -1;
+        if (index != -1 && index < next) {
+            long endTime = (endTimes[index] == 0) ? System.nanoTime() : endTimes[index];
+            executionTime = (endTime - startTimes[index]) / 1000000;
+        }
+
+        return executionTime;
+    }
+
+    private int indexOf(Task<?> task) {
+        for (int i = 0; i < tasks.length; i++) {
+            if (tasks[i] == task) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+}
@@ -18,6 +18,7 @@ package org.apache.pivot.util.concurrent;
 
 import java.util.Iterator;
 import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
 
 import org.apache.pivot.collections.ArrayList;
 import org.apache.pivot.collections.Sequence;
@@ -25,10 +26,13 @@ import org.apache.pivot.util.ImmutableIterator;
 
 /**
  * {@link Task} that runs a sequence of tasks in series and notifies listeners
- * when all tasks are complete.
+ * when all tasks are complete. <p> The sequence does not occupy a thread of
+ * its own: each task is started by the completion of the previous one.
  */
 public class TaskSequence extends Task<Void> implements Sequence<Task<?>>, Iterable<Task<?>> {
     private ArrayList<Task<?>> tasks = new ArrayList<>();
+    private boolean failFast = false;
+    private TaskRunner runner = null;
 
     public TaskSequence() {
         this(DEFAULT_EXECUTOR_SERVICE);
@@ -38,42 +42,84 @@ public class TaskSequence extends Task<Void> implements Sequence<Task<?>>, Itera
         super(executorService);
     }
 
+    /**
+     * Synchronously executes the tasks in this sequence. The calling thread
+     * waits until the last task has completed; no other thread is blocked.
+     */
     @Override
-    @SuppressWarnings("unchecked")
-    public synchronized Void execute() throws TaskExecutionException {
-        TaskListener<Object> taskListener = new TaskListener<Object>() {
-            @Override
-            public void taskExecuted(Task<Object> task) {
-                synchronized (TaskSequence.this) {
-                    TaskSequence.this.notify();
-                }
-            }
-
-            @Override
-            public void executeFailed(Task<Object> task) {
-                synchronized (TaskSequence.this) {
-                    TaskSequence.this.notify();
-                }
-            }
-        };
-
-        for (Task<?> task : tasks) {
-            if (abort) {
-                throw new AbortException();
-            }
-
-            ((Task<Object>) task).execute(taskListener);
-
-            try {
-                wait();
-            } catch (InterruptedException exception) {
-                throw new TaskExecutionException(exception);
-            }
-        }
+    public Void execute() throws TaskExecutionException {
+        TaskRunner.run(this::newRunner);
 
         return null;
     }
 
+    @Override
+    protected void start(ExecutorService executorServiceArgument) {
+        newRunner(fault -> complete(null, fault)).start();
+    }
+
+    private synchronized TaskRunner newRunner(Consumer<Throwable> completion) {
+        Task<?>[] taskArray = new Task<?>[tasks.getLength()];
+        for (int i = 0; i < taskArray.length; i++) {
+            taskArray[i] = tasks.get(i);
+        }
+
+        runner = new TaskRunner(taskArray, 1, failFast, completion);
+        return runner;
+    }
+
+    /**
+     * Aborts the task that is running. The sequence completes immediately
+     * with an {@link AbortException} and the remaining tasks are not run.
+     */
+    @Override
+    public void abort() {
+        TaskRunner runnerLocal;
+        synchronized (this) {
+            super.abort();
+            runnerLocal = runner;
+        }
+
+        if (runnerLocal != null) {
+            runnerLocal.abort();
+        }
+    }
+
+    /**
+     * @return Whether a failing task ends the sequence.
+     * @see #setFailFast(boolean)
+     */
+    public synchronized boolean isFailFast() {
+        return failFast;
+    }
+
+    /**
+     * Sets whether a failing task ends the sequence. By default the remaining
+     * tasks run regardless of earlier faults; in fail-fast mode the first
+     * fault ends the sequence and becomes its fault.
+     *
+     * @param failFast Whether the sequence should fail fast.
+     */
+    public synchronized void setFailFast(boolean failFast) {
+        if (isPending()) {
+            throw new IllegalStateException();
+        }
+
+        this.failFast = failFast;
+    }
+
+    /**
+     * Returns the time a task spent executing during the most recent
+     * execution of this sequence.
+     *
+     * @param task A task in this sequence.
+     * @return The execution time in milliseconds (up to now, if the task is
+     * still running), or <tt>-1</tt> if the task has not been run.
+     */
+    public synchronized long getExecutionTime(Task<?> task) {
+        return (runner == null) ? -1 : runner.getExecutionTime(task);
+    }
+
     @Override
     public synchronized int add(Task<?> task) {
         int index = tasks.getLength();
@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.util.concurrent;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Instrumented executor service that runs each command on a new virtual
+ * thread, so that tasks blocking on I/O do not hold platform threads. Virtual
+ * threads require Java 21 or later; the factory method is looked up at run
+ * time so that this class can be compiled for older releases. To make it the
+ * default task executor, set the
+ * {@link Task#EXECUTOR_SERVICE_PROVIDER_NAME} system property to the name of
+ * this class.
+ */
+public class VirtualThreadExecutorService extends TaskExecutorService {
+    private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR;
+
+    static {
+        Method method = null;
+        try {
+            method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException exception) {
+            // Virtual threads are not supported by this VM
+        }
+
+        NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = method;
+    }
+
+    /**
+     * Creates a virtual thread executor service.
+     *
+     * @throws UnsupportedOperationException If the VM does not support
+     * virtual threads.
+     */
+    public VirtualThreadExecutorService() {
+        super(newVirtualThreadPerTaskExecutor());
+    }
+
+    /**
+     * @return <tt>true</tt> if the VM supports virtual threads.
+     */
+    public static boolean isSupported() {
+        return (NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null);
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("Virtual threads are not supported by this VM.");
+        }
+
+        try {
+            return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+        } catch (IllegalAccessException | InvocationTargetException exception) {
+            throw new UnsupportedOperationException(exception);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.beans.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.apache.pivot.beans.BXMLCompiler;
+import org.apache.pivot.beans.BXMLSerializer;
+import org.apache.pivot.beans.CompiledBXML;
+import org.apache.pivot.collections.List;
+import org.apache.pivot.collections.Map;
+import org.apache.pivot.serialization.SerializationException;
+import org.junit.Test;
+
+public class BXMLCompilerTest {
+    private static final String TEMPLATE_TEST = "org/apache/pivot/beans/test/template_test.bxml";
+
+    @Test
+    public void testClassName() {
+        assertEquals("org.apache.pivot.beans.test.TemplateTestCompiledBXML",
+            BXMLCompiler.getClassName(TEMPLATE_TEST));
+        assertEquals("MainCompiledBXML", BXMLCompiler.getClassName("main.bxml"));
+    }
+
+    @Test
+    public void testCompile() throws IOException, SerializationException {
+        BXMLCompiler compiler = new BXMLCompiler();
+
+        String source;
+        try (InputStream inputStream = BXMLCompilerTest.class.getResourceAsStream("template_test.bxml")) {
+            source = compiler.compile(TEMPLATE_TEST, inputStream);
+        }
+
+        assertNull(compiler.getFallbackReason());
+        assertTrue(source.contains("package org.apache.pivot.beans.test;"));
+        assertTrue(source.contains("public final class TemplateTestCompiledBXML implements CompiledBXML"));
+        assertTrue(source.contains("new org.apache.pivot.beans.test.BeanAdapterSampleObject()"));
+        assertTrue(source.contains("value.setString(\"hello\");"));
+        assertTrue(source.contains("BXMLCompiler.putID(namespace, \"sample\", value);"));
+        assertTrue(source.contains("value.put(\"name\", \"template\");"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testGeneratedClass() throws Exception {
+        JavaCompiler javaCompiler = ToolProvider.getSystemJavaCompiler();
+        assertNotNull("A JDK is required to compile the generated source", javaCompiler);
+
+        String source;
+        try (InputStream inputStream = BXMLCompilerTest.class.getResourceAsStream("template_test.bxml")) {
+            source = new BXMLCompiler().compile(TEMPLATE_TEST, inputStream);
+        }
+
+        Path directory = Files.createTempDirectory("bxml");
+        try {
+            Path sourceFile = directory.resolve("TemplateTestCompiledBXML.java");
+            Files.write(sourceFile, source.getBytes(StandardCharsets.UTF_8));
+
+            int result = javaCompiler.run(null, null, null, "-classpath", System.getProperty("java.class.path"),
+                "-d", directory.toString(), sourceFile.toString());
+            assertEquals(0, result);
+
+            try (URLClassLoader classLoader = new URLClassLoader(new URL[] {directory.toUri().toURL()},
+                BXMLCompilerTest.class.getClassLoader())) {
+                Class<?> type = classLoader.loadClass(BXMLCompiler.getClassName(TEMPLATE_TEST));
+                assertNotSame(BXMLCompilerTest.class.getClassLoader(), type.getClassLoader());
+
+                CompiledBXML compiledBXML = (CompiledBXML) type.getDeclaredConstructor().newInstance();
+
+                BXMLSerializer compiledSerializer = new BXMLSerializer();
+                Map<String, Object> compiledRoot =
+                    (Map<String, Object>) compiledSerializer.readObject(compiledBXML, null);
+
+                BXMLSerializer serializer = new BXMLSerializer();
+                Map<String, Object> root = (Map<String, Object>) serializer.readObject(
+                    BXMLCompilerTest.class.getResource("template_test.bxml"));
+
+                // The generated class builds the same object graph as the serializer
+                assertEquals(root.get("name"), compiledRoot.get("name"));
+
+                BeanAdapterSampleObject sample = (BeanAdapterSampleObject) root.get("sample");
+                BeanAdapterSampleObject compiledSample = (BeanAdapterSampleObject) compiledRoot.get("sample");
+                assertEquals(sample.getString(), compiledSample.getString());
+                assertEquals(sample.getBi(), compiledSample.getBi());
+                assertSame(compiledSample, compiledSerializer.getNamespace().get("sample"));
+
+                List<Map<String, Object>> items = (List<Map<String, Object>>) root.get("items");
+                List<Map<String, Object>> compiledItems = (List<Map<String, Object>>) compiledRoot.get("items");
+                assertEquals(items.getLength(), compiledItems.getLength());
+                for (int i = 0; i < items.getLength(); i++) {
+                    assertEquals(items.get(i).get("value"), compiledItems.get(i).get("value"));
+                }
+
+                assertSame(compiledItems.get(0), compiledSerializer.getNamespace().get("first"));
+                assertEquals(serializer.getNamespace().getCount(), compiledSerializer.getNamespace().getCount());
+            }
+        } finally {
+            try (Stream<Path> paths = Files.walk(directory)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    @Test
+    public void testFallback() throws SerializationException {
+        String bxml = "<HashMap xmlns:bxml=\"http://pivot.apache.org/bxml\""
+            + " xmlns=\"org.apache.pivot.collections\">"
+            + "<bxml:script>var x = 1;</bxml:script>"
+            + "</HashMap>";
+
+        BXMLCompiler compiler = new BXMLCompiler();
+        String source = compiler.compile("org/apache/pivot/beans/test/script_test.bxml",
+            new ByteArrayInputStream(bxml.getBytes(StandardCharsets.UTF_8)));
+
+        assertNotNull(compiler.getFallbackReason());
+        assertTrue(source.contains("public final class ScriptTestCompiledBXML implements CompiledBXML"));
+        assertTrue(source.contains("serializer.readObject(serializer.getLocation(), serializer.getResources())"));
+    }
+}
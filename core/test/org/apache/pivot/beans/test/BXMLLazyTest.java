@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.beans.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.pivot.beans.BXMLSerializer;
+import org.apache.pivot.beans.DeferredContent;
+import org.apache.pivot.collections.List;
+import org.apache.pivot.collections.Map;
+import org.apache.pivot.serialization.SerializationException;
+import org.junit.Test;
+
+public class BXMLLazyTest {
+    @SuppressWarnings("unchecked")
+    private static void verify(final Object root, final BXMLSerializer serializer)
+        throws IOException, SerializationException {
+        Map<String, Object> namespace = serializer.getNamespace();
+        List<Object> list = (List<Object>) root;
+
+        DeferredSampleObject eager = (DeferredSampleObject) list.get(0);
+        assertEquals(1, eager.getLength());
+        assertNull(eager.getDeferredContent());
+        assertTrue(namespace.containsKey("eagerChild"));
+
+        // The lazy element is created with its attributes, but not its content
+        DeferredSampleObject lazy = (DeferredSampleObject) list.get(1);
+        assertEquals("lazy", lazy.getName());
+        assertSame(lazy, namespace.get("lazy"));
+        assertEquals(0, lazy.getLength());
+        assertFalse(namespace.containsKey("lazyChild"));
+
+        DeferredContent deferredContent = lazy.getDeferredContent();
+        assertNotNull(deferredContent);
+        assertSame(lazy, deferredContent.getOwner());
+        assertFalse(deferredContent.isLoaded());
+
+        ((Map<String, Object>) namespace.get("eagerChild")).put("value", "hello");
+        deferredContent.load();
+        assertTrue(deferredContent.isLoaded());
+
+        assertEquals(3, lazy.getLength());
+        assertSame(lazy.get(0), namespace.get("lazyChild"));
+        assertEquals("1", ((Map<String, Object>) lazy.get(0)).get("value"));
+
+        DeferredSampleObject nested = (DeferredSampleObject) lazy.get(1);
+        assertSame(nested, namespace.get("nested"));
+        assertEquals(1, nested.getLength());
+
+        // References are resolved when the content is loaded
+        BeanAdapterSampleObject sample = (BeanAdapterSampleObject) lazy.get(2);
+        assertEquals("hello", sample.getString());
+        assertEquals(BigInteger.valueOf(12), sample.getBi());
+
+        // Loading again has no effect
+        deferredContent.load();
+        assertEquals(3, lazy.getLength());
+    }
+
+    @Test
+    public void testLazyTemplate() throws IOException, SerializationException {
+        URL location = BXMLLazyTest.class.getResource("lazy_test.bxml");
+
+        BXMLSerializer serializer = new BXMLSerializer();
+        verify(serializer.readObject(location), serializer);
+
+        // The template is not changed by loading the content
+        BXMLSerializer serializer2 = new BXMLSerializer();
+        verify(serializer2.readObject(location), serializer2);
+    }
+
+    @Test
+    public void testLazyStream() throws IOException, SerializationException {
+        BXMLSerializer serializer = new BXMLSerializer();
+        try (InputStream inputStream = BXMLLazyTest.class.getResourceAsStream("lazy_test.bxml")) {
+            verify(serializer.readObject(inputStream), serializer);
+        }
+    }
+
+    @Test
+    public void testLazyUnsupported() throws IOException {
+        String bxml = "<ArrayList xmlns:bxml=\"http://pivot.apache.org/bxml\""
+            + " xmlns=\"org.apache.pivot.collections\">"
+            + "<ArrayList bxml:lazy=\"true\"><HashMap/></ArrayList>"
+            + "</ArrayList>";
+
+        BXMLSerializer serializer = new BXMLSerializer();
+        try {
+            serializer.readObject(new ByteArrayInputStream(bxml.getBytes(StandardCharsets.UTF_8)));
+            fail("Expected bxml:lazy on a non-deferrable element to fail.");
+        } catch (SerializationException exception) {
+            assertTrue(exception.getMessage().contains("bxml:lazy"));
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.beans.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URL;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.pivot.beans.BXMLSerializer;
+import org.apache.pivot.collections.Map;
+import org.apache.pivot.json.JSONSerializer;
+import org.apache.pivot.serialization.SerializationException;
+import org.apache.pivot.serialization.Serializer;
+import org.junit.Test;
+
+public class BXMLPrefetchTest {
+    /**
+     * Records the threads that parse includes.
+     */
+    public static class RecordingSerializer extends JSONSerializer {
+        public static final ConcurrentLinkedQueue<Thread> THREADS = new ConcurrentLinkedQueue<>();
+        public static final ConcurrentLinkedQueue<Boolean> CONFIGURED = new ConcurrentLinkedQueue<>();
+
+        private boolean configured = false;
+
+        @Override
+        public Object readObject(final InputStream inputStream) throws IOException, SerializationException {
+            THREADS.add(Thread.currentThread());
+            CONFIGURED.add(Boolean.valueOf(configured));
+            return super.readObject(inputStream);
+        }
+    }
+
+    /**
+     * Configures the include serializers it creates.
+     */
+    public static class ConfiguringSerializer extends BXMLSerializer {
+        @Override
+        protected Serializer<?> newIncludeSerializer(final Class<? extends Serializer<?>> type)
+            throws InstantiationException, IllegalAccessException, NoSuchMethodException,
+                   InvocationTargetException {
+            Serializer<?> serializer = super.newIncludeSerializer(type);
+            if (serializer instanceof RecordingSerializer) {
+                ((RecordingSerializer) serializer).configured = true;
+            }
+
+            return serializer;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void verify(final Object root, final BXMLSerializer serializer) {
+        Map<String, Object> map = (Map<String, Object>) root;
+
+        Map<String, Object> child = (Map<String, Object>) map.get("child");
+        assertEquals("child", child.get("name"));
+        assertSame(child, serializer.getNamespace().get("child"));
+
+        Map<String, Object> data = (Map<String, Object>) map.get("data");
+        assertEquals(Integer.valueOf(1), data.get("a"));
+        assertEquals("two", data.get("b"));
+
+        // Each include creates its own objects, even when prefetched once
+        Map<String, Object> again = (Map<String, Object>) map.get("again");
+        assertNotSame(child, again);
+        assertNotSame(child.get("data"), data);
+        assertEquals(data, child.get("data"));
+    }
+
+    @Test
+    public void testPrefetch() throws IOException, SerializationException {
+        URL location = BXMLPrefetchTest.class.getResource("prefetch_test.bxml");
+
+        BXMLSerializer serializer = new BXMLSerializer();
+        verify(serializer.readObject(location), serializer);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        final AtomicInteger count = new AtomicInteger();
+
+        try {
+            BXMLSerializer prefetchSerializer = new BXMLSerializer();
+            prefetchSerializer.setPrefetchExecutor(command -> {
+                count.incrementAndGet();
+                executor.execute(command);
+            });
+
+            verify(prefetchSerializer.readObject(location), prefetchSerializer);
+        } finally {
+            executor.shutdown();
+        }
+
+        // The child document and the JSON file, each loaded once
+        assertEquals(2, count.get());
+    }
+
+    @Test
+    public void testPrefetchWithTemplateCache() throws IOException, SerializationException {
+        URL location = BXMLPrefetchTest.class.getResource("prefetch_test.bxml");
+
+        BXMLSerializer.setTemplateCacheEnabled(true);
+        try {
+            BXMLSerializer serializer = new BXMLSerializer();
+            serializer.setPrefetchExecutor(command -> new Thread(command).start());
+            verify(serializer.readObject(location), serializer);
+        } finally {
+            BXMLSerializer.setTemplateCacheEnabled(false);
+        }
+    }
+
+    @Test
+    public void testPrefetchFailure() throws IOException, SerializationException {
+        URL location = BXMLPrefetchTest.class.getResource("prefetch_test_missing.bxml");
+
+        BXMLSerializer serializer = new BXMLSerializer();
+        serializer.setPrefetchExecutor(command -> command.run());
+
+        try {
+            serializer.readObject(location);
+            fail("Expected a missing include to fail.");
+        } catch (IOException exception) {
+            assertTrue(exception.getMessage().contains("prefetch_test_missing.json"));
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPrefetchParse() throws IOException, SerializationException {
+        URL location = BXMLPrefetchTest.class.getResource("prefetch_test_parse.bxml");
+
+        BXMLSerializer.getMimeTypes().put("application/x-prefetch-test", RecordingSerializer.class);
+        try {
+            BXMLSerializer serializer = new BXMLSerializer();
+            serializer.setPrefetchExecutor(command -> new Thread(command).start());
+            Map<String, Object> root = (Map<String, Object>) serializer.readObject(location);
+
+            // The first include gets the value parsed by the prefetch thread
+            Thread[] threads = RecordingSerializer.THREADS.toArray(new Thread[0]);
+            assertEquals(2, threads.length);
+            assertNotSame(Thread.currentThread(), threads[0]);
+            assertSame(Thread.currentThread(), threads[1]);
+
+            assertNotSame(root.get("first"), root.get("second"));
+            assertEquals(root.get("first"), root.get("second"));
+        } finally {
+            BXMLSerializer.getMimeTypes().remove("application/x-prefetch-test");
+            RecordingSerializer.THREADS.clear();
+            RecordingSerializer.CONFIGURED.clear();
+        }
+    }
+
+    @Test
+    public void testPrefetchIncludeSerializer() throws IOException, SerializationException {
+        URL location = BXMLPrefetchTest.class.getResource("prefetch_test_parse.bxml");
+
+        BXMLSerializer.getMimeTypes().put("application/x-prefetch-test", RecordingSerializer.class);
+        try {
+            BXMLSerializer serializer = new ConfiguringSerializer();
+            serializer.setPrefetchExecutor(command -> new Thread(command).start());
+            serializer.readObject(location);
+
+            // The prefetch thread parses with a serializer created by the subclass too
+            assertEquals(2, RecordingSerializer.THREADS.size());
+            assertNotSame(Thread.currentThread(), RecordingSerializer.THREADS.peek());
+            for (Boolean configured : RecordingSerializer.CONFIGURED) {
+                assertTrue(configured.booleanValue());
+            }
+        } finally {
+            BXMLSerializer.getMimeTypes().remove("application/x-prefetch-test");
+            RecordingSerializer.THREADS.clear();
+            RecordingSerializer.CONFIGURED.clear();
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.beans.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.script.AbstractScriptEngine;
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+import javax.script.ScriptException;
+import javax.script.SimpleBindings;
+
+import org.apache.pivot.beans.BXMLSerializer;
+import org.apache.pivot.serialization.SerializationException;
+import org.junit.Test;
+
+public class BXMLScriptTest {
+    /**
+     * A trivial script language, in which a script is the name of the
+     * variable it evaluates to.
+     */
+    public static class TestScriptEngine extends AbstractScriptEngine implements Compilable {
+        private final ScriptEngineFactory factory;
+
+        public TestScriptEngine(final ScriptEngineFactory factory) {
+            this.factory = factory;
+        }
+
+        @Override
+        public Object eval(final String script, final ScriptContext context) {
+            ENGINE_SCOPE_ARGUMENTS.set(context.getBindings(ScriptContext.ENGINE_SCOPE).containsKey("arguments"));
+            return context.getAttribute(script.trim());
+        }
+
+        @Override
+        public Object eval(final Reader reader, final ScriptContext context) throws ScriptException {
+            throw new ScriptException("Not supported.");
+        }
+
+        @Override
+        public CompiledScript compile(final String script) {
+            COMPILE_COUNT.incrementAndGet();
+
+            return new CompiledScript() {
+                @Override
+                public Object eval(final ScriptContext context) {
+                    return TestScriptEngine.this.eval(script, context);
+                }
+
+                @Override
+                public ScriptEngine getEngine() {
+                    return TestScriptEngine.this;
+                }
+            };
+        }
+
+        @Override
+        public CompiledScript compile(final Reader script) throws ScriptException {
+            throw new ScriptException("Not supported.");
+        }
+
+        @Override
+        public Bindings createBindings() {
+            return new SimpleBindings();
+        }
+
+        @Override
+        public ScriptEngineFactory getFactory() {
+            return factory;
+        }
+    }
+
+    /**
+     * Factory for the test script engine, registered in
+     * <tt>META-INF/services</tt>.
+     */
+    public static class TestScriptEngineFactory implements ScriptEngineFactory {
+        @Override
+        public String getEngineName() {
+            return LANGUAGE;
+        }
+
+        @Override
+        public String getEngineVersion() {
+            return "1.0";
+        }
+
+        @Override
+        public List<String> getExtensions() {
+            return Arrays.asList(LANGUAGE);
+        }
+
+        @Override
+        public List<String> getMimeTypes() {
+            return Arrays.asList("text/x-" + LANGUAGE);
+        }
+
+        @Override
+        public List<String> getNames() {
+            return Arrays.asList(LANGUAGE);
+        }
+
+        @Override
+        public String getLanguageName() {
+            return LANGUAGE;
+        }
+
+        @Override
+        public String getLanguageVersion() {
+            return "1.0";
+        }
+
+        @Override
+        public Object getParameter(final String key) {
+            return null;
+        }
+
+        @Override
+        public String getMethodCallSyntax(final String obj, final String m, final String... args) {
+            return null;
+        }
+
+        @Override
+        public String getOutputStatement(final String toDisplay) {
+            return toDisplay;
+        }
+
+        @Override
+        public String getProgram(final String... statements) {
+            return String.join("\n", statements);
+        }
+
+        @Override
+        public ScriptEngine getScriptEngine() {
+            return new TestScriptEngine(this);
+        }
+    }
+
+    public static final String LANGUAGE = "bxmltest";
+
+    private static final AtomicInteger COMPILE_COUNT = new AtomicInteger();
+    private static final AtomicBoolean ENGINE_SCOPE_ARGUMENTS = new AtomicBoolean();
+
+    @Test
+    public void testCompiledHandler() throws IOException, SerializationException {
+        URL location = BXMLScriptTest.class.getResource("script_test.bxml");
+        BXMLSerializer.clearScriptCache();
+
+        BXMLSerializer serializer = new BXMLSerializer();
+        ScriptSampleSource source = (ScriptSampleSource) serializer.readObject(location);
+
+        int compileCount = COMPILE_COUNT.get();
+
+        // The handler evaluates "arguments", which are bound for the call only
+        assertArrayEquals(new Object[] {"a"}, (Object[]) source.fireChanged("a"));
+        assertArrayEquals(new Object[] {"b"}, (Object[]) source.fireChanged("b"));
+        assertEquals(compileCount + 1, COMPILE_COUNT.get());
+
+        // Compiled scripts are shared by serializers
+        BXMLSerializer serializer2 = new BXMLSerializer();
+        ScriptSampleSource source2 = (ScriptSampleSource) serializer2.readObject(location);
+        assertArrayEquals(new Object[] {"c"}, (Object[]) source2.fireChanged("c"));
+        assertEquals(compileCount + 1, COMPILE_COUNT.get());
+    }
+
+    @Test
+    public void testHandlerBindings() throws IOException, SerializationException {
+        URL location = BXMLScriptTest.class.getResource("script_test.bxml");
+
+        BXMLSerializer serializer = new BXMLSerializer();
+        ScriptSampleSource source = (ScriptSampleSource) serializer.readObject(location);
+
+        // The arguments are not added to the engine's bindings
+        assertArrayEquals(new Object[] {"a"}, (Object[]) source.fireChanged("a"));
+        assertFalse(ENGINE_SCOPE_ARGUMENTS.get());
+        assertFalse(serializer.getNamespace().containsKey("arguments"));
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.beans.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.net.URL;
+
+import org.apache.pivot.beans.BXMLSerializer;
+import org.apache.pivot.beans.BXMLTemplate;
+import org.apache.pivot.collections.List;
+import org.apache.pivot.collections.Map;
+import org.apache.pivot.serialization.SerializationException;
+import org.junit.Test;
+
+public class BXMLTemplateTest {
+    @SuppressWarnings("unchecked")
+    private static void verify(final Object root, final BXMLSerializer serializer) {
+        Map<String, Object> map = (Map<String, Object>) root;
+        assertEquals("template", map.get("name"));
+
+        BeanAdapterSampleObject sample = (BeanAdapterSampleObject) map.get("sample");
+        assertEquals("hello", sample.getString());
+        assertEquals(BigInteger.valueOf(12), sample.getBi());
+        assertSame(sample, serializer.getNamespace().get("sample"));
+
+        List<Map<String, Object>> items = (List<Map<String, Object>>) map.get("items");
+        assertEquals(2, items.getLength());
+        assertEquals("2", items.get(1).get("value"));
+        assertSame(items.get(0), serializer.getNamespace().get("first"));
+    }
+
+    @Test
+    public void testReadTemplate() throws IOException, SerializationException {
+        URL location = BXMLTemplateTest.class.getResource("template_test.bxml");
+
+        BXMLSerializer streamSerializer = new BXMLSerializer();
+        try (InputStream inputStream = location.openStream()) {
+            verify(streamSerializer.readObject(inputStream), streamSerializer);
+        }
+
+        BXMLTemplate template = BXMLTemplate.compile(location);
+
+        BXMLSerializer serializer1 = new BXMLSerializer();
+        Object root1 = serializer1.readObject(template);
+        verify(root1, serializer1);
+
+        BXMLSerializer serializer2 = new BXMLSerializer();
+        Object root2 = serializer2.readObject(template);
+        verify(root2, serializer2);
+
+        assertNotSame(root1, root2);
+    }
+
+    @Test
+    public void testTemplateCache() throws IOException, SerializationException {
+        URL location = BXMLTemplateTest.class.getResource("template_test.bxml");
+
+        BXMLTemplate template = BXMLSerializer.getTemplate(location);
+        assertSame(template, BXMLSerializer.getTemplate(location));
+
+        // Documents read by URL only use the cache when it is enabled
+        assertFalse(BXMLSerializer.isTemplateCacheEnabled());
+
+        BXMLSerializer.setTemplateCacheEnabled(true);
+        try {
+            BXMLSerializer serializer = new BXMLSerializer();
+            verify(serializer.readObject(location), serializer);
+        } finally {
+            BXMLSerializer.setTemplateCacheEnabled(false);
+        }
+
+        BXMLSerializer.clearTemplateCache();
+        assertNotSame(template, BXMLSerializer.getTemplate(location));
+    }
+
+    @Test
+    public void testTemplateCacheSize() throws IOException, SerializationException {
+        URL location1 = BXMLTemplateTest.class.getResource("template_test.bxml");
+        URL location2 = new URL(location1, "template_test.bxml?copy");
+
+        BXMLSerializer.setTemplateCacheSize(1);
+        try {
+            BXMLTemplate template1 = BXMLSerializer.getTemplate(location1);
+            assertSame(template1, BXMLSerializer.getTemplate(location1));
+
+            // Loading a second document evicts the first
+            BXMLSerializer.getTemplate(location2);
+            assertNotSame(template1, BXMLSerializer.getTemplate(location1));
+        } finally {
+            BXMLSerializer.setTemplateCacheSize(BXMLSerializer.DEFAULT_TEMPLATE_CACHE_SIZE);
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testResolvedPlan() throws IOException, SerializationException {
+        URL location = BXMLTemplateTest.class.getResource("template_test_plan.bxml");
+
+        BXMLSerializer.setTemplateCacheEnabled(true);
+        try {
+            // The second read uses the plans resolved by the first, but resolves values again
+            for (int i = 0; i < 2; i++) {
+                BXMLSerializer serializer = new BXMLSerializer();
+                Map<String, Object> root = (Map<String, Object>) serializer.readObject(location);
+
+                Map<String, Object> references = (Map<String, Object>) root.get("references");
+                assertSame(root.get("first"), references.get("value"));
+                assertEquals("$first", references.get("escaped"));
+                assertTrue(references.containsKey("none"));
+                assertNull(references.get("none"));
+                assertEquals(new URL(location, "template_test.bxml"), references.get("url"));
+                assertEquals("@text", references.get("literal"));
+            }
+        } finally {
+            BXMLSerializer.setTemplateCacheEnabled(false);
+        }
+    }
+}
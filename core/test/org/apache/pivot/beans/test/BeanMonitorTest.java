@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.beans.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.pivot.beans.BeanMonitor;
+import org.apache.pivot.beans.PropertyChangeListener;
+import org.apache.pivot.util.ListenerList;
+import org.junit.Test;
+
+public class BeanMonitorTest {
+    public interface SampleListener {
+        public void valueChanged(SampleBean bean, int previousValue);
+        public void somethingHappened(SampleBean bean);
+    }
+
+    public static class SampleBean {
+        private int value = 0;
+
+        private ListenerList<SampleListener> sampleListeners = new ListenerList<SampleListener>() {
+        };
+
+        public int getValue() {
+            return value;
+        }
+
+        public void setValue(int value) {
+            int previousValue = this.value;
+            this.value = value;
+            for (SampleListener listener : sampleListeners) {
+                listener.valueChanged(this, previousValue);
+            }
+        }
+
+        public ListenerList<SampleListener> getSampleListeners() {
+            return sampleListeners;
+        }
+    }
+
+    public static class SampleListenerAdapter implements SampleListener {
+        public static int count = 0;
+
+        private PropertyChangeListener listener;
+
+        public SampleListenerAdapter(PropertyChangeListener listener) {
+            this.listener = listener;
+            count++;
+        }
+
+        @Override
+        public void valueChanged(SampleBean bean, int previousValue) {
+            listener.propertyChanged(bean, "value");
+        }
+
+        @Override
+        public void somethingHappened(SampleBean bean) {
+            // empty block
+        }
+    }
+
+    private int changeCount = 0;
+
+    private PropertyChangeListener propertyChangeListener = new PropertyChangeListener() {
+        @Override
+        public void propertyChanged(Object bean, String propertyName) {
+            assertEquals("value", propertyName);
+            changeCount++;
+        }
+    };
+
+    private void testMonitor() {
+        SampleBean bean = new SampleBean();
+        BeanMonitor monitor = new BeanMonitor(bean);
+
+        assertTrue(monitor.isNotifying("value"));
+        assertFalse(monitor.isNotifying("something"));
+
+        changeCount = 0;
+        monitor.getPropertyChangeListeners().add(propertyChangeListener);
+        assertEquals(1, bean.getSampleListeners().getLength());
+
+        bean.setValue(1);
+        bean.setValue(2);
+        assertEquals(2, changeCount);
+
+        monitor.getPropertyChangeListeners().remove(propertyChangeListener);
+        assertTrue(bean.getSampleListeners().isEmpty());
+
+        bean.setValue(3);
+        assertEquals(2, changeCount);
+    }
+
+    @Test
+    public void testProxyListeners() {
+        testMonitor();
+    }
+
+    @Test
+    public void testListenerAdapterFactory() {
+        BeanMonitor.setListenerAdapterFactory(SampleListener.class, SampleListenerAdapter::new);
+        try {
+            SampleListenerAdapter.count = 0;
+            testMonitor();
+            assertEquals(1, SampleListenerAdapter.count);
+        } finally {
+            BeanMonitor.setListenerAdapterFactory(SampleListener.class, null);
+        }
+    }
+}
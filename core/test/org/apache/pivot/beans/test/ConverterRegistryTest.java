@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.beans.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.pivot.beans.BeanAdapter;
+import org.apache.pivot.beans.Converter;
+import org.apache.pivot.beans.ConverterRegistry;
+import org.apache.pivot.util.CalendarDate;
+import org.apache.pivot.util.Time;
+import org.junit.Test;
+
+public class ConverterRegistryTest {
+    private static final class Temperature {
+        public final double degrees;
+
+        public Temperature(final double degrees) {
+            this.degrees = degrees;
+        }
+    }
+
+    @Test
+    public void testBuiltInConverters() {
+        assertEquals(Integer.valueOf(42), BeanAdapter.coerce("42", Integer.TYPE, "int"));
+        assertEquals(Long.valueOf(3), BeanAdapter.coerce(3.7, Long.class, "long"));
+        assertEquals(Boolean.TRUE, BeanAdapter.coerce("true", Boolean.TYPE, "boolean"));
+        assertEquals(new BigDecimal("1.5"), BeanAdapter.coerce(1.5, BigDecimal.class, "decimal"));
+        assertEquals("12", BeanAdapter.coerce(12, String.class, "string"));
+        assertEquals(CalendarDate.decode("2018-03-17"),
+            BeanAdapter.coerce("2018-03-17", CalendarDate.class, "date"));
+        assertEquals(Time.decode("12:30:00"), BeanAdapter.coerce("12:30:00", Time.class, "time"));
+    }
+
+    @Test
+    public void testEnumConverter() {
+        assertEquals(TimeUnit.SECONDS, BeanAdapter.coerce("seconds", TimeUnit.class, "unit"));
+        assertSame(ConverterRegistry.get(String.class, TimeUnit.class),
+            ConverterRegistry.get(String.class, TimeUnit.class));
+
+        try {
+            BeanAdapter.coerce("fortnights", TimeUnit.class, "unit");
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException exception) {
+            System.out.println(exception.getMessage());
+        }
+    }
+
+    @Test
+    public void testCustomConverter() {
+        assertNull(ConverterRegistry.get(String.class, Temperature.class));
+
+        Converter<String, Temperature> converter = value -> new Temperature(Double.parseDouble(value));
+        ConverterRegistry.register(String.class, Temperature.class, converter);
+        try {
+            Temperature temperature = BeanAdapter.coerce("21.5", Temperature.class, "temperature");
+            assertEquals(21.5, temperature.degrees, 0.0);
+        } finally {
+            ConverterRegistry.unregister(String.class, Temperature.class);
+        }
+
+        assertNull(ConverterRegistry.get(String.class, Temperature.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoConverter() {
+        BeanAdapter.coerce("abc", Temperature.class, "temperature");
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.beans.test;
+
+import org.apache.pivot.beans.Deferrable;
+import org.apache.pivot.beans.DeferredContent;
+import org.apache.pivot.collections.ArrayList;
+
+/**
+ * Sequence that supports <tt>bxml:lazy</tt>, for the deferred content tests.
+ */
+public class DeferredSampleObject extends ArrayList<Object> implements Deferrable {
+    private static final long serialVersionUID = 1L;
+
+    private String name = null;
+    private transient DeferredContent deferredContent = null;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(final String name) {
+        this.name = name;
+    }
+
+    public DeferredContent getDeferredContent() {
+        return deferredContent;
+    }
+
+    @Override
+    public void setDeferredContent(final DeferredContent deferredContent) {
+        this.deferredContent = deferredContent;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.util.concurrent.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.pivot.util.concurrent.LatencyHistogram;
+import org.apache.pivot.util.concurrent.Task;
+import org.apache.pivot.util.concurrent.TaskExecutorService;
+import org.junit.Test;
+
+public class TaskExecutorServiceTest {
+    @Test
+    public void testLatencyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(0.5));
+
+        histogram.record(500);
+        histogram.record(1500);
+        histogram.record(3000);
+        histogram.record(-1);
+
+        assertEquals(4, histogram.getCount());
+        assertEquals(5000, histogram.getTotal());
+        assertEquals(3000, histogram.getMax());
+        assertEquals(2, histogram.get(0));
+        assertEquals(1, histogram.get(1));
+        assertEquals(1, histogram.get(2));
+        assertEquals(1024, histogram.getPercentile(0.5));
+        assertEquals(3000, histogram.getPercentile(1));
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.getUpperBound(LatencyHistogram.BUCKET_COUNT - 1));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        TaskExecutorService executorService = new TaskExecutorService(2);
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try {
+            for (int i = 0; i < 3; i++) {
+                executorService.execute(() -> {
+                    started.countDown();
+
+                    try {
+                        release.await();
+                    } catch (InterruptedException exception) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            assertEquals(2, executorService.getActiveCount());
+            assertEquals(1, executorService.getQueueDepth());
+
+            release.countDown();
+        } finally {
+            executorService.shutdown();
+        }
+
+        assertTrue(executorService.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(0, executorService.getQueueDepth());
+        assertEquals(0, executorService.getActiveCount());
+        assertEquals(3, executorService.getCompletedCount());
+        assertEquals(3, executorService.getExecutionLatency().getCount());
+        assertEquals(3, executorService.getQueueLatency().getCount());
+    }
+
+    private static boolean isKeptAlive(TaskExecutorService executorService) throws Exception {
+        try {
+            return executorService.submit(() -> {
+                for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                    if (thread.getName().equals("Pivot Task Keep-Alive") && !thread.isDaemon()) {
+                        return true;
+                    }
+                }
+
+                return false;
+            }).get(5, TimeUnit.SECONDS);
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void testDaemon() throws Exception {
+        // Running commands keep the VM alive unless the service is a daemon service
+        assertFalse(new TaskExecutorService(1).isDaemon());
+        assertTrue(isKeptAlive(new TaskExecutorService(1)));
+        assertTrue(new TaskExecutorService(1, true).isDaemon());
+    }
+
+    @Test
+    public void testDefaultExecutorService() {
+        assertTrue(Task.DEFAULT_EXECUTOR_SERVICE instanceof TaskExecutorService);
+    }
+}
@@ -16,10 +16,32 @@
  */
 package org.apache.pivot.util.concurrent.test;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.pivot.io.IOTask;
+import org.apache.pivot.util.concurrent.AbortException;
+
 import org.apache.pivot.util.concurrent.Task;
+import org.apache.pivot.util.concurrent.TaskExecutionException;
 import org.apache.pivot.util.concurrent.TaskGroup;
 import org.apache.pivot.util.concurrent.TaskListener;
 import org.apache.pivot.util.concurrent.TaskSequence;
+import org.apache.pivot.util.concurrent.TimeoutException;
 import org.junit.Test;
 
 public class TaskTest {
@@ -51,6 +73,344 @@ public class TaskTest {
         }
     }
 
+    public static class ValueTask<V> extends Task<V> {
+        private final V value;
+        private final long delay;
+
+        public ValueTask(V value, long delay) {
+            this.value = value;
+            this.delay = delay;
+        }
+
+        @Override
+        public V execute() throws TaskExecutionException {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException exception) {
+                throw new TaskExecutionException(exception);
+            }
+
+            if (abort) {
+                throw new TaskExecutionException("Aborted");
+            }
+
+            return value;
+        }
+    }
+
+    public static class CountingTask extends Task<Void> {
+        private final AtomicInteger running;
+        private final AtomicInteger peak;
+
+        public CountingTask(ExecutorService executorService, AtomicInteger running, AtomicInteger peak) {
+            super(executorService);
+
+            this.running = running;
+            this.peak = peak;
+        }
+
+        @Override
+        public Void execute() throws TaskExecutionException {
+            int count = running.incrementAndGet();
+            peak.accumulateAndGet(count, Math::max);
+
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException exception) {
+                throw new TaskExecutionException(exception);
+            } finally {
+                running.decrementAndGet();
+            }
+
+            return null;
+        }
+    }
+
+    public static class BlockingReadTask extends IOTask<Integer> {
+        private final Socket socket;
+
+        public BlockingReadTask(Socket socket) {
+            this.socket = socket;
+        }
+
+        @Override
+        public Integer execute() throws TaskExecutionException {
+            // Socket reads ignore interrupts, so only closing the stream releases this thread
+            try (InputStream inputStream = new MonitoredInputStream(socket.getInputStream())) {
+                return inputStream.read();
+            } catch (IOException exception) {
+                throw new TaskExecutionException(exception);
+            }
+        }
+    }
+
+    public static class AbortCountingTask extends ValueTask<String> {
+        private final CountDownLatch aborted;
+
+        public AbortCountingTask(CountDownLatch aborted) {
+            super("slow", 2000);
+
+            this.aborted = aborted;
+        }
+
+        @Override
+        public synchronized void abort() {
+            super.abort();
+            aborted.countDown();
+        }
+    }
+
+    public static class FailingTask extends Task<String> {
+        @Override
+        public String execute() throws TaskExecutionException {
+            throw new TaskExecutionException("Failed");
+        }
+    }
+
+    @Test
+    public void testToCompletableFuture() throws Exception {
+        assertEquals("a", new ValueTask<>("a", 10).toCompletableFuture().get());
+
+        try {
+            new FailingTask().toCompletableFuture().get();
+            fail("Expected an ExecutionException");
+        } catch (ExecutionException exception) {
+            assertTrue(exception.getCause() instanceof TaskExecutionException);
+        }
+    }
+
+    @Test
+    public void testFromFuture() throws Exception {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        Task<String> task = Task.fromFuture(future);
+        CompletableFuture<String> result = task.toCompletableFuture();
+
+        future.complete("b");
+        assertEquals("b", result.get());
+        assertEquals("b", task.execute());
+    }
+
+    @Test
+    public void testThenCompose() throws Exception {
+        Task<Integer> task = new ValueTask<>("abc", 10).thenCompose(value -> new ValueTask<>(value.length(), 10));
+        assertEquals(Integer.valueOf(3), task.toCompletableFuture().get());
+        assertEquals(Integer.valueOf(3), task.execute());
+
+        Task<String> failing = new FailingTask().thenCompose(value -> new ValueTask<>(value, 0));
+        try {
+            failing.execute();
+            fail("Expected a TaskExecutionException");
+        } catch (TaskExecutionException exception) {
+            assertEquals("Failed", exception.getMessage());
+        }
+
+        CompletableFuture<String> future = failing.toCompletableFuture();
+        try {
+            future.get();
+            fail("Expected an ExecutionException");
+        } catch (ExecutionException exception) {
+            assertSame(failing.getFault(), exception.getCause());
+        }
+    }
+
+    @Test
+    public void testAllOfAnyOf() throws Exception {
+        ValueTask<String> task1 = new ValueTask<>("c", 50);
+        ValueTask<String> task2 = new ValueTask<>("d", 100);
+        Task.allOf(task1, task2).execute();
+        assertEquals("c", task1.getResult());
+        assertEquals("d", task2.getResult());
+
+        Task<Object> any = Task.anyOf(new ValueTask<>("fast", 10), new ValueTask<>("slow", 2000));
+        assertEquals("fast", any.execute());
+    }
+
+    @Test
+    public void testAbortAllOfThenCompose() throws Exception {
+        final CountDownLatch aborted = new CountDownLatch(2);
+
+        Task<Void> all = Task.allOf(new AbortCountingTask(aborted));
+        CompletableFuture<Void> future = all.toCompletableFuture();
+        all.abort();
+        assertTrue(future.isCancelled());
+
+        // A timeout reaches the composed tasks the same way
+        Task<Integer> composed = new AbortCountingTask(aborted).thenCompose(value -> new ValueTask<>(value.length(), 0));
+        composed.setTimeout(50);
+        try {
+            composed.toCompletableFuture().get();
+            fail("Expected an ExecutionException");
+        } catch (ExecutionException exception) {
+            assertTrue(exception.getCause() instanceof TimeoutException);
+        }
+
+        assertTrue(aborted.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testBoundedTaskGroup() throws Exception {
+        // A single worker thread used to deadlock, since the group waited on it for its children
+        ExecutorService executorService = Executors.newFixedThreadPool(1);
+        try {
+            AtomicInteger running = new AtomicInteger();
+            AtomicInteger peak = new AtomicInteger();
+
+            TaskGroup taskGroup = new TaskGroup(executorService);
+            for (int i = 0; i < 4; i++) {
+                taskGroup.add(new CountingTask(executorService, running, peak));
+            }
+
+            taskGroup.toCompletableFuture().get();
+            assertEquals(1, peak.get());
+
+            ExecutorService pool = Executors.newFixedThreadPool(4);
+            try {
+                peak.set(0);
+                TaskGroup boundedGroup = new TaskGroup();
+                for (int i = 0; i < 6; i++) {
+                    boundedGroup.add(new CountingTask(pool, running, peak));
+                }
+
+                boundedGroup.setMaxConcurrency(2);
+                boundedGroup.execute();
+                assertEquals(2, peak.get());
+
+                for (Task<?> task : boundedGroup) {
+                    assertTrue(boundedGroup.getExecutionTime(task) >= 0);
+                }
+            } finally {
+                pool.shutdown();
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void testFailFast() throws Exception {
+        TaskGroup taskGroup = new TaskGroup();
+        ValueTask<String> slowTask = new ValueTask<>("slow", 2000);
+        taskGroup.add(slowTask);
+        taskGroup.add(new FailingTask());
+
+        // Faults are ignored unless the group fails fast
+        TaskSequence taskSequence = new TaskSequence();
+        taskSequence.add(new FailingTask());
+        ValueTask<String> nextTask = new ValueTask<>("next", 0);
+        taskSequence.add(nextTask);
+        taskSequence.execute();
+        assertEquals("next", nextTask.getResult());
+
+        taskSequence.setFailFast(true);
+        try {
+            taskSequence.execute();
+            fail("Expected a TaskExecutionException");
+        } catch (TaskExecutionException exception) {
+            assertEquals(-1, taskSequence.getExecutionTime(nextTask));
+        }
+
+        taskGroup.setFailFast(true);
+        long start = System.currentTimeMillis();
+        try {
+            taskGroup.execute();
+            fail("Expected a TaskExecutionException");
+        } catch (TaskExecutionException exception) {
+            assertEquals("Failed", exception.getMessage());
+            assertTrue(System.currentTimeMillis() - start < 2000);
+        }
+    }
+
+    @Test
+    public void testAbortTaskSequence() throws Exception {
+        TaskSequence taskSequence = new TaskSequence();
+        ValueTask<String> firstTask = new ValueTask<>("first", 200);
+        ValueTask<String> secondTask = new ValueTask<>("second", 0);
+        taskSequence.add(firstTask);
+        taskSequence.add(secondTask);
+
+        CompletableFuture<Void> future = taskSequence.toCompletableFuture();
+        taskSequence.abort();
+
+        try {
+            future.get();
+            fail("Expected an ExecutionException");
+        } catch (ExecutionException exception) {
+            assertTrue(exception.getCause() instanceof AbortException);
+        }
+
+        assertEquals(-1, taskSequence.getExecutionTime(secondTask));
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        ValueTask<String> task = new ValueTask<>("late", 5000);
+        task.setTimeout(100);
+
+        long start = System.currentTimeMillis();
+        try {
+            task.toCompletableFuture().get();
+            fail("Expected an ExecutionException");
+        } catch (ExecutionException exception) {
+            assertTrue(exception.getCause() instanceof TimeoutException);
+            assertTrue(System.currentTimeMillis() - start < 5000);
+        }
+
+        // The timeout applies to each execution
+        task.setTimeout(2000);
+        ValueTask<String> quickTask = new ValueTask<>("quick", 0);
+        quickTask.setTimeout(2000);
+        assertEquals("quick", quickTask.toCompletableFuture().get());
+    }
+
+    @Test
+    public void testIOTaskTimeout() throws Exception {
+        try (ServerSocket serverSocket = new ServerSocket(0);
+            Socket socket = new Socket(serverSocket.getInetAddress(), serverSocket.getLocalPort());
+            Socket accepted = serverSocket.accept()) {
+            // The accepted end stays open, so reads on the socket block
+            assertTrue(accepted.isConnected());
+            BlockingReadTask task = new BlockingReadTask(socket);
+            task.setTimeout(100);
+
+            try {
+                task.toCompletableFuture().get();
+                fail("Expected an ExecutionException");
+            } catch (ExecutionException exception) {
+                assertTrue(exception.getCause() instanceof TimeoutException);
+            }
+        }
+    }
+
+    @Test
+    public void testAbortTaskGroup() throws Exception {
+        try (ServerSocket serverSocket = new ServerSocket(0);
+            Socket socket = new Socket(serverSocket.getInetAddress(), serverSocket.getLocalPort());
+            Socket accepted = serverSocket.accept()) {
+            // The accepted end stays open, so reads on the socket block
+            assertTrue(accepted.isConnected());
+            BlockingReadTask task = new BlockingReadTask(socket);
+
+            TaskGroup taskGroup = new TaskGroup();
+            taskGroup.add(task);
+            taskGroup.setTimeout(100);
+
+            try {
+                taskGroup.toCompletableFuture().get();
+                fail("Expected an ExecutionException");
+            } catch (ExecutionException exception) {
+                assertTrue(exception.getCause() instanceof TimeoutException);
+            }
+
+            // The child's stream was closed, so the child completes as well
+            long start = System.currentTimeMillis();
+            while (task.isPending() && System.currentTimeMillis() - start < 5000) {
+                Thread.sleep(10);
+            }
+
+            assertTrue(!task.isPending());
+        }
+    }
+
     @Test
     public void testTaskSequence() {
         TaskListener<Void> taskListener = new TaskListener<Void>() {
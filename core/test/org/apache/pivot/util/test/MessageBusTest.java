@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.util.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.util.MessageBus;
+import org.apache.pivot.util.MessageBusListener;
+import org.junit.Test;
+
+public class MessageBusTest {
+    private interface Tagged {
+        // empty block
+    }
+
+    private static class BaseMessage {
+        // empty block
+    }
+
+    private static class TaggedMessage extends BaseMessage implements Tagged {
+        private final int value;
+
+        public TaggedMessage(int value) {
+            this.value = value;
+        }
+    }
+
+    @Test
+    public void testTopicHierarchy() {
+        ArrayList<String> received = new ArrayList<>();
+        MessageBusListener<TaggedMessage> messageListener = message -> received.add("message");
+        MessageBusListener<BaseMessage> baseListener = message -> received.add("base");
+        MessageBusListener<Tagged> taggedListener = message -> received.add("tagged");
+
+        MessageBus.subscribe(TaggedMessage.class, messageListener);
+        MessageBus.subscribe(BaseMessage.class, baseListener);
+        MessageBus.subscribe(Tagged.class, taggedListener);
+
+        MessageBus.sendMessage(new TaggedMessage(1));
+        assertEquals(new ArrayList<>("message", "base", "tagged"), received);
+
+        // A message of the superclass doesn't reach the subclass topic
+        received.clear();
+        MessageBus.sendMessage(new BaseMessage());
+        assertEquals(new ArrayList<>("base"), received);
+
+        MessageBus.unsubscribe(TaggedMessage.class, messageListener);
+        MessageBus.unsubscribe(BaseMessage.class, baseListener);
+        MessageBus.unsubscribe(Tagged.class, taggedListener);
+
+        received.clear();
+        MessageBus.sendMessage(new TaggedMessage(2));
+        assertEquals(0, received.getLength());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsubscribeUnknownTopic() {
+        MessageBus.unsubscribe(Tagged.class, message -> { });
+    }
+
+    @Test
+    public void testExecutor() throws Exception {
+        LinkedBlockingQueue<Runnable> queue = new LinkedBlockingQueue<>();
+        Executor executor = queue::add;
+        ArrayList<Integer> received = new ArrayList<>();
+        MessageBusListener<TaggedMessage> messageListener = message -> received.add(message.value);
+
+        MessageBus.subscribe(TaggedMessage.class, messageListener, executor);
+        try {
+            MessageBus.sendMessage(new TaggedMessage(1));
+            MessageBus.sendMessage(new TaggedMessage(2));
+
+            // Nothing is delivered until the executor runs the deliveries
+            assertEquals(0, received.getLength());
+            assertEquals(2, queue.size());
+
+            for (Runnable runnable : queue) {
+                runnable.run();
+            }
+
+            assertEquals(new ArrayList<>(1, 2), received);
+        } finally {
+            MessageBus.unsubscribe(TaggedMessage.class, messageListener);
+        }
+    }
+
+    @Test
+    public void testCoalesce() throws Exception {
+        LinkedBlockingQueue<Runnable> queue = new LinkedBlockingQueue<>();
+        Executor executor = queue::add;
+        ArrayList<Integer> received = new ArrayList<>();
+        MessageBusListener<TaggedMessage> messageListener = message -> received.add(message.value);
+
+        MessageBus.subscribe(TaggedMessage.class, messageListener, executor, true);
+        try {
+            for (int i = 0; i < 100; i++) {
+                MessageBus.sendMessage(new TaggedMessage(i));
+            }
+
+            assertEquals(1, queue.size());
+            queue.take().run();
+            assertEquals(1, received.getLength());
+            assertEquals(99, (int) received.get(0));
+
+            MessageBus.sendMessage(new TaggedMessage(100));
+            queue.take().run();
+            assertEquals(new ArrayList<>(99, 100), received);
+        } finally {
+            MessageBus.unsubscribe(TaggedMessage.class, messageListener);
+        }
+    }
+
+    @Test
+    public void testSendMessageAsync() throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+        Thread[] threads = new Thread[1];
+        MessageBusListener<TaggedMessage> messageListener = message -> {
+            threads[0] = Thread.currentThread();
+            done.countDown();
+        };
+
+        MessageBus.subscribe(TaggedMessage.class, messageListener);
+        try {
+            MessageBus.sendMessageAsync(new TaggedMessage(1));
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertTrue(threads[0] != Thread.currentThread());
+        } finally {
+            MessageBus.unsubscribe(TaggedMessage.class, messageListener);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.util.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.List;
+import org.apache.pivot.collections.Map;
+import org.apache.pivot.json.BinaryJSONSerializer;
+import org.apache.pivot.json.JSONSerializer;
+import org.apache.pivot.serialization.SerializationException;
+import org.apache.pivot.util.Resources;
+import org.apache.pivot.util.ResourcesCompiler;
+import org.junit.After;
+import org.junit.Test;
+
+public class ResourcesCacheTest {
+    private static final String BASE_NAME = ParentResourcesTest.class.getName();
+
+    @After
+    public void after() {
+        Resources.setCacheEnabled(true);
+        Resources.clearCache();
+    }
+
+    @Test
+    public void testSharedBundle() throws Exception {
+        Resources first = new Resources(BASE_NAME + "Parent");
+        Resources second = new Resources(BASE_NAME + "Parent");
+        assertSame("Cached map", first.get("myMap"), second.get("myMap"));
+
+        Resources.clearCache();
+        Resources third = new Resources(BASE_NAME + "Parent");
+        assertNotSame("Reloaded map", first.get("myMap"), third.get("myMap"));
+        assertEquals("Reloaded value", first.get("someMagicNumber"), third.get("someMagicNumber"));
+
+        Resources.setCacheEnabled(false);
+        Resources fourth = new Resources(BASE_NAME + "Parent");
+        assertNotSame("Uncached map", third.get("myMap"), fourth.get("myMap"));
+    }
+
+    @Test
+    public void testLocales() throws Exception {
+        Resources english = new Resources(BASE_NAME, Locale.ENGLISH);
+        Resources french = new Resources(BASE_NAME, Locale.FRENCH);
+        assertEquals("This is specifically English", english.get("languageKey"));
+        assertEquals("This is not specifically any language", french.get("languageKey"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testBinaryRoundTrip() throws Exception {
+        String json = "{a: 1, b: 12345678901, c: 1.5, d: \"été\", e: true, f: null,"
+            + " g: [1, \"two\", {h: false}], i: {j: \"k\"}}";
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ResourcesCompiler.compile(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), outputStream);
+
+        BinaryJSONSerializer serializer = new BinaryJSONSerializer();
+        Map<String, Object> map = (Map<String, Object>) serializer.readObject(
+            new ByteArrayInputStream(outputStream.toByteArray()));
+        Map<String, ?> expected = JSONSerializer.parseMap(json);
+
+        assertEquals(expected.getCount(), map.getCount());
+        for (String key : expected) {
+            assertEquals(key, expected.get(key), map.get(key));
+        }
+
+        List<Object> list = (List<Object>) map.get("g");
+        assertEquals(Boolean.FALSE, ((Map<String, Object>) list.get(2)).get("h"));
+        assertEquals("Binary JSON MIME type", BinaryJSONSerializer.MIME_TYPE, serializer.getMIMEType(map));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testBinaryBigNumbers() throws Exception {
+        BigDecimal decimal = new BigDecimal("12345678901234567890.123456789");
+        BigInteger integer = new BigInteger("123456789012345678901234567890");
+
+        ArrayList<Object> values = new ArrayList<>();
+        values.add(decimal);
+        values.add(integer);
+        values.add(Float.valueOf(1.5f));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        BinaryJSONSerializer serializer = new BinaryJSONSerializer();
+        serializer.writeObject(values, outputStream);
+
+        List<Object> list = (List<Object>) serializer.readObject(new ByteArrayInputStream(outputStream.toByteArray()));
+        assertEquals(decimal, list.get(0));
+        assertEquals(integer, list.get(1));
+        assertEquals(Double.valueOf(1.5), list.get(2));
+
+        try {
+            serializer.writeObject(new AtomicLong(1), new ByteArrayOutputStream());
+            fail("Expected a SerializationException.");
+        } catch (SerializationException exception) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testPrecompiledBundle() throws Exception {
+        File directory = Files.createTempDirectory("resources").toFile();
+        File jsonFile = new File(directory, "Precompiled.json");
+        File compiledFile = new File(directory, ResourcesCompiler.getCompiledName(jsonFile.getName()));
+
+        Files.write(jsonFile.toPath(), "{source: \"json\"}".getBytes(StandardCharsets.UTF_8));
+        try (InputStream inputStream = new ByteArrayInputStream(
+                "{source: \"jsonb\"}".getBytes(StandardCharsets.UTF_8));
+            OutputStream outputStream = Files.newOutputStream(compiledFile.toPath())) {
+            ResourcesCompiler.compile(inputStream, outputStream);
+        }
+
+        assertTrue(jsonFile.setLastModified(compiledFile.lastModified() - 2000));
+
+        Thread thread = Thread.currentThread();
+        ClassLoader contextClassLoader = thread.getContextClassLoader();
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[] {directory.toURI().toURL()})) {
+            thread.setContextClassLoader(classLoader);
+
+            assertEquals("jsonb", new Resources("Precompiled").get("source"));
+            assertEquals("json", new Resources("Precompiled", StandardCharsets.ISO_8859_1).get("source"));
+
+            // A source that is newer than its precompiled form is read instead
+            assertTrue(jsonFile.setLastModified(compiledFile.lastModified() + 2000));
+            Resources.clearCache();
+            assertEquals("json", new Resources("Precompiled").get("source"));
+        } finally {
+            thread.setContextClassLoader(contextClassLoader);
+            assertTrue(compiledFile.delete());
+            assertTrue(jsonFile.delete());
+            assertTrue(directory.delete());
+        }
+    }
+}
@@ -0,0 +1,542 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.pivot.serialization.SerializationException;
+import org.apache.pivot.serialization.Serializer;
+import org.apache.pivot.util.Constants;
+import org.apache.pivot.web.ContentEncoding;
+import org.apache.pivot.web.Query;
+import org.apache.pivot.web.QueryException;
+import org.apache.pivot.web.server.QueryServlet.Path;
+
+/**
+ * Abstract base class for query servlets whose handler methods complete
+ * asynchronously. <p> Unlike those of {@link QueryServlet}, the handler
+ * methods return a {@link CompletionStage} and receive the state of the
+ * request as a {@link QueryContext}, so that the work can be handed off to
+ * other threads: the container thread is released as soon as the handler
+ * method returns. The servlet must be declared as <tt>async-supported</tt>;
+ * otherwise, the container thread waits for the stage to complete. <p> Once
+ * the stage has completed, the response is serialized into memory and written,
+ * with its content length, by the thread that completed the stage.
+ */
+public abstract class AsyncQueryServlet extends HttpServlet {
+    /**
+     * Completes a request once its stage has completed or timed out.
+     */
+    private class Responder implements AsyncListener {
+        private final QueryContext context;
+        private final Query.Method method;
+        private final Path path;
+        private final String acceptEncoding;
+        private final HttpServletResponse response;
+
+        private AsyncContext asyncContext = null;
+        private CompletionStage<?> stage = null;
+        private final AtomicBoolean completed = new AtomicBoolean(false);
+
+        public Responder(final QueryContext context, final Query.Method method, final Path path,
+            final HttpServletRequest request, final HttpServletResponse response) {
+            this.context = context;
+            this.method = method;
+            this.path = path;
+            this.response = response;
+
+            acceptEncoding = request.getHeader(Constants.ACCEPT_ENCODING_HEADER);
+        }
+
+        public void start(final HttpServletRequest request, final CompletionStage<?> stageArgument) {
+            stage = stageArgument;
+
+            try {
+                asyncContext = request.startAsync();
+                asyncContext.setTimeout(timeout);
+                asyncContext.addListener(this);
+            } catch (RuntimeException exception) {
+                // Nothing will respond to the request, so release it here
+                if (completed.compareAndSet(false, true)) {
+                    try {
+                        stage.toCompletableFuture().cancel(true);
+                    } catch (UnsupportedOperationException cancelException) {
+                        // The stage cannot be cancelled
+                    }
+
+                    finish();
+                }
+
+                throw exception;
+            }
+
+            stage.whenComplete(this::respond);
+        }
+
+        public void respond(final Object result, final Throwable fault) {
+            if (!completed.compareAndSet(false, true)) {
+                return;
+            }
+
+            try {
+                writeResponse(result, fault);
+            } catch (IOException | ServletException | RuntimeException exception) {
+                System.err.println(exception);
+            } finally {
+                finish();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void writeResponse(final Object result, final Throwable fault) throws IOException, ServletException {
+            Throwable cause = fault;
+            while ((cause instanceof CompletionException || cause instanceof ExecutionException)
+                && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+
+            if (cause instanceof QueryException) {
+                response.setStatus(((QueryException) cause).getStatus());
+                response.flushBuffer();
+                return;
+            }
+
+            if (cause != null) {
+                System.err.println(cause);
+                response.setStatus(Query.Status.INTERNAL_SERVER_ERROR);
+                response.flushBuffer();
+                return;
+            }
+
+            switch (method) {
+                case GET: {
+                    Serializer<Object> serializer;
+                    try {
+                        serializer = (Serializer<Object>) createSerializer(context, method, path);
+                    } catch (QueryException exception) {
+                        response.setStatus(exception.getStatus());
+                        response.flushBuffer();
+                        return;
+                    }
+
+                    response.setStatus(Query.Status.OK);
+                    QueryServlet.setResponseHeaders(response, context.getResponseHeaders());
+                    response.setContentType(serializer.getMIMEType(result));
+
+                    ContentEncoding encoding = ContentEncoding.IDENTITY;
+                    if (compressionThreshold >= 0) {
+                        encoding = ContentEncoding.negotiate(acceptEncoding);
+                        response.addHeader(Constants.VARY_HEADER, Constants.ACCEPT_ENCODING_HEADER);
+                    }
+
+                    QueryServlet.writeBuffered(null, response, serializer, result, encoding, compressionThreshold,
+                        fileThreshold, false);
+                    break;
+                }
+
+                case POST: {
+                    if (result == null) {
+                        response.setStatus(Query.Status.NO_CONTENT);
+                    } else {
+                        response.setStatus(Query.Status.CREATED);
+                        response.setHeader(Constants.LOCATION_HEADER, result.toString());
+                    }
+
+                    QueryServlet.setResponseHeaders(response, context.getResponseHeaders());
+                    response.setContentLength(0);
+                    break;
+                }
+
+                case PUT: {
+                    boolean created = (result != null && ((Boolean) result).booleanValue());
+                    response.setStatus(created ? Query.Status.CREATED : Query.Status.NO_CONTENT);
+                    QueryServlet.setResponseHeaders(response, context.getResponseHeaders());
+                    response.setContentLength(0);
+                    break;
+                }
+
+                case DELETE: {
+                    response.setStatus(Query.Status.NO_CONTENT);
+                    QueryServlet.setResponseHeaders(response, context.getResponseHeaders());
+                    response.setContentLength(0);
+                    break;
+                }
+
+                default: {
+                    break;
+                }
+            }
+
+            response.flushBuffer();
+        }
+
+        private void finish() {
+            try {
+                if (asyncContext != null) {
+                    asyncContext.complete();
+                }
+            } finally {
+                try {
+                    dispose(context);
+                } catch (ServletException exception) {
+                    System.err.println(exception);
+                }
+            }
+        }
+
+        @Override
+        public void onTimeout(final AsyncEvent event) throws IOException {
+            if (completed.compareAndSet(false, true)) {
+                try {
+                    stage.toCompletableFuture().cancel(true);
+                } catch (UnsupportedOperationException exception) {
+                    // The stage cannot be cancelled
+                }
+
+                try {
+                    response.setStatus(Query.Status.SERVICE_UNAVAILABLE);
+                    response.flushBuffer();
+                } finally {
+                    finish();
+                }
+            }
+        }
+
+        @Override
+        public void onError(final AsyncEvent event) throws IOException {
+            if (completed.compareAndSet(false, true)) {
+                finish();
+            }
+        }
+
+        @Override
+        public void onComplete(final AsyncEvent event) throws IOException {
+            // No-op
+        }
+
+        @Override
+        public void onStartAsync(final AsyncEvent event) throws IOException {
+            // No-op
+        }
+    }
+
+    private static final long serialVersionUID = -4528196524580371592L;
+
+    /**
+     * The default time, in milliseconds, that a request may take to complete.
+     */
+    public static final long DEFAULT_TIMEOUT = 30000;
+
+    private long timeout = DEFAULT_TIMEOUT;
+    private int compressionThreshold = QueryServlet.DEFAULT_COMPRESSION_THRESHOLD;
+    private long fileThreshold = QueryServlet.DEFAULT_FILE_THRESHOLD;
+
+    /**
+     * Returns the time a request may take to complete.
+     * @return The timeout in milliseconds.
+     */
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Sets the time a request may take to complete. Requests whose stage has
+     * not completed by then receive an HTTP 503 status, and the stage is
+     * cancelled.
+     * @param timeout The timeout in milliseconds; the default is
+     * {@link #DEFAULT_TIMEOUT}.
+     */
+    public void setTimeout(final long timeout) {
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("timeout must be positive.");
+        }
+
+        this.timeout = timeout;
+    }
+
+    /**
+     * @return The size above which GET responses are compressed, or a negative
+     * value if responses are never compressed.
+     * @see QueryServlet#setCompressionThreshold(int)
+     */
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    /**
+     * Sets the size above which GET responses are compressed for clients that
+     * accept a compressed response.
+     * @param compressionThreshold The threshold in bytes, or a negative value
+     * to never compress responses.
+     */
+    public void setCompressionThreshold(final int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    /**
+     * @return The size above which GET responses are buffered in a temporary
+     * file rather than in memory.
+     * @see QueryServlet#setFileThreshold(long)
+     */
+    public long getFileThreshold() {
+        return fileThreshold;
+    }
+
+    /**
+     * Sets the size above which GET responses are buffered in a temporary file
+     * rather than in memory.
+     * @param fileThreshold The threshold in bytes.
+     */
+    public void setFileThreshold(final long fileThreshold) {
+        if (fileThreshold < 0) {
+            throw new IllegalArgumentException("fileThreshold is negative.");
+        }
+
+        this.fileThreshold = fileThreshold;
+    }
+
+    /**
+     * Prepares the servlet for the execution of a request. This method is
+     * called immediately prior to the
+     * {@link #validate(QueryContext, Query.Method, Path)} method. <p> The
+     * default implementation is a no-op.
+     *
+     * @param context The state of the request.
+     * @throws ServletException on any kind of error.
+     */
+    protected void prepare(final QueryContext context) throws ServletException {
+        // No-op
+    }
+
+    /**
+     * Disposes any resources allocated in {@link #prepare(QueryContext)}. This
+     * method is called once the response has been sent, even if the request
+     * failed. <p> The default implementation is a no-op.
+     *
+     * @param context The state of the request.
+     * @throws ServletException on any kind of error.
+     */
+    protected void dispose(final QueryContext context) throws ServletException {
+        // No-op
+    }
+
+    /**
+     * Validates a request before it is executed. This method is called
+     * immediately prior to the handler method. <p> The default implementation
+     * is a no-op.
+     *
+     * @param context The state of the request.
+     * @param method The type of query this is.
+     * @param path The path to the server resources.
+     * @throws QueryException if the request is not valid.
+     */
+    protected void validate(final QueryContext context, final Query.Method method, final Path path)
+        throws QueryException {
+        // No-op
+    }
+
+    /**
+     * Handles an HTTP GET request. The default implementation fails with an
+     * HTTP 405 query exception.
+     *
+     * @param context The state of the request.
+     * @param path The request path.
+     * @return A stage that completes with the result of the GET.
+     * @throws QueryException on any error.
+     */
+    protected CompletionStage<Object> doGet(final QueryContext context, final Path path) throws QueryException {
+        throw new QueryException(Query.Status.METHOD_NOT_ALLOWED);
+    }
+
+    /**
+     * Handles an HTTP POST request. The default implementation fails with an
+     * HTTP 405 query exception.
+     *
+     * @param context The state of the request.
+     * @param path The request path.
+     * @param value The value parsed from the POST request data.
+     * @return A stage that completes with the location of the created
+     * resource, or with <tt>null</tt> if no resource was created.
+     * @throws QueryException on any error.
+     */
+    protected CompletionStage<URL> doPost(final QueryContext context, final Path path, final Object value)
+        throws QueryException {
+        throw new QueryException(Query.Status.METHOD_NOT_ALLOWED);
+    }
+
+    /**
+     * Handles an HTTP PUT request. The default implementation fails with an
+     * HTTP 405 query exception.
+     *
+     * @param context The state of the request.
+     * @param path The request path.
+     * @param value The value parsed from the PUT request data.
+     * @return A stage that completes with <tt>true</tt> if the operation
+     * resulted in the creation of a resource; <tt>false</tt>, otherwise.
+     * @throws QueryException on any error.
+     */
+    protected CompletionStage<Boolean> doPut(final QueryContext context, final Path path, final Object value)
+        throws QueryException {
+        throw new QueryException(Query.Status.METHOD_NOT_ALLOWED);
+    }
+
+    /**
+     * Handles an HTTP DELETE request. The default implementation fails with an
+     * HTTP 405 query exception.
+     *
+     * @param context The state of the request.
+     * @param path The request path.
+     * @return A stage that completes once the resource has been deleted.
+     * @throws QueryException on any error.
+     */
+    protected CompletionStage<Void> doDelete(final QueryContext context, final Path path) throws QueryException {
+        throw new QueryException(Query.Status.METHOD_NOT_ALLOWED);
+    }
+
+    /**
+     * Creates a serializer that will be used to serialize the current request
+     * data.
+     *
+     * @param context The state of the request.
+     * @param method Type of query this serializer will apply to.
+     * @param path The server path this is intended for.
+     * @return The newly created serializer for this request.
+     * @throws QueryException if there is a problem.
+     */
+    protected abstract Serializer<?> createSerializer(QueryContext context, Query.Method method, Path path)
+        throws QueryException;
+
+    @Override
+    protected void service(final HttpServletRequest request, final HttpServletResponse response)
+        throws IOException, ServletException {
+        Query.Method method;
+        try {
+            method = Query.Method.valueOf(request.getMethod());
+        } catch (IllegalArgumentException exception) {
+            response.setStatus(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+            response.flushBuffer();
+            return;
+        }
+
+        QueryContext context = new QueryContext(request);
+        Path path = QueryServlet.getPath(request.getPathInfo());
+
+        Responder responder = new Responder(context, method, path, request, response);
+        CompletionStage<?> stage;
+
+        try {
+            // Prepare the servlet for request processing
+            prepare(context);
+
+            validate(context, method, path);
+
+            switch (method) {
+                case GET: {
+                    stage = doGet(context, path);
+                    break;
+                }
+
+                case POST: {
+                    stage = doPost(context, path, readValue(context, method, path, request));
+                    break;
+                }
+
+                case PUT: {
+                    stage = doPut(context, path, readValue(context, method, path, request));
+                    break;
+                }
+
+                case DELETE: {
+                    stage = doDelete(context, path);
+                    break;
+                }
+
+                default: {
+                    throw new QueryException(Query.Status.METHOD_NOT_ALLOWED);
+                }
+            }
+        } catch (QueryException exception) {
+            CompletableFuture<Object> failed = new CompletableFuture<>();
+            failed.completeExceptionally(exception);
+            stage = failed;
+        } catch (IOException | ServletException | RuntimeException exception) {
+            System.err.println(exception);
+            dispose(context);
+            throw exception;
+        }
+
+        if (stage == null) {
+            stage = CompletableFuture.completedFuture(null);
+        }
+
+        if (request.isAsyncSupported()) {
+            responder.start(request, stage);
+        } else {
+            // Wait for the stage on the container thread
+            Object result = null;
+            Throwable fault = null;
+
+            try {
+                result = stage.toCompletableFuture().get(timeout, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException exception) {
+                fault = exception.getCause();
+            } catch (TimeoutException exception) {
+                stage.toCompletableFuture().cancel(true);
+                fault = new QueryException(Query.Status.SERVICE_UNAVAILABLE);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                fault = new QueryException(Query.Status.SERVICE_UNAVAILABLE);
+            }
+
+            responder.respond(result, fault);
+        }
+    }
+
+    private Object readValue(final QueryContext context, final Query.Method method, final Path path,
+        final HttpServletRequest request) throws IOException, ServletException, QueryException {
+        Object value = null;
+
+        if (request.getContentLength() > 0) {
+            Serializer<?> serializer = createSerializer(context, method, path);
+
+            try (InputStream inputStream = QueryServlet.getInputStream(request)) {
+                value = serializer.readObject(inputStream);
+            } catch (SerializationException exception) {
+                throw new ServletException(exception);
+            }
+        }
+
+        return value;
+    }
+}
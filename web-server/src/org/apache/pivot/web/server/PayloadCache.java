@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.pivot.util.Constants;
+import org.apache.pivot.web.ContentEncoding;
+import org.apache.pivot.web.Query;
+import org.apache.pivot.web.QueryDictionary;
+
+/**
+ * Least recently used cache of serialized GET responses, used by
+ * {@link QueryServlet} for resources that have an entity tag. Since the key of
+ * a payload includes the entity tag, a payload never needs to be invalidated;
+ * it is simply no longer requested once the resource changes. Compressed
+ * variants of a payload are created on first use and kept with it.
+ */
+class PayloadCache {
+    /**
+     * A serialized response.
+     */
+    public static class Payload {
+        private final String contentType;
+        private final QueryDictionary headers;
+        private final byte[] body;
+        private final ConcurrentHashMap<ContentEncoding, byte[]> encodedBodies = new ConcurrentHashMap<>();
+
+        public Payload(final String contentType, final QueryDictionary headers, final byte[] body) {
+            this.contentType = contentType;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        /**
+         * Writes the payload to a response, compressed if it is larger than the
+         * compression threshold.
+         */
+        public void writeTo(final HttpServletResponse response, final ContentEncoding encoding,
+            final int compressionThreshold) throws IOException {
+            response.setStatus(Query.Status.OK);
+            QueryServlet.setResponseHeaders(response, headers);
+            response.setContentType(contentType);
+
+            byte[] bytes = body;
+            if (encoding != ContentEncoding.IDENTITY && body.length > compressionThreshold) {
+                bytes = encodedBodies.computeIfAbsent(encoding, this::encode);
+                response.setHeader(Constants.CONTENT_ENCODING_HEADER, encoding.getName());
+            }
+
+            response.setContentLength(bytes.length);
+            response.getOutputStream().write(bytes);
+            response.flushBuffer();
+        }
+
+        private byte[] encode(final ContentEncoding encoding) {
+            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream(body.length / 2);
+
+            try (OutputStream outputStream = encoding.encode(byteArrayOutputStream)) {
+                outputStream.write(body);
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+
+            return byteArrayOutputStream.toByteArray();
+        }
+    }
+
+    private final LinkedHashMap<String, Payload> payloads;
+
+    /**
+     * @param capacity The maximum number of payloads in the cache.
+     */
+    public PayloadCache(final int capacity) {
+        payloads = new LinkedHashMap<String, Payload>(16, 0.75f, true) {
+            private static final long serialVersionUID = 0;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Payload> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    public synchronized Payload get(final String key) {
+        return payloads.get(key);
+    }
+
+    public synchronized void put(final String key, final Payload payload) {
+        payloads.put(key, payload);
+    }
+}
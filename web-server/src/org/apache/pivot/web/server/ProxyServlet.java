@@ -16,8 +16,7 @@
  */
 package org.apache.pivot.web.server;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -25,6 +24,8 @@ import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
@@ -32,17 +33,22 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.pivot.collections.ArrayList;
 import org.apache.pivot.collections.HashSet;
 
 /**
  * HTTP proxy that allows an unsigned applet to issue web queries to services
- * outside of its origin server.
+ * outside of its origin server. <p> Request and response bodies are streamed
+ * through the proxy, and upstream connections are kept alive for reuse.
+ * Hop-by-hop headers, such as <tt>Connection</tt> and
+ * <tt>Transfer-Encoding</tt>, are not passed on in either direction. GET
+ * responses may optionally be cached (see {@link #CACHE_SIZE_PARAM}).
  */
 public class ProxyServlet extends HttpServlet {
     /**
-     * A set of HTTP response header names, stored in a case-insensitive manner.
+     * A set of HTTP header names, stored in a case-insensitive manner.
      */
-    private static class ResponseHeaderSet extends HashSet<String> {
+    private static class HeaderSet extends HashSet<String> {
         private static final long serialVersionUID = 3055851700567335445L;
 
         @Override
@@ -61,11 +67,78 @@ public class ProxyServlet extends HttpServlet {
         }
     }
 
+    /**
+     * A response held in the cache.
+     */
+    private static class CacheEntry {
+        private final int status;
+        private final ArrayList<String[]> headers;
+        private final byte[] body;
+        private final long expiration;
+
+        public CacheEntry(int status, ArrayList<String[]> headers, byte[] body, long expiration) {
+            this.status = status;
+            this.headers = headers;
+            this.body = body;
+            this.expiration = expiration;
+        }
+
+        public void writeTo(HttpServletResponse response) throws IOException {
+            response.setStatus(status);
+
+            for (String[] header : headers) {
+                if (!header[0].equalsIgnoreCase("Content-Length")) {
+                    response.addHeader(header[0], header[1]);
+                }
+            }
+
+            response.setContentLength(body.length);
+            response.getOutputStream().write(body);
+            response.flushBuffer();
+        }
+    }
+
+    /**
+     * A least recently used cache of responses.
+     */
+    private static class ResponseCache {
+        private final LinkedHashMap<String, CacheEntry> entries;
+
+        public ResponseCache(int capacity) {
+            entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+                private static final long serialVersionUID = 0;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        public synchronized CacheEntry get(String key) {
+            CacheEntry entry = entries.get(key);
+
+            if (entry != null && entry.expiration <= System.currentTimeMillis()) {
+                entries.remove(key);
+                entry = null;
+            }
+
+            return entry;
+        }
+
+        public synchronized void put(String key, CacheEntry entry) {
+            entries.put(key, entry);
+        }
+    }
+
     private String hostname = null;
     private int port = -1;
     private String path = null;
 
-    private static ResponseHeaderSet ignoreResponseHeaders = new ResponseHeaderSet();
+    private transient ResponseCache cache = null;
+    private int maxCacheEntrySize = DEFAULT_MAX_CACHE_ENTRY_SIZE;
+
+    private static HeaderSet hopByHopHeaders = new HeaderSet();
 
     private static final long serialVersionUID = -1794977331184160392L;
 
@@ -78,10 +151,36 @@ public class ProxyServlet extends HttpServlet {
     public static final String PORT_PARAM = "port";
     public static final String PATH_PARAM = "path";
 
-    public static final int BUFFER_SIZE = 1024;
+    /**
+     * The number of GET responses the proxy caches; responses are not cached
+     * unless this parameter is set. Only successful responses that allow
+     * shared caching, by <tt>Cache-Control</tt> or <tt>Expires</tt>, are
+     * cached. Requests with credentials or cookies, and responses that set
+     * cookies or carry authentication headers, are never cached. A request with
+     * <tt>Cache-Control: no-cache</tt> is always sent to the server, and one
+     * with <tt>no-store</tt> is not cached.
+     */
+    public static final String CACHE_SIZE_PARAM = "cacheSize";
+
+    /**
+     * The size, in bytes, of the largest response that is cached.
+     */
+    public static final String MAX_CACHE_ENTRY_SIZE_PARAM = "maxCacheEntrySize";
+
+    public static final int DEFAULT_MAX_CACHE_ENTRY_SIZE = 1024 * 1024;
+
+    public static final int BUFFER_SIZE = 8192;
 
     static {
-        ignoreResponseHeaders.add("Transfer-Encoding");
+        hopByHopHeaders.add("Connection");
+        hopByHopHeaders.add("Keep-Alive");
+        hopByHopHeaders.add("Proxy-Authenticate");
+        hopByHopHeaders.add("Proxy-Authorization");
+        hopByHopHeaders.add("Proxy-Connection");
+        hopByHopHeaders.add("TE");
+        hopByHopHeaders.add("Trailer");
+        hopByHopHeaders.add("Transfer-Encoding");
+        hopByHopHeaders.add("Upgrade");
     }
 
     @Override
@@ -100,6 +199,16 @@ public class ProxyServlet extends HttpServlet {
         if (path == null) {
             throw new ServletException("Path is required.");
         }
+
+        String cacheSizeParam = config.getInitParameter(CACHE_SIZE_PARAM);
+        if (cacheSizeParam != null && Integer.parseInt(cacheSizeParam) > 0) {
+            cache = new ResponseCache(Integer.parseInt(cacheSizeParam));
+        }
+
+        String maxCacheEntrySizeParam = config.getInitParameter(MAX_CACHE_ENTRY_SIZE_PARAM);
+        if (maxCacheEntrySizeParam != null) {
+            maxCacheEntrySize = Integer.parseInt(maxCacheEntrySizeParam);
+        }
     }
 
     @Override
@@ -108,7 +217,6 @@ public class ProxyServlet extends HttpServlet {
     }
 
     @Override
-    @SuppressWarnings({ "resource" })
     protected void service(HttpServletRequest request, HttpServletResponse response)
         throws IOException, ServletException {
         // Construct the URL
@@ -133,7 +241,28 @@ public class ProxyServlet extends HttpServlet {
 
         String method = request.getMethod();
 
-        // Open a connection to the URL
+        // Serve cacheable requests from the cache if possible, unless the
+        // client asks for a fresh response
+        String cacheKey = null;
+        String cacheControl = request.getHeader("Cache-Control");
+        if (cache != null && method.equalsIgnoreCase(METHOD_GET)
+            && request.getHeader("Authorization") == null && request.getHeader("Cookie") == null
+            && !hasDirective(cacheControl, "no-store")) {
+            String acceptEncoding = request.getHeader("Accept-Encoding");
+            cacheKey = url.toString() + "\n" + ((acceptEncoding == null) ? "" : acceptEncoding);
+
+            if (!hasDirective(cacheControl, "no-cache") && !hasDirective(cacheControl, "max-age=0")
+                && !hasDirective(request.getHeader("Pragma"), "no-cache")) {
+                CacheEntry entry = cache.get(cacheKey);
+                if (entry != null) {
+                    entry.writeTo(response);
+                    return;
+                }
+            }
+        }
+
+        // Open a connection to the URL; the connection is kept alive for reuse
+        // by later requests once its response has been read
         HttpURLConnection connection = (HttpURLConnection) url.openConnection();
         connection.setRequestMethod(method);
         connection.setAllowUserInteraction(false);
@@ -141,12 +270,27 @@ public class ProxyServlet extends HttpServlet {
         connection.setUseCaches(false);
 
         // Write request headers to connection
+        HeaderSet ignoreRequestHeaders = createIgnoredHeaderSet();
+
+        @SuppressWarnings("unchecked")
+        Enumeration<String> connectionHeaders = request.getHeaders("Connection");
+
+        if (connectionHeaders != null) {
+            while (connectionHeaders.hasMoreElements()) {
+                addConnectionHeaders(ignoreRequestHeaders, connectionHeaders.nextElement());
+            }
+        }
+
         @SuppressWarnings("unchecked")
         Enumeration<String> headerNames = request.getHeaderNames();
 
         if (headerNames != null) {
             while (headerNames.hasMoreElements()) {
                 String headerName = headerNames.nextElement();
+                if (ignoreRequestHeaders.contains(headerName)) {
+                    continue;
+                }
+
                 @SuppressWarnings("unchecked")
                 Enumeration<String> headerValues = request.getHeaders(headerName);
 
@@ -167,17 +311,23 @@ public class ProxyServlet extends HttpServlet {
         connection.setDoOutput(method.equalsIgnoreCase(METHOD_POST)
             || method.equalsIgnoreCase(METHOD_PUT));
 
+        // Stream the request body rather than buffering it in the connection
+        if (connection.getDoOutput()) {
+            int contentLength = request.getContentLength();
+            if (contentLength >= 0) {
+                connection.setFixedLengthStreamingMode(contentLength);
+            } else {
+                connection.setChunkedStreamingMode(BUFFER_SIZE);
+            }
+        }
+
         // Connect to the server
         connection.connect();
 
         // Write the request body
         if (connection.getDoOutput()) {
-            try (OutputStream outputStream = new BufferedOutputStream(connection.getOutputStream(), BUFFER_SIZE)) {
-                InputStream inputStream = request.getInputStream();
-
-                for (int data = inputStream.read(); data != -1; data = inputStream.read()) {
-                    outputStream.write((byte) data);
-                }
+            try (OutputStream outputStream = connection.getOutputStream()) {
+                copy(request.getInputStream(), outputStream, null);
             }
         }
 
@@ -186,6 +336,7 @@ public class ProxyServlet extends HttpServlet {
         int statusPrefix = status / 100;
 
         if (statusPrefix == 1 || statusPrefix == 3) {
+            connection.disconnect();
             throw new ServletException("Unexpected server response: " + status);
         }
 
@@ -193,7 +344,18 @@ public class ProxyServlet extends HttpServlet {
 
         // Write response headers
         // NOTE Header indexes start at 1, not 0
+        ArrayList<String[]> headers = new ArrayList<>();
+
+        HeaderSet ignoreResponseHeaders = createIgnoredHeaderSet();
+
         int i = 1;
+        for (String key = connection.getHeaderFieldKey(i); key != null; key = connection.getHeaderFieldKey(++i)) {
+            if (key.equalsIgnoreCase("Connection")) {
+                addConnectionHeaders(ignoreResponseHeaders, connection.getHeaderField(i));
+            }
+        }
+
+        i = 1;
         for (String key = connection.getHeaderFieldKey(i); key != null; key = connection.getHeaderFieldKey(++i)) {
             if (!ignoreResponseHeaders.contains(key)) {
                 String value = connection.getHeaderField(i);
@@ -203,37 +365,157 @@ public class ProxyServlet extends HttpServlet {
                 } else {
                     response.setHeader(key, value);
                 }
+
+                headers.add(new String[] {key, value});
             }
         }
 
-        // Read the response body
-        if (method.equalsIgnoreCase(METHOD_GET)) {
-            InputStream inputStream = null;
+        long expiration = (cacheKey != null && status == HttpServletResponse.SC_OK)
+            ? getExpiration(connection) : -1;
+
+        // Stream the response body, reading it to the end so that the
+        // connection can be reused
+        InputStream inputStream = (status >= HttpServletResponse.SC_BAD_REQUEST)
+            ? connection.getErrorStream() : connection.getInputStream();
+
+        if (inputStream != null) {
+            ByteArrayOutputStream cacheOutputStream = (expiration == -1) ? null : new ByteArrayOutputStream();
 
             try {
-                try {
-                    // Response returned on input stream
-                    inputStream = connection.getInputStream();
-                } catch (Exception exception) {
-                    // Response returned on error stream
-                    inputStream = connection.getErrorStream();
+                copy(inputStream, response.getOutputStream(), cacheOutputStream);
+            } finally {
+                inputStream.close();
+            }
+
+            if (cacheOutputStream != null && cacheOutputStream.size() <= maxCacheEntrySize) {
+                cache.put(cacheKey, new CacheEntry(status, headers, cacheOutputStream.toByteArray(), expiration));
+            }
+        }
+
+        response.flushBuffer();
+    }
+
+    /**
+     * Copies a stream in bulk, flushing the output whenever the input has no
+     * more data available so that streamed (chunked) responses are passed on
+     * as they arrive.
+     *
+     * @param inputStream The stream to copy.
+     * @param outputStream The stream to copy to.
+     * @param captureStream A stream that also receives the data as long as it
+     * holds no more than the maximum cache entry size, or <tt>null</tt>.
+     */
+    private void copy(InputStream inputStream, OutputStream outputStream, ByteArrayOutputStream captureStream)
+        throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+
+        for (int count = inputStream.read(buffer); count != -1; count = inputStream.read(buffer)) {
+            outputStream.write(buffer, 0, count);
+
+            if (captureStream != null && captureStream.size() <= maxCacheEntrySize) {
+                captureStream.write(buffer, 0, count);
+            }
+
+            if (inputStream.available() == 0) {
+                outputStream.flush();
+            }
+        }
+    }
+
+    /**
+     * @return A set that initially holds the hop-by-hop headers, to which the
+     * headers named by a <tt>Connection</tt> header are added.
+     */
+    private static HeaderSet createIgnoredHeaderSet() {
+        HeaderSet headers = new HeaderSet();
+        for (String header : hopByHopHeaders) {
+            headers.add(header);
+        }
+
+        return headers;
+    }
+
+    /**
+     * Adds the header names listed in a <tt>Connection</tt> header to a set.
+     */
+    private static void addConnectionHeaders(HeaderSet headers, String connectionHeader) {
+        for (String token : connectionHeader.split(",")) {
+            if (token.trim().length() > 0) {
+                headers.add(token.trim());
+            }
+        }
+    }
+
+    /**
+     * Tells whether a <tt>Cache-Control</tt> or <tt>Pragma</tt> header
+     * contains a directive.
+     *
+     * @param header The header value, or <tt>null</tt>.
+     * @param directive The directive, in lower case.
+     */
+    private static boolean hasDirective(String header, String directive) {
+        if (header != null) {
+            for (String token : header.toLowerCase().split(",")) {
+                if (token.trim().equals(directive)) {
+                    return true;
                 }
+            }
+        }
 
-                if (inputStream != null) {
-                    inputStream = new BufferedInputStream(inputStream, BUFFER_SIZE);
+        return false;
+    }
 
-                    OutputStream outputStream = response.getOutputStream();
-                    for (int data = inputStream.read(); data != -1; data = inputStream.read()) {
-                        outputStream.write((byte) data);
-                    }
+    /**
+     * Returns the time until which a response may be served from the cache,
+     * based on its <tt>Cache-Control</tt> and <tt>Expires</tt> headers.
+     * Responses that set cookies or carry authentication headers are not
+     * cached.
+     *
+     * @return The expiration time, or <tt>-1</tt> if the response may not be
+     * cached.
+     */
+    private static long getExpiration(HttpURLConnection connection) {
+        long now = System.currentTimeMillis();
+        long expiration = -1;
+
+        // Responses for one user must not be served to another
+        if (connection.getHeaderField("Set-Cookie") != null || connection.getHeaderField("Set-Cookie2") != null
+            || connection.getHeaderField("WWW-Authenticate") != null
+            || connection.getHeaderField("Authentication-Info") != null) {
+            return -1;
+        }
+
+        String cacheControl = connection.getHeaderField("Cache-Control");
+        if (cacheControl != null) {
+            for (String directive : cacheControl.toLowerCase().split(",")) {
+                directive = directive.trim();
+
+                if (directive.equals("no-store") || directive.equals("no-cache") || directive.equals("private")) {
+                    return -1;
                 }
 
-                response.flushBuffer();
-            } finally {
-                if (inputStream != null) {
-                    inputStream.close();
+                if (directive.startsWith("max-age=") || directive.startsWith("s-maxage=")) {
+                    try {
+                        long maxAge = Long.parseLong(directive.substring(directive.indexOf('=') + 1).trim());
+                        if (expiration == -1 || directive.startsWith("s-maxage=")) {
+                            expiration = now + maxAge * 1000;
+                        }
+                    } catch (NumberFormatException exception) {
+                        return -1;
+                    }
                 }
             }
         }
+
+        if (expiration == -1 && connection.getExpiration() != 0) {
+            expiration = connection.getExpiration();
+        }
+
+        String vary = connection.getHeaderField("Vary");
+        if (vary != null && !vary.trim().equalsIgnoreCase("Accept-Encoding")) {
+            return -1;
+        }
+
+        return (expiration > now) ? expiration : -1;
     }
 }
@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web.server;
+
+import java.io.UnsupportedEncodingException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.util.Enumeration;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.pivot.util.Constants;
+import org.apache.pivot.web.QueryDictionary;
+
+/**
+ * The state of a request to a query servlet: the location that was requested,
+ * the request parameters and headers, and the headers of the response. <p>
+ * {@link QueryServlet} keeps this state in thread-local variables; an
+ * {@link AsyncQueryServlet} passes it to its handler methods, so that a
+ * request can be completed on any thread.
+ */
+public class QueryContext {
+    private final String hostname;
+    private final int port;
+    private final String contextPath;
+    private final String servletPath;
+    private final boolean secure;
+
+    private final QueryDictionary parameters = new QueryDictionary(true);
+    private final QueryDictionary requestHeaders = new QueryDictionary(false);
+    private final QueryDictionary responseHeaders = new QueryDictionary(false);
+
+    /**
+     * Creates the context of a request, copying its query string into the
+     * parameters and its headers into the request headers.
+     *
+     * @param request The HTTP request.
+     * @throws ServletException If the request URL is malformed.
+     */
+    public QueryContext(final HttpServletRequest request) throws ServletException {
+        try {
+            URL url = new URL(request.getRequestURL().toString());
+            hostname = url.getHost();
+            secure = url.getProtocol().equalsIgnoreCase(Constants.HTTPS_PROTOCOL);
+        } catch (MalformedURLException exception) {
+            throw new ServletException(exception);
+        }
+
+        port = request.getLocalPort();
+        contextPath = request.getContextPath();
+        servletPath = request.getServletPath();
+
+        // Copy the query string into the arguments dictionary
+        String queryString = request.getQueryString();
+        if (queryString != null) {
+            String[] pairs = queryString.split("&");
+
+            try {
+                for (int i = 0, n = pairs.length; i < n; i++) {
+                    String[] pair = pairs[i].split("=");
+
+                    String key = URLDecoder.decode(pair[0], Constants.URL_ENCODING);
+                    String value = URLDecoder.decode((pair.length > 1) ? pair[1] : "", Constants.URL_ENCODING);
+
+                    parameters.add(key, value);
+                }
+            } catch (UnsupportedEncodingException exception) {
+                throw new ServletException(exception);
+            }
+        }
+
+        // Copy the request headers into the request properties dictionary
+        @SuppressWarnings("unchecked")
+        Enumeration<String> headerNames = request.getHeaderNames();
+        while (headerNames.hasMoreElements()) {
+            String headerName = headerNames.nextElement();
+            String headerValue = request.getHeader(headerName);
+
+            requestHeaders.add(headerName, headerValue);
+        }
+    }
+
+    /**
+     * @return The host name from the request.
+     */
+    public String getHostname() {
+        return hostname;
+    }
+
+    /**
+     * @return The port number of the interface on which the request was
+     * received.
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * @return The context path from the request URL.
+     */
+    public String getContextPath() {
+        return contextPath;
+    }
+
+    /**
+     * @return The servlet path from the request URL.
+     */
+    public String getServletPath() {
+        return servletPath;
+    }
+
+    /**
+     * @return {@code true} if the request was sent over HTTPS, {@code false}
+     * otherwise.
+     */
+    public boolean isSecure() {
+        return secure;
+    }
+
+    /**
+     * @return The {@code "http"} or {@code "https"} protocol string depending
+     * on the {@link #isSecure} setting.
+     */
+    public String getProtocol() {
+        return secure ? Constants.HTTPS_PROTOCOL : Constants.HTTP_PROTOCOL;
+    }
+
+    /**
+     * @return The location of the servlet that handles the request.
+     */
+    public URL getLocation() {
+        URL location;
+        try {
+            location = new URL(getProtocol(), hostname, port, contextPath + servletPath + "/");
+        } catch (MalformedURLException exception) {
+            throw new RuntimeException(exception);
+        }
+
+        return location;
+    }
+
+    /**
+     * @return The values passed in the HTTP request query string.
+     */
+    public QueryDictionary getParameters() {
+        return parameters;
+    }
+
+    /**
+     * @return The HTTP request headers.
+     */
+    public QueryDictionary getRequestHeaders() {
+        return requestHeaders;
+    }
+
+    /**
+     * @return The HTTP response headers that will be sent back to the client.
+     */
+    public QueryDictionary getResponseHeaders() {
+        return responseHeaders;
+    }
+}
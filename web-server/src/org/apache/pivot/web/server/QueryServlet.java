@@ -16,32 +16,46 @@
  */
 package org.apache.pivot.web.server;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.net.URLDecoder;
-import java.util.Enumeration;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.Iterator;
 
 import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
 
 import org.apache.pivot.annotations.UnsupportedOperation;
 import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.HashMap;
+import org.apache.pivot.collections.List;
+import org.apache.pivot.collections.Map;
 import org.apache.pivot.collections.Sequence;
+import org.apache.pivot.json.JSONSerializer;
 import org.apache.pivot.serialization.SerializationException;
 import org.apache.pivot.serialization.Serializer;
 import org.apache.pivot.util.Constants;
 import org.apache.pivot.util.ImmutableIterator;
+import org.apache.pivot.web.ContentEncoding;
 import org.apache.pivot.web.Query;
+import org.apache.pivot.web.QueryBatch;
 import org.apache.pivot.web.QueryDictionary;
 import org.apache.pivot.web.QueryException;
+import org.apache.pivot.web.QueryMetrics;
 
 /**
  * Abstract base class for query servlets.
@@ -125,9 +139,172 @@ public abstract class QueryServlet extends HttpServlet {
         }
     }
 
+    /**
+     * Output stream that holds back the start of a response and compresses
+     * the response only once it grows beyond a threshold. Small responses are
+     * sent as-is, with a content length; larger ones are compressed as they
+     * are written.
+     */
+    private static class CompressingOutputStream extends OutputStream {
+        private final HttpServletResponse response;
+        private final ContentEncoding encoding;
+        private final int threshold;
+
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private OutputStream outputStream = null;
+        private boolean finished = false;
+
+        public CompressingOutputStream(final HttpServletResponse response, final ContentEncoding encoding,
+            final int threshold) {
+            this.response = response;
+            this.encoding = encoding;
+            this.threshold = threshold;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            if (outputStream == null) {
+                if (buffer.size() + len <= threshold) {
+                    buffer.write(b, off, len);
+                    return;
+                }
+
+                // The response is large enough to be worth compressing; the
+                // encoding stream is closed to release its compressor, but the
+                // container closes the response stream
+                response.setHeader(Constants.CONTENT_ENCODING_HEADER, encoding.getName());
+                outputStream = encoding.encode(new FilterOutputStream(response.getOutputStream()) {
+                    @Override
+                    public void write(final byte[] b, final int off, final int len) throws IOException {
+                        out.write(b, off, len);
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        flush();
+                    }
+                });
+                buffer.writeTo(outputStream);
+                buffer = null;
+            }
+
+            outputStream.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (outputStream != null) {
+                outputStream.flush();
+            }
+        }
+
+        public void finish() throws IOException {
+            if (!finished) {
+                finished = true;
+
+                if (outputStream == null) {
+                    response.setContentLength(buffer.size());
+                    buffer.writeTo(response.getOutputStream());
+                } else {
+                    outputStream.close();
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            finish();
+        }
+    }
+
+    /**
+     * Response that counts the body bytes written to it, so that the size of
+     * a measured response is known even if it is streamed.
+     */
+    private static class CountingResponse extends HttpServletResponseWrapper {
+        private ServletOutputStream outputStream = null;
+        private long count = 0;
+
+        public CountingResponse(final HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (outputStream == null) {
+                ServletOutputStream responseOutputStream = super.getOutputStream();
+
+                outputStream = new ServletOutputStream() {
+                    @Override
+                    public void write(final int b) throws IOException {
+                        responseOutputStream.write(b);
+                        count++;
+                    }
+
+                    @Override
+                    public void write(final byte[] b, final int off, final int len) throws IOException {
+                        responseOutputStream.write(b, off, len);
+                        count += len;
+                    }
+
+                    @Override
+                    public void flush() throws IOException {
+                        responseOutputStream.flush();
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        responseOutputStream.close();
+                    }
+                };
+            }
+
+            return outputStream;
+        }
+
+        public long getCount() {
+            return count;
+        }
+    }
+
     private static final long serialVersionUID = 4881638232902478092L;
 
+    /**
+     * The default size, in bytes, above which responses are compressed.
+     */
+    public static final int DEFAULT_COMPRESSION_THRESHOLD = 2048;
+
+    /**
+     * The default size, in bytes, above which responses whose content length
+     * is determined are buffered in a temporary file rather than in memory.
+     */
+    public static final long DEFAULT_FILE_THRESHOLD = 1024 * 1024;
+
+    /**
+     * The path, relative to the servlet, that batches of requests are posted
+     * to.
+     */
+    public static final String BATCH_PATH = "_batch";
+
+    /**
+     * The default maximum number of requests in a batch.
+     */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 100;
+
     private boolean determineContentLength = false;
+    private int compressionThreshold = DEFAULT_COMPRESSION_THRESHOLD;
+    private long fileThreshold = DEFAULT_FILE_THRESHOLD;
+    private boolean eTagComputed = false;
+    private int payloadCacheSize = 0;
+    private transient PayloadCache payloadCache = null;
+    private boolean batchEnabled = false;
+    private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+    private transient QueryMetrics metrics = null;
 
     private transient ThreadLocal<String> hostname = new ThreadLocal<>();
     private transient ThreadLocal<Integer> port = new ThreadLocal<>();
@@ -139,6 +316,8 @@ public abstract class QueryServlet extends HttpServlet {
     private transient ThreadLocal<QueryDictionary> requestHeaders = new ThreadLocal<>();
     private transient ThreadLocal<QueryDictionary> responseHeaders = new ThreadLocal<>();
 
+    private transient ThreadLocal<QueryMetrics.Request> measurement = new ThreadLocal<>();
+
     /**
      * Gets the host name that was requested.
      * @return The host name from the request.
@@ -206,6 +385,196 @@ public abstract class QueryServlet extends HttpServlet {
         return location;
     }
 
+    /**
+     * Returns the size above which GET responses are compressed for clients
+     * that accept a compressed response.
+     * @return The threshold in bytes, or a negative value if responses are
+     * never compressed.
+     */
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    /**
+     * Sets the size above which GET responses are compressed for clients that
+     * accept a compressed response (see {@link ContentEncoding}).
+     * @param compressionThreshold The threshold in bytes, or a negative value
+     * to never compress responses.
+     */
+    public void setCompressionThreshold(final int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    /**
+     * Tells whether the servlet determines the length of GET responses before
+     * sending them, so that they carry a <tt>Content-Length</tt> header.
+     * @return <tt>true</tt> if the content length is determined;
+     * <tt>false</tt>, otherwise.
+     */
+    public boolean isDetermineContentLength() {
+        return determineContentLength;
+    }
+
+    /**
+     * Sets whether the servlet determines the length of GET responses before
+     * sending them. Responses are then buffered in memory, or in a temporary
+     * file above {@link #getFileThreshold()}; otherwise, they are streamed to
+     * the client as they are serialized. This is off by default.
+     * @param determineContentLength Whether the content length is determined.
+     */
+    public void setDetermineContentLength(final boolean determineContentLength) {
+        this.determineContentLength = determineContentLength;
+    }
+
+    /**
+     * Returns the size above which responses whose content length is
+     * determined are buffered in a temporary file rather than in memory.
+     * @return The threshold in bytes.
+     */
+    public long getFileThreshold() {
+        return fileThreshold;
+    }
+
+    /**
+     * Sets the size above which responses whose content length is determined
+     * are buffered in a temporary file rather than in memory.
+     * @param fileThreshold The threshold in bytes; the default is
+     * {@link #DEFAULT_FILE_THRESHOLD}.
+     */
+    public void setFileThreshold(final long fileThreshold) {
+        if (fileThreshold < 0) {
+            throw new IllegalArgumentException("fileThreshold is negative.");
+        }
+
+        this.fileThreshold = fileThreshold;
+    }
+
+    /**
+     * Tells whether the servlet computes an entity tag for GET responses that
+     * do not have one.
+     * @return <tt>true</tt> if entity tags are computed; <tt>false</tt>,
+     * otherwise.
+     */
+    public boolean isETagComputed() {
+        return eTagComputed;
+    }
+
+    /**
+     * Sets whether the servlet computes a strong entity tag, from the
+     * serialized response, for GET responses that do not have one (see
+     * {@link #getETag(Path)}). Responses are then buffered as when the content
+     * length is determined, and a client that already has the response
+     * receives an HTTP 304 status without a body. This is off by default.
+     * @param eTagComputed Whether entity tags are computed.
+     */
+    public void setETagComputed(final boolean eTagComputed) {
+        this.eTagComputed = eTagComputed;
+    }
+
+    /**
+     * Returns the number of serialized GET responses the servlet caches.
+     * @return The size of the cache, or <tt>0</tt> if responses are not
+     * cached.
+     */
+    public int getPayloadCacheSize() {
+        return payloadCacheSize;
+    }
+
+    /**
+     * Sets the number of serialized GET responses the servlet caches. Only
+     * responses to resources that have an entity tag (see
+     * {@link #getETag(Path)}) and that are no larger than the file threshold
+     * are cached; a cached response is sent, along with the response headers
+     * set when it was cached, without calling {@link #doGet(Path)} or the
+     * serializer. Caching is off by default. <p> <b>A cached response is
+     * shared by every client that requests the same path and query string</b>:
+     * servlets whose responses depend on the user or on other request headers
+     * must override {@link #getPayloadVariant(Path)}.
+     * @param payloadCacheSize The size of the cache, or <tt>0</tt> to disable
+     * caching.
+     */
+    public void setPayloadCacheSize(final int payloadCacheSize) {
+        if (payloadCacheSize < 0) {
+            throw new IllegalArgumentException("payloadCacheSize is negative.");
+        }
+
+        this.payloadCacheSize = payloadCacheSize;
+        payloadCache = (payloadCacheSize == 0) ? null : new PayloadCache(payloadCacheSize);
+    }
+
+    /**
+     * Tells whether the servlet accepts batches of requests.
+     * @return <tt>true</tt> if batches are accepted; <tt>false</tt>, otherwise.
+     * @see #setBatchEnabled(boolean)
+     */
+    public boolean isBatchEnabled() {
+        return batchEnabled;
+    }
+
+    /**
+     * Sets whether the servlet accepts batches of requests. A batch is a JSON
+     * list of requests, in the format described by {@link QueryBatch}, that is
+     * posted to {@link #BATCH_PATH}; the requests are handled in order, as if
+     * they had been made one by one with the headers of the batch, and their
+     * responses are returned together as a list. The batch, including the
+     * values of its requests and responses, is read and written with the
+     * serializer that {@link #createSerializer(Query.Method, Path)} returns for
+     * a POST to the batch path; it must represent lists and maps, as a
+     * {@link JSONSerializer} does. {@link QueryBatch} only combines queries
+     * that use a <tt>JSONSerializer</tt>. Batching is off by default.
+     * @param batchEnabled Whether batches are accepted.
+     */
+    public void setBatchEnabled(final boolean batchEnabled) {
+        this.batchEnabled = batchEnabled;
+    }
+
+    /**
+     * Returns the maximum number of requests in a batch; larger batches are
+     * rejected with an HTTP 413 status.
+     * @return The maximum batch size.
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Sets the maximum number of requests in a batch.
+     * @param maxBatchSize The maximum batch size; the default is
+     * {@link #DEFAULT_MAX_BATCH_SIZE}.
+     */
+    public void setMaxBatchSize(final int maxBatchSize) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be positive.");
+        }
+
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Returns the metrics that measure the requests to the servlet.
+     * @return The metrics, or <tt>null</tt> if requests are not measured.
+     */
+    public QueryMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the metrics that measure the requests to the servlet: the time
+     * spent in {@link #prepare()}, {@link #validate(Query.Method, Path)}, the
+     * handler methods such as {@link #doGet(Path)}, and reading and writing
+     * bodies, as well as the status of each response and the size of the
+     * bodies: the content length of the request, and the number of bytes of
+     * the response body, after compression, that the servlet writes. The
+     * requests of a batch are measured as phases of the batch.
+     * Requests are not measured by default.
+     * @param metrics The metrics, such as a
+     * {@link org.apache.pivot.web.QueryStatistics QueryStatistics}, or
+     * <tt>null</tt> to stop measuring requests.
+     */
+    public void setMetrics(final QueryMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     /**
      * Returns the servlet's parameter dictionary, which holds the values passed
      * in the HTTP request query string.
@@ -268,6 +637,56 @@ public abstract class QueryServlet extends HttpServlet {
         // No-op
     }
 
+    /**
+     * Returns the entity tag of a resource: a string that changes whenever the
+     * resource does. This method is called before {@link #doGet(Path)} and
+     * should be cheap, such as a version number or a stored hash; when it
+     * returns a tag, a conditional GET with a matching <tt>If-None-Match</tt>
+     * header receives an HTTP 304 status without the resource being read or
+     * serialized. <p> The default implementation returns <tt>null</tt>.
+     *
+     * @param path The request path.
+     * @return The entity tag, with or without quotes, or <tt>null</tt> if the
+     * resource has none.
+     * @throws QueryException on any error.
+     */
+    protected String getETag(final Path path) throws QueryException {
+        return null;
+    }
+
+    /**
+     * Returns the time a resource was last modified. Like
+     * {@link #getETag(Path)}, this method is called before
+     * {@link #doGet(Path)}; when it returns a time, a conditional GET with a
+     * later <tt>If-Modified-Since</tt> header receives an HTTP 304 status.
+     * <p> The default implementation returns <tt>-1</tt>.
+     *
+     * @param path The request path.
+     * @return The modification time in milliseconds since the epoch, or
+     * <tt>-1</tt> if it is not known.
+     * @throws QueryException on any error.
+     */
+    protected long getLastModified(final Path path) throws QueryException {
+        return -1;
+    }
+
+    /**
+     * Returns the variant of a resource that the current request receives,
+     * when the response depends on more than the path, query string and entity
+     * tag, such as on the user. The variant is added to the key of the
+     * response in the payload cache (see {@link #setPayloadCacheSize(int)}).
+     * <p> The default implementation returns an empty string: all clients
+     * share the same response.
+     *
+     * @param path The request path.
+     * @return The variant, such as the name of the user, or <tt>null</tt> if
+     * the response must not be cached.
+     * @throws QueryException on any error.
+     */
+    protected String getPayloadVariant(final Path path) throws QueryException {
+        return "";
+    }
+
     /**
      * Handles an HTTP GET request. The default implementation throws an HTTP
      * 405 query exception.
@@ -334,54 +753,46 @@ public abstract class QueryServlet extends HttpServlet {
     @Override
     protected void service(final HttpServletRequest request, final HttpServletResponse response)
         throws IOException, ServletException {
-        try {
-            try {
-                URL url = new URL(request.getRequestURL().toString());
-                hostname.set(url.getHost());
-                port.set(Integer.valueOf(request.getLocalPort()));
-                contextPath.set(request.getContextPath());
-                servletPath.set(request.getServletPath());
-                secure.set(Boolean.valueOf(url.getProtocol().equalsIgnoreCase(Constants.HTTPS_PROTOCOL)));
-            } catch (MalformedURLException exception) {
-                throw new ServletException(exception);
-            }
-
-            parameters.set(new QueryDictionary(true));
-            requestHeaders.set(new QueryDictionary(false));
-            responseHeaders.set(new QueryDictionary(false));
-
-            // Copy the query string into the arguments dictionary
-            String queryString = request.getQueryString();
-            if (queryString != null) {
-                QueryDictionary parametersDictionary = parameters.get();
-                String[] pairs = queryString.split("&");
-
-                for (int i = 0, n = pairs.length; i < n; i++) {
-                    String[] pair = pairs[i].split("=");
-
-                    String key = URLDecoder.decode(pair[0], Constants.URL_ENCODING);
-                    String value = URLDecoder.decode((pair.length > 1) ? pair[1] : "", Constants.URL_ENCODING);
+        QueryMetrics metricsLocal = metrics;
+        QueryMetrics.Request measurementLocal = null;
+        CountingResponse countingResponse = null;
+        long startTime = System.nanoTime();
+        boolean serviced = false;
 
-                    parametersDictionary.add(key, value);
+        try {
+            if (metricsLocal != null) {
+                Query.Method method;
+                try {
+                    method = Query.Method.valueOf(request.getMethod());
+                } catch (IllegalArgumentException exception) {
+                    method = null;
                 }
+
+                String pathInfo = request.getPathInfo();
+                measurementLocal = metricsLocal.requestStarted(method, (pathInfo == null) ? "" : pathInfo);
+                measurement.set(measurementLocal);
+                countingResponse = new CountingResponse(response);
             }
 
-            // Copy the request headers into the request properties dictionary
-            QueryDictionary requestHeaderDictionary = requestHeaders.get();
-            @SuppressWarnings("unchecked")
-            Enumeration<String> headerNames = request.getHeaderNames();
-            while (headerNames.hasMoreElements()) {
-                String headerName = headerNames.nextElement();
-                String headerValue = request.getHeader(headerName);
+            QueryContext context = new QueryContext(request);
+            hostname.set(context.getHostname());
+            port.set(Integer.valueOf(context.getPort()));
+            contextPath.set(context.getContextPath());
+            servletPath.set(context.getServletPath());
+            secure.set(Boolean.valueOf(context.isSecure()));
 
-                requestHeaderDictionary.add(headerName, headerValue);
-            }
+            parameters.set(context.getParameters());
+            requestHeaders.set(context.getRequestHeaders());
+            responseHeaders.set(context.getResponseHeaders());
 
             // Prepare the servlet for request processing
+            long phaseStartTime = System.nanoTime();
             prepare();
+            phaseCompleted(QueryMetrics.Phase.PREPARE, phaseStartTime);
 
             // Process the request
-            super.service(request, response);
+            super.service(request, (countingResponse == null) ? response : countingResponse);
+            serviced = true;
         } catch (IOException exception) {
             System.err.println(exception);
             throw exception;
@@ -400,10 +811,40 @@ public abstract class QueryServlet extends HttpServlet {
             responseHeaders.remove();
 
             // Clean up any allocated resources
-            dispose();
+            try {
+                dispose();
+            } finally {
+                if (measurementLocal != null) {
+                    measurement.remove();
+                    measurementLocal.completed(serviced ? response.getStatus() : Query.Status.INTERNAL_SERVER_ERROR,
+                        request.getContentLength(), countingResponse.getCount(), System.nanoTime() - startTime);
+                }
+            }
         }
     }
 
+    /**
+     * Reports the completion of a phase of the current request to the
+     * metrics, if it is measured.
+     */
+    private void phaseCompleted(final QueryMetrics.Phase phase, final long phaseStartTime) {
+        QueryMetrics.Request measurementLocal = measurement.get();
+
+        if (measurementLocal != null) {
+            measurementLocal.phaseCompleted(phase, System.nanoTime() - phaseStartTime);
+        }
+    }
+
+    /**
+     * Calls {@link #validate(Query.Method, Path)}, measuring the time it
+     * takes.
+     */
+    private void validateRequest(final Query.Method method, final Path path) throws QueryException {
+        long phaseStartTime = System.nanoTime();
+        validate(method, path);
+        phaseCompleted(QueryMetrics.Phase.VALIDATE, phaseStartTime);
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     protected final void doGet(final HttpServletRequest request, final HttpServletResponse response)
@@ -412,10 +853,56 @@ public abstract class QueryServlet extends HttpServlet {
 
         Object result = null;
         Serializer<Object> serializer = null;
+        String payloadKey = null;
 
         try {
-            validate(Query.Method.GET, path);
+            validateRequest(Query.Method.GET, path);
+
+            // Answer conditional requests without executing the request
+            String eTag = getETag(path);
+            if (eTag != null && !eTag.startsWith("\"") && !eTag.startsWith("W/")) {
+                eTag = "\"" + eTag + "\"";
+            }
+
+            long lastModified = getLastModified(path);
+
+            QueryDictionary responseHeaderDictionary = responseHeaders.get();
+            if (eTag != null) {
+                responseHeaderDictionary.put(Constants.ETAG_HEADER, eTag);
+            }
+
+            if (lastModified >= 0) {
+                responseHeaderDictionary.put(Constants.LAST_MODIFIED_HEADER,
+                    DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                        ZonedDateTime.ofInstant(Instant.ofEpochMilli(lastModified), ZoneOffset.UTC)));
+            }
+
+            if (isNotModified(request, eTag, lastModified)) {
+                response.setStatus(Query.Status.NOT_MODIFIED);
+                setResponseHeaders(response);
+                response.flushBuffer();
+                return;
+            }
+
+            // Serve the serialized result from the cache if possible
+            PayloadCache payloadCacheLocal = payloadCache;
+            String variant = (payloadCacheLocal == null || eTag == null) ? null : getPayloadVariant(path);
+            if (variant != null) {
+                String queryString = request.getQueryString();
+                payloadKey = path + "?" + ((queryString == null) ? "" : queryString) + "\n" + eTag + "\n" + variant;
+
+                PayloadCache.Payload payload = payloadCacheLocal.get(payloadKey);
+                if (payload != null) {
+                    long phaseStartTime = System.nanoTime();
+                    payload.writeTo(response, negotiateEncoding(request, response), compressionThreshold);
+                    phaseCompleted(QueryMetrics.Phase.WRITE, phaseStartTime);
+                    return;
+                }
+            }
+
+            long phaseStartTime = System.nanoTime();
             result = doGet(path);
+            phaseCompleted(QueryMetrics.Phase.HANDLE, phaseStartTime);
             serializer = (Serializer<Object>) createSerializer(Query.Method.GET, path);
         } catch (QueryException exception) {
             response.setStatus(exception.getStatus());
@@ -423,46 +910,257 @@ public abstract class QueryServlet extends HttpServlet {
         }
 
         if (!response.isCommitted() && serializer != null) {
-            response.setStatus(Query.Status.OK);
-            setResponseHeaders(response);
+            if (payloadKey != null) {
+                long phaseStartTime = System.nanoTime();
+                ResponseBuffer buffer = new ResponseBuffer(fileThreshold);
+
+                try {
+                    try {
+                        serializer.writeObject(result, buffer);
+                    } catch (SerializationException exception) {
+                        throw new ServletException(exception);
+                    }
+
+                    buffer.close();
+
+                    ContentEncoding encoding = negotiateEncoding(request, response);
+
+                    // Cache the response only if it is small enough to be held in memory
+                    if (buffer.size() <= fileThreshold) {
+                        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream((int) buffer.size());
+                        buffer.writeTo(byteArrayOutputStream);
+
+                        QueryDictionary headers = new QueryDictionary(false);
+                        QueryDictionary responseHeaderDictionary = responseHeaders.get();
+                        for (String key : responseHeaderDictionary) {
+                            for (int i = 0, n = responseHeaderDictionary.getLength(key); i < n; i++) {
+                                headers.add(key, responseHeaderDictionary.get(key, i));
+                            }
+                        }
+
+                        PayloadCache.Payload payload = new PayloadCache.Payload(serializer.getMIMEType(result),
+                            headers, byteArrayOutputStream.toByteArray());
+                        PayloadCache payloadCacheLocal = payloadCache;
+                        if (payloadCacheLocal != null) {
+                            payloadCacheLocal.put(payloadKey, payload);
+                        }
+
+                        payload.writeTo(response, encoding, compressionThreshold);
+                    } else {
+                        response.setStatus(Query.Status.OK);
+                        setResponseHeaders(response);
+                        response.setContentType(serializer.getMIMEType(result));
+                        writeBuffer(response, buffer, encoding, compressionThreshold, fileThreshold);
+                    }
+                } finally {
+                    buffer.release();
+                }
+
+                phaseCompleted(QueryMetrics.Phase.WRITE, phaseStartTime);
+            } else {
+                response.setStatus(Query.Status.OK);
+                setResponseHeaders(response);
+                writeResult(request, response, serializer, result);
+            }
+        }
+    }
 
-            response.setContentType(serializer.getMIMEType(result));
+    /**
+     * Tells whether the response a client already has, as described by the
+     * <tt>If-None-Match</tt> and <tt>If-Modified-Since</tt> headers of its
+     * request, is current.
+     */
+    static boolean isNotModified(final HttpServletRequest request, final String eTag, final long lastModified) {
+        String ifNoneMatch = request.getHeader(Constants.IF_NONE_MATCH_HEADER);
 
-            OutputStream responseOutputStream = response.getOutputStream();
+        if (ifNoneMatch != null) {
+            if (eTag != null) {
+                String opaqueTag = eTag.startsWith("W/") ? eTag.substring(2) : eTag;
 
-            if (determineContentLength) {
-                File tempFile = File.createTempFile(getClass().getName(), null);
+                for (String tag : ifNoneMatch.split(",")) {
+                    tag = tag.trim();
 
-                // Serialize the result to an intermediary file
-                try (FileOutputStream fileOutputStream = new FileOutputStream(tempFile)) {
-                    serializer.writeObject(result, fileOutputStream);
-                } catch (SerializationException exception) {
-                    throw new ServletException(exception);
+                    if (tag.equals("*") || tag.equals(opaqueTag) || tag.equals("W/" + opaqueTag)) {
+                        return true;
+                    }
                 }
+            }
 
-                // Set the content length header
-                response.setHeader(Constants.CONTENT_LENGTH_HEADER, String.valueOf(tempFile.length()));
-
-                // Write the contents of the file out to the response
-                try (FileInputStream fileInputStream = new FileInputStream(tempFile)) {
-                    byte[] buffer = new byte[1024];
-                    int nBytes;
-                    do {
-                        nBytes = fileInputStream.read(buffer);
-                        if (nBytes > 0) {
-                            responseOutputStream.write(buffer, 0, nBytes);
-                        }
-                    } while (nBytes != -1);
+            // If-Modified-Since is ignored when If-None-Match is present
+            return false;
+        }
+
+        if (lastModified >= 0) {
+            long ifModifiedSince;
+            try {
+                ifModifiedSince = request.getDateHeader(Constants.IF_MODIFIED_SINCE_HEADER);
+            } catch (IllegalArgumentException exception) {
+                ifModifiedSince = -1;
+            }
+
+            // HTTP dates have a resolution of one second
+            return (ifModifiedSince != -1 && lastModified / 1000 <= ifModifiedSince / 1000);
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the encoding of the response to a GET request, adding the
+     * <tt>Vary</tt> header if responses are compressed.
+     */
+    private ContentEncoding negotiateEncoding(final HttpServletRequest request, final HttpServletResponse response) {
+        ContentEncoding encoding = ContentEncoding.IDENTITY;
+
+        if (compressionThreshold >= 0) {
+            encoding = ContentEncoding.negotiate(request.getHeader(Constants.ACCEPT_ENCODING_HEADER));
+            response.addHeader(Constants.VARY_HEADER, Constants.ACCEPT_ENCODING_HEADER);
+        }
+
+        return encoding;
+    }
+
+    /**
+     * Writes the result of a request to the response, compressing it if the
+     * client accepts a compressed response.
+     */
+    private void writeResult(final HttpServletRequest request, final HttpServletResponse response,
+        final Serializer<Object> serializer, final Object result) throws IOException, ServletException {
+        long phaseStartTime = System.nanoTime();
+        response.setContentType(serializer.getMIMEType(result));
+
+        ContentEncoding encoding = negotiateEncoding(request, response);
+
+        OutputStream responseOutputStream = response.getOutputStream();
+
+        if (determineContentLength || eTagComputed) {
+            writeBuffered(request, response, serializer, result, encoding, compressionThreshold, fileThreshold,
+                eTagComputed);
+        } else if (encoding != ContentEncoding.IDENTITY) {
+            CompressingOutputStream compressingOutputStream =
+                new CompressingOutputStream(response, encoding, compressionThreshold);
+
+            try {
+                serializer.writeObject(result, compressingOutputStream);
+            } catch (SerializationException exception) {
+                throw new ServletException(exception);
+            }
+
+            compressingOutputStream.finish();
+        } else {
+            try {
+                serializer.writeObject(result, responseOutputStream);
+            } catch (SerializationException exception) {
+                throw new ServletException(exception);
+            }
+        }
+
+        response.flushBuffer();
+        phaseCompleted(QueryMetrics.Phase.WRITE, phaseStartTime);
+    }
+
+    /**
+     * Serializes a result into a {@link ResponseBuffer} and writes it to the
+     * response with its content length, compressed if it is larger than the
+     * compression threshold. If requested, and the response does not already
+     * have an entity tag, a strong one is computed from the serialized result
+     * and the content coding of the response; the response is then sent
+     * without a body if the client has it already.
+     */
+    static void writeBuffered(final HttpServletRequest request, final HttpServletResponse response,
+        final Serializer<Object> serializer, final Object result, final ContentEncoding encoding,
+        final int compressionThreshold, final long fileThreshold, final boolean computeETag)
+        throws IOException, ServletException {
+        ResponseBuffer buffer = new ResponseBuffer(fileThreshold);
+
+        MessageDigest digest = null;
+        if (computeETag && !response.containsHeader(Constants.ETAG_HEADER)) {
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException exception) {
+                throw new ServletException(exception);
+            }
+        }
+
+        try {
+            // Serialize the result to an intermediary buffer
+            try {
+                serializer.writeObject(result, (digest == null) ? buffer : new DigestOutputStream(buffer, digest));
+            } catch (SerializationException exception) {
+                throw new ServletException(exception);
+            }
+
+            buffer.close();
+
+            if (digest != null) {
+                StringBuilder eTagBuilder = new StringBuilder("\"");
+                byte[] hash = digest.digest();
+                for (int i = 0; i < 16; i++) {
+                    eTagBuilder.append(String.format("%02x", Integer.valueOf(hash[i] & 0xff)));
                 }
-            } else {
-                try {
-                    serializer.writeObject(result, responseOutputStream);
-                } catch (SerializationException exception) {
-                    throw new ServletException(exception);
+
+                // A strong tag identifies the bytes sent, so it differs for
+                // each content coding
+                if (isCompressed(buffer, encoding, compressionThreshold)) {
+                    eTagBuilder.append('-').append(encoding.getName());
+                }
+
+                String eTag = eTagBuilder.append('"').toString();
+                response.setHeader(Constants.ETAG_HEADER, eTag);
+
+                if (isNotModified(request, eTag, -1)) {
+                    response.setStatus(Query.Status.NOT_MODIFIED);
+                    response.flushBuffer();
+                    return;
                 }
             }
 
-            response.flushBuffer();
+            writeBuffer(response, buffer, encoding, compressionThreshold, fileThreshold);
+        } finally {
+            buffer.release();
+        }
+    }
+
+    /**
+     * Tells whether the content of a buffer is sent compressed.
+     */
+    private static boolean isCompressed(final ResponseBuffer buffer, final ContentEncoding encoding,
+        final int compressionThreshold) {
+        return (encoding != ContentEncoding.IDENTITY && buffer.size() > compressionThreshold);
+    }
+
+    /**
+     * Writes the content of a closed buffer to the response with its content
+     * length, compressed if it is larger than the compression threshold.
+     */
+    private static void writeBuffer(final HttpServletResponse response, final ResponseBuffer buffer,
+        final ContentEncoding encoding, final int compressionThreshold, final long fileThreshold)
+        throws IOException {
+        ResponseBuffer encodedBuffer = null;
+
+        try {
+            // Compress the buffer if it is large enough
+            if (isCompressed(buffer, encoding, compressionThreshold)) {
+                encodedBuffer = new ResponseBuffer(fileThreshold);
+
+                try (OutputStream outputStream = encoding.encode(encodedBuffer)) {
+                    buffer.writeTo(outputStream);
+                }
+
+                response.setHeader(Constants.CONTENT_ENCODING_HEADER, encoding.getName());
+            }
+
+            ResponseBuffer responseBuffer = (encodedBuffer == null) ? buffer : encodedBuffer;
+
+            // Set the content length header
+            response.setHeader(Constants.CONTENT_LENGTH_HEADER, String.valueOf(responseBuffer.size()));
+
+            // Write the contents of the buffer out to the response
+            responseBuffer.writeTo(response.getOutputStream());
+        } finally {
+            if (encodedBuffer != null) {
+                encodedBuffer.release();
+            }
         }
     }
 
@@ -471,17 +1169,28 @@ public abstract class QueryServlet extends HttpServlet {
         throws IOException, ServletException {
         Path path = getPath(request);
 
+        if (batchEnabled && path.getLength() == 1 && path.get(0).equals(BATCH_PATH)) {
+            doBatch(request, response, path);
+            return;
+        }
+
         URL location = null;
         try {
-            validate(Query.Method.POST, path);
+            validateRequest(Query.Method.POST, path);
 
             Object value = null;
             if (request.getContentLength() > 0) {
                 Serializer<?> serializer = createSerializer(Query.Method.POST, path);
-                value = serializer.readObject(request.getInputStream());
+                long phaseStartTime = System.nanoTime();
+                try (InputStream inputStream = getInputStream(request)) {
+                    value = serializer.readObject(inputStream);
+                }
+                phaseCompleted(QueryMetrics.Phase.READ, phaseStartTime);
             }
 
+            long phaseStartTime = System.nanoTime();
             location = doPost(path, value);
+            phaseCompleted(QueryMetrics.Phase.HANDLE, phaseStartTime);
         } catch (SerializationException exception) {
             throw new ServletException(exception);
         } catch (QueryException exception) {
@@ -509,15 +1218,21 @@ public abstract class QueryServlet extends HttpServlet {
 
         boolean created = false;
         try {
-            validate(Query.Method.PUT, path);
+            validateRequest(Query.Method.PUT, path);
 
             Object value = null;
             if (request.getContentLength() > 0) {
                 Serializer<?> serializer = createSerializer(Query.Method.PUT, path);
-                value = serializer.readObject(request.getInputStream());
+                long phaseStartTime = System.nanoTime();
+                try (InputStream inputStream = getInputStream(request)) {
+                    value = serializer.readObject(inputStream);
+                }
+                phaseCompleted(QueryMetrics.Phase.READ, phaseStartTime);
             }
 
+            long phaseStartTime = System.nanoTime();
             created = doPut(path, value);
+            phaseCompleted(QueryMetrics.Phase.HANDLE, phaseStartTime);
         } catch (SerializationException exception) {
             throw new ServletException(exception);
         } catch (QueryException exception) {
@@ -538,8 +1253,11 @@ public abstract class QueryServlet extends HttpServlet {
         throws IOException, ServletException {
         try {
             Path path = getPath(request);
-            validate(Query.Method.DELETE, path);
+            validateRequest(Query.Method.DELETE, path);
+
+            long phaseStartTime = System.nanoTime();
             doDelete(path);
+            phaseCompleted(QueryMetrics.Phase.HANDLE, phaseStartTime);
         } catch (QueryException exception) {
             response.setStatus(exception.getStatus());
             response.flushBuffer();
@@ -553,6 +1271,161 @@ public abstract class QueryServlet extends HttpServlet {
         }
     }
 
+    /**
+     * Handles a batch of requests (see {@link #setBatchEnabled(boolean)}).
+     */
+    @SuppressWarnings("unchecked")
+    private void doBatch(final HttpServletRequest request, final HttpServletResponse response, final Path path)
+        throws IOException, ServletException {
+        Serializer<Object> serializer;
+        Object requests;
+        try {
+            serializer = (Serializer<Object>) createSerializer(Query.Method.POST, path);
+
+            long phaseStartTime = System.nanoTime();
+            try (InputStream inputStream = getInputStream(request)) {
+                requests = serializer.readObject(inputStream);
+            }
+            phaseCompleted(QueryMetrics.Phase.READ, phaseStartTime);
+        } catch (SerializationException exception) {
+            throw new ServletException(exception);
+        } catch (QueryException exception) {
+            response.setStatus(exception.getStatus());
+            response.flushBuffer();
+            return;
+        }
+
+        if (!(requests instanceof List<?>)) {
+            response.setStatus(Query.Status.BAD_REQUEST);
+            response.flushBuffer();
+            return;
+        }
+
+        List<Object> requestList = (List<Object>) requests;
+        if (requestList.getLength() > maxBatchSize) {
+            response.setStatus(Query.Status.REQUEST_ENTITY_TOO_LARGE);
+            response.flushBuffer();
+            return;
+        }
+
+        ArrayList<Object> responses = new ArrayList<>(requestList.getLength());
+
+        QueryDictionary batchParameters = parameters.get();
+        QueryDictionary batchResponseHeaders = responseHeaders.get();
+
+        try {
+            for (Object batchRequest : requestList) {
+                responses.add(doBatchRequest(batchRequest));
+            }
+        } finally {
+            parameters.set(batchParameters);
+            responseHeaders.set(batchResponseHeaders);
+        }
+
+        response.setStatus(Query.Status.OK);
+        setResponseHeaders(response);
+        writeResult(request, response, serializer, responses);
+    }
+
+    /**
+     * Handles one request of a batch, as the corresponding HTTP handler method
+     * would.
+     * @return The response to the request.
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> doBatchRequest(final Object batchRequest) {
+        QueryDictionary parametersDictionary = new QueryDictionary(true);
+        QueryDictionary responseHeaderDictionary = new QueryDictionary(false);
+        parameters.set(parametersDictionary);
+        responseHeaders.set(responseHeaderDictionary);
+
+        HashMap<String, Object> batchResponse = new HashMap<>();
+
+        int status;
+        try {
+            Map<String, Object> requestMap;
+            Query.Method method;
+            String pathInfo;
+            try {
+                requestMap = (Map<String, Object>) batchRequest;
+                method = Query.Method.valueOf((String) requestMap.get(QueryBatch.METHOD_KEY));
+                pathInfo = (String) requestMap.get(QueryBatch.PATH_KEY);
+
+                Map<String, Object> parametersMap = (Map<String, Object>) requestMap.get(QueryBatch.PARAMETERS_KEY);
+                if (parametersMap != null) {
+                    for (String key : parametersMap) {
+                        Object value = parametersMap.get(key);
+
+                        if (value instanceof List<?>) {
+                            for (Object item : (List<Object>) value) {
+                                parametersDictionary.add(key, String.valueOf(item));
+                            }
+                        } else {
+                            parametersDictionary.add(key, String.valueOf(value));
+                        }
+                    }
+                }
+            } catch (ClassCastException | IllegalArgumentException | NullPointerException exception) {
+                throw new QueryException(Query.Status.BAD_REQUEST);
+            }
+
+            Path path = getPath(pathInfo);
+            Object value = requestMap.get(QueryBatch.VALUE_KEY);
+
+            validateRequest(method, path);
+
+            long phaseStartTime = System.nanoTime();
+            switch (method) {
+                case GET:
+                    batchResponse.put(QueryBatch.VALUE_KEY, doGet(path));
+                    status = Query.Status.OK;
+                    break;
+
+                case POST:
+                    URL location = doPost(path, value);
+                    if (location == null) {
+                        status = Query.Status.NO_CONTENT;
+                    } else {
+                        status = Query.Status.CREATED;
+                        responseHeaderDictionary.put(Constants.LOCATION_HEADER, location.toString());
+                    }
+                    break;
+
+                case PUT:
+                    status = doPut(path, value) ? Query.Status.CREATED : Query.Status.NO_CONTENT;
+                    break;
+
+                case DELETE:
+                    doDelete(path);
+                    status = Query.Status.NO_CONTENT;
+                    break;
+
+                default:
+                    throw new QueryException(Query.Status.METHOD_NOT_ALLOWED);
+            }
+
+            phaseCompleted(QueryMetrics.Phase.HANDLE, phaseStartTime);
+        } catch (QueryException exception) {
+            status = exception.getStatus();
+            batchResponse.remove(QueryBatch.VALUE_KEY);
+        }
+
+        HashMap<String, Object> headers = new HashMap<>();
+        for (String key : responseHeaderDictionary) {
+            ArrayList<String> values = new ArrayList<>();
+            for (int i = 0, n = responseHeaderDictionary.getLength(key); i < n; i++) {
+                values.add(responseHeaderDictionary.get(key, i));
+            }
+
+            headers.put(key, values);
+        }
+
+        batchResponse.put(QueryBatch.STATUS_KEY, Integer.valueOf(status));
+        batchResponse.put(QueryBatch.HEADERS_KEY, headers);
+
+        return batchResponse;
+    }
+
     @Override
     protected final void doHead(final HttpServletRequest request, final HttpServletResponse response)
         throws IOException, ServletException {
@@ -574,8 +1447,27 @@ public abstract class QueryServlet extends HttpServlet {
         response.flushBuffer();
     }
 
+    /**
+     * Returns the request body, decoding it according to its
+     * <tt>Content-Encoding</tt> header. The stream must be closed to release
+     * the decompressor.
+     */
+    static InputStream getInputStream(final HttpServletRequest request)
+        throws IOException, QueryException {
+        ContentEncoding encoding = ContentEncoding.fromName(request.getHeader(Constants.CONTENT_ENCODING_HEADER));
+
+        if (encoding == null) {
+            throw new QueryException(Query.Status.UNSUPPORTED_MEDIA_TYPE);
+        }
+
+        return encoding.decode(request.getInputStream());
+    }
+
     private static Path getPath(final HttpServletRequest request) {
-        String pathInfo = request.getPathInfo();
+        return getPath(request.getPathInfo());
+    }
+
+    static Path getPath(final String pathInfo) {
         Path path;
         if (pathInfo == null || pathInfo.length() == 0) {
             path = new Path();
@@ -587,8 +1479,11 @@ public abstract class QueryServlet extends HttpServlet {
     }
 
     private void setResponseHeaders(final HttpServletResponse response) {
-        QueryDictionary responseHeaderDictionary = responseHeaders.get();
+        setResponseHeaders(response, responseHeaders.get());
+    }
 
+    static void setResponseHeaders(final HttpServletResponse response,
+        final QueryDictionary responseHeaderDictionary) {
         for (String key : responseHeaderDictionary) {
             for (int i = 0, n = responseHeaderDictionary.getLength(key); i < n; i++) {
                 response.addHeader(key, responseHeaderDictionary.get(key, i));
@@ -0,0 +1,224 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web.server;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.pivot.collections.ArrayList;
+
+/**
+ * Output stream that holds a response in memory, in fixed-size segments taken
+ * from a shared pool, so that its length is known before it is sent. Once the
+ * response grows beyond a threshold, it is moved to a temporary file. <p> The
+ * buffer must be {@link #release() released} once it has been written out.
+ * <p> This class is used by {@link QueryServlet} to buffer responses whose
+ * length must be known before they are sent.
+ */
+public class ResponseBuffer extends OutputStream {
+    private final long fileThreshold;
+    private final ArrayList<byte[]> segments = new ArrayList<>();
+    private int position = SEGMENT_SIZE;
+    private long size = 0;
+
+    private File file = null;
+    private OutputStream fileOutputStream = null;
+
+    /**
+     * The size of the segments that hold a response in memory.
+     */
+    public static final int SEGMENT_SIZE = 8192;
+
+    /**
+     * The maximum number of free segments kept for reuse.
+     */
+    public static final int MAX_POOLED_SEGMENTS = 256;
+
+    private static final ConcurrentLinkedQueue<byte[]> pool = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger pooledCount = new AtomicInteger();
+
+    /**
+     * @param fileThreshold The size above which the buffer moves to a file.
+     */
+    public ResponseBuffer(final long fileThreshold) {
+        this.fileThreshold = fileThreshold;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        if (file == null && size + len > fileThreshold) {
+            spill();
+        }
+
+        if (file != null) {
+            if (fileOutputStream == null) {
+                throw new IOException("Buffer is closed.");
+            }
+
+            fileOutputStream.write(b, off, len);
+        } else {
+            int offset = off;
+            int remaining = len;
+
+            while (remaining > 0) {
+                if (position == SEGMENT_SIZE) {
+                    segments.add(acquire());
+                    position = 0;
+                }
+
+                int count = Math.min(remaining, SEGMENT_SIZE - position);
+                System.arraycopy(b, offset, segments.get(segments.getLength() - 1), position, count);
+
+                position += count;
+                offset += count;
+                remaining -= count;
+            }
+        }
+
+        size += len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (fileOutputStream != null) {
+            fileOutputStream.flush();
+        }
+    }
+
+    /**
+     * Ends writing to the buffer; the content remains available until the
+     * buffer is released.
+     */
+    @Override
+    public void close() throws IOException {
+        if (fileOutputStream != null) {
+            fileOutputStream.close();
+            fileOutputStream = null;
+        }
+    }
+
+    /**
+     * @return The number of bytes written to the buffer.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Writes the content of the buffer to an output stream, one segment at a
+     * time or, if the buffer has moved to a file, as a channel transfer.
+     *
+     * @param outputStream The stream to write to.
+     */
+    public void writeTo(final OutputStream outputStream) throws IOException {
+        if (file == null) {
+            writeSegments(outputStream);
+        } else {
+            close();
+
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+                FileChannel fileChannel = randomAccessFile.getChannel()) {
+                WritableByteChannel channel = Channels.newChannel(outputStream);
+
+                long transferred = 0;
+                while (transferred < size) {
+                    transferred += fileChannel.transferTo(transferred, size - transferred, channel);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the segments to the pool and deletes the temporary file, if
+     * any.
+     */
+    public void release() throws IOException {
+        try {
+            close();
+        } finally {
+            recycleSegments();
+
+            if (file != null) {
+                file.delete();
+                file = null;
+            }
+        }
+    }
+
+    /**
+     * @return The number of free segments in the shared pool.
+     */
+    public static int getPooledSegmentCount() {
+        return pooledCount.get();
+    }
+
+    /**
+     * Moves the content of the buffer to a temporary file.
+     */
+    private void spill() throws IOException {
+        file = File.createTempFile(getClass().getName(), null);
+        fileOutputStream = new BufferedOutputStream(new FileOutputStream(file), SEGMENT_SIZE);
+
+        writeSegments(fileOutputStream);
+        recycleSegments();
+    }
+
+    private void writeSegments(final OutputStream outputStream) throws IOException {
+        for (int i = 0, n = segments.getLength(); i < n; i++) {
+            outputStream.write(segments.get(i), 0, (i == n - 1) ? position : SEGMENT_SIZE);
+        }
+    }
+
+    private void recycleSegments() {
+        for (byte[] segment : segments) {
+            if (pooledCount.incrementAndGet() <= MAX_POOLED_SEGMENTS) {
+                pool.offer(segment);
+            } else {
+                pooledCount.decrementAndGet();
+            }
+        }
+
+        segments.clear();
+        position = SEGMENT_SIZE;
+    }
+
+    private static byte[] acquire() {
+        byte[] segment = pool.poll();
+
+        if (segment == null) {
+            segment = new byte[SEGMENT_SIZE];
+        } else {
+            pooledCount.decrementAndGet();
+        }
+
+        return segment;
+    }
+}
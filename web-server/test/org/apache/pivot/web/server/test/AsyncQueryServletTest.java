@@ -0,0 +1,206 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web.server.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletException;
+
+import org.apache.pivot.json.JSONSerializer;
+import org.apache.pivot.serialization.Serializer;
+import org.apache.pivot.web.Query;
+import org.apache.pivot.web.QueryException;
+import org.apache.pivot.web.server.AsyncQueryServlet;
+import org.apache.pivot.web.server.QueryContext;
+import org.apache.pivot.web.server.QueryServlet.Path;
+import org.junit.Test;
+
+public class AsyncQueryServletTest {
+    private static class FutureServlet extends AsyncQueryServlet {
+        private static final long serialVersionUID = 0;
+
+        private final CompletableFuture<Object> future = new CompletableFuture<>();
+        private final AtomicInteger disposeCount = new AtomicInteger();
+        private ServletException prepareException = null;
+
+        @Override
+        protected void prepare(final QueryContext context) throws ServletException {
+            if (prepareException != null) {
+                throw prepareException;
+            }
+        }
+
+        @Override
+        protected void dispose(final QueryContext context) {
+            disposeCount.incrementAndGet();
+        }
+
+        @Override
+        protected CompletionStage<Object> doGet(final QueryContext context, final Path path) {
+            context.getResponseHeaders().put("X-Path", path.get(0));
+            return future;
+        }
+
+        @Override
+        protected Serializer<?> createSerializer(final QueryContext context, final Query.Method method,
+            final Path path) {
+            return new JSONSerializer();
+        }
+    }
+
+    private static final long WAIT = 10000;
+
+    private static ServletStubs.Response get(final FutureServlet servlet, final ServletStubs.Async async)
+        throws IOException, ServletException {
+        ServletStubs.Request request = new ServletStubs.Request("GET", "/item").setAsync(async);
+        ServletStubs.Response response = new ServletStubs.Response();
+        servlet.service(request.proxy(), response.proxy());
+
+        return response;
+    }
+
+    @Test
+    public void testCompletion() throws IOException, ServletException, InterruptedException {
+        FutureServlet servlet = new FutureServlet();
+        servlet.setTimeout(5000);
+        ServletStubs.Async async = new ServletStubs.Async();
+
+        ServletStubs.Response response = get(servlet, async);
+        assertFalse(response.isCommitted());
+        assertEquals(0, async.getCompleteCount());
+        assertEquals(0, servlet.disposeCount.get());
+        assertEquals(5000, async.getTimeout());
+
+        // The response is written by the thread that completes the stage
+        Thread thread = new Thread(() -> servlet.future.complete("abc"));
+        thread.start();
+        thread.join(WAIT);
+
+        assertTrue(async.awaitCompletion(0));
+        assertEquals(200, response.getStatus());
+        assertEquals("item", response.getHeader("X-Path"));
+        assertEquals("\"abc\"", response.getDecodedText());
+        assertEquals(1, async.getCompleteCount());
+        assertEquals(1, servlet.disposeCount.get());
+    }
+
+    @Test
+    public void testExceptionalCompletion() throws IOException, ServletException, InterruptedException {
+        FutureServlet servlet = new FutureServlet();
+        ServletStubs.Async async = new ServletStubs.Async();
+        ServletStubs.Response response = get(servlet, async);
+
+        servlet.future.completeExceptionally(new QueryException(Query.Status.NOT_FOUND));
+
+        assertTrue(async.awaitCompletion(WAIT));
+        assertEquals(Query.Status.NOT_FOUND, response.getStatus());
+        assertEquals(1, servlet.disposeCount.get());
+
+        servlet = new FutureServlet();
+        async = new ServletStubs.Async();
+        response = get(servlet, async);
+
+        servlet.future.completeExceptionally(new IllegalStateException());
+
+        assertTrue(async.awaitCompletion(WAIT));
+        assertEquals(Query.Status.INTERNAL_SERVER_ERROR, response.getStatus());
+        assertEquals(1, servlet.disposeCount.get());
+    }
+
+    @Test
+    public void testTimeout() throws IOException, ServletException {
+        FutureServlet servlet = new FutureServlet();
+        ServletStubs.Async async = new ServletStubs.Async();
+        ServletStubs.Response response = get(servlet, async);
+
+        async.timeout();
+
+        assertEquals(Query.Status.SERVICE_UNAVAILABLE, response.getStatus());
+        assertTrue(servlet.future.isCancelled());
+        assertEquals(1, async.getCompleteCount());
+        assertEquals(1, servlet.disposeCount.get());
+
+        // A second timeout has no effect
+        async.timeout();
+        assertEquals(1, async.getCompleteCount());
+        assertEquals(1, servlet.disposeCount.get());
+    }
+
+    @Test
+    public void testNotAsync() throws IOException, ServletException {
+        FutureServlet servlet = new FutureServlet();
+        servlet.future.complete("abc");
+
+        ServletStubs.Response response = get(servlet, null);
+        assertEquals(200, response.getStatus());
+        assertEquals("\"abc\"", response.getDecodedText());
+        assertEquals(1, servlet.disposeCount.get());
+
+        servlet = new FutureServlet();
+        servlet.setTimeout(50);
+
+        response = get(servlet, null);
+        assertEquals(Query.Status.SERVICE_UNAVAILABLE, response.getStatus());
+        assertTrue(servlet.future.isCancelled());
+        assertEquals(1, servlet.disposeCount.get());
+    }
+
+    @Test
+    public void testStartAsyncFailure() throws IOException, ServletException {
+        FutureServlet servlet = new FutureServlet();
+        ServletStubs.Async async = new ServletStubs.Async() {
+            @Override
+            protected AsyncContext startAsync() {
+                throw new IllegalStateException();
+            }
+        };
+
+        try {
+            get(servlet, async);
+            fail("Service should fail when startAsync() fails.");
+        } catch (IllegalStateException exception) {
+            // Expected
+        }
+
+        assertEquals(1, servlet.disposeCount.get());
+        assertTrue(servlet.future.isCancelled());
+    }
+
+    @Test
+    public void testPrepareFailure() throws IOException {
+        FutureServlet servlet = new FutureServlet();
+        servlet.prepareException = new ServletException("prepare");
+
+        try {
+            get(servlet, new ServletStubs.Async());
+            fail("Service should fail when prepare() fails.");
+        } catch (ServletException exception) {
+            assertEquals("prepare", exception.getMessage());
+        }
+
+        assertEquals(1, servlet.disposeCount.get());
+    }
+}
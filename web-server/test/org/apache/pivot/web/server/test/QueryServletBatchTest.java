@@ -0,0 +1,211 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web.server.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ServletException;
+
+import org.apache.pivot.json.JSONSerializer;
+import org.apache.pivot.serialization.Serializer;
+import org.apache.pivot.util.concurrent.TaskExecutionException;
+import org.apache.pivot.web.GetQuery;
+import org.apache.pivot.web.Query;
+import org.apache.pivot.web.QueryBatch;
+import org.apache.pivot.web.QueryException;
+import org.apache.pivot.web.server.QueryServlet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class QueryServletBatchTest {
+    static {
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private static class ItemServlet extends QueryServlet {
+        private static final long serialVersionUID = 0;
+
+        private final List<String> serializerRequests = new CopyOnWriteArrayList<>();
+
+        @Override
+        protected Object doGet(final Path path) throws QueryException {
+            if (path.get(0).equals("missing")) {
+                throw new QueryException(Query.Status.NOT_FOUND);
+            }
+
+            StringBuilder result = new StringBuilder();
+            for (String element : path) {
+                result.append('/').append(element);
+            }
+
+            String i = getParameters().get("i");
+            if (i != null) {
+                result.append("?i=").append(i);
+            }
+
+            getResponseHeaders().put("X-Item", path.get(path.getLength() - 1));
+
+            return result.toString();
+        }
+
+        @Override
+        protected Serializer<?> createSerializer(final Query.Method method, final Path path) {
+            serializerRequests.add(method + " " + String.join("/", path));
+            return new JSONSerializer();
+        }
+    }
+
+    private HttpServer server = null;
+    private int port;
+
+    private ItemServlet servlet = new ItemServlet();
+    private AtomicInteger requestCount = new AtomicInteger();
+
+    @Before
+    public void startServer() throws IOException {
+        servlet.setBatchEnabled(true);
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/app", exchange -> {
+            requestCount.incrementAndGet();
+
+            try {
+                service(exchange);
+            } catch (ServletException exception) {
+                exchange.sendResponseHeaders(500, -1);
+            } finally {
+                exchange.close();
+            }
+        });
+        server.start();
+
+        port = server.getAddress().getPort();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    /**
+     * Passes an exchange to the servlet, through the stub request and response.
+     */
+    private void service(final HttpExchange exchange) throws IOException, ServletException {
+        ServletStubs.Request request = new ServletStubs.Request(exchange.getRequestMethod(),
+            exchange.getRequestURI().getPath().substring("/app".length()))
+            .setQueryString(exchange.getRequestURI().getRawQuery());
+
+        for (Map.Entry<String, List<String>> header : exchange.getRequestHeaders().entrySet()) {
+            for (String value : header.getValue()) {
+                request.addHeader(header.getKey(), value);
+            }
+        }
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream inputStream = exchange.getRequestBody()) {
+            byte[] buffer = new byte[4096];
+            for (int n = inputStream.read(buffer); n != -1; n = inputStream.read(buffer)) {
+                body.write(buffer, 0, n);
+            }
+        }
+
+        if (body.size() > 0) {
+            request.setBody(body.toByteArray());
+        }
+
+        ServletStubs.Response response = new ServletStubs.Response();
+        servlet.service(request.proxy(), response.proxy());
+
+        for (String name : response.getHeaderNames()) {
+            if (!name.equalsIgnoreCase("Content-Length")) {
+                exchange.getResponseHeaders().put(name, response.getHeaders(name));
+            }
+        }
+
+        byte[] responseBody = response.getBody();
+        exchange.sendResponseHeaders(response.getStatus(), (responseBody.length == 0) ? -1 : responseBody.length);
+        if (responseBody.length > 0) {
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(responseBody);
+            }
+        }
+    }
+
+    @Test
+    public void testBatch() throws TaskExecutionException {
+        QueryBatch batch = new QueryBatch();
+        batch.setBatchPath("/app/_batch");
+
+        GetQuery a = new GetQuery("localhost", port, "/app/a", false);
+        GetQuery b = new GetQuery("localhost", port, "/app/b/c", false);
+        b.getParameters().put("i", "1");
+        GetQuery missing = new GetQuery("localhost", port, "/app/missing", false);
+        batch.add(a);
+        batch.add(b);
+        batch.add(missing);
+
+        batch.execute();
+
+        assertEquals(1, requestCount.get());
+        assertEquals("POST _batch", servlet.serializerRequests.get(0));
+
+        assertEquals("/a", batch.getResult(a));
+        assertEquals("a", a.getResponseHeaders().get("X-Item"));
+        assertEquals("/b/c?i=1", batch.getResult(b));
+        assertEquals("c", b.getResponseHeaders().get("X-Item"));
+        assertEquals(Query.Status.OK, b.getStatus());
+        assertNull(batch.getFault(b));
+
+        assertNull(batch.getResult(missing));
+        assertEquals(Query.Status.NOT_FOUND, ((QueryException) batch.getFault(missing)).getStatus());
+        assertEquals(Query.Status.NOT_FOUND, missing.getStatus());
+    }
+
+    @Test
+    public void testBatchDisabled() throws TaskExecutionException {
+        servlet.setBatchEnabled(false);
+
+        QueryBatch batch = new QueryBatch();
+        batch.setBatchPath("/app/_batch");
+
+        GetQuery a = new GetQuery("localhost", port, "/app/a", false);
+        batch.add(a);
+        batch.add(new GetQuery("localhost", port, "/app/b", false));
+
+        batch.execute();
+
+        // The batch path is then an ordinary path
+        assertEquals(1, requestCount.get());
+        assertEquals("POST _batch", servlet.serializerRequests.get(0));
+        assertEquals(QueryException.class, batch.getFault(a).getClass());
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web.server.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ServletException;
+
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.List;
+import org.apache.pivot.json.JSONSerializer;
+import org.apache.pivot.serialization.Serializer;
+import org.apache.pivot.web.Query;
+import org.apache.pivot.web.server.QueryServlet;
+import org.junit.Test;
+
+public class QueryServletCacheTest {
+    private static class VersionServlet extends QueryServlet {
+        private static final long serialVersionUID = 0;
+
+        private volatile String version = "1";
+        private volatile long lastModified = -1;
+        private volatile String variantHeader = null;
+        private final AtomicInteger getCount = new AtomicInteger();
+
+        @Override
+        protected String getETag(final Path path) {
+            return version;
+        }
+
+        @Override
+        protected long getLastModified(final Path path) {
+            return lastModified;
+        }
+
+        @Override
+        protected String getPayloadVariant(final Path path) {
+            return (variantHeader == null) ? "" : getRequestHeaders().get(variantHeader);
+        }
+
+        @Override
+        protected Object doGet(final Path path) {
+            getResponseHeaders().put("X-Count", String.valueOf(getCount.incrementAndGet()));
+
+            List<String> items = new ArrayList<>();
+            for (int i = 0, n = Integer.parseInt(path.get(0)); i < n; i++) {
+                items.add("item " + i + " of version " + version);
+            }
+
+            return items;
+        }
+
+        @Override
+        protected Serializer<?> createSerializer(final Query.Method method, final Path path) {
+            return new JSONSerializer();
+        }
+    }
+
+    private static final long LAST_MODIFIED = 1500000000000L;
+
+    private static String formatDate(final long time) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(
+            ZonedDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneOffset.UTC));
+    }
+
+    private static ServletStubs.Response get(final QueryServlet servlet, final String pathInfo,
+        final String... headers) throws IOException, ServletException {
+        ServletStubs.Request request = new ServletStubs.Request("GET", pathInfo);
+        for (int i = 0; i < headers.length; i += 2) {
+            request.addHeader(headers[i], headers[i + 1]);
+        }
+
+        ServletStubs.Response response = new ServletStubs.Response();
+        servlet.service(request.proxy(), response.proxy());
+
+        return response;
+    }
+
+    @Test
+    public void testIfNoneMatch() throws IOException, ServletException {
+        VersionServlet servlet = new VersionServlet();
+
+        ServletStubs.Response response = get(servlet, "/3");
+        assertEquals(200, response.getStatus());
+        assertEquals("\"1\"", response.getHeader("ETag"));
+
+        for (String tag : new String[] {"\"1\"", "W/\"1\"", "*", "\"0\", \"1\""}) {
+            response = get(servlet, "/3", "If-None-Match", tag);
+            assertEquals(tag, Query.Status.NOT_MODIFIED, response.getStatus());
+            assertEquals("\"1\"", response.getHeader("ETag"));
+            assertEquals(0, response.getBody().length);
+        }
+
+        assertEquals(1, servlet.getCount.get());
+
+        servlet.version = "2";
+        assertEquals(200, get(servlet, "/3", "If-None-Match", "\"1\"").getStatus());
+        assertEquals(2, servlet.getCount.get());
+    }
+
+    @Test
+    public void testIfModifiedSince() throws IOException, ServletException {
+        VersionServlet servlet = new VersionServlet();
+        servlet.version = null;
+        servlet.lastModified = LAST_MODIFIED;
+
+        ServletStubs.Response response = get(servlet, "/3", "If-Modified-Since", formatDate(LAST_MODIFIED));
+        assertEquals(Query.Status.NOT_MODIFIED, response.getStatus());
+        assertEquals(formatDate(LAST_MODIFIED), response.getHeader("Last-Modified"));
+
+        response = get(servlet, "/3", "If-Modified-Since", formatDate(LAST_MODIFIED - 1000));
+        assertEquals(200, response.getStatus());
+
+        // If-Modified-Since is ignored when If-None-Match is present
+        servlet.version = "1";
+        response = get(servlet, "/3", "If-None-Match", "\"0\"", "If-Modified-Since", formatDate(LAST_MODIFIED));
+        assertEquals(200, response.getStatus());
+        assertEquals(2, servlet.getCount.get());
+    }
+
+    @Test
+    public void testPayloadCache() throws IOException, ServletException {
+        VersionServlet servlet = new VersionServlet();
+        servlet.setPayloadCacheSize(10);
+
+        ServletStubs.Response response = get(servlet, "/1000");
+        String text = response.getDecodedText();
+
+        response = get(servlet, "/1000");
+        assertEquals(200, response.getStatus());
+        assertEquals("1", response.getHeader("X-Count"));
+        assertEquals(String.valueOf(response.getBody().length), response.getHeader("Content-Length"));
+        assertEquals(text, response.getDecodedText());
+
+        // Compressed variants are made from the cached payload
+        response = get(servlet, "/1000", "Accept-Encoding", "gzip");
+        assertEquals("gzip", response.getHeader("Content-Encoding"));
+        assertEquals(text, response.getDecodedText());
+        assertEquals(1, servlet.getCount.get());
+
+        // A new version of the resource is not served from the cache
+        servlet.version = "2";
+        response = get(servlet, "/1000");
+        assertEquals("2", response.getHeader("X-Count"));
+        assertFalse(text.equals(response.getDecodedText()));
+    }
+
+    @Test
+    public void testPayloadCacheEviction() throws IOException, ServletException {
+        VersionServlet servlet = new VersionServlet();
+        servlet.setPayloadCacheSize(1);
+
+        get(servlet, "/1");
+        get(servlet, "/2");
+        get(servlet, "/2");
+        get(servlet, "/1");
+
+        assertEquals(3, servlet.getCount.get());
+    }
+
+    @Test
+    public void testLargePayload() throws IOException, ServletException {
+        VersionServlet servlet = new VersionServlet();
+        servlet.setPayloadCacheSize(10);
+        servlet.setFileThreshold(1000);
+
+        ServletStubs.Response response = get(servlet, "/1000");
+        String text = response.getDecodedText();
+        assertEquals(String.valueOf(response.getBody().length), response.getHeader("Content-Length"));
+
+        response = get(servlet, "/1000", "Accept-Encoding", "gzip");
+        assertEquals("gzip", response.getHeader("Content-Encoding"));
+        assertEquals(text, response.getDecodedText());
+        assertEquals(2, servlet.getCount.get());
+    }
+
+    @Test
+    public void testPayloadVariant() throws IOException, ServletException {
+        VersionServlet servlet = new VersionServlet();
+        servlet.setPayloadCacheSize(10);
+        servlet.variantHeader = "X-User";
+
+        assertEquals("1", get(servlet, "/3", "X-User", "alice").getHeader("X-Count"));
+        assertEquals("2", get(servlet, "/3", "X-User", "bob").getHeader("X-Count"));
+        assertEquals("1", get(servlet, "/3", "X-User", "alice").getHeader("X-Count"));
+
+        // Responses without a variant are not cached
+        get(servlet, "/3");
+        get(servlet, "/3");
+        assertEquals(4, servlet.getCount.get());
+    }
+
+    @Test
+    public void testComputedETag() throws IOException, ServletException {
+        VersionServlet servlet = new VersionServlet();
+        servlet.version = null;
+        servlet.setETagComputed(true);
+
+        String eTag = get(servlet, "/1000").getHeader("ETag");
+
+        ServletStubs.Response response = get(servlet, "/1000", "Accept-Encoding", "gzip");
+        String gzipETag = response.getHeader("ETag");
+        assertEquals("gzip", response.getHeader("Content-Encoding"));
+        assertEquals(eTag.substring(0, eTag.length() - 1) + "-gzip\"", gzipETag);
+
+        // A tag matches only the content coding it was sent with
+        response = get(servlet, "/1000", "Accept-Encoding", "gzip", "If-None-Match", eTag);
+        assertEquals(200, response.getStatus());
+
+        response = get(servlet, "/1000", "Accept-Encoding", "gzip", "If-None-Match", gzipETag);
+        assertEquals(Query.Status.NOT_MODIFIED, response.getStatus());
+        assertEquals(0, response.getBody().length);
+
+        response = get(servlet, "/1000", "If-None-Match", eTag);
+        assertEquals(Query.Status.NOT_MODIFIED, response.getStatus());
+        assertNull(response.getHeader("Content-Encoding"));
+    }
+}
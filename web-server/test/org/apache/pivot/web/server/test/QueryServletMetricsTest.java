@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web.server.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+
+import javax.servlet.ServletException;
+
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.List;
+import org.apache.pivot.json.JSONSerializer;
+import org.apache.pivot.serialization.Serializer;
+import org.apache.pivot.web.Query;
+import org.apache.pivot.web.QueryException;
+import org.apache.pivot.web.QueryMetrics;
+import org.apache.pivot.web.server.QueryServlet;
+import org.junit.Test;
+
+public class QueryServletMetricsTest {
+    /**
+     * Records the measurements of each request.
+     */
+    private static class Recorder implements QueryMetrics {
+        private final List<Measurement> measurements = new ArrayList<>();
+
+        @Override
+        public synchronized Request requestStarted(final Query.Method method, final String path) {
+            Measurement measurement = new Measurement(method, path);
+            measurements.add(measurement);
+
+            return measurement;
+        }
+
+        public synchronized Measurement getLast() {
+            return measurements.get(measurements.getLength() - 1);
+        }
+    }
+
+    private static class Measurement implements QueryMetrics.Request {
+        private final Query.Method method;
+        private final String path;
+        private final EnumSet<QueryMetrics.Phase> phases = EnumSet.noneOf(QueryMetrics.Phase.class);
+        private int status = -1;
+        private long bytesReceived = -2;
+        private long bytesSent = -2;
+        private int completedCount = 0;
+
+        public Measurement(final Query.Method method, final String path) {
+            this.method = method;
+            this.path = path;
+        }
+
+        @Override
+        public synchronized void phaseCompleted(final QueryMetrics.Phase phase, final long nanoseconds) {
+            assertTrue(nanoseconds >= 0);
+            phases.add(phase);
+        }
+
+        @Override
+        public synchronized void completed(final int statusArgument, final long bytesReceivedArgument,
+            final long bytesSentArgument, final long nanoseconds) {
+            status = statusArgument;
+            bytesReceived = bytesReceivedArgument;
+            bytesSent = bytesSentArgument;
+            completedCount++;
+        }
+    }
+
+    private static class ItemServlet extends QueryServlet {
+        private static final long serialVersionUID = 0;
+
+        @Override
+        protected Object doGet(final Path path) throws QueryException {
+            if (path.get(0).equals("missing")) {
+                throw new QueryException(Query.Status.NOT_FOUND);
+            }
+
+            List<String> items = new ArrayList<>();
+            for (int i = 0, n = Integer.parseInt(path.get(0)); i < n; i++) {
+                items.add("item " + i);
+            }
+
+            return items;
+        }
+
+        @Override
+        protected boolean doPut(final Path path, final Object value) {
+            return false;
+        }
+
+        @Override
+        protected Serializer<?> createSerializer(final Query.Method method, final Path path) {
+            return new JSONSerializer();
+        }
+    }
+
+    private static ServletStubs.Response service(final QueryServlet servlet, final ServletStubs.Request request)
+        throws IOException, ServletException {
+        ServletStubs.Response response = new ServletStubs.Response();
+        servlet.service(request.proxy(), response.proxy());
+
+        return response;
+    }
+
+    @Test
+    public void testStreamedGet() throws IOException, ServletException {
+        ItemServlet servlet = new ItemServlet();
+        Recorder recorder = new Recorder();
+        servlet.setMetrics(recorder);
+
+        for (String acceptEncoding : new String[] {"identity", "gzip"}) {
+            ServletStubs.Response response = service(servlet,
+                new ServletStubs.Request("GET", "/1000").addHeader("Accept-Encoding", acceptEncoding));
+
+            // Streamed responses have no content length, but their size is known
+            assertNull(response.getHeader("Content-Length"));
+
+            Measurement measurement = recorder.getLast();
+            assertEquals(Query.Method.GET, measurement.method);
+            assertEquals("/1000", measurement.path);
+            assertEquals(200, measurement.status);
+            assertEquals(response.getBody().length, measurement.bytesSent);
+            assertEquals(1, measurement.completedCount);
+            assertEquals(EnumSet.of(QueryMetrics.Phase.PREPARE, QueryMetrics.Phase.VALIDATE,
+                QueryMetrics.Phase.HANDLE, QueryMetrics.Phase.WRITE), measurement.phases);
+        }
+    }
+
+    @Test
+    public void testBufferedGet() throws IOException, ServletException {
+        ItemServlet servlet = new ItemServlet();
+        servlet.setDetermineContentLength(true);
+        Recorder recorder = new Recorder();
+        servlet.setMetrics(recorder);
+
+        ServletStubs.Response response = service(servlet,
+            new ServletStubs.Request("GET", "/1000").addHeader("Accept-Encoding", "gzip"));
+
+        assertEquals(response.getHeader("Content-Length"), String.valueOf(recorder.getLast().bytesSent));
+    }
+
+    @Test
+    public void testPut() throws IOException, ServletException {
+        ItemServlet servlet = new ItemServlet();
+        Recorder recorder = new Recorder();
+        servlet.setMetrics(recorder);
+
+        byte[] body = "[1, 2, 3]".getBytes(StandardCharsets.UTF_8);
+        service(servlet, new ServletStubs.Request("PUT", "/items").setBody(body));
+
+        Measurement measurement = recorder.getLast();
+        assertEquals(Query.Method.PUT, measurement.method);
+        assertEquals(Query.Status.NO_CONTENT, measurement.status);
+        assertEquals(body.length, measurement.bytesReceived);
+        assertEquals(0, measurement.bytesSent);
+        assertTrue(measurement.phases.contains(QueryMetrics.Phase.READ));
+        assertFalse(measurement.phases.contains(QueryMetrics.Phase.WRITE));
+    }
+
+    @Test
+    public void testError() throws IOException, ServletException {
+        ItemServlet servlet = new ItemServlet();
+        Recorder recorder = new Recorder();
+        servlet.setMetrics(recorder);
+
+        service(servlet, new ServletStubs.Request("GET", "/missing"));
+
+        Measurement measurement = recorder.getLast();
+        assertEquals(Query.Status.NOT_FOUND, measurement.status);
+        assertEquals(0, measurement.bytesSent);
+        assertEquals(1, measurement.completedCount);
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web.server.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.ServletException;
+
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.List;
+import org.apache.pivot.json.JSONSerializer;
+import org.apache.pivot.serialization.SerializationException;
+import org.apache.pivot.serialization.Serializer;
+import org.apache.pivot.web.Query;
+import org.apache.pivot.web.QueryException;
+import org.apache.pivot.web.server.QueryServlet;
+import org.junit.Test;
+
+public class QueryServletTest {
+    private static class ListServlet extends QueryServlet {
+        private static final long serialVersionUID = 0;
+
+        private Object posted = null;
+
+        @Override
+        protected Object doGet(final Path path) throws QueryException {
+            return getItems(Integer.parseInt(path.get(0)));
+        }
+
+        @Override
+        protected boolean doPut(final Path path, final Object value) throws QueryException {
+            posted = value;
+            return false;
+        }
+
+        @Override
+        protected Serializer<?> createSerializer(final Query.Method method, final Path path) {
+            return new JSONSerializer();
+        }
+    }
+
+    private static List<String> getItems(final int count) {
+        List<String> items = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            items.add("item " + i);
+        }
+
+        return items;
+    }
+
+    private static String getJSON(final int count) throws IOException, SerializationException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        new JSONSerializer().writeObject(getItems(count), outputStream);
+
+        return new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static ServletStubs.Response get(final QueryServlet servlet, final int count,
+        final String acceptEncoding) throws IOException, ServletException {
+        ServletStubs.Request request = new ServletStubs.Request("GET", "/" + count);
+        if (acceptEncoding != null) {
+            request.addHeader("Accept-Encoding", acceptEncoding);
+        }
+
+        ServletStubs.Response response = new ServletStubs.Response();
+        servlet.service(request.proxy(), response.proxy());
+
+        return response;
+    }
+
+    @Test
+    public void testStreamedCompression() throws IOException, ServletException, SerializationException {
+        ListServlet servlet = new ListServlet();
+
+        for (String encoding : new String[] {"gzip", "deflate"}) {
+            ServletStubs.Response response = get(servlet, 1000, encoding);
+            assertEquals(200, response.getStatus());
+            assertEquals(encoding, response.getHeader("Content-Encoding"));
+            assertEquals("Accept-Encoding", response.getHeader("Vary"));
+            assertEquals(getJSON(1000), response.getDecodedText());
+        }
+    }
+
+    @Test
+    public void testBufferedCompression() throws IOException, ServletException, SerializationException {
+        ListServlet servlet = new ListServlet();
+        servlet.setDetermineContentLength(true);
+
+        for (String encoding : new String[] {"gzip", "deflate"}) {
+            ServletStubs.Response response = get(servlet, 1000, encoding);
+            assertEquals(encoding, response.getHeader("Content-Encoding"));
+            assertEquals(String.valueOf(response.getBody().length), response.getHeader("Content-Length"));
+            assertEquals(getJSON(1000), response.getDecodedText());
+        }
+    }
+
+    @Test
+    public void testSmallResponseNotCompressed() throws IOException, ServletException, SerializationException {
+        ServletStubs.Response response = get(new ListServlet(), 3, "gzip");
+        assertNull(response.getHeader("Content-Encoding"));
+        assertEquals(String.valueOf(response.getBody().length), response.getHeader("Content-Length"));
+        assertEquals(getJSON(3), response.getDecodedText());
+    }
+
+    @Test
+    public void testCompressionDisabled() throws IOException, ServletException, SerializationException {
+        ListServlet servlet = new ListServlet();
+        servlet.setCompressionThreshold(-1);
+
+        ServletStubs.Response response = get(servlet, 1000, "gzip");
+        assertNull(response.getHeader("Content-Encoding"));
+        assertNull(response.getHeader("Vary"));
+        assertEquals(getJSON(1000), response.getDecodedText());
+    }
+
+    @Test
+    public void testIdentityOnly() throws IOException, ServletException, SerializationException {
+        ServletStubs.Response response = get(new ListServlet(), 1000, null);
+        assertNull(response.getHeader("Content-Encoding"));
+        assertEquals(getJSON(1000), response.getDecodedText());
+    }
+
+    @Test
+    public void testCompressedRequest() throws IOException, ServletException, SerializationException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try (OutputStream outputStream = new GZIPOutputStream(byteArrayOutputStream)) {
+            outputStream.write(getJSON(10).getBytes(StandardCharsets.UTF_8));
+        }
+
+        ListServlet servlet = new ListServlet();
+        ServletStubs.Request request = new ServletStubs.Request("PUT", "/")
+            .addHeader("Content-Encoding", "gzip").setBody(byteArrayOutputStream.toByteArray());
+        ServletStubs.Response response = new ServletStubs.Response();
+        servlet.service(request.proxy(), response.proxy());
+
+        assertEquals(204, response.getStatus());
+        assertEquals(getItems(10), servlet.posted);
+
+        request = new ServletStubs.Request("PUT", "/").addHeader("Content-Encoding", "br")
+            .setBody(new byte[] {1});
+        response = new ServletStubs.Response();
+        servlet.service(request.proxy(), response.proxy());
+        assertEquals(415, response.getStatus());
+    }
+}
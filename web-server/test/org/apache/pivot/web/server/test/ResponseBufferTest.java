@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web.server.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.pivot.web.server.ResponseBuffer;
+import org.junit.Test;
+
+public class ResponseBufferTest {
+    private static final String TEMP_FILE_PREFIX = ResponseBuffer.class.getName();
+
+    private static byte[] getContent(final int length) {
+        byte[] content = new byte[length];
+        for (int i = 0; i < length; i++) {
+            content[i] = (byte) (i * 31);
+        }
+
+        return content;
+    }
+
+    /**
+     * Writes content in chunks of the given size, so that writes straddle
+     * segment boundaries.
+     */
+    private static void write(final ResponseBuffer buffer, final byte[] content, final int chunkSize)
+        throws IOException {
+        for (int i = 0; i < content.length; i += chunkSize) {
+            buffer.write(content, i, Math.min(chunkSize, content.length - i));
+        }
+    }
+
+    private static byte[] getBuffered(final ResponseBuffer buffer) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        buffer.writeTo(outputStream);
+
+        return outputStream.toByteArray();
+    }
+
+    private static int getTempFileCount() {
+        File[] files = new File(System.getProperty("java.io.tmpdir")).listFiles(
+            (directory, name) -> name.startsWith(TEMP_FILE_PREFIX));
+
+        return (files == null) ? 0 : files.length;
+    }
+
+    @Test
+    public void testSegments() throws IOException {
+        byte[] content = getContent(ResponseBuffer.SEGMENT_SIZE * 3 + 100);
+
+        ResponseBuffer buffer = new ResponseBuffer(Long.MAX_VALUE);
+        try {
+            write(buffer, content, 3000);
+            buffer.write(42);
+
+            assertEquals(content.length + 1, buffer.size());
+
+            byte[] buffered = getBuffered(buffer);
+            assertEquals(content.length + 1, buffered.length);
+            assertEquals(42, buffered[content.length]);
+
+            byte[] prefix = new byte[content.length];
+            System.arraycopy(buffered, 0, prefix, 0, content.length);
+            assertArrayEquals(content, prefix);
+        } finally {
+            buffer.release();
+        }
+    }
+
+    @Test
+    public void testExactSegments() throws IOException {
+        byte[] content = getContent(ResponseBuffer.SEGMENT_SIZE * 2);
+
+        ResponseBuffer buffer = new ResponseBuffer(Long.MAX_VALUE);
+        try {
+            write(buffer, content, ResponseBuffer.SEGMENT_SIZE);
+            assertArrayEquals(content, getBuffered(buffer));
+        } finally {
+            buffer.release();
+        }
+    }
+
+    @Test
+    public void testSpill() throws IOException {
+        byte[] content = getContent(ResponseBuffer.SEGMENT_SIZE * 4 + 7);
+        int tempFileCount = getTempFileCount();
+
+        ResponseBuffer buffer = new ResponseBuffer(ResponseBuffer.SEGMENT_SIZE * 2);
+        try {
+            write(buffer, content, 5000);
+            assertEquals(tempFileCount + 1, getTempFileCount());
+            assertEquals(content.length, buffer.size());
+
+            // The buffer is closed by writeTo(), and can be written out again
+            assertArrayEquals(content, getBuffered(buffer));
+            assertArrayEquals(content, getBuffered(buffer));
+
+            try {
+                buffer.write(1);
+                fail("Write after close should fail.");
+            } catch (IOException exception) {
+                // Expected
+            }
+        } finally {
+            buffer.release();
+        }
+
+        assertEquals(tempFileCount, getTempFileCount());
+    }
+
+    @Test
+    public void testRelease() throws IOException {
+        int segmentCount = 3;
+
+        // Take the segments from a pool that is as empty as possible
+        ResponseBuffer drain = new ResponseBuffer(Long.MAX_VALUE);
+        write(drain, getContent(ResponseBuffer.SEGMENT_SIZE * ResponseBuffer.MAX_POOLED_SEGMENTS),
+            ResponseBuffer.SEGMENT_SIZE);
+
+        ResponseBuffer buffer = new ResponseBuffer(Long.MAX_VALUE);
+        write(buffer, getContent(ResponseBuffer.SEGMENT_SIZE * segmentCount), 1000);
+
+        int pooledSegmentCount = ResponseBuffer.getPooledSegmentCount();
+        buffer.release();
+        assertEquals(pooledSegmentCount + segmentCount, ResponseBuffer.getPooledSegmentCount());
+
+        // Segments beyond the pool limit are dropped
+        drain.release();
+        assertEquals(ResponseBuffer.MAX_POOLED_SEGMENTS, ResponseBuffer.getPooledSegmentCount());
+    }
+}
@@ -0,0 +1,512 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web.server.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * In-memory servlet requests and responses, for calling servlets without a
+ * container. Only the methods that the Pivot servlets use are implemented;
+ * the others throw <tt>UnsupportedOperationException</tt>.
+ */
+public final class ServletStubs {
+    /**
+     * A request with a method, path, headers and optional body.
+     */
+    public static class Request implements InvocationHandler {
+        private final String method;
+        private final String pathInfo;
+        private String queryString = null;
+        private final TreeMap<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        private final HashMap<String, Object> attributes = new HashMap<>();
+        private byte[] body = null;
+        private Async async = null;
+
+        public Request(final String method, final String pathInfo) {
+            this.method = method;
+            this.pathInfo = pathInfo;
+        }
+
+        public Request setQueryString(final String queryString) {
+            this.queryString = queryString;
+            return this;
+        }
+
+        public Request addHeader(final String name, final String value) {
+            headers.computeIfAbsent(name, key -> new ArrayList<>()).add(value);
+            return this;
+        }
+
+        public Request setBody(final byte[] body) {
+            this.body = body;
+            return this;
+        }
+
+        /**
+         * Makes the request support asynchronous processing.
+         * @param async The asynchronous context that <tt>startAsync()</tt>
+         * starts, or <tt>null</tt> if asynchronous processing is not supported.
+         */
+        public Request setAsync(final Async async) {
+            this.async = async;
+            return this;
+        }
+
+        /**
+         * Handles calls to methods that this stub does not know; subclasses
+         * may override it to support more of the request.
+         */
+        protected Object invokeOther(final Method proxyMethod, final Object[] args) {
+            throw new UnsupportedOperationException(proxyMethod.getName());
+        }
+
+        public HttpServletRequest proxy() {
+            return (HttpServletRequest) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {HttpServletRequest.class}, this);
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method proxyMethod, final Object[] args) {
+            switch (proxyMethod.getName()) {
+                case "getMethod":
+                    return method;
+                case "getPathInfo":
+                    return pathInfo;
+                case "getQueryString":
+                    return queryString;
+                case "getRequestURL":
+                    return new StringBuffer("http://localhost:8080/context/servlet"
+                        + ((pathInfo == null) ? "" : pathInfo));
+                case "getRequestURI":
+                    return "/context/servlet" + ((pathInfo == null) ? "" : pathInfo);
+                case "getScheme":
+                    return "http";
+                case "getServerName":
+                case "getLocalName":
+                    return "localhost";
+                case "getServerPort":
+                case "getLocalPort":
+                    return Integer.valueOf(8080);
+                case "getContextPath":
+                    return "/context";
+                case "getServletPath":
+                    return "/servlet";
+                case "getProtocol":
+                    return "HTTP/1.1";
+                case "isSecure":
+                    return Boolean.FALSE;
+                case "getHeader":
+                    List<String> values = headers.get(args[0]);
+                    return (values == null) ? null : values.get(0);
+                case "getHeaders":
+                    return Collections.enumeration(headers.getOrDefault(args[0], Collections.emptyList()));
+                case "getHeaderNames":
+                    return Collections.enumeration(new ArrayList<>(headers.keySet()));
+                case "getDateHeader":
+                    List<String> dates = headers.get(args[0]);
+                    return Long.valueOf((dates == null) ? -1 : ZonedDateTime.parse(dates.get(0),
+                        DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli());
+                case "getIntHeader":
+                    List<String> numbers = headers.get(args[0]);
+                    return Integer.valueOf((numbers == null) ? -1 : Integer.parseInt(numbers.get(0)));
+                case "getContentLength":
+                    return Integer.valueOf((body == null) ? -1 : body.length);
+                case "getContentType":
+                    return headers.containsKey("Content-Type") ? headers.get("Content-Type").get(0) : null;
+                case "getCharacterEncoding":
+                case "getRemoteUser":
+                case "getUserPrincipal":
+                    return null;
+                case "getInputStream":
+                    return new StubInputStream(new ByteArrayInputStream((body == null) ? new byte[0] : body));
+                case "getAttribute":
+                    return attributes.get(args[0]);
+                case "setAttribute":
+                    attributes.put((String) args[0], args[1]);
+                    return null;
+                case "removeAttribute":
+                    attributes.remove(args[0]);
+                    return null;
+                case "isAsyncSupported":
+                    return Boolean.valueOf(async != null);
+                case "startAsync":
+                    if (async == null) {
+                        throw new IllegalStateException("Asynchronous processing is not supported.");
+                    }
+                    return async.startAsync();
+                case "toString":
+                    return method + " " + pathInfo;
+                case "hashCode":
+                    return Integer.valueOf(System.identityHashCode(proxy));
+                case "equals":
+                    return Boolean.valueOf(proxy == args[0]);
+                default:
+                    return invokeOther(proxyMethod, args);
+            }
+        }
+    }
+
+    /**
+     * A response that records its status, headers and body. Like a container,
+     * it ignores changes to the status and headers once it is committed by
+     * <tt>flushBuffer()</tt> or <tt>sendError()</tt>; written content is
+     * buffered until then.
+     */
+    public static class Response implements InvocationHandler {
+        private int status = HttpServletResponse.SC_OK;
+        private final TreeMap<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private boolean committed = false;
+        private PrintWriter writer = null;
+
+        public int getStatus() {
+            return status;
+        }
+
+        public String getHeader(final String name) {
+            List<String> values = headers.get(name);
+            return (values == null) ? null : values.get(0);
+        }
+
+        public List<String> getHeaders(final String name) {
+            return headers.getOrDefault(name, Collections.emptyList());
+        }
+
+        public List<String> getHeaderNames() {
+            return new ArrayList<>(headers.keySet());
+        }
+
+        public boolean isCommitted() {
+            return committed;
+        }
+
+        /**
+         * @return The body as it was sent.
+         */
+        public byte[] getBody() {
+            if (writer != null) {
+                writer.flush();
+            }
+
+            return body.toByteArray();
+        }
+
+        /**
+         * @return The body, decoded according to its
+         * <tt>Content-Encoding</tt> header.
+         */
+        public byte[] getDecodedBody() throws IOException {
+            String contentEncoding = getHeader("Content-Encoding");
+            InputStream inputStream = new ByteArrayInputStream(getBody());
+
+            if ("gzip".equals(contentEncoding)) {
+                inputStream = new GZIPInputStream(inputStream);
+            } else if ("deflate".equals(contentEncoding)) {
+                inputStream = new InflaterInputStream(inputStream);
+            }
+
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int n = inputStream.read(buffer); n != -1; n = inputStream.read(buffer)) {
+                outputStream.write(buffer, 0, n);
+            }
+
+            return outputStream.toByteArray();
+        }
+
+        public String getDecodedText() throws IOException {
+            return new String(getDecodedBody(), StandardCharsets.UTF_8);
+        }
+
+        public HttpServletResponse proxy() {
+            return (HttpServletResponse) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {HttpServletResponse.class}, this);
+        }
+
+        private void setHeader(final String name, final String value) {
+            List<String> values = new ArrayList<>();
+            values.add(value);
+            headers.put(name, values);
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method proxyMethod, final Object[] args) {
+            String name = proxyMethod.getName();
+            if (committed && (name.startsWith("set") || name.startsWith("add") || name.equals("sendError"))) {
+                return null;
+            }
+
+            switch (name) {
+                case "setStatus":
+                    status = ((Integer) args[0]).intValue();
+                    return null;
+                case "getStatus":
+                    return Integer.valueOf(status);
+                case "sendError":
+                    status = ((Integer) args[0]).intValue();
+                    committed = true;
+                    return null;
+                case "setHeader":
+                case "setIntHeader":
+                    setHeader((String) args[0], String.valueOf(args[1]));
+                    return null;
+                case "addHeader":
+                case "addIntHeader":
+                    headers.computeIfAbsent((String) args[0], key -> new ArrayList<>()).add(String.valueOf(args[1]));
+                    return null;
+                case "setDateHeader":
+                case "addDateHeader":
+                    setHeader((String) args[0], DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                        ZonedDateTime.ofInstant(Instant.ofEpochMilli(((Long) args[1]).longValue()), ZoneOffset.UTC)));
+                    return null;
+                case "getHeader":
+                    return getHeader((String) args[0]);
+                case "getHeaders":
+                    return new ArrayList<>(getHeaders((String) args[0]));
+                case "getHeaderNames":
+                    return getHeaderNames();
+                case "containsHeader":
+                    return Boolean.valueOf(headers.containsKey(args[0]));
+                case "setContentType":
+                    if (args[0] != null) {
+                        setHeader("Content-Type", (String) args[0]);
+                    }
+                    return null;
+                case "getContentType":
+                    return getHeader("Content-Type");
+                case "setContentLength":
+                case "setContentLengthLong":
+                    setHeader("Content-Length", String.valueOf(args[0]));
+                    return null;
+                case "setCharacterEncoding":
+                case "setBufferSize":
+                case "setLocale":
+                    return null;
+                case "getCharacterEncoding":
+                    return "UTF-8";
+                case "getBufferSize":
+                    return Integer.valueOf(0);
+                case "getOutputStream":
+                    return new StubOutputStream(this);
+                case "getWriter":
+                    if (writer == null) {
+                        writer = new PrintWriter(new OutputStreamWriter(new StubOutputStream(this),
+                            StandardCharsets.UTF_8));
+                    }
+                    return writer;
+                case "flushBuffer":
+                    committed = true;
+                    return null;
+                case "isCommitted":
+                    return Boolean.valueOf(committed);
+                case "reset":
+                    headers.clear();
+                    status = HttpServletResponse.SC_OK;
+                    body.reset();
+                    return null;
+                case "resetBuffer":
+                    body.reset();
+                    return null;
+                case "toString":
+                    return "Response " + status;
+                case "hashCode":
+                    return Integer.valueOf(System.identityHashCode(proxy));
+                case "equals":
+                    return Boolean.valueOf(proxy == args[0]);
+                default:
+                    throw new UnsupportedOperationException(proxyMethod.getName());
+            }
+        }
+    }
+
+    /**
+     * An asynchronous context that records its timeout, listeners and
+     * completion. Timeouts do not occur on their own; tests trigger them with
+     * {@link #timeout()}.
+     */
+    public static class Async implements InvocationHandler {
+        private long timeout = 0;
+        private final List<AsyncListener> listeners = new ArrayList<>();
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private final AtomicInteger completeCount = new AtomicInteger();
+        private AsyncContext asyncContext = null;
+
+        public synchronized long getTimeout() {
+            return timeout;
+        }
+
+        /**
+         * @return The number of times that the context was completed.
+         */
+        public int getCompleteCount() {
+            return completeCount.get();
+        }
+
+        /**
+         * Waits for the context to be completed.
+         * @return <tt>true</tt> if it was completed in time.
+         */
+        public boolean awaitCompletion(final long timeoutMillis) throws InterruptedException {
+            return completed.await(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Notifies the listeners that the request has timed out.
+         */
+        public void timeout() throws IOException {
+            ArrayList<AsyncListener> listenersLocal;
+            synchronized (this) {
+                listenersLocal = new ArrayList<>(listeners);
+            }
+
+            for (AsyncListener listener : listenersLocal) {
+                listener.onTimeout(new AsyncEvent(asyncContext));
+            }
+        }
+
+        /**
+         * Called by the request's <tt>startAsync()</tt>; subclasses may
+         * override it to fail.
+         */
+        protected AsyncContext startAsync() {
+            if (asyncContext == null) {
+                asyncContext = (AsyncContext) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[] {AsyncContext.class}, this);
+            }
+
+            return asyncContext;
+        }
+
+        @Override
+        public synchronized Object invoke(final Object proxy, final Method proxyMethod, final Object[] args) {
+            switch (proxyMethod.getName()) {
+                case "setTimeout":
+                    timeout = ((Long) args[0]).longValue();
+                    return null;
+                case "getTimeout":
+                    return Long.valueOf(timeout);
+                case "addListener":
+                    listeners.add((AsyncListener) args[0]);
+                    return null;
+                case "complete":
+                    completeCount.incrementAndGet();
+                    completed.countDown();
+                    return null;
+                case "toString":
+                    return "Async";
+                case "hashCode":
+                    return Integer.valueOf(System.identityHashCode(proxy));
+                case "equals":
+                    return Boolean.valueOf(proxy == args[0]);
+                default:
+                    throw new UnsupportedOperationException(proxyMethod.getName());
+            }
+        }
+    }
+
+    private static class StubInputStream extends ServletInputStream {
+        private final InputStream inputStream;
+
+        public StubInputStream(final InputStream inputStream) {
+            this.inputStream = inputStream;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return inputStream.read();
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            return inputStream.read(b, off, len);
+        }
+    }
+
+    private static class StubOutputStream extends ServletOutputStream {
+        private final Response response;
+
+        public StubOutputStream(final Response response) {
+            this.response = response;
+        }
+
+        @Override
+        public void write(final int b) {
+            response.body.write(b);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+            response.body.write(b, off, len);
+        }
+    }
+
+    /**
+     * Creates a servlet configuration with the given initialization
+     * parameters.
+     */
+    public static ServletConfig createConfig(final Map<String, String> initParameters) {
+        return (ServletConfig) Proxy.newProxyInstance(ServletStubs.class.getClassLoader(),
+            new Class<?>[] {ServletConfig.class}, (proxy, proxyMethod, args) -> {
+                switch (proxyMethod.getName()) {
+                    case "getInitParameter":
+                        return initParameters.get(args[0]);
+                    case "getInitParameterNames":
+                        return Collections.enumeration(initParameters.keySet());
+                    case "getServletName":
+                        return "servlet";
+                    default:
+                        throw new UnsupportedOperationException(proxyMethod.getName());
+                }
+            });
+    }
+
+    private ServletStubs() {
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.pivot.util.Constants;
+
+/**
+ * HTTP content encodings supported by {@link Query} and the query servlet.
+ */
+public enum ContentEncoding {
+    IDENTITY("identity") {
+        @Override
+        public InputStream decode(final InputStream inputStream) {
+            return inputStream;
+        }
+
+        @Override
+        public OutputStream encode(final OutputStream outputStream) {
+            return outputStream;
+        }
+    },
+
+    GZIP("gzip") {
+        @Override
+        public InputStream decode(final InputStream inputStream) throws IOException {
+            return new GZIPInputStream(inputStream, Constants.BUFFER_SIZE);
+        }
+
+        @Override
+        public OutputStream encode(final OutputStream outputStream) throws IOException {
+            return new GZIPOutputStream(outputStream, Constants.BUFFER_SIZE);
+        }
+    },
+
+    DEFLATE("deflate") {
+        @Override
+        public InputStream decode(final InputStream inputStream) throws IOException {
+            // "deflate" is meant to be zlib-wrapped, but some servers send raw
+            // deflate data; tell them apart by the zlib header
+            BufferedInputStream bufferedInputStream = new BufferedInputStream(inputStream, Constants.BUFFER_SIZE);
+            bufferedInputStream.mark(2);
+            int b0 = bufferedInputStream.read();
+            int b1 = bufferedInputStream.read();
+            bufferedInputStream.reset();
+
+            boolean zlib = (b0 != -1 && b1 != -1 && (b0 & 0x0F) == 8 && ((b0 << 8) | b1) % 31 == 0);
+
+            return new InflaterInputStream(bufferedInputStream, new Inflater(!zlib), Constants.BUFFER_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    // The stream only ends inflaters that it creates itself
+                    try {
+                        super.close();
+                    } finally {
+                        inf.end();
+                    }
+                }
+            };
+        }
+
+        @Override
+        public OutputStream encode(final OutputStream outputStream) {
+            return new DeflaterOutputStream(outputStream, new Deflater(), Constants.BUFFER_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    // The stream only ends deflaters that it creates itself
+                    try {
+                        super.close();
+                    } finally {
+                        def.end();
+                    }
+                }
+            };
+        }
+    };
+
+    /**
+     * The value of the <tt>Accept-Encoding</tt> header sent by queries.
+     */
+    public static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    private final String name;
+
+    private ContentEncoding(final String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return The name of the encoding as it appears in HTTP headers.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Wraps a stream of encoded content.
+     *
+     * @param inputStream The encoded stream.
+     * @return A stream of the decoded content.
+     * @throws IOException If the encoded stream cannot be read.
+     */
+    public abstract InputStream decode(InputStream inputStream) throws IOException;
+
+    /**
+     * Wraps a stream so that content written to it is encoded. The returned
+     * stream must be closed to complete the encoding and to release the native
+     * memory held by the compressor; closing it also closes the wrapped
+     * stream.
+     *
+     * @param outputStream The stream that encoded content is written to.
+     * @return A stream to write the content to.
+     * @throws IOException If the encoded stream cannot be written.
+     */
+    public abstract OutputStream encode(OutputStream outputStream) throws IOException;
+
+    /**
+     * Returns the encoding named by a <tt>Content-Encoding</tt> header.
+     *
+     * @param contentEncoding The header value, or <tt>null</tt> if there is no
+     * header.
+     * @return The encoding, or <tt>null</tt> if the encoding is not supported.
+     */
+    public static ContentEncoding fromName(final String contentEncoding) {
+        if (contentEncoding == null) {
+            return IDENTITY;
+        }
+
+        String contentEncodingTrimmed = contentEncoding.trim();
+        if (contentEncodingTrimmed.isEmpty()) {
+            return IDENTITY;
+        }
+
+        for (ContentEncoding encoding : values()) {
+            if (encoding.name.equalsIgnoreCase(contentEncodingTrimmed)) {
+                return encoding;
+            }
+        }
+
+        // Also accept the legacy "x-gzip"
+        if (contentEncodingTrimmed.equalsIgnoreCase("x-gzip")) {
+            return GZIP;
+        }
+
+        return null;
+    }
+
+    /**
+     * Chooses the encoding for a response from an <tt>Accept-Encoding</tt>
+     * header, preferring gzip.
+     *
+     * @param acceptEncoding The header value, or <tt>null</tt> if there is no
+     * header.
+     * @return The preferred supported encoding, or {@link #IDENTITY} if the
+     * client does not accept a compressed one.
+     */
+    public static ContentEncoding negotiate(final String acceptEncoding) {
+        ContentEncoding preferredEncoding = IDENTITY;
+        float preferredQuality = 0;
+
+        if (acceptEncoding != null) {
+            for (String token : acceptEncoding.split(",")) {
+                String[] parts = token.trim().split(";");
+                float quality = 1;
+
+                for (int i = 1; i < parts.length; i++) {
+                    String parameter = parts[i].trim();
+                    if (parameter.startsWith("q=")) {
+                        try {
+                            quality = Float.parseFloat(parameter.substring(2));
+                        } catch (NumberFormatException exception) {
+                            quality = 0;
+                        }
+                    }
+                }
+
+                String name = parts[0].trim();
+                ContentEncoding encoding;
+                if (name.equals("*")) {
+                    // The wildcard stands for the encodings that aren't listed explicitly
+                    String acceptEncodingLowerCase = acceptEncoding.toLowerCase();
+                    if (!acceptEncodingLowerCase.contains(GZIP.name)) {
+                        encoding = GZIP;
+                    } else if (!acceptEncodingLowerCase.contains(DEFLATE.name)) {
+                        encoding = DEFLATE;
+                    } else {
+                        encoding = null;
+                    }
+                } else {
+                    encoding = fromName(name);
+                }
+
+                if (encoding != null && encoding != IDENTITY && quality > 0
+                    && (quality > preferredQuality || (quality == preferredQuality && encoding == GZIP))) {
+                    preferredEncoding = encoding;
+                    preferredQuality = quality;
+                }
+            }
+        }
+
+        return preferredEncoding;
+    }
+}
@@ -24,6 +24,8 @@ import java.util.concurrent.ExecutorService;
 public class GetQuery extends Query<Object> {
     public static final Method METHOD = Method.GET;
 
+    private QueryCache cache = null;
+
     public GetQuery(String hostname, String path) {
         this(hostname, DEFAULT_PORT, path, false);
     }
@@ -42,14 +44,36 @@ public class GetQuery extends Query<Object> {
         return METHOD;
     }
 
+    /**
+     * @return The response cache used by this query, or <tt>null</tt> if
+     * responses are not cached.
+     */
+    public QueryCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Sets the response cache used by this query. Caching is off by default.
+     *
+     * @param cache The cache, which may be shared with other queries, or
+     * <tt>null</tt> to disable caching.
+     */
+    public void setCache(QueryCache cache) {
+        this.cache = cache;
+    }
+
     /**
      * Synchronously executes the GET operation.
      *
      * @return The result of the operation, deserialized using the query's
-     * serializer.
+     * serializer, or from the query's {@link #setCache(QueryCache) cache}.
      */
     @Override
     public Object execute() throws QueryException {
+        if (cache != null) {
+            return cache.execute(this);
+        }
+
         return execute(METHOD, null);
     }
 }
@@ -0,0 +1,407 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Query transport built on the <tt>java.net.http.HttpClient</tt> that was
+ * added in Java 11. A single client is shared by all queries that use the
+ * transport, so connections are pooled and kept alive, and requests to
+ * servers that support HTTP/2 are multiplexed over one connection. <p> The
+ * client API is looked up at run time so that this class can be compiled for
+ * older releases; use {@link #isSupported()} to find out whether it is
+ * available. Queries that have a {@link Query#setProxy(java.net.Proxy) proxy}
+ * or {@link Query#setHostnameVerifier(javax.net.ssl.HostnameVerifier) hostname
+ * verifier}, which the client cannot apply per request, are handed to a
+ * {@link URLConnectionTransport}. <p> This transport is not the default; set
+ * it with {@link Query#setTransport(QueryTransport)} or
+ * {@link Query#setDefaultTransport(QueryTransport)}, or name it as the
+ * {@link Query#TRANSPORT_PROVIDER_NAME} provider. It differs from
+ * {@link URLConnectionTransport} in that: <ul> <li>{@link
+ * QueryTransport.Connection#getStatusMessage()} always returns
+ * <tt>null</tt>, so a failed query's exception carries only the status
+ * code;</li> <li>request bodies are buffered in memory and sent when the
+ * response is first requested;</li> <li>the default
+ * <tt>java.net.CookieHandler</tt> and <tt>java.net.Authenticator</tt> are not
+ * consulted;</li> <li>request headers that the client manages itself, such as
+ * <tt>Host</tt>, <tt>Connection</tt> and <tt>Content-Length</tt>, are
+ * silently dropped.</li> </ul> Because the request is only sent once the
+ * body is complete, a query's {@link QueryMetrics.Phase} times do not separate
+ * connecting from waiting for the response: the connect phase is empty and
+ * the write phase only covers serialization.
+ */
+public class HttpClientTransport implements QueryTransport {
+    private static class HttpClientConnection implements QueryTransport.Connection {
+        private final HttpClientTransport transport;
+        private final Query.Method method;
+        private final Object requestBuilder;
+        private final long timeout;
+
+        private ByteArrayOutputStream body = null;
+        private volatile CompletableFuture<?> responseFuture = null;
+        private volatile InputStream inputStream = null;
+        private Object response = null;
+        private Map<String, List<String>> headers = null;
+
+        public HttpClientConnection(HttpClientTransport transport, Query.Method method, Object requestBuilder,
+            long timeout) {
+            this.transport = transport;
+            this.method = method;
+            this.requestBuilder = requestBuilder;
+            this.timeout = timeout;
+        }
+
+        @Override
+        public void addRequestHeader(String key, String value) {
+            try {
+                invoke(REQUEST_BUILDER_HEADER, requestBuilder, key, value);
+            } catch (IllegalArgumentException exception) {
+                // The header is restricted and managed by the client (e.g. Host)
+            } catch (IOException exception) {
+                throw new IllegalStateException(exception);
+            }
+        }
+
+        @Override
+        public void connect() {
+            // Connections are established when the request is sent
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            body = new ByteArrayOutputStream();
+            return body;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void send() throws IOException {
+            if (response != null) {
+                return;
+            }
+
+            Object bodyPublisher = (body == null) ? invoke(NO_BODY, null)
+                : invoke(OF_BYTE_ARRAY, null, (Object) body.toByteArray());
+            invoke(REQUEST_BUILDER_METHOD, requestBuilder, method.toString(), bodyPublisher);
+            Object request = invoke(REQUEST_BUILDER_BUILD, requestBuilder);
+
+            responseFuture = (CompletableFuture<?>) invoke(SEND_ASYNC, transport.client, request,
+                invoke(OF_INPUT_STREAM, null));
+
+            try {
+                if (timeout == Long.MAX_VALUE) {
+                    response = responseFuture.get();
+                } else {
+                    response = responseFuture.get(timeout, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                responseFuture.cancel(true);
+                throw new InterruptedIOException();
+            } catch (TimeoutException exception) {
+                responseFuture.cancel(true);
+                throw new InterruptedIOException("Request timed out.");
+            } catch (ExecutionException exception) {
+                Throwable cause = exception.getCause();
+                throw (cause instanceof IOException) ? (IOException) cause : new IOException(cause);
+            } catch (CancellationException exception) {
+                throw new IOException("Request was cancelled.", exception);
+            }
+
+            headers = (Map<String, List<String>>) invoke(HEADERS_MAP, invoke(RESPONSE_HEADERS, response));
+        }
+
+        @Override
+        public int getStatus() throws IOException {
+            send();
+            return ((Integer) invoke(RESPONSE_STATUS_CODE, response)).intValue();
+        }
+
+        @Override
+        public String getStatusMessage() {
+            // HTTP/2 has no reason phrase, and the client does not expose the
+            // HTTP/1.1 one
+            return null;
+        }
+
+        @Override
+        public long getContentLength() {
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                if (header.getKey().equalsIgnoreCase("Content-Length") && !header.getValue().isEmpty()) {
+                    try {
+                        return Long.parseLong(header.getValue().get(0));
+                    } catch (NumberFormatException exception) {
+                        return -1;
+                    }
+                }
+            }
+
+            return -1;
+        }
+
+        @Override
+        public void getResponseHeaders(QueryDictionary responseHeaders) {
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                for (String value : header.getValue()) {
+                    responseHeaders.add(header.getKey(), value);
+                }
+            }
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            send();
+            inputStream = (InputStream) invoke(RESPONSE_BODY, response);
+            return inputStream;
+        }
+
+        @Override
+        public void disconnect() {
+            CompletableFuture<?> responseFutureLocal = responseFuture;
+            if (responseFutureLocal != null) {
+                responseFutureLocal.cancel(true);
+            }
+
+            close();
+        }
+
+        @Override
+        public void close() {
+            InputStream inputStreamLocal = inputStream;
+
+            try {
+                if (inputStreamLocal == null && response != null) {
+                    inputStreamLocal = (InputStream) invoke(RESPONSE_BODY, response);
+                }
+
+                // Closing the body releases the connection back to the pool
+                if (inputStreamLocal != null) {
+                    inputStreamLocal.close();
+                }
+            } catch (IOException exception) {
+                // No-op
+            }
+        }
+    }
+
+    private static final Method NEW_CLIENT_BUILDER;
+    private static final Method CLIENT_BUILDER_CONNECT_TIMEOUT;
+    private static final Method CLIENT_BUILDER_FOLLOW_REDIRECTS;
+    private static final Method CLIENT_BUILDER_VERSION;
+    private static final Method CLIENT_BUILDER_BUILD;
+    private static final Object REDIRECT_NEVER;
+    private static final Object VERSION_HTTP_2;
+    private static final Method SEND_ASYNC;
+
+    private static final Method NEW_REQUEST_BUILDER;
+    private static final Method REQUEST_BUILDER_HEADER;
+    private static final Method REQUEST_BUILDER_TIMEOUT;
+    private static final Method REQUEST_BUILDER_METHOD;
+    private static final Method REQUEST_BUILDER_BUILD;
+    private static final Method NO_BODY;
+    private static final Method OF_BYTE_ARRAY;
+    private static final Method OF_INPUT_STREAM;
+
+    private static final Method RESPONSE_STATUS_CODE;
+    private static final Method RESPONSE_HEADERS;
+    private static final Method RESPONSE_BODY;
+    private static final Method HEADERS_MAP;
+
+    private static final boolean SUPPORTED;
+
+    static {
+        Method[] methods = new Method[18];
+        Object[] constants = new Object[2];
+        boolean supported;
+
+        try {
+            Class<?> clientClass = Class.forName("java.net.http.HttpClient");
+            Class<?> clientBuilderClass = Class.forName("java.net.http.HttpClient$Builder");
+            Class<?> redirectClass = Class.forName("java.net.http.HttpClient$Redirect");
+            Class<?> versionClass = Class.forName("java.net.http.HttpClient$Version");
+            Class<?> requestClass = Class.forName("java.net.http.HttpRequest");
+            Class<?> requestBuilderClass = Class.forName("java.net.http.HttpRequest$Builder");
+            Class<?> bodyPublisherClass = Class.forName("java.net.http.HttpRequest$BodyPublisher");
+            Class<?> bodyPublishersClass = Class.forName("java.net.http.HttpRequest$BodyPublishers");
+            Class<?> responseClass = Class.forName("java.net.http.HttpResponse");
+            Class<?> bodyHandlerClass = Class.forName("java.net.http.HttpResponse$BodyHandler");
+            Class<?> bodyHandlersClass = Class.forName("java.net.http.HttpResponse$BodyHandlers");
+            Class<?> headersClass = Class.forName("java.net.http.HttpHeaders");
+
+            methods[0] = clientClass.getMethod("newBuilder");
+            methods[1] = clientBuilderClass.getMethod("connectTimeout", Duration.class);
+            methods[2] = clientBuilderClass.getMethod("followRedirects", redirectClass);
+            methods[3] = clientBuilderClass.getMethod("version", versionClass);
+            methods[4] = clientBuilderClass.getMethod("build");
+            methods[5] = clientClass.getMethod("sendAsync", requestClass, bodyHandlerClass);
+
+            methods[6] = requestClass.getMethod("newBuilder", URI.class);
+            methods[7] = requestBuilderClass.getMethod("header", String.class, String.class);
+            methods[8] = requestBuilderClass.getMethod("timeout", Duration.class);
+            methods[9] = requestBuilderClass.getMethod("method", String.class, bodyPublisherClass);
+            methods[10] = requestBuilderClass.getMethod("build");
+            methods[11] = bodyPublishersClass.getMethod("noBody");
+            methods[12] = bodyPublishersClass.getMethod("ofByteArray", byte[].class);
+            methods[13] = bodyHandlersClass.getMethod("ofInputStream");
+
+            methods[14] = responseClass.getMethod("statusCode");
+            methods[15] = responseClass.getMethod("headers");
+            methods[16] = responseClass.getMethod("body");
+            methods[17] = headersClass.getMethod("map");
+
+            constants[0] = redirectClass.getField("NEVER").get(null);
+            constants[1] = versionClass.getField("HTTP_2").get(null);
+
+            supported = true;
+        } catch (ReflectiveOperationException | LinkageError exception) {
+            // The HTTP client is not available in this VM
+            supported = false;
+        }
+
+        NEW_CLIENT_BUILDER = methods[0];
+        CLIENT_BUILDER_CONNECT_TIMEOUT = methods[1];
+        CLIENT_BUILDER_FOLLOW_REDIRECTS = methods[2];
+        CLIENT_BUILDER_VERSION = methods[3];
+        CLIENT_BUILDER_BUILD = methods[4];
+        SEND_ASYNC = methods[5];
+
+        NEW_REQUEST_BUILDER = methods[6];
+        REQUEST_BUILDER_HEADER = methods[7];
+        REQUEST_BUILDER_TIMEOUT = methods[8];
+        REQUEST_BUILDER_METHOD = methods[9];
+        REQUEST_BUILDER_BUILD = methods[10];
+        NO_BODY = methods[11];
+        OF_BYTE_ARRAY = methods[12];
+        OF_INPUT_STREAM = methods[13];
+
+        RESPONSE_STATUS_CODE = methods[14];
+        RESPONSE_HEADERS = methods[15];
+        RESPONSE_BODY = methods[16];
+        HEADERS_MAP = methods[17];
+
+        REDIRECT_NEVER = constants[0];
+        VERSION_HTTP_2 = constants[1];
+
+        SUPPORTED = supported;
+    }
+
+    /** The default time allowed for establishing a connection, in milliseconds. */
+    public static final long DEFAULT_CONNECT_TIMEOUT = 30000;
+
+    private final Object client;
+    private final URLConnectionTransport fallbackTransport = new URLConnectionTransport();
+
+    /**
+     * Creates a transport with the default connect timeout.
+     *
+     * @throws UnsupportedOperationException If the VM does not provide the
+     * HTTP client.
+     */
+    public HttpClientTransport() {
+        this(DEFAULT_CONNECT_TIMEOUT);
+    }
+
+    /**
+     * Creates a transport.
+     *
+     * @param connectTimeout The time allowed for establishing a connection, in
+     * milliseconds.
+     * @throws UnsupportedOperationException If the VM does not provide the
+     * HTTP client.
+     */
+    public HttpClientTransport(long connectTimeout) {
+        if (!SUPPORTED) {
+            throw new UnsupportedOperationException("java.net.http.HttpClient is not supported by this VM.");
+        }
+
+        try {
+            Object builder = invoke(NEW_CLIENT_BUILDER, null);
+            invoke(CLIENT_BUILDER_CONNECT_TIMEOUT, builder, Duration.ofMillis(connectTimeout));
+            invoke(CLIENT_BUILDER_FOLLOW_REDIRECTS, builder, REDIRECT_NEVER);
+            invoke(CLIENT_BUILDER_VERSION, builder, VERSION_HTTP_2);
+            client = invoke(CLIENT_BUILDER_BUILD, builder);
+        } catch (IOException exception) {
+            throw new UnsupportedOperationException(exception);
+        }
+    }
+
+    /**
+     * @return <tt>true</tt> if the VM provides the HTTP client.
+     */
+    public static boolean isSupported() {
+        return SUPPORTED;
+    }
+
+    @Override
+    public QueryTransport.Connection open(Query<?> query, Query.Method method, URL location, boolean hasBody)
+        throws IOException {
+        if (query.getProxy() != null || query.getHostnameVerifier() != null) {
+            return fallbackTransport.open(query, method, location, hasBody);
+        }
+
+        Object requestBuilder;
+        try {
+            requestBuilder = invoke(NEW_REQUEST_BUILDER, null, location.toURI());
+        } catch (URISyntaxException exception) {
+            throw new IOException(exception);
+        }
+
+        long timeout = query.getTimeout();
+        if (timeout != Long.MAX_VALUE) {
+            invoke(REQUEST_BUILDER_TIMEOUT, requestBuilder, Duration.ofMillis(Math.max(timeout, 1)));
+        }
+
+        return new HttpClientConnection(this, method, requestBuilder, timeout);
+    }
+
+    private static Object invoke(Method method, Object target, Object... arguments) throws IOException {
+        try {
+            return method.invoke(target, arguments);
+        } catch (IllegalAccessException exception) {
+            throw new IllegalStateException(exception);
+        } catch (InvocationTargetException exception) {
+            Throwable cause = exception.getCause();
+
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+
+            throw new IOException(cause);
+        }
+    }
+}
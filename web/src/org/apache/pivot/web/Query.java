@@ -16,27 +16,36 @@
  */
 package org.apache.pivot.web;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
-import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.Proxy;
 import java.net.URL;
 import java.net.URLEncoder;
+import java.util.Arrays;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 import javax.net.ssl.HostnameVerifier;
-import javax.net.ssl.HttpsURLConnection;
 
+import org.apache.pivot.collections.Sequence;
 import org.apache.pivot.io.IOTask;
 import org.apache.pivot.json.JSONSerializer;
 import org.apache.pivot.serialization.SerializationException;
 import org.apache.pivot.serialization.Serializer;
 import org.apache.pivot.util.Constants;
 import org.apache.pivot.util.ListenerList;
+import org.apache.pivot.util.Service;
 import org.apache.pivot.util.Utils;
+import org.apache.pivot.util.concurrent.AbortException;
 
 /**
  * Abstract base class for web queries. A web query is an asynchronous operation
@@ -63,6 +72,8 @@ public abstract class Query<V> extends IOTask<V> {
         public static final int CREATED = 201;
         public static final int NO_CONTENT = 204;
 
+        public static final int NOT_MODIFIED = 304;
+
         public static final int BAD_REQUEST = 400;
         public static final int UNAUTHORIZED = 401;
         public static final int FORBIDDEN = 403;
@@ -85,20 +96,56 @@ public abstract class Query<V> extends IOTask<V> {
     private URL locationContext = null;
     private HostnameVerifier hostnameVerifier = null;
     private Proxy proxy = null;
+    private QueryTransport transport = null;
+    private boolean compressionAccepted = true;
+    private ContentEncoding requestEncoding = ContentEncoding.IDENTITY;
+
+    private QueryStreamListener streamListener = null;
+    private Executor streamExecutor = null;
+    private int streamBatchSize = DEFAULT_STREAM_BATCH_SIZE;
 
     private QueryDictionary parameters = new QueryDictionary(true);
     private QueryDictionary requestHeaders = new QueryDictionary(false);
     private QueryDictionary responseHeaders = new QueryDictionary(false);
     private int status = 0;
+    private boolean notModifiedAllowed = false;
+    private boolean responseBodyExpected = false;
 
     private volatile long bytesExpected = -1;
 
+    private QueryMetrics metrics = null;
+    private final long[] phaseTimes = new long[QueryMetrics.Phase.values().length];
+
     private Serializer<?> serializer = new JSONSerializer();
 
     private QueryListener.Listeners<V> queryListeners = new QueryListener.Listeners<>();
 
     public static final int DEFAULT_PORT = -1;
 
+    /**
+     * The name of the {@link Service} provider that supplies the default
+     * {@link QueryTransport}.
+     */
+    public static final String TRANSPORT_PROVIDER_NAME = "org.apache.pivot.web.queryTransport";
+
+    /**
+     * The name of the {@link Service} provider that supplies the default
+     * {@link QueryMetrics}.
+     */
+    public static final String METRICS_PROVIDER_NAME = "org.apache.pivot.web.queryMetrics";
+
+    /** The default maximum number of items in a streamed batch. */
+    public static final int DEFAULT_STREAM_BATCH_SIZE = 256;
+
+    /** The default maximum number of concurrent queries to a single host. */
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 16;
+
+    private static volatile QueryTransport defaultTransport = createDefaultTransport();
+    private static volatile QueryMetrics defaultMetrics = createDefaultMetrics();
+
+    private static volatile int maxConnectionsPerHost = DEFAULT_MAX_CONNECTIONS_PER_HOST;
+    private static final ConcurrentHashMap<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+
     static {
         try {
             // See http://java.sun.com/javase/6/docs/technotes/guides/net/proxies.html
@@ -129,6 +176,94 @@ public abstract class Query<V> extends IOTask<V> {
         } catch (MalformedURLException exception) {
             throw new IllegalArgumentException("Unable to construct context URL.", exception);
         }
+
+        Arrays.fill(phaseTimes, -1);
+    }
+
+    private static QueryTransport createDefaultTransport() {
+        Object provider = Service.getProvider(TRANSPORT_PROVIDER_NAME);
+
+        if (provider instanceof QueryTransport) {
+            return (QueryTransport) provider;
+        }
+
+        return new URLConnectionTransport();
+    }
+
+    /**
+     * Returns the transport used by queries that have not been given one. This
+     * is the {@link #TRANSPORT_PROVIDER_NAME configured} provider if there is
+     * one, and otherwise a {@link URLConnectionTransport}. An
+     * {@link HttpClientTransport} is only used when it is configured as the
+     * provider or set explicitly.
+     *
+     * @return The default transport.
+     */
+    public static QueryTransport getDefaultTransport() {
+        return defaultTransport;
+    }
+
+    /**
+     * Sets the transport used by queries that have not been given one.
+     *
+     * @param defaultTransport The new default transport (must be non-null).
+     */
+    public static void setDefaultTransport(final QueryTransport defaultTransport) {
+        Utils.checkNull(defaultTransport, "defaultTransport");
+
+        Query.defaultTransport = defaultTransport;
+    }
+
+    private static QueryMetrics createDefaultMetrics() {
+        Object provider = Service.getProvider(METRICS_PROVIDER_NAME);
+
+        return (provider instanceof QueryMetrics) ? (QueryMetrics) provider : null;
+    }
+
+    /**
+     * Returns the metrics that measure queries that have not been given their
+     * own. This is the {@link #METRICS_PROVIDER_NAME configured} provider if
+     * there is one, and <tt>null</tt> otherwise.
+     *
+     * @return The default metrics, or <tt>null</tt> if queries are not measured
+     * by default.
+     */
+    public static QueryMetrics getDefaultMetrics() {
+        return defaultMetrics;
+    }
+
+    /**
+     * Sets the metrics that measure queries that have not been given their own.
+     *
+     * @param defaultMetrics The new default metrics, or <tt>null</tt> to stop
+     * measuring queries by default.
+     */
+    public static void setDefaultMetrics(final QueryMetrics defaultMetrics) {
+        Query.defaultMetrics = defaultMetrics;
+    }
+
+    /**
+     * @return The maximum number of queries that may be connected to a single
+     * host at the same time.
+     */
+    public static int getMaxConnectionsPerHost() {
+        return maxConnectionsPerHost;
+    }
+
+    /**
+     * Sets the maximum number of queries that may be connected to a single host
+     * at the same time. Further queries wait (within their timeout) for one of
+     * the others to finish.
+     *
+     * @param maxConnectionsPerHost The new limit; must be positive.
+     */
+    public static void setMaxConnectionsPerHost(final int maxConnectionsPerHost) {
+        if (maxConnectionsPerHost <= 0) {
+            throw new IllegalArgumentException("maxConnectionsPerHost must be positive.");
+        }
+
+        Query.maxConnectionsPerHost = maxConnectionsPerHost;
+        hostPermits.clear();
     }
 
     public abstract Method getMethod();
@@ -178,6 +313,130 @@ public abstract class Query<V> extends IOTask<V> {
         this.proxy = proxy;
     }
 
+    /**
+     * Gets the transport used to execute this query.
+     *
+     * @return This query's transport, or <tt>null</tt> if the query uses the
+     * {@link #getDefaultTransport() default transport}.
+     */
+    public QueryTransport getTransport() {
+        return transport;
+    }
+
+    /**
+     * Sets the transport used to execute this query.
+     *
+     * @param transport This query's transport, or <tt>null</tt> to use the
+     * default transport.
+     */
+    public void setTransport(final QueryTransport transport) {
+        this.transport = transport;
+    }
+
+    /**
+     * Tells whether the query asks the server for a compressed response.
+     *
+     * @return <tt>true</tt> (the default) if the query sends an
+     * <tt>Accept-Encoding</tt> header for the encodings in
+     * {@link ContentEncoding}. Compressed responses are always decoded.
+     */
+    public boolean isCompressionAccepted() {
+        return compressionAccepted;
+    }
+
+    /**
+     * Sets whether the query asks the server for a compressed response. An
+     * <tt>Accept-Encoding</tt> header in the request headers takes precedence.
+     *
+     * @param compressionAccepted Whether compressed responses are accepted.
+     */
+    public void setCompressionAccepted(final boolean compressionAccepted) {
+        this.compressionAccepted = compressionAccepted;
+    }
+
+    /**
+     * @return The encoding applied to the request body.
+     */
+    public ContentEncoding getRequestEncoding() {
+        return requestEncoding;
+    }
+
+    /**
+     * Sets the encoding applied to the request body sent by POST and PUT
+     * queries. The default is {@link ContentEncoding#IDENTITY}; the server must
+     * support the encoding.
+     *
+     * @param requestEncoding The request body encoding (must be non-null).
+     */
+    public void setRequestEncoding(final ContentEncoding requestEncoding) {
+        Utils.checkNull(requestEncoding, "requestEncoding");
+
+        this.requestEncoding = requestEncoding;
+    }
+
+    /**
+     * @return The listener that receives the items of the response as they
+     * are read, or <tt>null</tt> if the response is not streamed.
+     */
+    public QueryStreamListener getStreamListener() {
+        return streamListener;
+    }
+
+    /**
+     * Sets a listener that receives the items of a list response in batches
+     * while the response is being read, e.g. to fill a table before a large
+     * result has been downloaded. Items of a top-level JSON array and the rows
+     * of a CSV document are streamed as they are parsed; other responses are
+     * delivered in one go once they have been read. The complete result is
+     * still returned by the query.
+     *
+     * @param streamListener The stream listener, or <tt>null</tt> to not
+     * stream the response.
+     * @see #setStreamExecutor(Executor)
+     */
+    public void setStreamListener(final QueryStreamListener streamListener) {
+        this.streamListener = streamListener;
+    }
+
+    /**
+     * @return The executor that streamed batches are delivered on, or
+     * <tt>null</tt> if they are delivered on the thread reading the response.
+     */
+    public Executor getStreamExecutor() {
+        return streamExecutor;
+    }
+
+    /**
+     * Sets the executor that streamed batches are delivered on, such as
+     * <tt>ApplicationContext::queueCallback</tt> for the UI thread. Reading the
+     * response pauses while several batches are waiting on the executor, so
+     * that a slow consumer is not flooded.
+     *
+     * @param streamExecutor The executor, or <tt>null</tt> to deliver batches
+     * on the thread reading the response.
+     */
+    public void setStreamExecutor(final Executor streamExecutor) {
+        this.streamExecutor = streamExecutor;
+    }
+
+    public int getStreamBatchSize() {
+        return streamBatchSize;
+    }
+
+    /**
+     * Sets the maximum number of items in a streamed batch. Batches are also
+     * delivered when items have been held back for a short while.
+     *
+     * @param streamBatchSize The batch size; must be positive.
+     */
+    public void setStreamBatchSize(final int streamBatchSize) {
+        if (streamBatchSize <= 0) {
+            throw new IllegalArgumentException("streamBatchSize must be positive.");
+        }
+
+        this.streamBatchSize = streamBatchSize;
+    }
+
     public URL getLocation() {
         StringBuilder queryStringBuilder = new StringBuilder();
 
@@ -246,6 +505,55 @@ public abstract class Query<V> extends IOTask<V> {
         return status;
     }
 
+    void setStatus(final int status) {
+        this.status = status;
+    }
+
+    /**
+     * Sets whether a <tt>304 Not Modified</tt> response is accepted rather than
+     * treated as a failure; used by {@link QueryCache} when revalidating.
+     */
+    void setNotModifiedAllowed(final boolean notModifiedAllowed) {
+        this.notModifiedAllowed = notModifiedAllowed;
+    }
+
+    /**
+     * Sets whether the response body of a successful request is read even
+     * though the query is not a GET; used by {@link QueryBatch}.
+     */
+    void setResponseBodyExpected(final boolean responseBodyExpected) {
+        this.responseBodyExpected = responseBodyExpected;
+    }
+
+    /**
+     * Returns a key identifying the request this query makes: its location and
+     * request headers. Queries with equal keys receive the same response.
+     */
+    String getRequestKey() {
+        return getLocation().toString() + getHeaderKey(requestHeaders);
+    }
+
+    static String getHeaderKey(final QueryDictionary headers) {
+        StringBuilder keyBuilder = new StringBuilder();
+
+        TreeSet<String> names = new TreeSet<>();
+        for (String name : headers) {
+            names.add(name);
+        }
+
+        for (String name : names) {
+            for (int i = 0, n = headers.getLength(name); i < n; i++) {
+                keyBuilder.append('\n').append(name.toLowerCase()).append(": ").append(headers.get(name, i));
+            }
+        }
+
+        return keyBuilder.toString();
+    }
+
+    static String getHostKey(final URL location) {
+        return location.getProtocol() + "://" + location.getHost() + ":" + location.getPort();
+    }
+
     /**
      * Returns the serializer used to stream the value passed to or from the web
      * query. By default, an instance of {@link JSONSerializer} is used.
@@ -314,11 +622,73 @@ public abstract class Query<V> extends IOTask<V> {
         return bytesExpected;
     }
 
+    /**
+     * @return The metrics that measure this query, or <tt>null</tt> if it uses
+     * the {@link #getDefaultMetrics() default metrics}.
+     */
+    public QueryMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the metrics that measure this query.
+     *
+     * @param metrics The metrics, or <tt>null</tt> to use the
+     * {@link #getDefaultMetrics() default metrics}.
+     */
+    public void setMetrics(final QueryMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Gets the time spent in a phase of the last execution of this query,
+     * whether or not the query is measured by {@link QueryMetrics}. Listeners
+     * can read the times of the completed phases from their
+     * {@link QueryListener} callbacks; for example, all the times of a
+     * successful query are available in
+     * {@link QueryListener#responseReceived(Query) responseReceived}. The
+     * boundaries are those of the {@link URLConnectionTransport}; a transport
+     * that defers sending the request, such as {@link HttpClientTransport},
+     * reports connecting and transmitting the request as part of
+     * {@link QueryMetrics.Phase#WAIT WAIT}.
+     *
+     * @param phase One of the client phases: {@link QueryMetrics.Phase#CONNECT
+     * CONNECT}, {@link QueryMetrics.Phase#WRITE WRITE},
+     * {@link QueryMetrics.Phase#WAIT WAIT} or {@link QueryMetrics.Phase#READ
+     * READ}.
+     * @return The time in nanoseconds, or <tt>-1</tt> if the phase did not
+     * take place.
+     */
+    public long getPhaseTime(final QueryMetrics.Phase phase) {
+        Utils.checkNull(phase, "phase");
+
+        return phaseTimes[phase.ordinal()];
+    }
+
+    /**
+     * Gets the fraction of the response body that has been received.
+     *
+     * @return A value between <tt>0</tt> and <tt>1</tt>, or <tt>-1</tt> if the
+     * length of the response is not known.
+     */
+    public float getProgress() {
+        long bytesExpectedLocal = bytesExpected;
+
+        if (bytesExpectedLocal <= 0) {
+            return -1;
+        }
+
+        return Math.min((float) getBytesReceived() / bytesExpectedLocal, 1.0f);
+    }
+
     @SuppressWarnings("unchecked")
     protected Object execute(final Method method, final Object value) throws QueryException {
         Object result = value;
         URL location = getLocation();
-        HttpURLConnection connection = null;
+        QueryTransport transportLocal = (transport == null) ? defaultTransport : transport;
+        QueryTransport.Connection connection = null;
+        Closeable disconnect = null;
+        Semaphore permits = null;
 
         Serializer<Object> serializerLocal = (Serializer<Object>) this.serializer;
 
@@ -329,91 +699,133 @@ public abstract class Query<V> extends IOTask<V> {
         status = 0;
         String message = null;
 
+        QueryMetrics metricsLocal = (metrics == null) ? defaultMetrics : metrics;
+        QueryMetrics.Request measurement =
+            (metricsLocal == null) ? null : metricsLocal.requestStarted(method, location.getPath());
+
+        Arrays.fill(phaseTimes, -1);
+        long startTime = System.nanoTime();
+        long phaseStartTime = startTime;
+
         try {
             // Clear any properties from a previous response
             responseHeaders.clear();
 
-            // Open a connection
-            if (proxy == null) {
-                connection = (HttpURLConnection) location.openConnection();
-            } else {
-                connection = (HttpURLConnection) location.openConnection(proxy);
+            if (abort) {
+                throw new AbortException();
             }
 
-            connection.setRequestMethod(method.toString());
-            connection.setAllowUserInteraction(false);
-            connection.setInstanceFollowRedirects(false);
-            connection.setUseCaches(false);
+            // Wait for a connection to the host to become available
+            permits = acquirePermit(location);
 
-            if (connection instanceof HttpsURLConnection && hostnameVerifier != null) {
-                HttpsURLConnection httpsConnection = (HttpsURLConnection) connection;
-                httpsConnection.setHostnameVerifier(hostnameVerifier);
-            }
+            // Open a connection
+            connection = transportLocal.open(this, method, location, result != null);
+
+            // Disconnect if the query is aborted or times out, releasing a blocked thread
+            disconnect = connection::disconnect;
+            addCloseable(disconnect);
 
             // Set the request headers
-            if (result != null) {
-                connection.setRequestProperty(Constants.CONTENT_TYPE_HEADER, serializerLocal.getMIMEType(result));
+            if (result != null && !requestHeaders.containsKey(Constants.CONTENT_TYPE_HEADER)) {
+                connection.addRequestHeader(Constants.CONTENT_TYPE_HEADER, serializerLocal.getMIMEType(result));
+            }
+
+            if (result != null && requestEncoding != ContentEncoding.IDENTITY) {
+                connection.addRequestHeader(Constants.CONTENT_ENCODING_HEADER, requestEncoding.getName());
+            }
+
+            if (compressionAccepted && !requestHeaders.containsKey(Constants.ACCEPT_ENCODING_HEADER)) {
+                connection.addRequestHeader(Constants.ACCEPT_ENCODING_HEADER, ContentEncoding.ACCEPT_ENCODING);
             }
 
             for (String key : requestHeaders) {
                 for (int i = 0, n = requestHeaders.getLength(key); i < n; i++) {
-                    if (i == 0) {
-                        connection.setRequestProperty(key, requestHeaders.get(key, i));
-                    } else {
-                        connection.addRequestProperty(key, requestHeaders.get(key, i));
-                    }
+                    connection.addRequestHeader(key, requestHeaders.get(key, i));
                 }
             }
 
-            // Set the input/output state
-            connection.setDoInput(true);
-            connection.setDoOutput(result != null);
-
             // Connect to the server
             connection.connect();
+            phaseStartTime = endPhase(QueryMetrics.Phase.CONNECT, phaseStartTime, measurement);
             queryListeners.connected(this);
 
             // Write the request body
             if (result != null) {
-                try (OutputStream outputStream = connection.getOutputStream()) {
-                    serializerLocal.writeObject(result, new MonitoredOutputStream(outputStream));
+                try (OutputStream outputStream =
+                    requestEncoding.encode(new MonitoredOutputStream(connection.getOutputStream()))) {
+                    serializerLocal.writeObject(result, outputStream);
                 }
+
+                phaseStartTime = endPhase(QueryMetrics.Phase.WRITE, phaseStartTime, measurement);
             }
 
             // Notify listeners that the request has been sent
             queryListeners.requestSent(this);
 
             // Set the response info
-            status = connection.getResponseCode();
-            message = connection.getResponseMessage();
+            status = connection.getStatus();
+            message = connection.getStatusMessage();
+            phaseStartTime = endPhase(QueryMetrics.Phase.WAIT, phaseStartTime, measurement);
 
             // Record the content length
-            bytesExpected = connection.getContentLengthLong();
+            bytesExpected = connection.getContentLength();
 
-            // NOTE Header indexes start at 1, not 0
-            int i = 1;
-            for (String key = connection.getHeaderFieldKey(i); key != null; key = connection.getHeaderFieldKey(++i)) {
-                responseHeaders.add(key, connection.getHeaderField(i));
-            }
+            connection.getResponseHeaders(responseHeaders);
 
             // If the response was anything other than 2xx, throw an exception
             int statusPrefix = status / 100;
-            if (statusPrefix != 2) {
+            if (statusPrefix != 2 && !(status == Status.NOT_MODIFIED && notModifiedAllowed)) {
                 queryListeners.failed(this);
                 throw new QueryException(status, message);
             }
 
             // Read the response body
-            if (method == Method.GET && status == Query.Status.OK) {
-                try (InputStream inputStream = connection.getInputStream()) {
-                    result = serializerLocal.readObject(new MonitoredInputStream(inputStream));
+            if ((method == Method.GET || responseBodyExpected) && status == Query.Status.OK) {
+                ContentEncoding responseEncoding = ContentEncoding.fromName(getResponseHeader(
+                    Constants.CONTENT_ENCODING_HEADER));
+                if (responseEncoding == null) {
+                    throw new IOException("Unsupported content encoding \""
+                        + getResponseHeader(Constants.CONTENT_ENCODING_HEADER) + "\".");
+                }
+
+                QueryStream stream = null;
+                boolean streaming = false;
+                if (streamListener != null) {
+                    stream = new QueryStream(this, streamListener, streamExecutor, streamBatchSize, () -> abort);
+                    streaming = stream.attach(serializerLocal);
+                }
+
+                // Progress is measured in encoded bytes, matching the content length
+                try (InputStream inputStream =
+                    responseEncoding.decode(new MonitoredInputStream(connection.getInputStream()))) {
+                    result = serializerLocal.readObject(inputStream);
+                } finally {
+                    if (streaming) {
+                        stream.detach(serializerLocal);
+                    }
                 }
+
+                if (stream != null) {
+                    if (!streaming && result instanceof Sequence<?>) {
+                        stream.addAll((Sequence<?>) result);
+                    }
+
+                    stream.flush();
+                }
+
+                endPhase(QueryMetrics.Phase.READ, phaseStartTime, measurement);
             }
 
             // Notify listeners that the response has been received
             queryListeners.responseReceived(this);
         } catch (IOException exception) {
             queryListeners.failed(this);
+
+            // The connection was closed because the query was aborted
+            if (abort) {
+                throw new AbortException();
+            }
+
             throw new QueryException(exception);
         } catch (SerializationException exception) {
             queryListeners.failed(this);
@@ -421,11 +833,89 @@ public abstract class Query<V> extends IOTask<V> {
         } catch (RuntimeException exception) {
             queryListeners.failed(this);
             throw exception;
+        } finally {
+            if (disconnect != null) {
+                removeCloseable(disconnect);
+            }
+
+            if (connection != null) {
+                connection.close();
+            }
+
+            if (permits != null) {
+                permits.release();
+            }
+
+            if (measurement != null) {
+                measurement.completed(status, bytesReceived.get(), bytesSent.get(), System.nanoTime() - startTime);
+            }
         }
 
         return result;
     }
 
+    /**
+     * Records the time spent in a phase of the query.
+     *
+     * @return The end time of the phase, which is the start time of the next.
+     */
+    private long endPhase(final QueryMetrics.Phase phase, final long phaseStartTime,
+        final QueryMetrics.Request measurement) {
+        long time = System.nanoTime();
+        long duration = time - phaseStartTime;
+
+        phaseTimes[phase.ordinal()] = duration;
+        if (measurement != null) {
+            measurement.phaseCompleted(phase, duration);
+        }
+
+        return time;
+    }
+
+    private String getResponseHeader(final String name) {
+        for (String key : responseHeaders) {
+            if (key.equalsIgnoreCase(name)) {
+                return responseHeaders.get(key);
+            }
+        }
+
+        return null;
+    }
+
+    private Semaphore acquirePermit(final URL location) throws IOException {
+        Semaphore permits =
+            hostPermits.computeIfAbsent(getHostKey(location), key -> new Semaphore(maxConnectionsPerHost, true));
+
+        // Interrupt the wait if the query is aborted
+        Thread thread = Thread.currentThread();
+        Closeable interrupt = thread::interrupt;
+        addCloseable(interrupt);
+
+        try {
+            if (!permits.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+                throw new InterruptedIOException("Timed out waiting for a connection to " + location.getHost() + ".");
+            }
+        } catch (InterruptedException exception) {
+            if (!abort) {
+                thread.interrupt();
+            }
+
+            throw new InterruptedIOException();
+        } finally {
+            removeCloseable(interrupt);
+        }
+
+        if (abort) {
+            // Clear an interrupt that may have been sent after the permit was acquired
+            Thread.interrupted();
+            permits.release();
+
+            throw new InterruptedIOException();
+        }
+
+        return permits;
+    }
+
     /**
      * @return The query listener list.
      */
@@ -0,0 +1,817 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.ArrayQueue;
+import org.apache.pivot.collections.Group;
+import org.apache.pivot.collections.HashMap;
+import org.apache.pivot.collections.List;
+import org.apache.pivot.collections.Map;
+import org.apache.pivot.collections.Sequence;
+import org.apache.pivot.json.JSONSerializer;
+import org.apache.pivot.serialization.SerializationException;
+import org.apache.pivot.util.ImmutableIterator;
+import org.apache.pivot.util.concurrent.AbortException;
+import org.apache.pivot.util.concurrent.Task;
+import org.apache.pivot.util.concurrent.TaskExecutionException;
+import org.apache.pivot.util.concurrent.TaskListener;
+
+/**
+ * {@link Task} that executes a group of queries concurrently and notifies
+ * listeners when all of them are complete. <p> At most
+ * {@link #getMaxConcurrencyPerHost()} requests of the batch run against any
+ * one host at a time; the others wait for a running request to complete.
+ * <p> Identical GET queries (those with the same location, request headers
+ * and serializer) are executed only once while one of them is in flight, in
+ * this or any other batch: the others receive the same status and response
+ * headers, and a copy of the result made with their own serializer. If the
+ * batch that sent such a query is aborted, identical queries of other
+ * batches are sent again. <p> If a {@link #setBatchPath(String) batch
+ * path} is set, GET queries for the same servlet and with the same request
+ * headers are combined into a single POST of a JSON list of requests, each a
+ * map with a {@link #METHOD_KEY method}, a {@link #PATH_KEY path} relative to
+ * the servlet and its {@link #PARAMETERS_KEY parameters}. The server replies
+ * with a list of responses, each a map with a {@link #STATUS_KEY status},
+ * {@link #HEADERS_KEY headers} and, for a successful GET, a
+ * {@link #VALUE_KEY value}; <tt>QueryServlet</tt> answers such requests when
+ * batching is enabled. <p> The batch succeeds once every query has completed,
+ * whether or not the query failed; the outcome of each query is available
+ * from {@link #getResult(Query)} and {@link #getFault(Query)}. <p> The batch
+ * does not occupy a thread while its queries run: each request is started
+ * when an earlier one completes, and an asynchronous execution completes from
+ * the callback of its last query.
+ */
+public class QueryBatch extends Task<Void> implements Group<Query<?>>, Iterable<Query<?>> {
+    /**
+     * A request that is in flight on behalf of one or more identical queries.
+     */
+    private static class Flight {
+        private final String key;
+        private final Query<?> leader;
+        private final Execution execution;
+        private ArrayList<BiConsumer<Object, Throwable>> followers = new ArrayList<>();
+
+        public Flight(String key, Query<?> leader, Execution execution) {
+            this.key = key;
+            this.leader = leader;
+            this.execution = execution;
+        }
+
+        /**
+         * Registers a query that shares the outcome of this flight.
+         *
+         * @return <tt>false</tt> if the flight has already landed.
+         */
+        public synchronized boolean join(BiConsumer<Object, Throwable> follower) {
+            if (followers == null) {
+                return false;
+            }
+
+            followers.add(follower);
+            return true;
+        }
+
+        public void land(Object result, Throwable fault) {
+            flights.remove(key, this);
+
+            ArrayList<BiConsumer<Object, Throwable>> followersLocal;
+            synchronized (this) {
+                followersLocal = followers;
+                followers = null;
+            }
+
+            for (BiConsumer<Object, Throwable> follower : followersLocal) {
+                follower.accept(result, fault);
+            }
+        }
+    }
+
+    /**
+     * Query that sends several GET queries to a servlet in a single request.
+     */
+    private static class BatchQuery extends Query<Object> {
+        private final String prefix;
+        private final ArrayList<Query<?>> queries = new ArrayList<>();
+
+        public BatchQuery(Query<?> query, String path) {
+            super(query.getHostname(), query.getPort(), path, query.isSecure(), query.getExecutorService());
+
+            prefix = path.substring(0, path.lastIndexOf('/') + 1);
+
+            setTransport(query.getTransport());
+            setProxy(query.getProxy());
+            setHostnameVerifier(query.getHostnameVerifier());
+            setCompressionAccepted(query.isCompressionAccepted());
+            setTimeout(query.getTimeout());
+            setResponseBodyExpected(true);
+
+            QueryDictionary requestHeaders = query.getRequestHeaders();
+            for (String key : requestHeaders) {
+                for (int i = 0, n = requestHeaders.getLength(key); i < n; i++) {
+                    getRequestHeaders().add(key, requestHeaders.get(key, i));
+                }
+            }
+        }
+
+        @Override
+        public Method getMethod() {
+            return Method.POST;
+        }
+
+        public void add(Query<?> query) {
+            queries.add(query);
+        }
+
+        @Override
+        public Object execute() throws QueryException {
+            ArrayList<Object> requests = new ArrayList<>(queries.getLength());
+            for (Query<?> query : queries) {
+                HashMap<String, Object> request = new HashMap<>();
+                request.put(METHOD_KEY, query.getMethod().toString());
+                request.put(PATH_KEY, query.getPath().substring(prefix.length() - 1));
+                request.put(PARAMETERS_KEY, toMap(query.getParameters()));
+                requests.add(request);
+            }
+
+            Object responses = execute(Method.POST, requests);
+            if (!(responses instanceof List<?>) || ((List<?>) responses).getLength() != requests.getLength()) {
+                throw new QueryException(new SerializationException("Invalid batch response."));
+            }
+
+            return responses;
+        }
+
+        /**
+         * Applies one response of the batch to the query it answers.
+         *
+         * @return The value of the response.
+         * @throws QueryException If the response is not a success.
+         */
+        @SuppressWarnings("unchecked")
+        public static Object unpack(Query<?> query, Object response) throws QueryException {
+            try {
+                Map<String, Object> responseMap = (Map<String, Object>) response;
+                int status = ((Number) responseMap.get(STATUS_KEY)).intValue();
+
+                QueryDictionary responseHeaders = query.getResponseHeaders();
+                responseHeaders.clear();
+
+                Map<String, Object> headers = (Map<String, Object>) responseMap.get(HEADERS_KEY);
+                if (headers != null) {
+                    fromMap(headers, responseHeaders);
+                }
+
+                query.setStatus(status);
+
+                if (status / 100 != 2) {
+                    throw new QueryException(status);
+                }
+
+                return responseMap.get(VALUE_KEY);
+            } catch (ClassCastException | NullPointerException exception) {
+                throw new QueryException(new SerializationException("Invalid batch response.", exception));
+            }
+        }
+    }
+
+    /**
+     * The state of one execution of the batch. The execution does not occupy
+     * a thread: requests are started as earlier ones complete, and the
+     * completion callback is called by the last query to complete.
+     */
+    private class Execution {
+        /**
+         * A request made by the batch: either a single query, or several GET
+         * queries combined into a {@link BatchQuery}.
+         */
+        private class Request implements TaskListener<Object> {
+            private final String host;
+            private final Query<?> query;
+            private final ArrayList<Query<?>> members = new ArrayList<>();
+            private final ArrayList<Flight> memberFlights = new ArrayList<>();
+
+            public Request(String host, Query<?> query) {
+                this.host = host;
+                this.query = query;
+            }
+
+            public void add(Query<?> member, Flight flight) {
+                members.add(member);
+                memberFlights.add(flight);
+
+                if (query instanceof BatchQuery) {
+                    ((BatchQuery) query).add(member);
+                }
+            }
+
+            @SuppressWarnings("unchecked")
+            public void start() {
+                try {
+                    ((Query<Object>) getRunningQuery()).execute(this);
+                } catch (RuntimeException exception) {
+                    completed(null, exception);
+                }
+            }
+
+            /**
+             * Returns the query that makes the request: the only member, or
+             * the {@link BatchQuery} that combines the members.
+             */
+            private Query<?> getRunningQuery() {
+                return (members.getLength() == 1) ? members.get(0) : query;
+            }
+
+            public void abort() {
+                Query<?> running = getRunningQuery();
+
+                synchronized (running) {
+                    if (running.isPending()) {
+                        running.abort();
+                    }
+                }
+            }
+
+            @Override
+            public void taskExecuted(Task<Object> task) {
+                completed(task.getResult(), null);
+            }
+
+            @Override
+            public void executeFailed(Task<Object> task) {
+                completed(null, task.getFault());
+            }
+
+            private void completed(Object result, Throwable fault) {
+                for (int i = 0, n = members.getLength(); i < n; i++) {
+                    Query<?> member = members.get(i);
+                    Object memberResult = result;
+                    Throwable memberFault = fault;
+
+                    if (n > 1 && fault == null) {
+                        try {
+                            memberResult = BatchQuery.unpack(member, ((List<?>) result).get(i));
+                        } catch (QueryException exception) {
+                            memberResult = null;
+                            memberFault = exception;
+                        }
+                    }
+
+                    record(member, memberResult, memberFault);
+
+                    Flight flight = memberFlights.get(i);
+                    if (flight != null) {
+                        flight.land(memberResult, memberFault);
+                    }
+                }
+
+                requestCompleted(this);
+            }
+        }
+
+        private final ArrayList<Query<?>> queries;
+        private final Consumer<Throwable> completion;
+        private final HashMap<String, ArrayQueue<Request>> waiting = new HashMap<>();
+        private final HashMap<String, Integer> running = new HashMap<>();
+        private final ArrayList<Request> started = new ArrayList<>();
+        private int remaining;
+        private boolean aborted = false;
+
+        /**
+         * @param queries The queries to execute.
+         * @param completion Called once, with an {@link AbortException} if the
+         * execution was aborted and otherwise with <tt>null</tt>.
+         */
+        public Execution(ArrayList<Query<?>> queries, Consumer<Throwable> completion) {
+            this.queries = queries;
+            this.completion = completion;
+
+            remaining = queries.getLength();
+        }
+
+        public void start() {
+            if (queries.getLength() == 0) {
+                completion.accept(null);
+            } else {
+                submit(queries);
+            }
+        }
+
+        /**
+         * Starts requests for queries of this execution, as far as the
+         * concurrency limit allows, and queues the others.
+         */
+        private void submit(Sequence<Query<?>> queriesArgument) {
+            ArrayList<Request> requests = new ArrayList<>();
+            HashMap<String, Request> batchRequests = new HashMap<>();
+
+            for (int i = 0, n = queriesArgument.getLength(); i < n; i++) {
+                Query<?> query = queriesArgument.get(i);
+
+                Flight flight = null;
+                if (query.getMethod() == Query.Method.GET && query.getStreamListener() == null) {
+                    flight = board(query);
+
+                    if (flight == null) {
+                        continue;
+                    }
+                }
+
+                String host = Query.getHostKey(query.getLocation());
+
+                String batchKey = null;
+                if (flight != null && isBatchable(query)) {
+                    batchKey = host + Query.getHeaderKey(query.getRequestHeaders());
+                }
+
+                Request request = (batchKey == null) ? null : batchRequests.get(batchKey);
+                if (request == null) {
+                    request = new Request(host, (batchKey == null) ? query : new BatchQuery(query, batchPath));
+                    requests.add(request);
+
+                    if (batchKey != null) {
+                        batchRequests.put(batchKey, request);
+                    }
+                }
+
+                request.add(query, flight);
+            }
+
+            ArrayList<Request> ready = new ArrayList<>();
+            ArrayList<Request> skipped = new ArrayList<>();
+
+            synchronized (this) {
+                for (Request request : requests) {
+                    int count = running.containsKey(request.host) ? running.get(request.host).intValue() : 0;
+
+                    if (aborted) {
+                        skipped.add(request);
+                    } else if (count < maxConcurrencyPerHost) {
+                        running.put(request.host, Integer.valueOf(count + 1));
+                        started.add(request);
+                        ready.add(request);
+                    } else {
+                        ArrayQueue<Request> queue = waiting.get(request.host);
+                        if (queue == null) {
+                            queue = new ArrayQueue<>();
+                            waiting.put(request.host, queue);
+                        }
+
+                        queue.enqueue(request);
+                    }
+                }
+            }
+
+            for (Request request : ready) {
+                request.start();
+            }
+
+            for (Request request : skipped) {
+                request.completed(null, new AbortException());
+            }
+        }
+
+        /**
+         * Returns the flight that a GET query leads, or <tt>null</tt> if the
+         * query has joined an identical query that is already in flight.
+         */
+        private Flight board(Query<?> query) {
+            String key = query.getRequestKey() + "\n" + query.getSerializer().getClass().getName();
+            Flight flight = new Flight(key, query, this);
+
+            while (true) {
+                Flight existing = flights.putIfAbsent(key, flight);
+                if (existing == null) {
+                    return flight;
+                }
+
+                if (existing.join((result, fault) -> follow(query, existing, result, fault))) {
+                    return null;
+                }
+
+                // The existing flight is landing
+                flights.remove(key, existing);
+            }
+        }
+
+        /**
+         * Completes a query that joined another query's flight, giving it its
+         * own copy of the result.
+         */
+        private void follow(Query<?> query, Flight flight, Object result, Throwable fault) {
+            if (fault != null && flight.execution != this && flight.execution.isAborted()) {
+                // The leader's batch was aborted, but this one still needs the
+                // result, so the query is sent again
+                if (!isAborted()) {
+                    ArrayList<Query<?>> retry = new ArrayList<>(1);
+                    retry.add(query);
+                    submit(retry);
+                }
+
+                return;
+            }
+
+            QueryDictionary responseHeaders = query.getResponseHeaders();
+            responseHeaders.clear();
+
+            QueryDictionary leaderResponseHeaders = flight.leader.getResponseHeaders();
+            for (String key : leaderResponseHeaders) {
+                for (int i = 0, n = leaderResponseHeaders.getLength(key); i < n; i++) {
+                    responseHeaders.add(key, leaderResponseHeaders.get(key, i));
+                }
+            }
+
+            query.setStatus(flight.leader.getStatus());
+
+            Object resultCopy = null;
+            Throwable faultLocal = fault;
+            if (fault == null) {
+                try {
+                    resultCopy = QueryCache.copyValue(result, query.getSerializer());
+                } catch (SerializationException exception) {
+                    faultLocal = new QueryException(exception);
+                }
+            }
+
+            record(query, resultCopy, faultLocal);
+        }
+
+        private boolean isBatchable(Query<?> query) {
+            return (batchPath != null
+                && query instanceof GetQuery
+                && ((GetQuery) query).getCache() == null
+                && query.getSerializer() instanceof JSONSerializer
+                && query.getPath().startsWith(batchPath.substring(0, batchPath.lastIndexOf('/') + 1)));
+        }
+
+        public synchronized boolean isAborted() {
+            return aborted;
+        }
+
+        private void requestCompleted(Request request) {
+            Request next = null;
+
+            synchronized (this) {
+                ArrayQueue<Request> queue = waiting.get(request.host);
+
+                if (!aborted && queue != null && queue.getLength() > 0) {
+                    next = queue.dequeue();
+                    started.add(next);
+                } else {
+                    running.put(request.host, Integer.valueOf(running.get(request.host).intValue() - 1));
+                }
+            }
+
+            if (next != null) {
+                next.start();
+            }
+        }
+
+        /**
+         * Records the outcome of a query, unless it has already completed or
+         * the batch has since been executed again.
+         */
+        private void record(Query<?> query, Object result, Throwable fault) {
+            synchronized (QueryBatch.this) {
+                if (execution != this || results.containsKey(query) || faults.containsKey(query)) {
+                    return;
+                }
+
+                if (fault == null) {
+                    results.put(query, result);
+                } else {
+                    faults.put(query, fault);
+                }
+            }
+
+            boolean finished;
+            boolean abortedLocal;
+            synchronized (this) {
+                finished = (--remaining == 0);
+                abortedLocal = aborted;
+            }
+
+            if (finished) {
+                completion.accept(abortedLocal ? new AbortException() : null);
+            }
+        }
+
+        /**
+         * Aborts the running requests and fails every query that has not yet
+         * completed with an {@link AbortException}. Identical queries of other
+         * batches that were waiting on a query of this batch are sent again on
+         * behalf of their own batch.
+         */
+        public void abort() {
+            ArrayList<Request> startedLocal;
+            ArrayList<Request> skipped = new ArrayList<>();
+
+            synchronized (this) {
+                if (aborted) {
+                    return;
+                }
+
+                aborted = true;
+                startedLocal = new ArrayList<>(started);
+
+                for (String host : waiting) {
+                    ArrayQueue<Request> queue = waiting.get(host);
+                    while (queue.getLength() > 0) {
+                        skipped.add(queue.dequeue());
+                    }
+                }
+            }
+
+            for (Request request : startedLocal) {
+                request.abort();
+            }
+
+            for (Request request : skipped) {
+                request.completed(null, new AbortException());
+            }
+
+            for (Query<?> query : queries) {
+                record(query, null, new AbortException());
+            }
+        }
+    }
+
+    private ArrayList<Query<?>> queries = new ArrayList<>();
+    private int maxConcurrencyPerHost = DEFAULT_MAX_CONCURRENCY_PER_HOST;
+    private String batchPath = null;
+
+    private HashMap<Query<?>, Object> results = new HashMap<>();
+    private HashMap<Query<?>, Throwable> faults = new HashMap<>();
+    private Execution execution = null;
+
+    /**
+     * The default maximum number of concurrent requests to a host.
+     */
+    public static final int DEFAULT_MAX_CONCURRENCY_PER_HOST = 6;
+
+    /**
+     * Keys of the maps that make up a batch request.
+     */
+    public static final String METHOD_KEY = "method";
+    public static final String PATH_KEY = "path";
+    public static final String PARAMETERS_KEY = "parameters";
+
+    /**
+     * Keys of the maps that make up a batch response.
+     */
+    public static final String STATUS_KEY = "status";
+    public static final String HEADERS_KEY = "headers";
+    public static final String VALUE_KEY = "value";
+
+    private static final ConcurrentHashMap<String, Flight> flights = new ConcurrentHashMap<>();
+
+    public QueryBatch() {
+        this(DEFAULT_EXECUTOR_SERVICE);
+    }
+
+    public QueryBatch(ExecutorService executorService) {
+        super(executorService);
+    }
+
+    /**
+     * Synchronously executes the queries in this batch. The calling thread
+     * waits until all queries have completed; no other thread is blocked.
+     */
+    @Override
+    public Void execute() throws TaskExecutionException {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<Throwable> fault = new AtomicReference<>();
+
+        Execution executionLocal = newExecution(throwable -> {
+            fault.set(throwable);
+            latch.countDown();
+        });
+        executionLocal.start();
+
+        try {
+            // Let a work-stealing pool add a thread while this one is blocked
+            ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+                @Override
+                public boolean block() throws InterruptedException {
+                    latch.await();
+                    return true;
+                }
+
+                @Override
+                public boolean isReleasable() {
+                    return (latch.getCount() == 0);
+                }
+            });
+        } catch (InterruptedException exception) {
+            executionLocal.abort();
+            throw new TaskExecutionException(exception);
+        }
+
+        if (abort || fault.get() != null) {
+            throw new AbortException();
+        }
+
+        return null;
+    }
+
+    @Override
+    protected void start(ExecutorService executorServiceArgument) {
+        newExecution(fault -> complete(null, fault)).start();
+    }
+
+    private synchronized Execution newExecution(Consumer<Throwable> completion) {
+        results.clear();
+        faults.clear();
+
+        execution = new Execution(new ArrayList<>(queries), completion);
+        return execution;
+    }
+
+    /**
+     * Aborts all queries in this batch. Queries that have not completed fail
+     * with an {@link AbortException}, and so does the batch.
+     */
+    @Override
+    public void abort() {
+        Execution executionLocal;
+        synchronized (this) {
+            super.abort();
+            executionLocal = execution;
+        }
+
+        if (executionLocal != null) {
+            executionLocal.abort();
+        }
+    }
+
+    /**
+     * Returns the result of a query in the most recent execution of this
+     * batch.
+     *
+     * @param query A query in this batch.
+     * @return The result of the query, or <tt>null</tt> if it failed or has not
+     * completed.
+     */
+    public synchronized Object getResult(Query<?> query) {
+        return results.get(query);
+    }
+
+    /**
+     * Returns the fault of a query in the most recent execution of this
+     * batch.
+     *
+     * @param query A query in this batch.
+     * @return The fault of the query, or <tt>null</tt> if it succeeded or has
+     * not completed.
+     */
+    public synchronized Throwable getFault(Query<?> query) {
+        return faults.get(query);
+    }
+
+    /**
+     * @return The maximum number of requests of this batch that run against
+     * one host at the same time.
+     */
+    public synchronized int getMaxConcurrencyPerHost() {
+        return maxConcurrencyPerHost;
+    }
+
+    /**
+     * Limits the number of requests of this batch that run against one host at
+     * the same time. The limit of {@link Query#getMaxConnectionsPerHost()}
+     * applies as well.
+     *
+     * @param maxConcurrencyPerHost The maximum number of concurrent requests
+     * per host; the default is {@link #DEFAULT_MAX_CONCURRENCY_PER_HOST}.
+     */
+    public synchronized void setMaxConcurrencyPerHost(int maxConcurrencyPerHost) {
+        if (maxConcurrencyPerHost < 1) {
+            throw new IllegalArgumentException("maxConcurrencyPerHost must be positive.");
+        }
+
+        if (isPending()) {
+            throw new IllegalStateException();
+        }
+
+        this.maxConcurrencyPerHost = maxConcurrencyPerHost;
+    }
+
+    /**
+     * @return The path that combined GET queries are posted to, or
+     * <tt>null</tt> if queries are not combined.
+     */
+    public synchronized String getBatchPath() {
+        return batchPath;
+    }
+
+    /**
+     * Sets the path that combined GET queries are posted to. Only GET queries
+     * that use a {@link JSONSerializer}, have no cache and whose path starts
+     * with the directory of the batch path are combined.
+     *
+     * @param batchPath The batch path, typically the path of a servlet
+     * followed by <tt>/_batch</tt>, or <tt>null</tt> to send every query
+     * on its own (the default).
+     */
+    public synchronized void setBatchPath(String batchPath) {
+        if (batchPath != null && !batchPath.startsWith("/")) {
+            throw new IllegalArgumentException("batchPath must be absolute.");
+        }
+
+        if (isPending()) {
+            throw new IllegalStateException();
+        }
+
+        this.batchPath = batchPath;
+    }
+
+    @Override
+    public synchronized boolean add(Query<?> element) {
+        if (isPending()) {
+            throw new IllegalStateException();
+        }
+
+        if (queries.indexOf(element) != -1) {
+            return false;
+        }
+
+        queries.add(element);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean remove(Query<?> element) {
+        if (isPending()) {
+            throw new IllegalStateException();
+        }
+
+        return (queries.remove(element) != -1);
+    }
+
+    @Override
+    public synchronized boolean contains(Query<?> element) {
+        return (queries.indexOf(element) != -1);
+    }
+
+    public synchronized int getCount() {
+        return queries.getLength();
+    }
+
+    @Override
+    public Iterator<Query<?>> iterator() {
+        return new ImmutableIterator<>(queries.iterator());
+    }
+
+    private static HashMap<String, Object> toMap(QueryDictionary dictionary) {
+        HashMap<String, Object> map = new HashMap<>();
+
+        for (String key : dictionary) {
+            ArrayList<String> values = new ArrayList<>();
+            for (int i = 0, n = dictionary.getLength(key); i < n; i++) {
+                values.add(dictionary.get(key, i));
+            }
+
+            map.put(key, values);
+        }
+
+        return map;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void fromMap(Map<String, Object> map, QueryDictionary dictionary) {
+        for (String key : map) {
+            Object value = map.get(key);
+
+            if (value instanceof List<?>) {
+                for (Object item : (List<Object>) value) {
+                    dictionary.add(key, String.valueOf(item));
+                }
+            } else {
+                dictionary.add(key, String.valueOf(value));
+            }
+        }
+    }
+}
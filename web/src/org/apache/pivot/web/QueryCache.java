@@ -0,0 +1,617 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+
+import org.apache.pivot.serialization.SerializationException;
+import org.apache.pivot.serialization.Serializer;
+import org.apache.pivot.util.Constants;
+import org.apache.pivot.util.Utils;
+
+/**
+ * Client-side HTTP response cache for {@link GetQuery}. Responses are kept,
+ * re-serialized with the query's serializer, in a least-recently-used memory
+ * cache and optionally in a directory on disk, keyed by the query's location
+ * and request headers. <p>
+ * A cached response is returned without contacting the server while it is
+ * fresh according to its <tt>Cache-Control: max-age</tt> or <tt>Expires</tt>
+ * header. Once it is stale it is revalidated with <tt>If-None-Match</tt>
+ * and/or <tt>If-Modified-Since</tt>, and the cached value is returned if the
+ * server answers <tt>304 Not Modified</tt>. Responses marked
+ * <tt>no-store</tt> are never cached; responses marked <tt>no-cache</tt> are
+ * revalidated every time. <p> A cache may be shared by any number of queries
+ * and threads. Each response is deserialized once, and every hit returns the
+ * same value, so callers must not modify the values they are given unless
+ * {@link #setCopyResults(boolean) copying} is enabled, in which case each hit
+ * reads a new copy of the response. A response that the query's serializer
+ * cannot write back is not cached.
+ *
+ * @see GetQuery#setCache(QueryCache)
+ */
+public class QueryCache {
+    private static class CacheEntry {
+        private final byte[] content;
+        private final Object value;
+        private final QueryDictionary responseHeaders;
+        private final String eTag;
+        private final String lastModified;
+        private final long expiration;
+
+        public CacheEntry(byte[] content, Object value, QueryDictionary responseHeaders, String eTag,
+            String lastModified, long expiration) {
+            this.content = content;
+            this.value = value;
+            this.responseHeaders = responseHeaders;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.expiration = expiration;
+        }
+
+        public CacheEntry withValue(Object valueArgument) {
+            return new CacheEntry(content, valueArgument, responseHeaders, eTag, lastModified, expiration);
+        }
+
+        public CacheEntry withExpiration(long expirationArgument) {
+            return new CacheEntry(content, value, responseHeaders, eTag, lastModified, expirationArgument);
+        }
+
+        public boolean isFresh() {
+            return System.currentTimeMillis() < expiration;
+        }
+    }
+
+    /** The default number of responses kept in memory. */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private static final String CACHE_CONTROL_HEADER = "Cache-Control";
+    private static final String EXPIRES_HEADER = "Expires";
+
+    private static final int FILE_VERSION = 2;
+
+    private static final Object NO_VALUE = new Object();
+
+    private final int capacity;
+    private final File directory;
+    private final LinkedHashMap<String, CacheEntry> entries;
+
+    private volatile boolean copyResults = false;
+
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long revalidationCount = 0;
+
+    /**
+     * Creates a memory-only cache of the default capacity.
+     */
+    public QueryCache() {
+        this(DEFAULT_CAPACITY, null);
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param capacity The number of responses kept in memory.
+     * @param directory The directory that responses are also stored in, or
+     * <tt>null</tt> for a memory-only cache. Responses on disk are written
+     * with the query's serializer, so they survive a restart.
+     */
+    public QueryCache(int capacity, File directory) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive.");
+        }
+
+        this.capacity = capacity;
+        this.directory = directory;
+
+        entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 0;
+
+            @Override
+            protected boolean removeEldestEntry(Entry<String, CacheEntry> eldest) {
+                return size() > QueryCache.this.capacity;
+            }
+        };
+
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalArgumentException("Unable to create cache directory " + directory + ".");
+        }
+    }
+
+    /**
+     * Executes a query, using and updating the cache.
+     *
+     * @param query The query to execute.
+     * @return The response value, which may have come from the cache.
+     * @throws QueryException If the query fails.
+     */
+    public Object execute(GetQuery query) throws QueryException {
+        Utils.checkNull(query, "query");
+
+        String key = query.getRequestKey();
+        CacheEntry entry = get(key);
+
+        if (entry != null && entry.isFresh()) {
+            Object value = getValue(entry, query.getSerializer());
+
+            if (value != NO_VALUE) {
+                synchronized (this) {
+                    hitCount++;
+                }
+
+                if (entry.value == NO_VALUE && !copyResults) {
+                    // Keep the value of a response that was read from disk
+                    replace(key, entry, entry.withValue(value));
+                }
+
+                restore(query, entry);
+                return value;
+            }
+
+            // The serializer can no longer read the cached response
+            remove(key);
+            entry = null;
+        }
+
+        QueryDictionary requestHeaders = query.getRequestHeaders();
+        boolean revalidate = (entry != null && (entry.eTag != null || entry.lastModified != null));
+
+        Object value;
+        if (revalidate) {
+            if (entry.eTag != null) {
+                requestHeaders.put(Constants.IF_NONE_MATCH_HEADER, entry.eTag);
+            }
+
+            if (entry.lastModified != null) {
+                requestHeaders.put(Constants.IF_MODIFIED_SINCE_HEADER, entry.lastModified);
+            }
+
+            query.setNotModifiedAllowed(true);
+            try {
+                value = query.execute(GetQuery.METHOD, null);
+            } finally {
+                query.setNotModifiedAllowed(false);
+                requestHeaders.remove(Constants.IF_NONE_MATCH_HEADER);
+                requestHeaders.remove(Constants.IF_MODIFIED_SINCE_HEADER);
+            }
+
+            if (query.getStatus() == Query.Status.NOT_MODIFIED) {
+                Object cachedValue = getValue(entry, query.getSerializer());
+
+                if (cachedValue != NO_VALUE) {
+                    synchronized (this) {
+                        revalidationCount++;
+                    }
+
+                    // The server may have sent new freshness information
+                    CacheEntry revalidatedEntry = copyResults ? entry : entry.withValue(cachedValue);
+                    put(key, revalidatedEntry.withExpiration(getExpiration(query.getResponseHeaders())));
+
+                    restore(query, entry);
+                    return cachedValue;
+                }
+
+                // The serializer can no longer read the cached response
+                remove(key);
+                value = query.execute(GetQuery.METHOD, null);
+            }
+        } else {
+            value = query.execute(GetQuery.METHOD, null);
+        }
+
+        synchronized (this) {
+            missCount++;
+        }
+
+        QueryDictionary responseHeaders = query.getResponseHeaders();
+        if (query.getStatus() == Query.Status.OK && !hasDirective(responseHeaders, "no-store")) {
+            QueryDictionary responseHeadersCopy = new QueryDictionary(false);
+            for (String name : responseHeaders) {
+                for (int i = 0, n = responseHeaders.getLength(name); i < n; i++) {
+                    responseHeadersCopy.add(name, responseHeaders.get(name, i));
+                }
+            }
+
+            byte[] content = serialize(value, query.getSerializer());
+            CacheEntry updatedEntry = (content == null) ? null : new CacheEntry(content,
+                (copyResults && !isImmutable(value)) ? NO_VALUE : value, responseHeadersCopy,
+                getHeader(responseHeaders, Constants.ETAG_HEADER),
+                getHeader(responseHeaders, Constants.LAST_MODIFIED_HEADER), getExpiration(responseHeaders));
+
+            if (updatedEntry != null
+                && (updatedEntry.isFresh() || updatedEntry.eTag != null || updatedEntry.lastModified != null)) {
+                put(key, updatedEntry);
+            } else {
+                remove(key);
+            }
+        }
+
+        return value;
+    }
+
+    private static boolean isImmutable(Object value) {
+        return value == null || value instanceof String || value instanceof Boolean || value instanceof Character
+            || value instanceof Integer || value instanceof Long || value instanceof Double || value instanceof Float
+            || value instanceof Short || value instanceof Byte || value instanceof BigInteger
+            || value instanceof BigDecimal;
+    }
+
+    /**
+     * Writes a response value with the query's serializer.
+     *
+     * @return The serialized value, or <tt>null</tt> if the serializer cannot
+     * write it.
+     */
+    @SuppressWarnings("unchecked")
+    private static byte[] serialize(Object value, Serializer<?> serializer) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        try {
+            ((Serializer<Object>) serializer).writeObject(value, outputStream);
+        } catch (IOException | SerializationException | RuntimeException exception) {
+            return null;
+        }
+
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Returns a copy of a response value that shares no mutable state with it,
+     * made by writing the value with a serializer and reading it back;
+     * immutable values are returned as-is. {@link QueryBatch} uses this to
+     * give each of a set of identical queries its own result.
+     *
+     * @throws SerializationException If the serializer cannot write or read
+     * the value.
+     */
+    static Object copyValue(Object value, Serializer<?> serializer) throws SerializationException {
+        if (isImmutable(value)) {
+            return value;
+        }
+
+        byte[] content = serialize(value, serializer);
+        if (content == null) {
+            throw new SerializationException("Unable to copy the response value.");
+        }
+
+        try {
+            return serializer.readObject(new ByteArrayInputStream(content));
+        } catch (IOException exception) {
+            throw new SerializationException(exception);
+        }
+    }
+
+    /**
+     * Returns the cached value, reading it with the query's serializer if it
+     * was read from disk, or if copying is enabled and it is not immutable.
+     *
+     * @return The value, or {@link #NO_VALUE} if it cannot be read.
+     */
+    private Object getValue(CacheEntry entry, Serializer<?> serializer) {
+        Object value = entry.value;
+
+        if (value == NO_VALUE || (copyResults && !isImmutable(value))) {
+            try {
+                value = serializer.readObject(new ByteArrayInputStream(entry.content));
+            } catch (IOException | SerializationException | RuntimeException exception) {
+                return NO_VALUE;
+            }
+        }
+
+        return value;
+    }
+
+    private static void restore(GetQuery query, CacheEntry entry) {
+        QueryDictionary responseHeaders = query.getResponseHeaders();
+        responseHeaders.clear();
+
+        for (String name : entry.responseHeaders) {
+            for (int i = 0, n = entry.responseHeaders.getLength(name); i < n; i++) {
+                responseHeaders.add(name, entry.responseHeaders.get(name, i));
+            }
+        }
+
+        query.setStatus(Query.Status.OK);
+    }
+
+    private static String getHeader(QueryDictionary headers, String name) {
+        for (String key : headers) {
+            if (key.equalsIgnoreCase(name)) {
+                return headers.get(key);
+            }
+        }
+
+        return null;
+    }
+
+    private static boolean hasDirective(QueryDictionary headers, String directive) {
+        return getDirective(headers, directive) != null;
+    }
+
+    /**
+     * Returns the value of a <tt>Cache-Control</tt> directive, an empty string
+     * if the directive has no value, or <tt>null</tt> if it is not present.
+     */
+    private static String getDirective(QueryDictionary headers, String directive) {
+        String cacheControl = getHeader(headers, CACHE_CONTROL_HEADER);
+
+        if (cacheControl != null) {
+            for (String token : cacheControl.split(",")) {
+                String[] parts = token.trim().split("=", 2);
+
+                if (parts[0].trim().equalsIgnoreCase(directive)) {
+                    return (parts.length == 1) ? "" : parts[1].trim().replace("\"", "");
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the time at which a response stops being fresh, as given by its
+     * <tt>Cache-Control</tt> or <tt>Expires</tt> header.
+     */
+    private static long getExpiration(QueryDictionary headers) {
+        long now = System.currentTimeMillis();
+
+        if (hasDirective(headers, "no-cache")) {
+            return now;
+        }
+
+        String maxAge = getDirective(headers, "max-age");
+        if (maxAge != null) {
+            try {
+                return now + Math.max(Long.parseLong(maxAge), 0) * 1000;
+            } catch (NumberFormatException exception) {
+                return now;
+            }
+        }
+
+        String expires = getHeader(headers, EXPIRES_HEADER);
+        if (expires != null) {
+            try {
+                return ZonedDateTime.parse(expires, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            } catch (DateTimeParseException exception) {
+                // An invalid date means the response has already expired
+                return now;
+            }
+        }
+
+        return now;
+    }
+
+    private synchronized CacheEntry get(String key) {
+        CacheEntry entry = entries.get(key);
+
+        if (entry == null && directory != null) {
+            entry = read(key);
+
+            if (entry != null) {
+                entries.put(key, entry);
+            }
+        }
+
+        return entry;
+    }
+
+    private synchronized void put(String key, CacheEntry entry) {
+        entries.put(key, entry);
+
+        if (directory != null) {
+            write(key, entry);
+        }
+    }
+
+    private synchronized void replace(String key, CacheEntry entry, CacheEntry updatedEntry) {
+        if (entries.get(key) == entry) {
+            entries.put(key, updatedEntry);
+        }
+    }
+
+    private synchronized void remove(String key) {
+        entries.remove(key);
+
+        if (directory != null) {
+            getFile(key).delete();
+        }
+    }
+
+    private File getFile(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            StringBuilder nameBuilder = new StringBuilder();
+            for (byte b : digest.digest(key.getBytes(StandardCharsets.UTF_8))) {
+                nameBuilder.append(String.format("%02x", b));
+            }
+
+            return new File(directory, nameBuilder.toString());
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    private CacheEntry read(String key) {
+        File file = getFile(key);
+        if (!file.isFile()) {
+            return null;
+        }
+
+        try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (inputStream.readInt() != FILE_VERSION || !inputStream.readUTF().equals(key)) {
+                return null;
+            }
+
+            String eTag = inputStream.readBoolean() ? inputStream.readUTF() : null;
+            String lastModified = inputStream.readBoolean() ? inputStream.readUTF() : null;
+            long expiration = inputStream.readLong();
+
+            QueryDictionary responseHeaders = new QueryDictionary(false);
+            for (int i = 0, n = inputStream.readInt(); i < n; i++) {
+                responseHeaders.add(inputStream.readUTF(), inputStream.readUTF());
+            }
+
+            byte[] content = new byte[inputStream.readInt()];
+            inputStream.readFully(content);
+
+            return new CacheEntry(content, NO_VALUE, responseHeaders, eTag, lastModified, expiration);
+        } catch (IOException exception) {
+            // Treat an unreadable file as a miss
+            return null;
+        }
+    }
+
+    private void write(String key, CacheEntry entry) {
+        File file = getFile(key);
+
+        try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(
+            new FileOutputStream(file)))) {
+            outputStream.writeInt(FILE_VERSION);
+            outputStream.writeUTF(key);
+
+            outputStream.writeBoolean(entry.eTag != null);
+            if (entry.eTag != null) {
+                outputStream.writeUTF(entry.eTag);
+            }
+
+            outputStream.writeBoolean(entry.lastModified != null);
+            if (entry.lastModified != null) {
+                outputStream.writeUTF(entry.lastModified);
+            }
+
+            outputStream.writeLong(entry.expiration);
+
+            int count = 0;
+            for (String name : entry.responseHeaders) {
+                count += entry.responseHeaders.getLength(name);
+            }
+
+            outputStream.writeInt(count);
+            for (String name : entry.responseHeaders) {
+                for (int i = 0, n = entry.responseHeaders.getLength(name); i < n; i++) {
+                    outputStream.writeUTF(name);
+                    outputStream.writeUTF(entry.responseHeaders.get(name, i));
+                }
+            }
+
+            outputStream.writeInt(entry.content.length);
+            outputStream.write(entry.content);
+        } catch (IOException exception) {
+            // The response is still cached in memory
+            file.delete();
+        }
+    }
+
+    /**
+     * @return Whether each hit returns a new copy of the cached value.
+     */
+    public boolean isCopyResults() {
+        return copyResults;
+    }
+
+    /**
+     * Sets whether each hit returns a new copy of the cached value, read with
+     * the query's serializer, so that callers may modify it. Copying is off
+     * by default: every hit returns the same value, which callers must treat
+     * as immutable. Immutable values (strings, numbers and booleans) are never
+     * copied.
+     *
+     * @param copyResults <tt>true</tt> to copy cached values.
+     */
+    public void setCopyResults(boolean copyResults) {
+        this.copyResults = copyResults;
+    }
+
+    /**
+     * @return The number of responses returned from the cache without
+     * contacting the server.
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return The number of responses that had to be downloaded.
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return The number of cached responses that the server confirmed were
+     * still valid (<tt>304 Not Modified</tt>).
+     */
+    public synchronized long getRevalidationCount() {
+        return revalidationCount;
+    }
+
+    /**
+     * @return The number of responses held in memory.
+     */
+    public synchronized int getCount() {
+        return entries.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Removes all responses from the cache, including any on disk, and resets
+     * the statistics.
+     */
+    public synchronized void clear() {
+        entries.clear();
+
+        if (directory != null) {
+            // Only delete the files written by the cache
+            File[] files = directory.listFiles((dir, name) -> name.matches("[0-9a-f]{64}"));
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+        }
+
+        hitCount = 0;
+        missCount = 0;
+        revalidationCount = 0;
+    }
+}
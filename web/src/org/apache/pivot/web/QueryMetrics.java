@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web;
+
+/**
+ * Instrumentation interface for web queries, on the client ({@link Query})
+ * and on the server (<tt>QueryServlet</tt>). An implementation is told when a
+ * request starts and returns an object that receives the duration of each
+ * phase of the request and, finally, its outcome; this object may be shared
+ * between requests, as in {@link QueryStatistics}, or be a trace span of its
+ * own. <p> Implementations are called on the threads that execute requests
+ * and must be thread-safe and fast.
+ */
+public interface QueryMetrics {
+    /**
+     * The phases of a request.
+     */
+    public enum Phase {
+        /** Server: {@code prepare()}. */
+        PREPARE,
+        /** Server: {@code validate()}. */
+        VALIDATE,
+        /**
+         * Client: waiting for a connection to the host, and connecting. A
+         * transport that does not expose the connection, such as
+         * {@link HttpClientTransport}, includes this time in {@link #WAIT}.
+         */
+        CONNECT,
+        /** Serializing a request (client) or response (server) body. */
+        WRITE,
+        /** Client: waiting for the response status and headers. */
+        WAIT,
+        /** Server: the handler method, such as {@code doGet()}. */
+        HANDLE,
+        /** Deserializing a response (client) or request (server) body. */
+        READ
+    }
+
+    /**
+     * A request that is being measured.
+     */
+    public interface Request {
+        /**
+         * Called when a phase of the request has completed.
+         *
+         * @param phase The phase.
+         * @param nanoseconds The time spent in the phase.
+         */
+        default void phaseCompleted(Phase phase, long nanoseconds) {
+            // empty block
+        }
+
+        /**
+         * Called once when the request has completed, successfully or not.
+         *
+         * @param status The HTTP status of the response, or <tt>0</tt> if no
+         * response was received.
+         * @param bytesReceived The number of body bytes received, or
+         * <tt>-1</tt> if it is not known.
+         * @param bytesSent The number of body bytes sent, or <tt>-1</tt> if it
+         * is not known.
+         * @param nanoseconds The total time taken by the request.
+         */
+        default void completed(int status, long bytesReceived, long bytesSent, long nanoseconds) {
+            // empty block
+        }
+    }
+
+    /**
+     * Called when a request starts.
+     *
+     * @param method The HTTP method of the request, or <tt>null</tt> if a
+     * servlet received a request with another method.
+     * @param path The path of the request, relative to the servlet on the
+     * server.
+     * @return The object that receives the measurements of the request (must
+     * be non-null).
+     */
+    public Request requestStarted(Query.Method method, String path);
+}
@@ -0,0 +1,240 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.apache.pivot.util.Utils;
+import org.apache.pivot.util.concurrent.LatencyHistogram;
+
+/**
+ * {@link QueryMetrics} implementation that aggregates requests in memory:
+ * counts of requests, bytes and status classes, the number of requests in
+ * flight, and {@link LatencyHistogram latency histograms} of the requests
+ * and of each of their phases. <p> The statistics can be exposed as a JMX
+ * MBean with {@link #register(String)}.
+ */
+public class QueryStatistics implements QueryMetrics, QueryMetrics.Request, QueryStatisticsMBean {
+    private final AtomicInteger inFlightCount = new AtomicInteger();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLongArray statusCounts = new AtomicLongArray(6);
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final EnumMap<Phase, LatencyHistogram> phaseLatencies = new EnumMap<>(Phase.class);
+
+    /**
+     * The domain of the names under which statistics are registered with JMX.
+     */
+    public static final String JMX_DOMAIN = "org.apache.pivot.web";
+
+    public QueryStatistics() {
+        for (Phase phase : Phase.values()) {
+            phaseLatencies.put(phase, new LatencyHistogram());
+        }
+    }
+
+    @Override
+    public Request requestStarted(Query.Method method, String path) {
+        inFlightCount.incrementAndGet();
+        return this;
+    }
+
+    @Override
+    public void phaseCompleted(Phase phase, long nanoseconds) {
+        phaseLatencies.get(phase).record(nanoseconds);
+    }
+
+    @Override
+    public void completed(int status, long bytesReceivedArgument, long bytesSentArgument, long nanoseconds) {
+        inFlightCount.decrementAndGet();
+        requestCount.incrementAndGet();
+
+        if (bytesReceivedArgument > 0) {
+            bytesReceived.addAndGet(bytesReceivedArgument);
+        }
+
+        if (bytesSentArgument > 0) {
+            bytesSent.addAndGet(bytesSentArgument);
+        }
+
+        int statusClass = status / 100;
+        statusCounts.incrementAndGet((statusClass >= 1 && statusClass <= 5) ? statusClass : 0);
+
+        latency.record(nanoseconds);
+    }
+
+    @Override
+    public int getInFlightCount() {
+        return inFlightCount.get();
+    }
+
+    /**
+     * @return The number of completed requests.
+     */
+    @Override
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    @Override
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    @Override
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    /**
+     * Returns the number of requests whose response had a given class of
+     * status.
+     *
+     * @param statusClass The first digit of the status, from <tt>1</tt> to
+     * <tt>5</tt>, or <tt>0</tt> for requests that received no response.
+     * @return The number of requests.
+     */
+    public long getStatusCount(int statusClass) {
+        return statusCounts.get(statusClass);
+    }
+
+    @Override
+    public long getSuccessCount() {
+        return getStatusCount(2);
+    }
+
+    @Override
+    public long getClientErrorCount() {
+        return getStatusCount(4);
+    }
+
+    @Override
+    public long getServerErrorCount() {
+        return getStatusCount(5);
+    }
+
+    @Override
+    public long getFailureCount() {
+        return getStatusCount(0);
+    }
+
+    /**
+     * @return The distribution of the total time taken by requests.
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * @param phase A phase of a request.
+     * @return The distribution of the time spent in the phase.
+     */
+    public LatencyHistogram getPhaseLatency(Phase phase) {
+        Utils.checkNull(phase, "phase");
+
+        return phaseLatencies.get(phase);
+    }
+
+    @Override
+    public long getMeanLatency() {
+        return latency.getMean();
+    }
+
+    @Override
+    public long get99thPercentileLatency() {
+        return latency.getPercentile(0.99);
+    }
+
+    @Override
+    public long getMaxLatency() {
+        return latency.getMax();
+    }
+
+    @Override
+    public String[] getPhaseLatencies() {
+        Phase[] phases = Phase.values();
+        String[] summaries = new String[phases.length];
+
+        for (int i = 0; i < phases.length; i++) {
+            summaries[i] = phases[i] + ": " + phaseLatencies.get(phases[i]);
+        }
+
+        return summaries;
+    }
+
+    /**
+     * Discards all statistics except the number of requests in flight.
+     */
+    @Override
+    public void reset() {
+        requestCount.set(0);
+        bytesReceived.set(0);
+        bytesSent.set(0);
+
+        for (int i = 0; i < statusCounts.length(); i++) {
+            statusCounts.set(i, 0);
+        }
+
+        latency.reset();
+
+        for (LatencyHistogram phaseLatency : phaseLatencies.values()) {
+            phaseLatency.reset();
+        }
+    }
+
+    /**
+     * Registers the statistics with the platform MBean server.
+     *
+     * @param name The name of the statistics, such as the name of a servlet.
+     * @return The object name under which the statistics are registered.
+     * @throws JMException If the statistics cannot be registered.
+     */
+    public ObjectName register(String name) throws JMException {
+        Utils.checkNull(name, "name");
+
+        ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=" + getClass().getSimpleName()
+            + ",name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+
+        return objectName;
+    }
+
+    /**
+     * Unregisters statistics from the platform MBean server.
+     *
+     * @param objectName The name returned by {@link #register(String)}.
+     * @throws JMException If the statistics cannot be unregistered.
+     */
+    public static void unregister(ObjectName objectName) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " [requests=" + getRequestCount() + ", inFlight=" + getInFlightCount()
+            + ", latency=" + latency + "]";
+    }
+}
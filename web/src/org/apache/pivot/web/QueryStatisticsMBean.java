@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web;
+
+/**
+ * Management interface of {@link QueryStatistics}, exposed through JMX by
+ * {@link QueryStatistics#register(String)}. Latencies are in nanoseconds.
+ */
+public interface QueryStatisticsMBean {
+    public int getInFlightCount();
+
+    public long getRequestCount();
+
+    public long getBytesReceived();
+
+    public long getBytesSent();
+
+    /**
+     * @return The number of requests that received a 2xx response.
+     */
+    public long getSuccessCount();
+
+    /**
+     * @return The number of requests that received a 4xx response.
+     */
+    public long getClientErrorCount();
+
+    /**
+     * @return The number of requests that received a 5xx response.
+     */
+    public long getServerErrorCount();
+
+    /**
+     * @return The number of requests that received no response.
+     */
+    public long getFailureCount();
+
+    public long getMeanLatency();
+
+    public long get99thPercentileLatency();
+
+    public long getMaxLatency();
+
+    /**
+     * @return A summary of the latency of each phase.
+     */
+    public String[] getPhaseLatencies();
+
+    public void reset();
+}
@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.Dictionary;
+import org.apache.pivot.collections.Sequence;
+import org.apache.pivot.json.JSONSerializer;
+import org.apache.pivot.json.JSONSerializerListener;
+import org.apache.pivot.serialization.CSVSerializer;
+import org.apache.pivot.serialization.CSVSerializerListener;
+import org.apache.pivot.serialization.Serializer;
+import org.apache.pivot.util.concurrent.AbortException;
+
+/**
+ * Collects the items of a list response into batches as the query's
+ * serializer reads them, and hands the batches to a
+ * {@link QueryStreamListener}. Items of a top-level JSON array and the rows of
+ * a CSV document are streamed. <p> At most {@link #MAX_PENDING_BATCHES}
+ * batches may be waiting on the listener's executor; beyond that, reading
+ * the response blocks until the listener catches up.
+ */
+final class QueryStream implements JSONSerializerListener, CSVSerializerListener {
+    /** The number of batches that may be waiting to be delivered. */
+    public static final int MAX_PENDING_BATCHES = 4;
+
+    /** The longest time that read items are held back, in nanoseconds. */
+    private static final long FLUSH_INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final Query<?> query;
+    private final QueryStreamListener listener;
+    private final Executor executor;
+    private final int batchSize;
+    private final BooleanSupplier aborted;
+
+    private final Semaphore pendingBatches = new Semaphore(MAX_PENDING_BATCHES);
+    private ArrayList<Object> batch = new ArrayList<>();
+    private long flushTime = System.nanoTime();
+    private int depth = 0;
+
+    public QueryStream(Query<?> query, QueryStreamListener listener, Executor executor, int batchSize,
+        BooleanSupplier aborted) {
+        this.query = query;
+        this.listener = listener;
+        this.executor = executor;
+        this.batchSize = batchSize;
+        this.aborted = aborted;
+    }
+
+    /**
+     * Starts listening to a serializer.
+     *
+     * @return <tt>false</tt> if the serializer can't be streamed.
+     */
+    public boolean attach(Serializer<?> serializer) {
+        if (serializer instanceof JSONSerializer) {
+            ((JSONSerializer) serializer).getJSONSerializerListeners().add(this);
+        } else if (serializer instanceof CSVSerializer) {
+            ((CSVSerializer) serializer).getCSVSerializerListeners().add(this);
+        } else {
+            return false;
+        }
+
+        return true;
+    }
+
+    public void detach(Serializer<?> serializer) {
+        if (serializer instanceof JSONSerializer) {
+            ((JSONSerializer) serializer).getJSONSerializerListeners().remove(this);
+        } else if (serializer instanceof CSVSerializer) {
+            ((CSVSerializer) serializer).getCSVSerializerListeners().remove(this);
+        }
+    }
+
+    @Override
+    public void beginDictionary(JSONSerializer jsonSerializer, Dictionary<String, ?> value) {
+        depth++;
+    }
+
+    @Override
+    public void endDictionary(JSONSerializer jsonSerializer) {
+        depth--;
+    }
+
+    @Override
+    public void beginSequence(JSONSerializer jsonSerializer, Sequence<?> value) {
+        depth++;
+    }
+
+    @Override
+    public void endSequence(JSONSerializer jsonSerializer) {
+        depth--;
+    }
+
+    @Override
+    public void readItem(JSONSerializer jsonSerializer, Sequence<?> sequence, Object item) {
+        // Only stream the items of the top-level array
+        if (depth == 1) {
+            add(item);
+        }
+    }
+
+    @Override
+    public void readItem(CSVSerializer csvSerializer, Object item) {
+        add(item);
+    }
+
+    /**
+     * Adds a whole sequence, for responses that could not be streamed.
+     */
+    public void addAll(Sequence<?> items) {
+        for (int i = 0, n = items.getLength(); i < n; i++) {
+            add(items.get(i));
+        }
+    }
+
+    private void add(Object item) {
+        batch.add(item);
+
+        if (batch.getLength() >= batchSize || System.nanoTime() - flushTime >= FLUSH_INTERVAL) {
+            flush();
+        }
+    }
+
+    /**
+     * Delivers the items read since the last batch.
+     */
+    public void flush() {
+        if (batch.getLength() == 0) {
+            return;
+        }
+
+        ArrayList<Object> items = batch;
+        batch = new ArrayList<>();
+        flushTime = System.nanoTime();
+
+        if (executor == null) {
+            listener.itemsReceived(query, items);
+        } else {
+            // Wait for the listener to catch up, but stop if the query is aborted
+            try {
+                while (!pendingBatches.tryAcquire(FLUSH_INTERVAL, TimeUnit.NANOSECONDS)) {
+                    if (aborted.getAsBoolean()) {
+                        throw new AbortException();
+                    }
+                }
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new AbortException();
+            }
+
+            executor.execute(() -> {
+                try {
+                    listener.itemsReceived(query, items);
+                } finally {
+                    pendingBatches.release();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web;
+
+import org.apache.pivot.collections.List;
+
+/**
+ * Query stream listener interface. A stream listener receives the items of a
+ * list response in batches while the response is still being read.
+ *
+ * @see Query#setStreamListener(QueryStreamListener)
+ */
+public interface QueryStreamListener {
+    /**
+     * Called when a batch of items has been read from the response. The
+     * query's {@link Query#getProgress() progress} reflects the bytes read so
+     * far.
+     *
+     * @param query The source of the event.
+     * @param items The items read since the previous batch.
+     */
+    public void itemsReceived(Query<?> query, List<?> items);
+}
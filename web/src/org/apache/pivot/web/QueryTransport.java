@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+
+/**
+ * Strategy used by {@link Query} to carry out HTTP exchanges. A transport
+ * decides how connections are established, pooled and timed out; the query
+ * takes care of serialization, listeners and status handling.
+ *
+ * @see Query#setDefaultTransport(QueryTransport)
+ * @see Query#setTransport(QueryTransport)
+ */
+public interface QueryTransport {
+    /**
+     * A single HTTP exchange. The methods are called in the order in which
+     * they are declared; the request is sent no later than the first call to
+     * {@link #getStatus()}. {@link #close()} is always called when the query
+     * is done with the exchange and should return the underlying connection to
+     * its pool if possible.
+     */
+    public interface Connection extends Closeable {
+        /**
+         * Adds a request header.
+         *
+         * @param key The header name.
+         * @param value The header value.
+         */
+        public void addRequestHeader(String key, String value);
+
+        /**
+         * Establishes the connection, if the transport does so before the
+         * request body is written.
+         *
+         * @throws IOException If the connection cannot be established.
+         */
+        public void connect() throws IOException;
+
+        /**
+         * @return The stream that the request body is written to.
+         * @throws IOException If the stream cannot be opened.
+         */
+        public OutputStream getOutputStream() throws IOException;
+
+        /**
+         * @return The HTTP status code of the response.
+         * @throws IOException If the response cannot be read.
+         */
+        public int getStatus() throws IOException;
+
+        /**
+         * @return The HTTP reason phrase of the response, or <tt>null</tt> if
+         * it is not available.
+         * @throws IOException If the response cannot be read.
+         */
+        public String getStatusMessage() throws IOException;
+
+        /**
+         * @return The value of the <tt>Content-Length</tt> response header, or
+         * <tt>-1</tt> if it is not known.
+         */
+        public long getContentLength();
+
+        /**
+         * Copies the response headers.
+         *
+         * @param responseHeaders The dictionary to add the headers to.
+         */
+        public void getResponseHeaders(QueryDictionary responseHeaders);
+
+        /**
+         * @return The stream that the response body is read from.
+         * @throws IOException If the stream cannot be opened.
+         */
+        public InputStream getInputStream() throws IOException;
+
+        /**
+         * Forcibly closes the connection, releasing any thread blocked on it.
+         * Called when the query is aborted or times out.
+         */
+        public void disconnect();
+
+        /**
+         * Releases the exchange.
+         */
+        @Override
+        public void close();
+    }
+
+    /**
+     * Opens an exchange.
+     *
+     * @param query The query being executed.
+     * @param method The HTTP method.
+     * @param location The URL of the request, including its query string.
+     * @param hasBody Whether a request body will be written.
+     * @return The new exchange.
+     * @throws IOException If the exchange cannot be opened.
+     */
+    public Connection open(Query<?> query, Query.Method method, URL location, boolean hasBody)
+        throws IOException;
+}
@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import javax.net.ssl.HttpsURLConnection;
+
+/**
+ * Query transport built on {@link HttpURLConnection}. Connections are kept
+ * alive and reused by the JDK's HTTP handler when a response body has been
+ * read completely (see the <tt>http.keepAlive</tt> and
+ * <tt>http.maxConnections</tt> system properties). This transport supports the
+ * query's {@link Query#setProxy(java.net.Proxy) proxy} and
+ * {@link Query#setHostnameVerifier(javax.net.ssl.HostnameVerifier) hostname
+ * verifier}.
+ */
+public class URLConnectionTransport implements QueryTransport {
+    private static class URLConnection implements QueryTransport.Connection {
+        private final HttpURLConnection connection;
+        private InputStream inputStream = null;
+
+        public URLConnection(HttpURLConnection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public void addRequestHeader(String key, String value) {
+            connection.addRequestProperty(key, value);
+        }
+
+        @Override
+        public void connect() throws IOException {
+            connection.connect();
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            return connection.getOutputStream();
+        }
+
+        @Override
+        public int getStatus() throws IOException {
+            return connection.getResponseCode();
+        }
+
+        @Override
+        public String getStatusMessage() throws IOException {
+            return connection.getResponseMessage();
+        }
+
+        @Override
+        public long getContentLength() {
+            return connection.getContentLengthLong();
+        }
+
+        @Override
+        public void getResponseHeaders(QueryDictionary responseHeaders) {
+            // NOTE Header indexes start at 1, not 0
+            int i = 1;
+            for (String key = connection.getHeaderFieldKey(i); key != null; key = connection.getHeaderFieldKey(++i)) {
+                responseHeaders.add(key, connection.getHeaderField(i));
+            }
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            inputStream = connection.getInputStream();
+            return inputStream;
+        }
+
+        @Override
+        public void disconnect() {
+            connection.disconnect();
+        }
+
+        @Override
+        public void close() {
+            // Closing (rather than disconnecting) leaves the connection in the
+            // keep-alive cache
+            if (inputStream != null) {
+                try {
+                    inputStream.close();
+                } catch (IOException exception) {
+                    // No-op
+                }
+            }
+        }
+    }
+
+    @Override
+    public QueryTransport.Connection open(Query<?> query, Query.Method method, URL location, boolean hasBody)
+        throws IOException {
+        HttpURLConnection connection;
+        if (query.getProxy() == null) {
+            connection = (HttpURLConnection) location.openConnection();
+        } else {
+            connection = (HttpURLConnection) location.openConnection(query.getProxy());
+        }
+
+        long timeout = query.getTimeout();
+        if (timeout != Long.MAX_VALUE) {
+            int connectionTimeout = (int) Math.min(Math.max(timeout, 1), Integer.MAX_VALUE);
+            connection.setConnectTimeout(connectionTimeout);
+            connection.setReadTimeout(connectionTimeout);
+        }
+
+        connection.setRequestMethod(method.toString());
+        connection.setAllowUserInteraction(false);
+        connection.setInstanceFollowRedirects(false);
+        connection.setUseCaches(false);
+
+        if (connection instanceof HttpsURLConnection && query.getHostnameVerifier() != null) {
+            HttpsURLConnection httpsConnection = (HttpsURLConnection) connection;
+            httpsConnection.setHostnameVerifier(query.getHostnameVerifier());
+        }
+
+        // Set the input/output state
+        connection.setDoInput(true);
+        connection.setDoOutput(hasBody);
+
+        return new URLConnection(connection);
+    }
+}
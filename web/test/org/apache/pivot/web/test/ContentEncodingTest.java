@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import org.apache.pivot.collections.List;
+import org.apache.pivot.web.ContentEncoding;
+import org.apache.pivot.web.GetQuery;
+import org.apache.pivot.web.PostQuery;
+import org.apache.pivot.web.QueryException;
+import org.apache.pivot.web.URLConnectionTransport;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+public class ContentEncodingTest {
+    static {
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private static byte[] encode(ContentEncoding encoding, byte[] bytes) throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try (OutputStream outputStream = encoding.encode(byteArrayOutputStream)) {
+            outputStream.write(bytes);
+        }
+
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    private static byte[] readFully(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        for (int n = inputStream.read(buffer); n != -1; n = inputStream.read(buffer)) {
+            outputStream.write(buffer, 0, n);
+        }
+
+        return outputStream.toByteArray();
+    }
+
+    @Test
+    public void testNegotiate() {
+        assertEquals(ContentEncoding.IDENTITY, ContentEncoding.negotiate(null));
+        assertEquals(ContentEncoding.IDENTITY, ContentEncoding.negotiate("br"));
+        assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("deflate, gzip"));
+        assertEquals(ContentEncoding.DEFLATE, ContentEncoding.negotiate("gzip;q=0.5, deflate"));
+        assertEquals(ContentEncoding.DEFLATE, ContentEncoding.negotiate("gzip;q=0, *"));
+        assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("*"));
+
+        assertEquals(ContentEncoding.IDENTITY, ContentEncoding.fromName(null));
+        assertEquals(ContentEncoding.GZIP, ContentEncoding.fromName("x-gzip"));
+        assertNull(ContentEncoding.fromName("br"));
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        byte[] bytes = "[1, 2, 3, 4, 5, 6, 7, 8, 9, 10]".getBytes(StandardCharsets.UTF_8);
+
+        for (ContentEncoding encoding : ContentEncoding.values()) {
+            byte[] encodedBytes = encode(encoding, bytes);
+            assertEquals(new String(bytes, StandardCharsets.UTF_8), new String(
+                readFully(encoding.decode(new ByteArrayInputStream(encodedBytes))), StandardCharsets.UTF_8));
+        }
+
+        // Raw deflate data, as sent by some servers
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try (OutputStream outputStream = new DeflaterOutputStream(byteArrayOutputStream,
+            new Deflater(Deflater.DEFAULT_COMPRESSION, true))) {
+            outputStream.write(bytes);
+        }
+
+        InputStream inputStream = ContentEncoding.DEFLATE.decode(
+            new ByteArrayInputStream(byteArrayOutputStream.toByteArray()));
+        assertEquals(new String(bytes, StandardCharsets.UTF_8),
+            new String(readFully(inputStream), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testQuery() throws IOException, QueryException {
+        StringBuilder listBuilder = new StringBuilder("[0");
+        for (int i = 1; i < 1000; i++) {
+            listBuilder.append(", ").append(i);
+        }
+        listBuilder.append("]");
+        byte[] body = listBuilder.toString().getBytes(StandardCharsets.UTF_8);
+
+        String[] received = new String[2];
+
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/list", exchange -> {
+            received[0] = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            ContentEncoding encoding = ContentEncoding.negotiate(received[0]);
+
+            byte[] responseBody = encode(encoding, body);
+            if (encoding != ContentEncoding.IDENTITY) {
+                exchange.getResponseHeaders().add("Content-Encoding", encoding.getName());
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, responseBody.length);
+
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(responseBody);
+            }
+        });
+        server.createContext("/echo", exchange -> {
+            ContentEncoding encoding = ContentEncoding.fromName(
+                exchange.getRequestHeaders().getFirst("Content-Encoding"));
+            received[1] = new String(readFully(encoding.decode(exchange.getRequestBody())), StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        server.start();
+
+        try {
+            int port = server.getAddress().getPort();
+
+            GetQuery getQuery = new GetQuery("localhost", port, "/list", false);
+            getQuery.setTransport(new URLConnectionTransport());
+            List<?> list = (List<?>) getQuery.execute();
+            assertEquals(ContentEncoding.ACCEPT_ENCODING, received[0]);
+            assertEquals(1000, list.getLength());
+            assertEquals(999, list.get(999));
+
+            // Progress counts the bytes on the wire
+            assertEquals(getQuery.getBytesExpected(), getQuery.getBytesReceived());
+            assertTrue(getQuery.getBytesReceived() < body.length);
+
+            getQuery.setCompressionAccepted(false);
+            list = (List<?>) getQuery.execute();
+            assertNull(received[0]);
+            assertEquals(1000, list.getLength());
+
+            PostQuery postQuery = new PostQuery("localhost", port, "/echo", false);
+            postQuery.setRequestEncoding(ContentEncoding.GZIP);
+            postQuery.setValue(list);
+            postQuery.execute();
+            assertTrue(listBuilder.toString().equals(received[1]));
+        } finally {
+            server.stop(0);
+        }
+    }
+}
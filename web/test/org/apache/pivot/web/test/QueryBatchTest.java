@@ -0,0 +1,358 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.HashMap;
+import org.apache.pivot.collections.List;
+import org.apache.pivot.collections.Map;
+import org.apache.pivot.json.JSONSerializer;
+import org.apache.pivot.serialization.SerializationException;
+import org.apache.pivot.util.concurrent.AbortException;
+import org.apache.pivot.util.concurrent.Task;
+import org.apache.pivot.util.concurrent.TaskExecutionException;
+import org.apache.pivot.util.concurrent.TaskListener;
+import org.apache.pivot.web.GetQuery;
+import org.apache.pivot.web.Query;
+import org.apache.pivot.web.QueryBatch;
+import org.apache.pivot.web.QueryException;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+public class QueryBatchTest extends EmbeddedServerTestCase {
+    private AtomicInteger requestCount = new AtomicInteger();
+    private AtomicInteger running = new AtomicInteger();
+    private AtomicInteger maxRunning = new AtomicInteger();
+
+    private CountDownLatch gateArrived = new CountDownLatch(1);
+    private CountDownLatch gate = new CountDownLatch(1);
+
+    @Override
+    protected void createContexts(HttpServer server) throws IOException {
+        // Echoes the query string after a delay, tracking concurrent requests
+        server.createContext("/slow", exchange -> {
+            requestCount.incrementAndGet();
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+
+            running.decrementAndGet();
+            send(exchange, 200, "\"" + exchange.getRequestURI().getQuery() + "\"");
+        });
+
+        server.createContext("/missing", exchange -> send(exchange, 404, ""));
+
+        server.createContext("/object", exchange -> {
+            requestCount.incrementAndGet();
+            send(exchange, 200, "{\"query\": \"" + exchange.getRequestURI().getQuery() + "\"}");
+        });
+
+        // Holds requests until the gate is opened
+        server.createContext("/gate", exchange -> {
+            requestCount.incrementAndGet();
+            gateArrived.countDown();
+
+            try {
+                gate.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+
+            send(exchange, 200, "\"" + exchange.getRequestURI().getQuery() + "\"");
+        });
+
+        // Answers a batch of requests with the paths that were requested
+        server.createContext("/app/_batch", exchange -> {
+            requestCount.incrementAndGet();
+
+            try {
+                List<?> requests = (List<?>) new JSONSerializer().readObject(exchange.getRequestBody());
+
+                ArrayList<Object> responses = new ArrayList<>();
+                for (Object request : requests) {
+                    @SuppressWarnings("unchecked")
+                    String path = (String) ((Map<String, Object>) request).get(QueryBatch.PATH_KEY);
+
+                    HashMap<String, Object> response = new HashMap<>();
+                    if (path.equals("/missing")) {
+                        response.put(QueryBatch.STATUS_KEY, Integer.valueOf(404));
+                    } else {
+                        response.put(QueryBatch.STATUS_KEY, Integer.valueOf(200));
+                        response.put(QueryBatch.VALUE_KEY, path);
+                    }
+
+                    responses.add(response);
+                }
+
+                send(exchange, 200, JSONSerializer.toString(responses));
+            } catch (SerializationException exception) {
+                send(exchange, 400, "");
+            }
+        });
+    }
+
+    private GetQuery createQuery(String path, int i) {
+        GetQuery query = new GetQuery("localhost", port, path, false);
+        query.getParameters().put("i", Integer.toString(i));
+        return query;
+    }
+
+    @Test
+    public void testConcurrencyPerHost() throws TaskExecutionException {
+        QueryBatch batch = new QueryBatch();
+        batch.setMaxConcurrencyPerHost(2);
+
+        GetQuery[] queries = new GetQuery[8];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = createQuery("/slow", i);
+            batch.add(queries[i]);
+        }
+
+        batch.execute();
+
+        for (int i = 0; i < queries.length; i++) {
+            assertEquals("i=" + i, batch.getResult(queries[i]));
+            assertEquals(Query.Status.OK, queries[i].getStatus());
+        }
+
+        assertEquals(8, requestCount.get());
+        assertTrue(maxRunning.get() <= 2);
+    }
+
+    @Test
+    public void testSingleFlight() throws TaskExecutionException {
+        QueryBatch batch = new QueryBatch();
+
+        GetQuery[] queries = new GetQuery[5];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = createQuery("/slow", 1);
+            batch.add(queries[i]);
+        }
+
+        GetQuery other = createQuery("/slow", 2);
+        batch.add(other);
+
+        batch.execute();
+
+        assertEquals(2, requestCount.get());
+        for (int i = 0; i < queries.length; i++) {
+            assertSame(batch.getResult(queries[0]), batch.getResult(queries[i]));
+            assertEquals(Query.Status.OK, queries[i].getStatus());
+        }
+
+        assertEquals("i=2", batch.getResult(other));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSingleFlightCopies() throws TaskExecutionException {
+        QueryBatch batch = new QueryBatch();
+
+        GetQuery[] queries = new GetQuery[3];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = createQuery("/object", 1);
+            batch.add(queries[i]);
+        }
+
+        batch.execute();
+        assertEquals(1, requestCount.get());
+
+        // Each query gets its own copy of a mutable result
+        Map<String, Object> first = (Map<String, Object>) batch.getResult(queries[0]);
+        first.put("query", "changed");
+
+        for (int i = 1; i < queries.length; i++) {
+            Map<String, Object> result = (Map<String, Object>) batch.getResult(queries[i]);
+            assertNotSame(first, result);
+            assertEquals("i=1", result.get("query"));
+        }
+    }
+
+    private static class Listener implements TaskListener<Void> {
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private volatile Throwable fault = null;
+
+        @Override
+        public void taskExecuted(Task<Void> task) {
+            latch.countDown();
+        }
+
+        @Override
+        public void executeFailed(Task<Void> task) {
+            fault = task.getFault();
+            latch.countDown();
+        }
+
+        public boolean await() throws InterruptedException {
+            return latch.await(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testAbortOtherBatch() throws InterruptedException {
+        GetQuery leader = createQuery("/gate", 0);
+        QueryBatch leaderBatch = new QueryBatch();
+        leaderBatch.add(leader);
+
+        GetQuery follower = createQuery("/gate", 0);
+        QueryBatch followerBatch = new QueryBatch();
+        followerBatch.add(follower);
+
+        Listener leaderListener = new Listener();
+        leaderBatch.execute(leaderListener);
+        assertTrue(gateArrived.await(10, TimeUnit.SECONDS));
+
+        // The follower joins the leader's request, which is then aborted
+        Listener followerListener = new Listener();
+        followerBatch.execute(followerListener);
+        leaderBatch.abort();
+
+        assertTrue(leaderListener.await());
+        assertTrue(leaderListener.fault instanceof AbortException);
+        assertTrue(leaderBatch.getFault(leader) instanceof AbortException);
+
+        gate.countDown();
+
+        // The follower's query was sent again for its own batch
+        assertTrue(followerListener.await());
+        assertNull(followerListener.fault);
+        assertEquals("i=0", followerBatch.getResult(follower));
+        assertEquals(2, requestCount.get());
+    }
+
+    @Test
+    public void testAsynchronousWithoutThread() throws InterruptedException {
+        // The batch never uses its executor: it completes from the callbacks of
+        // its queries
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        executorService.shutdown();
+
+        QueryBatch batch = new QueryBatch(executorService);
+        GetQuery query = createQuery("/slow", 0);
+        batch.add(query);
+
+        Listener listener = new Listener();
+        batch.execute(listener);
+
+        assertTrue(listener.await());
+        assertNull(listener.fault);
+        assertEquals("i=0", batch.getResult(query));
+    }
+
+    @Test
+    public void testEmpty() throws InterruptedException, TaskExecutionException {
+        QueryBatch batch = new QueryBatch();
+        batch.execute();
+
+        Listener listener = new Listener();
+        batch.execute(listener);
+        assertTrue(listener.await());
+        assertNull(listener.fault);
+    }
+
+    @Test
+    public void testFault() throws TaskExecutionException {
+        QueryBatch batch = new QueryBatch();
+
+        GetQuery missing = createQuery("/missing", 0);
+        GetQuery found = createQuery("/slow", 0);
+        batch.add(missing);
+        batch.add(found);
+
+        // A failing query does not fail the batch
+        batch.execute();
+
+        assertNull(batch.getResult(missing));
+        assertEquals(404, ((QueryException) batch.getFault(missing)).getStatus());
+        assertEquals("i=0", batch.getResult(found));
+        assertNull(batch.getFault(found));
+    }
+
+    @Test
+    public void testBatchPath() throws TaskExecutionException {
+        QueryBatch batch = new QueryBatch();
+        batch.setBatchPath("/app/_batch");
+
+        GetQuery a = new GetQuery("localhost", port, "/app/a", false);
+        GetQuery b = new GetQuery("localhost", port, "/app/b/c", false);
+        GetQuery missing = new GetQuery("localhost", port, "/app/missing", false);
+        batch.add(a);
+        batch.add(b);
+        batch.add(missing);
+
+        batch.execute();
+
+        assertEquals(1, requestCount.get());
+        assertEquals("/a", batch.getResult(a));
+        assertEquals("/b/c", batch.getResult(b));
+        assertEquals(Query.Status.OK, b.getStatus());
+        assertEquals(404, ((QueryException) batch.getFault(missing)).getStatus());
+        assertEquals(404, missing.getStatus());
+    }
+
+    @Test
+    public void testAsynchronous() throws InterruptedException {
+        QueryBatch batch = new QueryBatch();
+
+        GetQuery[] queries = new GetQuery[4];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = createQuery("/slow", i);
+            batch.add(queries[i]);
+        }
+
+        CountDownLatch latch = new CountDownLatch(1);
+        boolean[] succeeded = new boolean[1];
+
+        batch.execute(new TaskListener<Void>() {
+            @Override
+            public void taskExecuted(Task<Void> task) {
+                succeeded[0] = true;
+                latch.countDown();
+            }
+
+            @Override
+            public void executeFailed(Task<Void> task) {
+                latch.countDown();
+            }
+        });
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertTrue(succeeded[0]);
+
+        for (int i = 0; i < queries.length; i++) {
+            assertEquals("i=" + i, batch.getResult(queries[i]));
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.pivot.collections.Map;
+import org.apache.pivot.web.GetQuery;
+import org.apache.pivot.web.QueryCache;
+import org.apache.pivot.web.QueryException;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class QueryCacheTest extends EmbeddedServerTestCase {
+    private static final String BODY = "{\"price\": 42}";
+    private static final String ETAG = "\"v1\"";
+
+    private AtomicInteger requestCount = new AtomicInteger();
+    private AtomicInteger notModifiedCount = new AtomicInteger();
+
+    @Override
+    protected void createContexts(HttpServer server) throws IOException {
+        server.createContext("/fresh", exchange -> respond(exchange, "max-age=60"));
+        server.createContext("/etag", exchange -> {
+            if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                requestCount.incrementAndGet();
+                notModifiedCount.incrementAndGet();
+                exchange.getResponseHeaders().add("ETag", ETAG);
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+            } else {
+                exchange.getResponseHeaders().add("ETag", ETAG);
+                respond(exchange, "no-cache");
+            }
+        });
+        server.createContext("/nostore", exchange -> respond(exchange, "no-store"));
+    }
+
+    private void respond(HttpExchange exchange, String cacheControl) throws IOException {
+        requestCount.incrementAndGet();
+
+        exchange.getResponseHeaders().add("Cache-Control", cacheControl);
+        send(exchange, 200, BODY);
+    }
+
+    private Object get(QueryCache cache, String path) throws QueryException {
+        GetQuery query = new GetQuery("localhost", port, path, false);
+        query.setCache(cache);
+
+        Object value = query.execute();
+        assertEquals(200, query.getStatus());
+
+        return value;
+    }
+
+    @Test
+    public void testFresh() throws QueryException {
+        QueryCache cache = new QueryCache();
+
+        Object value = get(cache, "/fresh");
+        assertSame(value, get(cache, "/fresh"));
+        assertEquals(1, requestCount.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testCopyResults() throws QueryException {
+        QueryCache cache = new QueryCache();
+        cache.setCopyResults(true);
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> map = (Map<String, Object>) get(cache, "/fresh");
+        map.put("price", 0);
+
+        // Each hit is a new copy, so changes made by earlier callers are not seen
+        @SuppressWarnings("unchecked")
+        Map<String, Object> cachedMap = (Map<String, Object>) get(cache, "/fresh");
+        assertNotSame(map, cachedMap);
+        assertEquals(42, cachedMap.get("price"));
+        assertEquals(1, requestCount.get());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void testRevalidate() throws QueryException {
+        QueryCache cache = new QueryCache();
+
+        Object value = get(cache, "/etag");
+        assertSame(value, get(cache, "/etag"));
+        assertSame(value, get(cache, "/etag"));
+        assertEquals(3, requestCount.get());
+        assertEquals(2, notModifiedCount.get());
+        assertEquals(2, cache.getRevalidationCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    public void testNoStore() throws QueryException {
+        QueryCache cache = new QueryCache();
+
+        get(cache, "/nostore");
+        get(cache, "/nostore");
+        assertEquals(2, requestCount.get());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(0, cache.getCount());
+    }
+
+    @Test
+    public void testDisk() throws IOException, QueryException {
+        File directory = Files.createTempDirectory("pivot-query-cache").toFile();
+
+        try {
+            get(new QueryCache(QueryCache.DEFAULT_CAPACITY, directory), "/fresh");
+
+            // A new cache on the same directory picks the response up from disk
+            QueryCache cache = new QueryCache(QueryCache.DEFAULT_CAPACITY, directory);
+
+            @SuppressWarnings("unchecked")
+            Map<String, Object> map = (Map<String, Object>) get(cache, "/fresh");
+            assertEquals(42, map.get("price"));
+            assertSame(map, get(cache, "/fresh"));
+            assertEquals(1, requestCount.get());
+            assertEquals(2, cache.getHitCount());
+
+            cache.clear();
+            assertEquals(0, directory.listFiles().length);
+        } finally {
+            for (File file : directory.listFiles()) {
+                file.delete();
+            }
+
+            directory.delete();
+        }
+    }
+}
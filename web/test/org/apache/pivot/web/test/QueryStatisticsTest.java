@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.apache.pivot.util.concurrent.TaskExecutionException;
+import org.apache.pivot.web.GetQuery;
+import org.apache.pivot.web.PostQuery;
+import org.apache.pivot.web.Query;
+import org.apache.pivot.web.QueryException;
+import org.apache.pivot.web.QueryListener;
+import org.apache.pivot.web.QueryMetrics;
+import org.apache.pivot.web.QueryStatistics;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+public class QueryStatisticsTest extends EmbeddedServerTestCase {
+    private static final String BODY = "[1, 2, 3]";
+
+    @Override
+    protected void createContexts(HttpServer server) throws IOException {
+        server.createContext("/list", exchange -> send(exchange, 200, BODY));
+        server.createContext("/missing", exchange -> send(exchange, 404, ""));
+        server.createContext("/items", exchange -> {
+            try (InputStream inputStream = exchange.getRequestBody()) {
+                while (inputStream.read() != -1) {
+                    // Discard the request body
+                }
+            }
+
+            send(exchange, 204, "");
+        });
+    }
+
+    @Test
+    public void testGet() throws TaskExecutionException {
+        QueryStatistics statistics = new QueryStatistics();
+
+        GetQuery query = new GetQuery("localhost", port, "/list", false);
+        query.setMetrics(statistics);
+        assertEquals(-1, query.getPhaseTime(QueryMetrics.Phase.READ));
+
+        long[] readTime = new long[] {-1};
+        query.getQueryListeners().add(new QueryListener<Object>() {
+            @Override
+            public void responseReceived(Query<Object> queryArgument) {
+                readTime[0] = queryArgument.getPhaseTime(QueryMetrics.Phase.READ);
+            }
+        });
+
+        query.execute();
+
+        assertTrue(readTime[0] >= 0);
+        assertEquals(-1, query.getPhaseTime(QueryMetrics.Phase.WRITE));
+        assertTrue(query.getPhaseTime(QueryMetrics.Phase.CONNECT) >= 0);
+        assertTrue(query.getPhaseTime(QueryMetrics.Phase.WAIT) >= 0);
+
+        assertEquals(1, statistics.getRequestCount());
+        assertEquals(1, statistics.getSuccessCount());
+        assertEquals(0, statistics.getInFlightCount());
+        assertEquals(BODY.length(), statistics.getBytesReceived());
+        assertEquals(0, statistics.getBytesSent());
+
+        assertEquals(1, statistics.getLatency().getCount());
+        assertEquals(1, statistics.getPhaseLatency(QueryMetrics.Phase.CONNECT).getCount());
+        assertEquals(1, statistics.getPhaseLatency(QueryMetrics.Phase.WAIT).getCount());
+        assertEquals(1, statistics.getPhaseLatency(QueryMetrics.Phase.READ).getCount());
+        assertEquals(0, statistics.getPhaseLatency(QueryMetrics.Phase.WRITE).getCount());
+    }
+
+    @Test
+    public void testPost() throws TaskExecutionException {
+        QueryStatistics statistics = new QueryStatistics();
+
+        PostQuery query = new PostQuery("localhost", port, "/items", false);
+        query.setMetrics(statistics);
+        query.setValue("abc");
+        query.execute();
+
+        assertEquals(1, statistics.getSuccessCount());
+        assertEquals("\"abc\"".length(), statistics.getBytesSent());
+        assertEquals(1, statistics.getPhaseLatency(QueryMetrics.Phase.WRITE).getCount());
+        assertTrue(query.getPhaseTime(QueryMetrics.Phase.WRITE) >= 0);
+    }
+
+    @Test
+    public void testDefaultMetrics() throws TaskExecutionException {
+        QueryStatistics statistics = new QueryStatistics();
+        Query.setDefaultMetrics(statistics);
+
+        try {
+            new GetQuery("localhost", port, "/list", false).execute();
+
+            try {
+                new GetQuery("localhost", port, "/missing", false).execute();
+                fail("Expected a QueryException.");
+            } catch (QueryException exception) {
+                assertEquals(404, exception.getStatus());
+            }
+        } finally {
+            Query.setDefaultMetrics(null);
+        }
+
+        assertNull(Query.getDefaultMetrics());
+        assertEquals(2, statistics.getRequestCount());
+        assertEquals(1, statistics.getSuccessCount());
+        assertEquals(1, statistics.getClientErrorCount());
+        assertEquals(0, statistics.getInFlightCount());
+
+        statistics.reset();
+        assertEquals(0, statistics.getRequestCount());
+        assertEquals(0, statistics.getLatency().getCount());
+    }
+
+    @Test
+    public void testRegister() throws JMException {
+        QueryStatistics statistics = new QueryStatistics();
+        statistics.requestStarted(Query.Method.GET, "/a").completed(200, 10, 0, 1000);
+        statistics.requestStarted(Query.Method.GET, "/b").completed(503, -1, -1, 3000);
+
+        ObjectName objectName = statistics.register("test");
+        try {
+            assertEquals(Long.valueOf(2),
+                ManagementFactory.getPlatformMBeanServer().getAttribute(objectName, "RequestCount"));
+            assertEquals(Long.valueOf(1),
+                ManagementFactory.getPlatformMBeanServer().getAttribute(objectName, "ServerErrorCount"));
+        } finally {
+            QueryStatistics.unregister(objectName);
+        }
+
+        assertEquals(10, statistics.getBytesReceived());
+        assertEquals(3000, statistics.getMaxLatency());
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.List;
+import org.apache.pivot.collections.Map;
+import org.apache.pivot.serialization.CSVSerializer;
+import org.apache.pivot.util.concurrent.AbortException;
+import org.apache.pivot.web.GetQuery;
+import org.apache.pivot.web.QueryException;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+public class QueryStreamTest extends EmbeddedServerTestCase {
+    private CountDownLatch firstBatchReceived = new CountDownLatch(1);
+
+    @Override
+    protected void createContexts(HttpServer server) throws IOException {
+        // Sends half of the array, then waits for the client to stream it
+        server.createContext("/json", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, 0);
+
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write("[{\"a\": [1, 2]}, {\"a\": [3]}, ".getBytes(StandardCharsets.UTF_8));
+                outputStream.flush();
+
+                try {
+                    firstBatchReceived.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                }
+
+                outputStream.write("{\"a\": []}, 4]".getBytes(StandardCharsets.UTF_8));
+            }
+        });
+
+        server.createContext("/csv", exchange -> {
+            StringBuilder csvBuilder = new StringBuilder();
+            for (int i = 0; i < 100; i++) {
+                csvBuilder.append(i).append(",row").append(i).append("\r\n");
+            }
+
+            byte[] bytes = csvBuilder.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/csv");
+            exchange.sendResponseHeaders(200, bytes.length);
+
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(bytes);
+            }
+        });
+    }
+
+    @Test
+    public void testJSON() throws QueryException {
+        ArrayList<Object> streamedItems = new ArrayList<>();
+        int[] batchCount = new int[1];
+
+        GetQuery query = new GetQuery("localhost", port, "/json", false);
+        query.setStreamBatchSize(2);
+        query.setStreamListener((source, items) -> {
+            for (Object item : items) {
+                streamedItems.add(item);
+            }
+
+            batchCount[0]++;
+            firstBatchReceived.countDown();
+        });
+
+        // The first batch arrives before the server sends the rest of the array
+        List<?> result = (List<?>) query.execute();
+
+        assertEquals(4, result.getLength());
+        assertEquals(4, streamedItems.getLength());
+        assertEquals(2, batchCount[0]);
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(result.get(i) == streamedItems.get(i));
+        }
+
+        @SuppressWarnings("unchecked")
+        Map<String, List<?>> first = (Map<String, List<?>>) streamedItems.get(0);
+        assertEquals(2, first.get("a").getLength());
+    }
+
+    @Test
+    public void testCSV() throws QueryException {
+        ArrayList<Object> streamedItems = new ArrayList<>();
+
+        GetQuery query = new GetQuery("localhost", port, "/csv", false);
+        CSVSerializer csvSerializer = new CSVSerializer();
+        csvSerializer.setKeys("id", "name");
+        query.setSerializer(csvSerializer);
+        query.setStreamBatchSize(16);
+        query.setStreamListener((source, items) -> {
+            assertTrue(items.getLength() <= 16);
+
+            for (Object item : items) {
+                streamedItems.add(item);
+            }
+        });
+
+        List<?> result = (List<?>) query.execute();
+        assertEquals(100, result.getLength());
+        assertEquals(100, streamedItems.getLength());
+        assertEquals(1.0f, query.getProgress(), 0);
+    }
+
+    @Test
+    public void testBackPressure() throws Exception {
+        LinkedBlockingQueue<Runnable> pendingBatches = new LinkedBlockingQueue<>();
+        GetQuery query = new GetQuery("localhost", port, "/csv", false);
+        CSVSerializer csvSerializer = new CSVSerializer();
+        csvSerializer.setKeys("id", "name");
+        query.setSerializer(csvSerializer);
+        query.setStreamBatchSize(1);
+        query.setStreamListener((source, items) -> {
+            // No-op
+        });
+
+        // An executor that never runs its batches
+        query.setStreamExecutor(pendingBatches::add);
+
+        Thread thread = new Thread(() -> {
+            try {
+                query.execute();
+                fail("Expected the query to be aborted.");
+            } catch (AbortException exception) {
+                // Expected
+            } catch (QueryException exception) {
+                fail(exception.toString());
+            }
+        });
+        thread.start();
+
+        // Reading stops once the maximum number of batches are pending
+        Thread.sleep(500);
+        assertEquals(4, pendingBatches.size());
+        assertTrue(thread.isAlive());
+
+        query.abort();
+        thread.join(5000);
+        assertTrue(!thread.isAlive());
+    }
+}
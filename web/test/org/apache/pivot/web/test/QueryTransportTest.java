@@ -0,0 +1,225 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.web.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.pivot.collections.Map;
+import org.apache.pivot.util.concurrent.AbortException;
+import org.apache.pivot.web.GetQuery;
+import org.apache.pivot.web.HttpClientTransport;
+import org.apache.pivot.web.PostQuery;
+import org.apache.pivot.web.Query;
+import org.apache.pivot.web.QueryException;
+import org.apache.pivot.web.QueryTransport;
+import org.apache.pivot.web.URLConnectionTransport;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Runs queries against an embedded server with each transport, and compares
+ * their throughput.
+ */
+public class QueryTransportTest extends EmbeddedServerTestCase {
+    private static final int ITERATIONS = 200;
+
+    private AtomicInteger connectionCount = new AtomicInteger();
+    private CountDownLatch slowStarted = new CountDownLatch(1);
+    private CountDownLatch slowLatch = new CountDownLatch(1);
+
+    @Override
+    protected void createContexts(HttpServer server) throws IOException {
+        server.createContext("/value", exchange -> {
+            respond(exchange, 200, "{\"a\": 1, \"b\": \"two\"}");
+        });
+
+        server.createContext("/echo", exchange -> {
+            byte[] body = readFully(exchange.getRequestBody());
+            exchange.getResponseHeaders().add("Location", "/echo/1");
+            exchange.getResponseHeaders().add("X-Echo", new String(body, StandardCharsets.UTF_8));
+            respond(exchange, 201, null);
+        });
+
+        server.createContext("/missing", exchange -> {
+            respond(exchange, 404, "{}");
+        });
+
+        server.createContext("/slow", exchange -> {
+            slowStarted.countDown();
+
+            try {
+                slowLatch.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+
+            respond(exchange, 200, "{}");
+        });
+    }
+
+    private void respond(HttpExchange exchange, int status, String body) throws IOException {
+        connectionCount.incrementAndGet();
+        readFully(exchange.getRequestBody());
+
+        send(exchange, status, (body == null) ? "" : body);
+        exchange.close();
+    }
+
+    private static byte[] readFully(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        for (int n = inputStream.read(buffer); n != -1; n = inputStream.read(buffer)) {
+            outputStream.write(buffer, 0, n);
+        }
+
+        return outputStream.toByteArray();
+    }
+
+    private void testTransport(QueryTransport transport) throws QueryException {
+        GetQuery getQuery = new GetQuery("localhost", port, "/value", false);
+        getQuery.setTransport(transport);
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> value = (Map<String, Object>) getQuery.execute();
+        assertEquals(200, getQuery.getStatus());
+        assertEquals(1, value.get("a"));
+        assertEquals("two", value.get("b"));
+        assertEquals(20, getQuery.getBytesExpected());
+
+        PostQuery postQuery = new PostQuery("localhost", port, "/echo", false);
+        postQuery.setTransport(transport);
+        postQuery.setValue("hello");
+        postQuery.execute();
+        assertEquals(201, postQuery.getStatus());
+        assertEquals("\"hello\"", postQuery.getResponseHeaders().get("X-Echo"));
+
+        GetQuery missingQuery = new GetQuery("localhost", port, "/missing", false);
+        missingQuery.setTransport(transport);
+        try {
+            missingQuery.execute();
+            fail("Expected a QueryException.");
+        } catch (QueryException exception) {
+            assertEquals(404, exception.getStatus());
+        }
+    }
+
+    private long benchmark(QueryTransport transport) throws QueryException {
+        long start = System.nanoTime();
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            GetQuery getQuery = new GetQuery("localhost", port, "/value", false);
+            getQuery.setTransport(transport);
+            getQuery.execute();
+        }
+
+        return (System.nanoTime() - start) / ITERATIONS;
+    }
+
+    @Test
+    public void testURLConnectionTransport() throws QueryException {
+        testTransport(new URLConnectionTransport());
+    }
+
+    @Test
+    public void testHttpClientTransport() throws QueryException {
+        if (HttpClientTransport.isSupported()) {
+            testTransport(new HttpClientTransport());
+        }
+    }
+
+    @Test
+    public void testDefaultTransport() {
+        QueryTransport defaultTransport = Query.getDefaultTransport();
+        assertTrue(defaultTransport instanceof URLConnectionTransport);
+    }
+
+    @Test
+    public void testBenchmark() throws QueryException {
+        URLConnectionTransport urlConnectionTransport = new URLConnectionTransport();
+
+        // Warm up both paths before timing them
+        benchmark(urlConnectionTransport);
+        long urlConnectionTime = benchmark(urlConnectionTransport);
+        System.out.println("URLConnectionTransport: " + urlConnectionTime / 1000 + " us/query");
+
+        if (HttpClientTransport.isSupported()) {
+            HttpClientTransport httpClientTransport = new HttpClientTransport();
+            benchmark(httpClientTransport);
+            long httpClientTime = benchmark(httpClientTransport);
+            System.out.println("HttpClientTransport: " + httpClientTime / 1000 + " us/query");
+        }
+    }
+
+    @Test
+    public void testAbortWhileWaitingForConnection() throws Exception {
+        Query.setMaxConnectionsPerHost(1);
+
+        try {
+            // The first query holds the only connection to the host
+            Thread slowThread = new Thread(() -> {
+                try {
+                    new GetQuery("localhost", port, "/slow", false).execute();
+                } catch (QueryException exception) {
+                    // Checked by the main thread
+                }
+            });
+            slowThread.start();
+
+            assertTrue(slowStarted.await(5, TimeUnit.SECONDS));
+
+            GetQuery query = new GetQuery("localhost", port, "/value", false);
+            AtomicReference<Throwable> fault = new AtomicReference<>();
+            Thread waitingThread = new Thread(() -> {
+                try {
+                    query.execute();
+                } catch (QueryException | RuntimeException exception) {
+                    fault.set(exception);
+                }
+            });
+            waitingThread.start();
+
+            Thread.sleep(200);
+            assertTrue(waitingThread.isAlive());
+
+            // Aborting the waiting query ends the wait
+            query.abort();
+            waitingThread.join(2000);
+            assertFalse(waitingThread.isAlive());
+            assertTrue(fault.get() instanceof AbortException);
+
+            slowLatch.countDown();
+            slowThread.join(5000);
+        } finally {
+            slowLatch.countDown();
+            Query.setMaxConnectionsPerHost(Query.DEFAULT_MAX_CONNECTIONS_PER_HOST);
+        }
+    }
+}
@@ -59,8 +59,8 @@ import java.net.URL;
 import java.text.AttributedCharacterIterator;
 import java.util.Iterator;
 import java.util.Random;
-import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.pivot.annotations.UnsupportedOperation;
 import org.apache.pivot.collections.ArrayList;
@@ -1716,32 +1716,112 @@ public abstract class ApplicationContext implements Application.UncaughtExceptio
     }
 
     /**
-     * Class representing a scheduled callback.
+     * Class representing a scheduled callback. Although it is a
+     * {@link TimerTask}, it is scheduled by the application context rather
+     * than by a {@link java.util.Timer}.
      */
     public static final class ScheduledCallback extends TimerTask {
         private Runnable callback;
-        private QueuedCallback queuedCallback = null;
+        private long period;
+        private long deadline = 0;
+        private volatile long executionTime = 0;
+        private volatile CallbackTimer callbackTimer = null;
+        private AtomicBoolean pending = new AtomicBoolean(false);
+        private volatile boolean executed = false;
+        private volatile boolean cancelled = false;
 
-        private ScheduledCallback(Runnable callback) {
+        private ScheduledCallback(Runnable callback, long period) {
             this.callback = callback;
+            this.period = period;
+        }
+
+        /**
+         * @return The interval at which the callback is repeated, or <tt>0</tt>
+         * for a one-time callback.
+         */
+        public long getPeriod() {
+            return period;
+        }
+
+        long getDeadline() {
+            return deadline;
+        }
+
+        void setDeadline(long deadline) {
+            this.deadline = deadline;
+        }
+
+        void setExecutionTime(long executionTime) {
+            this.executionTime = executionTime;
+        }
+
+        /**
+         * @return The time (as given by {@link System#currentTimeMillis()}) at
+         * which the most recent execution of the callback was due.
+         */
+        @Override
+        public long scheduledExecutionTime() {
+            return executionTime;
         }
 
+        /**
+         * Queues the callback for execution on the UI thread, as happens when
+         * it is due.
+         */
         @Override
         public void run() {
-            if (queuedCallback != null) {
-                queuedCallback.cancel();
+            if (queue()) {
+                queueCallback(this::execute);
+            }
+        }
+
+        /**
+         * Marks the callback as queued for execution on the UI thread.
+         *
+         * @return <tt>false</tt> if the callback has been cancelled or a
+         * previous execution is still waiting to run.
+         */
+        boolean queue() {
+            return !cancelled && pending.compareAndSet(false, true);
+        }
+
+        void execute() {
+            pending.set(false);
+
+            if (!cancelled) {
+                executed = true;
+
+                try {
+                    callback.run();
+                } catch (Throwable throwable) {
+                    handleUncaughtException(throwable);
+                }
             }
+        }
 
-            queuedCallback = queueCallback(callback);
+        public boolean isCancelled() {
+            return cancelled;
         }
 
+        /**
+         * Cancels the callback; any execution that has already been queued on
+         * the UI thread is cancelled too.
+         *
+         * @return <tt>true</tt> if this call prevented further executions.
+         */
         @Override
         public boolean cancel() {
-            if (queuedCallback != null) {
-                queuedCallback.cancel();
+            boolean result = !cancelled && (period > 0 || !executed);
+            cancelled = true;
+            super.cancel();
+
+            CallbackTimer callbackTimerLocal = callbackTimer;
+            if (callbackTimerLocal != null) {
+                callbackTimerLocal.remove(this);
+                callbackTimer = null;
             }
 
-            return super.cancel();
+            return result;
         }
     }
 
@@ -1750,29 +1830,48 @@ public abstract class ApplicationContext implements Application.UncaughtExceptio
      */
     public static final class QueuedCallback implements Runnable {
         private Runnable callback;
+        private CallbackPriority priority;
+        private long queueTime = System.nanoTime();
         private volatile boolean executed = false;
         private volatile boolean cancelled = false;
 
-        private QueuedCallback(Runnable callback) {
+        private QueuedCallback(Runnable callback, CallbackPriority priority) {
             this.callback = callback;
+            this.priority = priority;
         }
 
         @Override
         public void run() {
             if (!cancelled) {
-                try {
-                    callback.run();
-                } catch (Throwable exception) {
-                    exception.printStackTrace();
-                    handleUncaughtException(exception);
-                }
-
-                for (Display display : displays) {
-                    display.validate();
-                }
+                execute();
+                validateDisplays();
+            }
+        }
 
-                executed = true;
+        /**
+         * Runs the callback without validating the displays.
+         */
+        void execute() {
+            try {
+                callback.run();
+            } catch (Throwable exception) {
+                exception.printStackTrace();
+                handleUncaughtException(exception);
             }
+
+            executed = true;
+        }
+
+        public CallbackPriority getPriority() {
+            return priority;
+        }
+
+        long getQueueTime() {
+            return queueTime;
+        }
+
+        boolean isCancelled() {
+            return cancelled;
         }
 
         public boolean cancel() {
@@ -1808,7 +1907,9 @@ public abstract class ApplicationContext implements Application.UncaughtExceptio
     protected static ArrayList<Display> displays = new ArrayList<>();
     protected static ArrayList<Application> applications = new ArrayList<>();
 
-    private static Timer timer = null;
+    private static CallbackTimer timer = null;
+
+    private static final CallbackQueue callbackQueue = new CallbackQueue();
 
     private static HashMap<URI, Object> resourceCache = new HashMap<>();
     private static ResourceCacheDictionary resourceCacheDictionary = new ResourceCacheDictionary();
@@ -1950,19 +2051,8 @@ public abstract class ApplicationContext implements Application.UncaughtExceptio
      * @return The callback object.
      */
     public static ScheduledCallback scheduleCallback(Runnable callback, long delay) {
-        ScheduledCallback scheduledCallback = new ScheduledCallback(callback);
-
-        // TODO This is a workaround for a potential OS X bug; revisit
-        try {
-            try {
-                timer.schedule(scheduledCallback, delay);
-            } catch (IllegalStateException exception) {
-                createTimer();
-                timer.schedule(scheduledCallback, delay);
-            }
-        } catch (Throwable throwable) {
-            System.err.println("Unable to schedule callback: " + throwable);
-        }
+        ScheduledCallback scheduledCallback = new ScheduledCallback(callback, 0);
+        schedule(scheduledCallback, CallbackTimer.now() + Math.max(delay, 0));
 
         return scheduledCallback;
     }
@@ -1982,7 +2072,13 @@ public abstract class ApplicationContext implements Application.UncaughtExceptio
 
     /**
      * Schedules a task for repeated execution. The task will be executed on the
-     * UI thread.
+     * UI thread. <p> Recurring tasks run at a fixed rate: each execution is
+     * scheduled relative to the previous deadline rather than to the time the
+     * task actually ran, and periods missed while the UI thread was busy are
+     * skipped rather than run in a burst. The executions after the first are
+     * aligned to a multiple of the period, so tasks with the same period (e.g.
+     * several blinking carets) run in the same UI batch; the second execution
+     * may therefore happen up to one period later than it otherwise would.
      *
      * @param callback The task to execute.
      * @param delay The length of time to wait before the first execution of the
@@ -1993,20 +2089,14 @@ public abstract class ApplicationContext implements Application.UncaughtExceptio
      */
     public static ScheduledCallback scheduleRecurringCallback(Runnable callback, long delay,
         long period) {
-        ScheduledCallback scheduledCallback = new ScheduledCallback(callback);
-
-        // TODO This is a workaround for a potential OS X bug; revisit
-        try {
-            try {
-                timer.schedule(scheduledCallback, delay, period);
-            } catch (IllegalStateException exception) {
-                createTimer();
-                timer.schedule(scheduledCallback, delay, period);
-            }
-        } catch (Throwable throwable) {
-            System.err.println("Unable to schedule callback: " + throwable);
+        if (period <= 0) {
+            throw new IllegalArgumentException("period must be positive.");
         }
 
+        ScheduledCallback scheduledCallback = new ScheduledCallback(callback, period);
+        schedule(scheduledCallback, CallbackTimer.align(CallbackTimer.now() + Math.max(delay, 0),
+            Math.min(period, CallbackTimer.ALIGNMENT_QUANTUM)));
+
         return scheduledCallback;
     }
 
@@ -2035,28 +2125,30 @@ public abstract class ApplicationContext implements Application.UncaughtExceptio
      * @param period The interval at which the task will be repeated (also in
      * milliseconds).
      * @return The callback object.
+     * @see #scheduleRecurringCallback(Runnable, long, long)
      */
     public static ScheduledCallback runAndScheduleRecurringCallback(Runnable callback, long delay,
         long period) {
+        ScheduledCallback scheduledCallback = scheduleRecurringCallback(callback, delay, period);
 
-        ScheduledCallback scheduledCallback = new ScheduledCallback(callback);
+        // Before returning, run the task once to start things off
+        callback.run();
 
-        // TODO This is a workaround for a potential OS X bug; revisit
-        try {
-            try {
-                timer.schedule(scheduledCallback, delay, period);
-            } catch (IllegalStateException exception) {
+        return scheduledCallback;
+    }
+
+    private static void schedule(ScheduledCallback scheduledCallback, long deadline) {
+        CallbackTimer callbackTimer;
+        synchronized (ApplicationContext.class) {
+            if (timer == null) {
                 createTimer();
-                timer.schedule(scheduledCallback, delay, period);
             }
-        } catch (Throwable throwable) {
-            System.err.println("Unable to schedule callback: " + throwable);
-        }
 
-        // Before returning, run the task once to start things off
-        callback.run();
+            callbackTimer = timer;
+        }
 
-        return scheduledCallback;
+        scheduledCallback.callbackTimer = callbackTimer;
+        callbackTimer.schedule(scheduledCallback, deadline);
     }
 
     /**
@@ -2080,7 +2172,7 @@ public abstract class ApplicationContext implements Application.UncaughtExceptio
      * @return The callback object (used to manipulate or wait for the task).
      */
     public static QueuedCallback queueCallback(Runnable callback, boolean wait) {
-        QueuedCallback queuedCallback = new QueuedCallback(callback);
+        QueuedCallback queuedCallback = new QueuedCallback(callback, CallbackPriority.LAYOUT);
 
         // TODO This is a workaround for a potential OS X bug; revisit
         try {
@@ -2093,7 +2185,7 @@ public abstract class ApplicationContext implements Application.UncaughtExceptio
                     throw new RuntimeException(exception);
                 }
             } else {
-                java.awt.EventQueue.invokeLater(queuedCallback);
+                callbackQueue.add(queuedCallback);
             }
         } catch (Throwable throwable) {
             System.err.println("Unable to queue callback: " + throwable);
@@ -2102,13 +2194,55 @@ public abstract class ApplicationContext implements Application.UncaughtExceptio
         return queuedCallback;
     }
 
-    protected static void createTimer() {
-        timer = new Timer();
+    /**
+     * Queues a task to execute after all pending events have been processed,
+     * ahead of pending tasks of lower priority, and returns without waiting
+     * for the task to complete.
+     *
+     * @param callback The task to execute.
+     * @param priority The priority of the task.
+     * @return The callback object (used to manipulate or wait for the task).
+     */
+    public static QueuedCallback queueCallback(Runnable callback, CallbackPriority priority) {
+        Utils.checkNull(priority, "priority");
+
+        QueuedCallback queuedCallback = new QueuedCallback(callback, priority);
+
+        try {
+            callbackQueue.add(queuedCallback);
+        } catch (Throwable throwable) {
+            System.err.println("Unable to queue callback: " + throwable);
+        }
+
+        return queuedCallback;
+    }
+
+    /**
+     * Returns the queue through which callbacks are run on the UI thread. The
+     * queue runs pending callbacks in batches and keeps statistics about
+     * them.
+     *
+     * @return The callback queue.
+     */
+    public static CallbackQueue getCallbackQueue() {
+        return callbackQueue;
     }
 
-    protected static void destroyTimer() {
-        timer.cancel();
-        timer = null;
+    static void validateDisplays() {
+        for (Display display : displays) {
+            display.validate();
+        }
+    }
+
+    protected static synchronized void createTimer() {
+        timer = new CallbackTimer();
+    }
+
+    protected static synchronized void destroyTimer() {
+        if (timer != null) {
+            timer.shutdown();
+            timer = null;
+        }
     }
 
     public static List<Display> getDisplays() {
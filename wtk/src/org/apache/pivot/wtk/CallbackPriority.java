@@ -0,0 +1,36 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.wtk;
+
+/**
+ * Enumeration defining the priority of a queued callback. When several
+ * callbacks are pending, those with a higher priority (listed first) are run
+ * first; callbacks of the same priority run in the order in which they were
+ * queued.
+ *
+ * @see ApplicationContext#queueCallback(Runnable, CallbackPriority)
+ */
+public enum CallbackPriority {
+    /** Responses to user input. */
+    INPUT,
+    /** Updates to component state and layout; the default priority. */
+    LAYOUT,
+    /** Repaint requests. */
+    PAINT,
+    /** Model updates delivered from background tasks. */
+    BACKGROUND
+}
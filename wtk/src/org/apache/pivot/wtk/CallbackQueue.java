@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.wtk;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.pivot.util.concurrent.LatencyHistogram;
+
+/**
+ * Queue of callbacks waiting to run on the UI thread. <p> Rather than posting
+ * one AWT event per callback, the queue posts a single event that runs all of
+ * the callbacks pending when it is dispatched, in priority order, and then
+ * validates the displays once. Callbacks queued while a batch is running
+ * are left for the next batch, so that input events are processed between
+ * batches. An optional time budget ends a batch early; the remaining
+ * callbacks are then run in another event.
+ *
+ * @see ApplicationContext#getCallbackQueue()
+ */
+public final class CallbackQueue {
+    /**
+     * The callbacks of one priority.
+     */
+    private static final class Lane {
+        public final ConcurrentLinkedQueue<ApplicationContext.QueuedCallback> callbacks =
+            new ConcurrentLinkedQueue<>();
+        public final AtomicInteger depth = new AtomicInteger();
+    }
+
+    private final Lane[] lanes = new Lane[CallbackPriority.values().length];
+
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicLong batchCount = new AtomicLong();
+    private final LatencyHistogram dispatchLatency = new LatencyHistogram();
+
+    private volatile long timeBudget = 0;
+
+    private final Runnable dispatchCallback = this::dispatch;
+
+    CallbackQueue() {
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane();
+        }
+    }
+
+    /**
+     * Adds a callback to its lane and makes sure a batch is scheduled.
+     */
+    void add(ApplicationContext.QueuedCallback queuedCallback) {
+        Lane lane = lanes[queuedCallback.getPriority().ordinal()];
+        lane.callbacks.add(queuedCallback);
+        lane.depth.incrementAndGet();
+        queueDepth.incrementAndGet();
+
+        schedule();
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                java.awt.EventQueue.invokeLater(dispatchCallback);
+            } catch (RuntimeException exception) {
+                scheduled.set(false);
+                throw exception;
+            }
+        }
+    }
+
+    /**
+     * Runs the callbacks that are pending when the batch starts. The depth of
+     * each lane is taken first, so that callbacks queued by the batch itself,
+     * even with a higher priority, wait for the next batch rather than
+     * running ahead of older callbacks of lower priority.
+     */
+    private void dispatch() {
+        scheduled.set(false);
+        batchCount.incrementAndGet();
+
+        long budget = timeBudget;
+        long deadline = System.nanoTime() + budget * 1000000;
+
+        int[] laneRemaining = new int[lanes.length];
+        int remaining = 0;
+        for (int i = 0; i < lanes.length; i++) {
+            laneRemaining[i] = lanes[i].depth.get();
+            remaining += laneRemaining[i];
+        }
+
+        boolean executed = false;
+
+        for (int i = 0; i < lanes.length && remaining > 0; i++) {
+            Lane lane = lanes[i];
+
+            while (laneRemaining[i] > 0 && remaining > 0) {
+                ApplicationContext.QueuedCallback queuedCallback = lane.callbacks.poll();
+                if (queuedCallback == null) {
+                    break;
+                }
+
+                lane.depth.decrementAndGet();
+                queueDepth.decrementAndGet();
+                laneRemaining[i]--;
+                remaining--;
+
+                if (!queuedCallback.isCancelled()) {
+                    dispatchLatency.record(System.nanoTime() - queuedCallback.getQueueTime());
+                    queuedCallback.execute();
+                    executed = true;
+                }
+
+                if (budget > 0 && remaining > 0 && System.nanoTime() - deadline > 0) {
+                    remaining = 0;
+                }
+            }
+        }
+
+        if (executed) {
+            ApplicationContext.validateDisplays();
+        }
+
+        if (queueDepth.get() > 0) {
+            schedule();
+        }
+    }
+
+    /**
+     * @return The number of callbacks waiting to run.
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    /**
+     * @return The number of batches that have been dispatched.
+     */
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    /**
+     * @return The distribution of the time between queueing a callback and
+     * running it.
+     */
+    public LatencyHistogram getDispatchLatency() {
+        return dispatchLatency;
+    }
+
+    /**
+     * @return The time budget of a batch, in milliseconds.
+     */
+    public long getTimeBudget() {
+        return timeBudget;
+    }
+
+    /**
+     * Limits the time a single batch may spend running callbacks. Once the
+     * budget is used up, the remaining callbacks are run in a later event.
+     * At least one callback is run per batch.
+     *
+     * @param timeBudget The budget in milliseconds, or <tt>0</tt> (the
+     * default) for no limit.
+     */
+    public void setTimeBudget(long timeBudget) {
+        if (timeBudget < 0) {
+            throw new IllegalArgumentException("timeBudget is negative.");
+        }
+
+        this.timeBudget = timeBudget;
+    }
+}
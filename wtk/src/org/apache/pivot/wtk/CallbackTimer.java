@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.wtk;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.collections.HashMap;
+
+/**
+ * Timer behind {@link ApplicationContext#scheduleCallback(Runnable, long)} and
+ * the recurring variants. <p> Callbacks are grouped into "ticks" by the
+ * millisecond at which they are due; each tick is a single task on a
+ * {@link ScheduledThreadPoolExecutor} and hands all of its callbacks to the
+ * UI thread as one queued callback, so they run in the same batch. The first
+ * execution of a recurring callback is only rounded to a short quantum; later
+ * executions are placed on a grid of their period and rescheduled relative to
+ * their previous deadline, so callbacks with the same period (or multiples of
+ * it) share ticks and do not drift.
+ */
+final class CallbackTimer {
+    /**
+     * Callbacks due at the same time.
+     */
+    private class Tick implements Runnable {
+        private final long deadline;
+        private final ArrayList<ApplicationContext.ScheduledCallback> callbacks = new ArrayList<>();
+        private ScheduledFuture<?> future = null;
+
+        public Tick(long deadline) {
+            this.deadline = deadline;
+        }
+
+        @Override
+        public void run() {
+            fire(this);
+        }
+    }
+
+    /**
+     * The grid, in milliseconds, that the first execution of a recurring
+     * callback is aligned to.
+     */
+    public static final long ALIGNMENT_QUANTUM = 10;
+
+    private final ScheduledThreadPoolExecutor executor;
+    private final HashMap<Long, Tick> ticks = new HashMap<>();
+
+    public CallbackTimer() {
+        executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "Pivot Callback Timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // Cancelled ticks are removed from the work queue right away
+        executor.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * @return The current time of the timer's monotonic clock, in
+     * milliseconds.
+     */
+    public static long now() {
+        return System.nanoTime() / 1000000;
+    }
+
+    /**
+     * Returns the first time on a period's grid at or after a given time.
+     */
+    public static long align(long time, long period) {
+        long remainder = Math.floorMod(time, period);
+        return (remainder == 0) ? time : time + (period - remainder);
+    }
+
+    public synchronized void schedule(ApplicationContext.ScheduledCallback scheduledCallback, long deadline) {
+        if (scheduledCallback.isCancelled()) {
+            return;
+        }
+
+        Tick tick = ticks.get(deadline);
+        if (tick == null) {
+            tick = new Tick(deadline);
+            ticks.put(deadline, tick);
+            tick.future = executor.schedule(tick, Math.max(deadline - now(), 0), TimeUnit.MILLISECONDS);
+        }
+
+        tick.callbacks.add(scheduledCallback);
+        scheduledCallback.setDeadline(deadline);
+    }
+
+    public synchronized void remove(ApplicationContext.ScheduledCallback scheduledCallback) {
+        Tick tick = ticks.get(scheduledCallback.getDeadline());
+
+        if (tick != null) {
+            tick.callbacks.remove(scheduledCallback);
+
+            if (tick.callbacks.isEmpty()) {
+                ticks.remove(tick.deadline);
+                tick.future.cancel(false);
+            }
+        }
+    }
+
+    private void fire(Tick tick) {
+        ArrayList<ApplicationContext.ScheduledCallback> dueCallbacks = new ArrayList<>();
+
+        synchronized (this) {
+            if (ticks.get(tick.deadline) != tick) {
+                return;
+            }
+
+            ticks.remove(tick.deadline);
+
+            long now = now();
+            long executionTime = System.currentTimeMillis() - (now - tick.deadline);
+
+            for (ApplicationContext.ScheduledCallback scheduledCallback : tick.callbacks) {
+                // Skip the callback if its previous execution has not run yet
+                if (scheduledCallback.queue()) {
+                    scheduledCallback.setExecutionTime(executionTime);
+                    dueCallbacks.add(scheduledCallback);
+                }
+
+                long period = scheduledCallback.getPeriod();
+                if (period > 0) {
+                    // Move onto the grid after the first execution, and skip
+                    // any periods that were missed
+                    long deadline = align(tick.deadline + period, period);
+                    if (deadline <= now) {
+                        deadline += period * ((now - deadline) / period + 1);
+                    }
+
+                    schedule(scheduledCallback, deadline);
+                }
+            }
+        }
+
+        if (dueCallbacks.getLength() > 0) {
+            ApplicationContext.queueCallback(() -> {
+                for (ApplicationContext.ScheduledCallback scheduledCallback : dueCallbacks) {
+                    scheduledCallback.execute();
+                }
+            });
+        }
+    }
+
+    public synchronized int getTickCount() {
+        return ticks.getCount();
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+
+        synchronized (this) {
+            ticks.clear();
+        }
+    }
+}
@@ -27,6 +27,8 @@ import java.util.Iterator;
 
 import org.apache.pivot.annotations.UnsupportedOperation;
 import org.apache.pivot.beans.BeanAdapter;
+import org.apache.pivot.beans.BeanMonitor;
+import org.apache.pivot.beans.ConverterRegistry;
 import org.apache.pivot.beans.IDProperty;
 import org.apache.pivot.beans.PropertyNotFoundException;
 import org.apache.pivot.collections.ArrayList;
@@ -435,6 +437,27 @@ public abstract class Component implements ConstrainedVisual {
     // Class event listeners
     private static ComponentClassListener.Listeners componentClassListeners = new ComponentClassListener.Listeners();
 
+    static {
+        // Converters for the common style and property value types
+        ConverterRegistry.register(String.class, Color.class, GraphicsUtilities::decodeColor);
+        ConverterRegistry.register(String.class, Font.class, FontUtilities::decodeFont);
+        ConverterRegistry.register(String.class, Insets.class, Insets::decode);
+        ConverterRegistry.register(Number.class, Insets.class, Insets::new);
+        ConverterRegistry.register(Dictionary.class, Insets.class, Component::toInsets);
+        ConverterRegistry.register(Sequence.class, Insets.class, value -> new Insets((Sequence<?>) value));
+
+        // Non-proxy listeners for bean monitors (and therefore namespace bindings)
+        BeanMonitor.setListenerAdapterFactory(ComponentListener.class,
+            ComponentListener.PropertyChangeAdapter::new);
+        BeanMonitor.setListenerAdapterFactory(ComponentStateListener.class,
+            ComponentStateListener.PropertyChangeAdapter::new);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Insets toInsets(final Dictionary<?, ?> dictionary) {
+        return new Insets((Dictionary<String, ?>) dictionary);
+    }
+
     /**
      * Returns the component's automation ID.
      *
@@ -16,6 +16,7 @@
  */
 package org.apache.pivot.wtk;
 
+import org.apache.pivot.beans.PropertyChangeListener;
 import org.apache.pivot.util.ListenerList;
 
 /**
@@ -103,6 +104,91 @@ public interface ComponentListener {
         }
     }
 
+    /**
+     * Component listener that reports each change as a property change (used
+     * by {@link org.apache.pivot.beans.BeanMonitor} instead of a proxy).
+     */
+    public static class PropertyChangeAdapter implements ComponentListener {
+        private final PropertyChangeListener listener;
+
+        public PropertyChangeAdapter(PropertyChangeListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void parentChanged(Component component, Container previousParent) {
+            listener.propertyChanged(component, "parent");
+        }
+
+        @Override
+        public void sizeChanged(Component component, int previousWidth, int previousHeight) {
+            listener.propertyChanged(component, "size");
+        }
+
+        @Override
+        public void preferredSizeChanged(Component component, int previousPreferredWidth,
+            int previousPreferredHeight) {
+            listener.propertyChanged(component, "preferredSize");
+        }
+
+        @Override
+        public void widthLimitsChanged(Component component, int previousMinimumWidth,
+            int previousMaximumWidth) {
+            listener.propertyChanged(component, "widthLimits");
+        }
+
+        @Override
+        public void heightLimitsChanged(Component component, int previousMinimumHeight,
+            int previousMaximumHeight) {
+            listener.propertyChanged(component, "heightLimits");
+        }
+
+        @Override
+        public void locationChanged(Component component, int previousX, int previousY) {
+            listener.propertyChanged(component, "location");
+        }
+
+        @Override
+        public void visibleChanged(Component component) {
+            listener.propertyChanged(component, "visible");
+        }
+
+        @Override
+        public void cursorChanged(Component component, Cursor previousCursor) {
+            listener.propertyChanged(component, "cursor");
+        }
+
+        @Override
+        public void tooltipTextChanged(Component component, String previousTooltipText) {
+            listener.propertyChanged(component, "tooltipText");
+        }
+
+        @Override
+        public void tooltipDelayChanged(Component component, int previousTooltipDelay) {
+            listener.propertyChanged(component, "tooltipDelay");
+        }
+
+        @Override
+        public void dragSourceChanged(Component component, DragSource previousDragSource) {
+            listener.propertyChanged(component, "dragSource");
+        }
+
+        @Override
+        public void dropTargetChanged(Component component, DropTarget previousDropTarget) {
+            listener.propertyChanged(component, "dropTarget");
+        }
+
+        @Override
+        public void menuHandlerChanged(Component component, MenuHandler previousMenuHandler) {
+            listener.propertyChanged(component, "menuHandler");
+        }
+
+        @Override
+        public void nameChanged(Component component, String previousName) {
+            listener.propertyChanged(component, "name");
+        }
+    }
+
     /**
      * Component listener adapter.
      * @deprecated Since 2.1 and Java 8 the interface itself has default implementations.
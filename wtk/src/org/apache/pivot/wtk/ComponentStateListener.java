@@ -16,6 +16,7 @@
  */
 package org.apache.pivot.wtk;
 
+import org.apache.pivot.beans.PropertyChangeListener;
 import org.apache.pivot.util.ListenerList;
 
 /**
@@ -38,6 +39,28 @@ public interface ComponentStateListener {
         }
     }
 
+    /**
+     * Component state listener that reports each change as a property change
+     * (used by {@link org.apache.pivot.beans.BeanMonitor} instead of a proxy).
+     */
+    public static class PropertyChangeAdapter implements ComponentStateListener {
+        private final PropertyChangeListener listener;
+
+        public PropertyChangeAdapter(PropertyChangeListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void enabledChanged(Component component) {
+            listener.propertyChanged(component, "enabled");
+        }
+
+        @Override
+        public void focusedChanged(Component component, Component obverseComponent) {
+            listener.propertyChanged(component, "focused");
+        }
+    }
+
     /**
      * Component state listener adapter.
      * @deprecated Since 2.1 and Java 8 the interface itself has default implementations.
@@ -20,23 +20,35 @@ import java.awt.Graphics2D;
 import java.awt.GraphicsConfiguration;
 import java.awt.Rectangle;
 import java.awt.Transparency;
+import java.io.IOException;
 import java.util.Iterator;
 
 import org.apache.pivot.annotations.UnsupportedOperation;
+import org.apache.pivot.beans.Deferrable;
+import org.apache.pivot.beans.DeferredContent;
 import org.apache.pivot.collections.ArrayList;
 import org.apache.pivot.collections.Sequence;
+import org.apache.pivot.serialization.SerializationException;
 import org.apache.pivot.util.ImmutableIterator;
 import org.apache.pivot.util.ListenerList;
 import org.apache.pivot.util.Utils;
 import org.apache.pivot.wtk.effects.Decorator;
 
 /**
- * Abstract base class for containers.
+ * Abstract base class for containers. <p> A container can be marked with
+ * <tt>bxml:lazy="true"</tt> in BXML, in which case its content (its child
+ * elements) is not read until the container is first validated while it is
+ * visible; for example, when its tab is first selected in a {@link TabPane},
+ * or its card in a {@link CardPane}. Until then, the container is empty (and
+ * sized accordingly), and the IDs defined in its content are not in the
+ * document's namespace.
  */
 public abstract class Container extends Component implements Sequence<Component>,
-    Iterable<Component> {
+    Iterable<Component>, Deferrable {
     private ArrayList<Component> components = new ArrayList<>();
 
+    private DeferredContent deferredContent = null;
+
     private FocusTraversalPolicy focusTraversalPolicy = null;
 
     private Component mouseOverComponent = null;
@@ -261,6 +273,44 @@ public abstract class Container extends Component implements Sequence<Component>
         super.setVisible(visible);
     }
 
+    /**
+     * @return The content of this container that has not been loaded yet, or
+     * <tt>null</tt> if there is none.
+     */
+    public DeferredContent getDeferredContent() {
+        return deferredContent;
+    }
+
+    @Override
+    public void setDeferredContent(DeferredContent deferredContent) {
+        this.deferredContent = deferredContent;
+    }
+
+    @Override
+    public void validate() {
+        if (deferredContent != null && isVisible()) {
+            DeferredContent deferredContentLocal = deferredContent;
+            deferredContent = null;
+
+            try {
+                deferredContentLocal.load();
+            } catch (IOException | SerializationException exception) {
+                throw new RuntimeException(exception);
+            }
+
+            // The ancestors of this container have already been sized, so lay
+            // them out again once the current validation is complete
+            ApplicationContext.queueCallback(new Runnable() {
+                @Override
+                public void run() {
+                    invalidate();
+                }
+            });
+        }
+
+        super.validate();
+    }
+
     @Override
     protected void layout() {
         super.layout();
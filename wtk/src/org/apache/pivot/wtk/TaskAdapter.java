@@ -16,6 +16,8 @@
  */
 package org.apache.pivot.wtk;
 
+import java.util.concurrent.CompletableFuture;
+
 import org.apache.pivot.util.Utils;
 import org.apache.pivot.util.concurrent.Task;
 import org.apache.pivot.util.concurrent.TaskListener;
@@ -38,6 +40,22 @@ public class TaskAdapter<T> implements TaskListener<T> {
         this.taskListener = taskListener;
     }
 
+    /**
+     * Asynchronously executes a task and returns a future that is completed on
+     * the UI thread, so that dependent stages which are not explicitly
+     * asynchronous may safely update the user interface.
+     *
+     * @param <T> The result type of the task.
+     * @param task The task to execute.
+     * @return A future representing the outcome of the task.
+     * @see Task#toCompletableFuture(java.util.concurrent.Executor)
+     */
+    public static <T> CompletableFuture<T> toCompletableFuture(Task<T> task) {
+        Utils.checkNull(task, "Task");
+
+        return task.toCompletableFuture(ApplicationContext::queueCallback);
+    }
+
     // TaskListener methods
 
     @Override
@@ -21,12 +21,14 @@ import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.net.URLConnection;
 import java.util.concurrent.ExecutorService;
 
 import org.apache.pivot.io.IOTask;
 import org.apache.pivot.serialization.SerializationException;
 import org.apache.pivot.util.ListenerList;
 import org.apache.pivot.util.Utils;
+import org.apache.pivot.util.concurrent.AbortException;
 import org.apache.pivot.util.concurrent.TaskExecutionException;
 import org.apache.pivot.util.concurrent.TaskListener;
 import org.apache.pivot.wtk.ApplicationContext;
@@ -63,10 +65,14 @@ public abstract class Image implements Visual {
         public Image execute() throws TaskExecutionException {
             Image image = null;
 
+            if (abort) {
+                throw new AbortException();
+            }
+
             // NOTE We don't open the stream until the callback executes
             // because this is a potentially time-consuming operation
             try (InputStream inputStream =
-                    new MonitoredInputStream(new BufferedInputStream(location.openStream()))) {
+                    new MonitoredInputStream(new BufferedInputStream(openConnection().getInputStream()))) {
 
                 if (location.getFile().endsWith(SVGDiagramSerializer.SVG_EXTENSION)) {
                     SVGDiagramSerializer serializer = new SVGDiagramSerializer();
@@ -78,11 +84,28 @@ public abstract class Image implements Visual {
                     image = new Picture(bufferedImage);
                 }
             } catch (IOException | SerializationException exception) {
+                // The stream was closed because the task was aborted
+                if (abort) {
+                    throw new AbortException();
+                }
+
                 throw new TaskExecutionException(exception);
             }
 
             return image;
         }
+
+        private URLConnection openConnection() throws IOException {
+            URLConnection connection = location.openConnection();
+
+            if (timeout != Long.MAX_VALUE) {
+                int connectionTimeout = (int) Math.min(Math.max(timeout, 1), Integer.MAX_VALUE);
+                connection.setConnectTimeout(connectionTimeout);
+                connection.setReadTimeout(connectionTimeout);
+            }
+
+            return connection;
+        }
     }
 
     protected ImageListener.Listeners imageListeners = new ImageListener.Listeners();
@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.wtk.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.EventQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.pivot.collections.ArrayList;
+import org.apache.pivot.util.concurrent.Task;
+import org.apache.pivot.util.concurrent.TaskListener;
+import org.apache.pivot.wtk.ApplicationContext;
+import org.apache.pivot.wtk.CallbackPriority;
+import org.apache.pivot.wtk.CallbackQueue;
+import org.apache.pivot.wtk.TaskAdapter;
+import org.junit.Test;
+
+public class CallbackQueueTest {
+    private static void blockEventQueue(CountDownLatch release) {
+        EventQueue.invokeLater(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    @Test
+    public void testPriorityAndBatching() throws Exception {
+        CallbackQueue callbackQueue = ApplicationContext.getCallbackQueue();
+        ArrayList<String> order = new ArrayList<>();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+
+        blockEventQueue(release);
+
+        ApplicationContext.queueCallback(() -> order.add("background"), CallbackPriority.BACKGROUND);
+        ApplicationContext.queueCallback(() -> order.add("layout1"));
+        ApplicationContext.queueCallback(() -> order.add("paint"), CallbackPriority.PAINT);
+        ApplicationContext.queueCallback(() -> order.add("input"), CallbackPriority.INPUT);
+        ApplicationContext.queueCallback(() -> order.add("layout2"));
+        ApplicationContext.queueCallback(() -> order.add("cancelled")).cancel();
+        ApplicationContext.queueCallback(done::countDown, CallbackPriority.BACKGROUND);
+
+        assertEquals(7, callbackQueue.getQueueDepth());
+        long batchCount = callbackQueue.getBatchCount();
+        long latencyCount = callbackQueue.getDispatchLatency().getCount();
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        assertEquals(new ArrayList<>("input", "layout1", "layout2", "paint", "background"), order);
+        assertEquals(batchCount + 1, callbackQueue.getBatchCount());
+        assertEquals(latencyCount + 6, callbackQueue.getDispatchLatency().getCount());
+        assertEquals(0, callbackQueue.getQueueDepth());
+    }
+
+    @Test
+    public void testTaskAdapterPriority() throws Exception {
+        ArrayList<String> order = new ArrayList<>();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+
+        Task<String> task = new Task<String>() {
+            @Override
+            public String execute() {
+                return null;
+            }
+        };
+
+        TaskAdapter<String> taskAdapter = new TaskAdapter<>(new TaskListener<String>() {
+            @Override
+            public void taskExecuted(Task<String> taskArgument) {
+                order.add("task");
+            }
+
+            @Override
+            public void executeFailed(Task<String> taskArgument) {
+                order.add("failed");
+            }
+        });
+
+        blockEventQueue(release);
+
+        // Task results are delivered with the default priority, in order
+        ApplicationContext.queueCallback(() -> order.add("paint"), CallbackPriority.PAINT);
+        ApplicationContext.queueCallback(() -> order.add("layout1"));
+        taskAdapter.taskExecuted(task);
+        ApplicationContext.queueCallback(() -> order.add("layout2"));
+        ApplicationContext.queueCallback(done::countDown, CallbackPriority.BACKGROUND);
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        assertEquals(new ArrayList<>("layout1", "task", "layout2", "paint"), order);
+    }
+
+    @Test
+    public void testTimeBudget() throws Exception {
+        CallbackQueue callbackQueue = ApplicationContext.getCallbackQueue();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(3);
+
+        blockEventQueue(release);
+
+        Runnable slowCallback = () -> {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+
+            done.countDown();
+        };
+
+        for (int i = 0; i < 3; i++) {
+            ApplicationContext.queueCallback(slowCallback);
+        }
+
+        long batchCount = callbackQueue.getBatchCount();
+        callbackQueue.setTimeBudget(1);
+
+        try {
+            release.countDown();
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+        } finally {
+            callbackQueue.setTimeBudget(0);
+        }
+
+        assertEquals(batchCount + 3, callbackQueue.getBatchCount());
+    }
+
+    @Test
+    public void testRequeuedCallbacksWaitForNextBatch() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(2);
+        int[] layoutRuns = new int[1];
+        int[] layoutRunsBeforeBackground = new int[1];
+
+        blockEventQueue(release);
+
+        // A layout callback that keeps queueing itself must not starve older background callbacks
+        Runnable layoutCallback = new Runnable() {
+            @Override
+            public void run() {
+                if (++layoutRuns[0] < 100) {
+                    ApplicationContext.queueCallback(this, CallbackPriority.LAYOUT);
+                } else {
+                    done.countDown();
+                }
+            }
+        };
+
+        ApplicationContext.queueCallback(layoutCallback, CallbackPriority.LAYOUT);
+        ApplicationContext.queueCallback(() -> {
+            layoutRunsBeforeBackground[0] = layoutRuns[0];
+            done.countDown();
+        }, CallbackPriority.BACKGROUND);
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        assertEquals(1, layoutRunsBeforeBackground[0]);
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pivot.wtk.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.util.TimerTask;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.pivot.wtk.ApplicationContext;
+import org.junit.Test;
+
+public class ScheduledCallbackTest {
+    @Test
+    public void testScheduleCallback() throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+        boolean[] dispatchThread = new boolean[1];
+
+        ApplicationContext.ScheduledCallback scheduledCallback = ApplicationContext.scheduleCallback(() -> {
+            dispatchThread[0] = EventQueue.isDispatchThread();
+            done.countDown();
+        }, 10);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(dispatchThread[0]);
+
+        // Cancelling an executed one-time callback prevents nothing
+        Thread.sleep(50);
+        assertFalse(scheduledCallback.cancel());
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        AtomicInteger count = new AtomicInteger();
+
+        ApplicationContext.ScheduledCallback scheduledCallback =
+            ApplicationContext.scheduleCallback(count::incrementAndGet, 50);
+        assertTrue(scheduledCallback.cancel());
+        assertFalse(scheduledCallback.cancel());
+        assertTrue(scheduledCallback.isCancelled());
+
+        ApplicationContext.ScheduledCallback recurringCallback =
+            ApplicationContext.scheduleRecurringCallback(count::incrementAndGet, 20);
+        Thread.sleep(100);
+        assertTrue(recurringCallback.cancel());
+
+        // Let anything already queued drain before sampling the count
+        Thread.sleep(50);
+        int executions = count.get();
+        Thread.sleep(100);
+        assertEquals(executions, count.get());
+    }
+
+    @Test
+    public void testAlignedBatch() throws Exception {
+        CountDownLatch done = new CountDownLatch(2);
+        AtomicInteger[] counts = {new AtomicInteger(), new AtomicInteger()};
+        AWTEvent[] events = new AWTEvent[2];
+
+        // Start early in a period, but past its start, so that both callbacks
+        // are moved onto the same deadline after their first executions
+        long time = System.nanoTime() / 1000000 % 100;
+        while (time < 10 || time > 50) {
+            Thread.sleep(1);
+            time = System.nanoTime() / 1000000 % 100;
+        }
+
+        ApplicationContext.ScheduledCallback first = ApplicationContext.scheduleRecurringCallback(() -> {
+            if (counts[0].incrementAndGet() == 2) {
+                events[0] = EventQueue.getCurrentEvent();
+                done.countDown();
+            }
+        }, 100);
+
+        Thread.sleep(15);
+
+        ApplicationContext.ScheduledCallback second = ApplicationContext.scheduleRecurringCallback(() -> {
+            if (counts[1].incrementAndGet() == 2) {
+                events[1] = EventQueue.getCurrentEvent();
+                done.countDown();
+            }
+        }, 100);
+
+        try {
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+        } finally {
+            first.cancel();
+            second.cancel();
+        }
+
+        assertSame(events[0], events[1]);
+    }
+
+    @Test
+    public void testFirstExecution() throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+
+        // The first execution is not aligned to the (long) period
+        long startTime = System.currentTimeMillis();
+        TimerTask timerTask = ApplicationContext.scheduleRecurringCallback(done::countDown, 60000);
+
+        try {
+            assertTrue(done.await(1, TimeUnit.SECONDS));
+            assertTrue(Math.abs(timerTask.scheduledExecutionTime() - startTime) < 1000);
+        } finally {
+            timerTask.cancel();
+        }
+    }
+
+    @Test
+    public void testCoalescing() throws Exception {
+        AtomicInteger count = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+
+        EventQueue.invokeLater(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        ApplicationContext.ScheduledCallback scheduledCallback =
+            ApplicationContext.scheduleRecurringCallback(count::incrementAndGet, 10);
+
+        try {
+            // Periods that elapse while the UI thread is busy do not pile up
+            Thread.sleep(200);
+            release.countDown();
+            EventQueue.invokeLater(done::countDown);
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertTrue(count.get() <= 3);
+        } finally {
+            scheduledCallback.cancel();
+        }
+    }
+}